@@ -0,0 +1,276 @@
+package nl.tudelft.watchdog.core.logic.document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracks the changes to a document from its change events, so that the edit
+ * distance between the document before and after the changes can be computed
+ * without keeping a copy of its full content.
+ *
+ * The tracker maintains the set of dirty regions, i.e. the disjoint parts of
+ * the document that differ from the original document, together with the
+ * original and the current text of each region. Once the tracked text exceeds
+ * {@link #MAX_TRACKED_CHARACTERS}, only the lengths of the regions are kept,
+ * which still bounds the edit distance.
+ */
+public class ChangeTracker {
+
+	/** The maximum number of characters of dirty regions that are kept. */
+	public static final int MAX_TRACKED_CHARACTERS = 1 << 20;
+
+	/** A dirty region, positioned in the current document. */
+	private static class Region {
+
+		private int start;
+
+		private int originalLength;
+
+		private int currentLength;
+
+		/** The text this region replaced, if it is kept. */
+		private String original;
+
+		/** The current text of this region, if it is kept. */
+		private String current;
+	}
+
+	/** The dirty regions, ordered by their start. */
+	private final List<Region> regions = new ArrayList<Region>();
+
+	private boolean isKeepingText = true;
+
+	private boolean isComplete = true;
+
+	private int changeCount;
+
+	private long trackedCharacters;
+
+	/**
+	 * Records a change of the document at the given offset, which replaced the
+	 * removed text with the inserted text. If either is <code>null</code>, the
+	 * change is unknown and the tracker becomes incomplete.
+	 */
+	public synchronized void recordChange(int offset, String removedText,
+			String insertedText) {
+		changeCount++;
+		if (removedText == null || insertedText == null || offset < 0) {
+			isComplete = false;
+			return;
+		}
+		if (!isComplete) {
+			return;
+		}
+
+		int removedLength = removedText.length();
+		int changeEnd = offset + removedLength;
+		int first = findFirstRegionEndingAtOrAfter(offset);
+		int last = first;
+		while (last < regions.size() && regions.get(last).start <= changeEnd) {
+			last++;
+		}
+
+		// Merge the change with all regions it overlaps or touches. The gaps
+		// between these regions lie within the removed text.
+		Region merged = new Region();
+		merged.start = offset;
+		if (first < last) {
+			merged.start = Math.min(offset, regions.get(first).start);
+		}
+		StringBuilder original = isKeepingText ? new StringBuilder() : null;
+		StringBuilder before = isKeepingText ? new StringBuilder() : null;
+		int position = merged.start;
+		for (int i = first; i < last; i++) {
+			Region region = regions.get(i);
+			appendGap(original, before, removedText, position - offset,
+					region.start - offset);
+			merged.originalLength += Math.max(0, region.start - position)
+					+ region.originalLength;
+			if (isKeepingText) {
+				original.append(region.original);
+				before.append(region.current);
+				trackedCharacters -= region.original.length()
+						+ region.current.length();
+			}
+			position = region.start + region.currentLength;
+		}
+		if (position < changeEnd) {
+			appendGap(original, before, removedText, position - offset,
+					removedLength);
+			merged.originalLength += changeEnd - position;
+			position = changeEnd;
+		}
+		merged.currentLength = position - merged.start - removedLength
+				+ insertedText.length();
+
+		if (isKeepingText) {
+			int changeStart = offset - merged.start;
+			before.replace(changeStart, changeStart + removedLength,
+					insertedText);
+			merged.original = original.toString();
+			merged.current = before.toString();
+			trackedCharacters += merged.original.length()
+					+ merged.current.length();
+		}
+
+		regions.subList(first, last).clear();
+		int shift = insertedText.length() - removedLength;
+		for (int i = first; i < regions.size(); i++) {
+			regions.get(i).start += shift;
+		}
+		if (!isKeepingText || !merged.original.equals(merged.current)) {
+			regions.add(first, merged);
+		}
+
+		if (isKeepingText && trackedCharacters > MAX_TRACKED_CHARACTERS) {
+			dropText();
+		}
+	}
+
+	/** Appends the removed text between the two offsets, if any. */
+	private void appendGap(StringBuilder original, StringBuilder before,
+			String removedText, int from, int to) {
+		if (!isKeepingText || from >= to) {
+			return;
+		}
+		String gap = removedText.substring(from, to);
+		original.append(gap);
+		before.append(gap);
+	}
+
+	/** @return the index of the first region that ends at or after offset. */
+	private int findFirstRegionEndingAtOrAfter(int offset) {
+		int low = 0;
+		int high = regions.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			Region region = regions.get(middle);
+			if (region.start + region.currentLength < offset) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private void dropText() {
+		isKeepingText = false;
+		trackedCharacters = 0;
+		for (Region region : regions) {
+			region.original = null;
+			region.current = null;
+		}
+	}
+
+	/**
+	 * @return whether all changes were recorded with their texts, so that the
+	 *         tracker knows all differences to the original document.
+	 */
+	public synchronized boolean isComplete() {
+		return isComplete;
+	}
+
+	/** @return the number of changes recorded so far. */
+	public synchronized int getChangeCount() {
+		return changeCount;
+	}
+
+	/** @return the number of disjoint dirty regions. */
+	public synchronized int getRegionCount() {
+		return regions.size();
+	}
+
+	/**
+	 * @return the length of the current document minus the length of the
+	 *         original document.
+	 */
+	public synchronized long getLengthDifference() {
+		long difference = 0;
+		for (Region region : regions) {
+			difference += region.currentLength - region.originalLength;
+		}
+		return difference;
+	}
+
+	/**
+	 * @return an upper bound of the edit distance between the original and the
+	 *         current document, i.e. the sum of the larger of the original and
+	 *         current length of each dirty region.
+	 */
+	public synchronized long getEditDistanceBound() {
+		long bound = 0;
+		for (Region region : regions) {
+			bound += Math.max(region.originalLength, region.currentLength);
+		}
+		return bound;
+	}
+
+	/**
+	 * @return an upper bound of the edit distance between the original and
+	 *         the current document, i.e. the sum of the edit distances of all
+	 *         dirty regions. It overestimates the distance whenever aligning
+	 *         text across regions is cheaper. If the text of the regions is no
+	 *         longer kept, it is the {@link #getEditDistanceBound()}.
+	 */
+	public long computeEditDistance() {
+		List<String[]> texts = new ArrayList<String[]>();
+		synchronized (this) {
+			if (!isKeepingText) {
+				return getEditDistanceBound();
+			}
+			for (Region region : regions) {
+				texts.add(new String[] { region.original, region.current });
+			}
+		}
+		long distance = 0;
+		for (String[] text : texts) {
+			distance += EditDistance.compute(text[0], text[1],
+					Math.max(text[0].length(), text[1].length()));
+		}
+		return distance;
+	}
+
+	/**
+	 * @return the edit distance between the original document and its
+	 *         current content. As the document is unchanged before the first
+	 *         and after the last dirty region, it is computed over the span
+	 *         between them, with the unchanged gaps taken from the content. If
+	 *         the content does not match the tracked regions, or computing
+	 *         the distance is too expensive, it is the upper bound of
+	 *         {@link #computeEditDistance()}.
+	 */
+	public long computeEditDistance(CharSequence currentContent) {
+		if (currentContent == null) {
+			return computeEditDistance();
+		}
+		StringBuilder original = null;
+		int spanStart = 0;
+		int spanEnd = 0;
+		synchronized (this) {
+			if (isKeepingText && !regions.isEmpty()) {
+				original = new StringBuilder();
+				spanStart = regions.get(0).start;
+				spanEnd = spanStart;
+				for (Region region : regions) {
+					int regionEnd = region.start + region.currentLength;
+					if (regionEnd > currentContent.length()
+							|| !region.current.contentEquals(currentContent
+									.subSequence(region.start, regionEnd))) {
+						original = null;
+						break;
+					}
+					original.append(currentContent, spanEnd, region.start);
+					original.append(region.original);
+					spanEnd = regionEnd;
+				}
+			}
+		}
+		long bound = computeEditDistance();
+		if (original == null) {
+			return bound;
+		}
+		return EditDistance.compute(original,
+				currentContent.subSequence(spanStart, spanEnd), bound);
+	}
+}
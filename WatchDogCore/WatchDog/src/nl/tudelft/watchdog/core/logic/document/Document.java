@@ -2,6 +2,7 @@ package nl.tudelft.watchdog.core.logic.document;
 
 import java.io.Serializable;
 
+import nl.tudelft.watchdog.core.logic.document.DocumentCache.PreparedDocument;
 import nl.tudelft.watchdog.core.util.WatchDogUtilsBase;
 
 import com.google.gson.annotations.SerializedName;
@@ -37,17 +38,65 @@ public class Document implements Serializable {
 
 	private transient String filePath;
 
-	private transient String content;
+	/** The modification stamp of a document whose stamp is unknown. */
+	public static final long UNKNOWN_MODIFICATION_STAMP = -1;
+
+	private transient CharSequence content;
+
+	/** The content, if it has not been read yet. */
+	private transient LazyContent lazyContent;
+
+	/**
+	 * The modification stamp of the document in the editor when this document
+	 * was created.
+	 */
+	private transient long modificationStamp = UNKNOWN_MODIFICATION_STAMP;
 
 	/** Constructor. */
 	public Document(String projectName, String fileName, String filePath,
-			String content) {
+			CharSequence content) {
 		this.projectName = projectName;
 		this.name = fileName;
 		this.filePath = filePath;
 		this.content = content;
 	}
 
+	/**
+	 * Constructor for a document whose content was read with the given
+	 * modification stamp, under which its statistics are cached.
+	 */
+	public Document(String projectName, String fileName, String filePath,
+			CharSequence content, long modificationStamp) {
+		this(projectName, fileName, filePath, content);
+		this.modificationStamp = modificationStamp;
+	}
+
+	/**
+	 * Constructor for a document whose content is only read when it is needed.
+	 * With a known modification stamp, the content of an unchanged file is not
+	 * read at all if its statistics are cached.
+	 */
+	public Document(String projectName, String fileName, String filePath,
+			LazyContent content, long modificationStamp) {
+		this(projectName, fileName, filePath, (CharSequence) null,
+				modificationStamp);
+		this.lazyContent = content;
+	}
+
+	/**
+	 * Recreates a prepared document from its stored hashes. Its name, path and
+	 * content are not stored and hence unknown.
+	 */
+	public static Document restore(String projectNameHash, String nameHash,
+			long sloc, DocumentType docType) {
+		Document document = new Document(null, null, null, null);
+		document.projectNameHash = projectNameHash;
+		document.nameHash = nameHash;
+		document.sloc = sloc;
+		document.docType = docType;
+		return document;
+	}
+
 	/** @return the project's name */
 	public String getProjectName() {
 		return projectName;
@@ -63,26 +112,110 @@ public class Document implements Serializable {
 		return docType;
 	}
 
-	/** @return the contents of the document. */
-	public String getContent() {
+	/** @return the path of the file. */
+	public String getFilePath() {
+		return filePath;
+	}
+
+	/**
+	 * @return the contents of the document, which are read from the editor on
+	 *         the first call if they are lazy.
+	 */
+	public synchronized CharSequence getContent() {
+		if (lazyContent != null) {
+			content = lazyContent.get();
+			lazyContent = null;
+		}
 		return content;
 	}
 
+	/**
+	 * Reads lazy contents now, e.g. because the document in the editor is
+	 * about to change.
+	 */
+	public void captureContent() {
+		getContent();
+	}
+
+	/** @return the hash of the project's name */
+	public String getProjectNameHash() {
+		return projectNameHash;
+	}
+
+	/** @return the hash of the file's name */
+	public String getNameHash() {
+		return nameHash;
+	}
+
+	/** @return the file's length, in LoC */
+	public long getSloc() {
+		return sloc;
+	}
+
 	/** Sets the document type to the supplied type. */
 	public void setDocumentType(DocumentType type) {
 		this.docType = type;
 	}
 
-	/** Prepares this document to extract statistics out of it. */
-	public void prepareDocument() {
+	/**
+	 * Prepares this document to extract statistics out of it. A document
+	 * whose content has been released keeps its statistics. The statistics of
+	 * unchanged files are taken from the {@link DocumentCache}.
+	 */
+	public synchronized void prepareDocument() {
+		if (name != null && (content != null || lazyContent != null)) {
+			CharSequence text = null;
+			long fingerprint;
+			if (modificationStamp != UNKNOWN_MODIFICATION_STAMP) {
+				fingerprint = DocumentCache.createFingerprint(modificationStamp);
+			} else {
+				text = getContent();
+				fingerprint = text == null ? 0 : DocumentCache
+						.createFingerprint(text);
+			}
+
+			DocumentCache cache = DocumentCache.getInstance();
+			PreparedDocument prepared = null;
+			if (modificationStamp != UNKNOWN_MODIFICATION_STAMP || text != null) {
+				prepared = cache.get(projectName, name, filePath, fingerprint);
+			}
+			if (prepared == null) {
+				if (text == null) {
+					text = getContent();
+				}
+				if (text != null) {
+					DocumentScanner scanner = new DocumentScanner(text);
+					prepared = new PreparedDocument(fingerprint,
+							WatchDogUtilsBase.createFileNameHash(name),
+							projectName == null ? projectNameHash
+									: WatchDogUtilsBase.createHash(projectName),
+							scanner.getSloc(),
+							DocumentClassifier.classifyDocument(name, filePath,
+									scanner));
+					cache.put(projectName, name, filePath, prepared);
+				}
+			}
+			if (prepared != null) {
+				this.nameHash = prepared.nameHash;
+				this.projectNameHash = prepared.projectNameHash;
+				this.sloc = prepared.sloc;
+				this.docType = prepared.docType;
+				return;
+			}
+		}
+
 		this.nameHash = WatchDogUtilsBase.createFileNameHash(name);
 		if (projectName != null) {
 			this.projectNameHash = WatchDogUtilsBase.createHash(projectName);
 		}
-		if (name != null && content != null) {
-			this.sloc = WatchDogUtilsBase.countSLOC(content);
-			this.docType = DocumentClassifier.classifyDocument(name, filePath,
-					content);
-		}
+	}
+
+	/**
+	 * Releases the content of the document, e.g. after it has been prepared,
+	 * so that it is no longer kept in memory.
+	 */
+	public synchronized void releaseContent() {
+		this.content = null;
+		this.lazyContent = null;
 	}
 }
@@ -0,0 +1,184 @@
+package nl.tudelft.watchdog.core.logic.document;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded LRU cache of the results of {@link Document#prepareDocument()},
+ * so that flipping between unchanged files does not hash, classify and count
+ * their content again. Entries are keyed by the identity of the file and
+ * only used if the fingerprint of the content is unchanged. The fingerprint
+ * is the modification stamp of the document in the editor, if it is known, so
+ * that the content does not have to be read at all, and its length and hash
+ * code otherwise.
+ */
+public class DocumentCache {
+
+	/** The default maximum number of cached files. */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/** The prepared statistics of a file. */
+	static class PreparedDocument {
+
+		private final long fingerprint;
+
+		final String nameHash;
+
+		final String projectNameHash;
+
+		final long sloc;
+
+		final DocumentType docType;
+
+		PreparedDocument(long fingerprint, String nameHash,
+				String projectNameHash, long sloc, DocumentType docType) {
+			this.fingerprint = fingerprint;
+			this.nameHash = nameHash;
+			this.projectNameHash = projectNameHash;
+			this.sloc = sloc;
+			this.docType = docType;
+		}
+	}
+
+	private static volatile DocumentCache instance;
+
+	private final Map<String, PreparedDocument> cache;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong invalidations = new AtomicLong();
+
+	/** Constructor. */
+	public DocumentCache(final int capacity) {
+		this.cache = new LinkedHashMap<String, PreparedDocument>(16, 0.75f,
+				true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<String, PreparedDocument> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/** @return the cache used by all documents. */
+	public static DocumentCache getInstance() {
+		if (instance == null) {
+			synchronized (DocumentCache.class) {
+				if (instance == null) {
+					instance = new DocumentCache(DEFAULT_CAPACITY);
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * @return the prepared statistics of the file, if they were prepared from
+	 *         content with the same fingerprint, or <code>null</code>
+	 *         otherwise.
+	 */
+	synchronized PreparedDocument get(String projectName, String fileName,
+			String filePath, long fingerprint) {
+		String key = createKey(projectName, fileName, filePath);
+		PreparedDocument prepared = cache.get(key);
+		if (prepared == null || prepared.fingerprint != fingerprint) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return prepared;
+	}
+
+	/**
+	 * @return whether the statistics of the file are cached for content with
+	 *         the modification stamp, so that the content need not be read.
+	 *         Other than a lookup, this counts neither as a hit nor as a miss.
+	 */
+	public synchronized boolean contains(String projectName, String fileName,
+			String filePath, long modificationStamp) {
+		if (modificationStamp == Document.UNKNOWN_MODIFICATION_STAMP) {
+			return false;
+		}
+		PreparedDocument prepared = cache.get(createKey(projectName, fileName,
+				filePath));
+		return prepared != null
+				&& prepared.fingerprint == createFingerprint(modificationStamp);
+	}
+
+	/** Caches the prepared statistics of the file. */
+	synchronized void put(String projectName, String fileName,
+			String filePath, PreparedDocument prepared) {
+		cache.put(createKey(projectName, fileName, filePath), prepared);
+	}
+
+	/**
+	 * Removes the cached statistics of the document's file, e.g. because it
+	 * is being changed.
+	 */
+	public synchronized void invalidate(Document document) {
+		if (document == null) {
+			return;
+		}
+		if (cache.remove(createKey(document.getProjectName(),
+				document.getFileName(), document.getFilePath())) != null) {
+			invalidations.incrementAndGet();
+		}
+	}
+
+	/** Removes all cached statistics. */
+	public synchronized void clear() {
+		cache.clear();
+	}
+
+	/** @return the number of cached files. */
+	public synchronized int size() {
+		return cache.size();
+	}
+
+	/** @return how often cached statistics could be used. */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/** @return how often a document had to be prepared from scratch. */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/** @return how often cached statistics were invalidated. */
+	public long getInvalidationCount() {
+		return invalidations.get();
+	}
+
+	private static String createKey(String projectName, String fileName,
+			String filePath) {
+		return projectName + '\u0000' + filePath + '\u0000' + fileName;
+	}
+
+	/** @return the fingerprint of content with the modification stamp. */
+	static long createFingerprint(long modificationStamp) {
+		return Long.MIN_VALUE | modificationStamp;
+	}
+
+	/**
+	 * @return the fingerprint of the content, made up of its length and its
+	 *         hash code, which {@link String}s only compute once.
+	 */
+	static long createFingerprint(CharSequence content) {
+		int hash = 0;
+		if (content instanceof String) {
+			hash = content.hashCode();
+		} else {
+			for (int i = 0; i < content.length(); i++) {
+				hash = 31 * hash + content.charAt(i);
+			}
+		}
+		return ((long) content.length() << 32) | (hash & 0xffffffffL);
+	}
+}
@@ -10,17 +10,25 @@ public class DocumentClassifier {
 	 * filename and its contents.
 	 */
 	public static DocumentType classifyDocument(String fileName,
-			String filePath, String fileContents) {
+			String filePath, CharSequence fileContents) {
+		return classifyDocument(fileName, filePath, new DocumentScanner(
+				fileContents));
+	}
+
+	/**
+	 * Classifies the document type of the given document, by analyzing its
+	 * filename and its already scanned contents.
+	 */
+	public static DocumentType classifyDocument(String fileName,
+			String filePath, DocumentScanner scannedContents) {
 		fileName = fileName.toLowerCase();
-		// Collapse multiple spaces in a row to one
-		String preparedContents = fileContents.replaceAll("\\s+", " ");
 
 		if (isJavaFile(fileName)) {
-			if (containsJUnitImports(preparedContents)
-					&& containsTestAnnotation(preparedContents)) {
+			if (scannedContents.containsJUnitImports()
+					&& scannedContents.containsTestAnnotation()) {
 				return DocumentType.TEST;
 			}
-			if (containsTestingFramework(preparedContents)) {
+			if (scannedContents.containsTestingFramework()) {
 				return DocumentType.TEST_FRAMEWORK;
 			}
 			if (fileName.contains("test")) {
@@ -35,17 +43,6 @@ public class DocumentClassifier {
 		return DocumentType.UNDEFINED;
 	}
 
-	private static boolean containsTestingFramework(String preparedContents) {
-		if (preparedContents.contains("import org.mockito")) {
-			return true;
-		} else if (preparedContents.contains("import org.powermock")
-				|| preparedContents.contains("import static org.powermock")) {
-			return true;
-		} else {
-			return false;
-		}
-	}
-
 	/**
 	 * @return <code>true</code> if fileName ends in .java
 	 */
@@ -57,52 +54,4 @@ public class DocumentClassifier {
 		}
 	}
 
-	/**
-	 * @return <code>true</code> if JUnit3 or 4 is being used,
-	 *         <code>false</code> otherwise.
-	 */
-	private static boolean containsJUnitImports(String fileContents) {
-		return containsJUnit4Imports(fileContents)
-				| containsJunit3Import(fileContents);
-	}
-
-	/**
-	 * @return <code>true</code> if there's an import for org.junit or
-	 *         org.testng
-	 */
-	private static boolean containsJUnit4Imports(String fileContents) {
-		if (fileContents.contains("import org.junit")
-				|| fileContents.contains("import static org.junit")) {
-			return true;
-		} else if (fileContents.contains("import org.testng")
-				|| fileContents.contains("import static org.testng")) {
-			return true;
-		} else {
-			return false;
-		}
-	}
-
-	private static boolean containsJunit3Import(String fileContents) {
-		if (fileContents.contains("import junit.framework")) {
-			return true;
-		}
-		return false;
-	}
-
-	/**
-	 * @return <code>true</code> if the editor contains (at least one) @Test
-	 *         annotation.
-	 */
-	private static boolean containsTestAnnotation(String contents) {
-		if (contents.contains("@Test")) {
-			// Junit4
-			return true;
-		} else if (contents.contains("extends TestCase")) {
-			// Junit3
-			return true;
-		} else {
-			return false;
-		}
-	}
-
 }
@@ -0,0 +1,161 @@
+package nl.tudelft.watchdog.core.logic.document;
+
+/**
+ * Scans the content of a document once, without copying it, and both counts
+ * its source lines of code and finds the patterns the
+ * {@link DocumentClassifier} is interested in. Runs of whitespace in the
+ * content match a single space in the patterns. All patterns are matched
+ * simultaneously with an Aho-Corasick automaton.
+ */
+public class DocumentScanner {
+
+	/** Imports of JUnit 3 or 4, or TestNG. */
+	private static final int JUNIT_IMPORT = 1;
+
+	/** JUnit 4 test annotations or JUnit 3 test cases. */
+	private static final int TEST_ANNOTATION = 1 << 1;
+
+	/** Imports of mocking frameworks. */
+	private static final int TESTING_FRAMEWORK = 1 << 2;
+
+	private static final String[] PATTERNS = { "import org.junit",
+			"import static org.junit", "import org.testng",
+			"import static org.testng", "import junit.framework", "@Test",
+			"extends TestCase", "import org.mockito", "import org.powermock",
+			"import static org.powermock" };
+
+	private static final int[] PATTERN_GROUPS = { JUNIT_IMPORT, JUNIT_IMPORT,
+			JUNIT_IMPORT, JUNIT_IMPORT, JUNIT_IMPORT, TEST_ANNOTATION,
+			TEST_ANNOTATION, TESTING_FRAMEWORK, TESTING_FRAMEWORK,
+			TESTING_FRAMEWORK };
+
+	/** The patterns only contain characters below this. */
+	private static final int ALPHABET_SIZE = 128;
+
+	/** The transitions of the automaton, per state and character. */
+	private static final int[][] transitions;
+
+	/** The groups of the patterns matched when reaching a state. */
+	private static final int[] outputs;
+
+	static {
+		int maxStates = 1;
+		for (String pattern : PATTERNS) {
+			maxStates += pattern.length();
+		}
+		int[][] trie = new int[maxStates][ALPHABET_SIZE];
+		int[] output = new int[maxStates];
+		int states = 1;
+		for (int i = 0; i < PATTERNS.length; i++) {
+			int state = 0;
+			for (char c : PATTERNS[i].toCharArray()) {
+				if (trie[state][c] == 0) {
+					trie[state][c] = states++;
+				}
+				state = trie[state][c];
+			}
+			output[state] |= PATTERN_GROUPS[i];
+		}
+
+		// Turn the trie into a deterministic automaton by following the
+		// failure links in breadth-first order.
+		int[] failure = new int[states];
+		int[] queue = new int[states];
+		int head = 0;
+		int tail = 0;
+		for (int c = 0; c < ALPHABET_SIZE; c++) {
+			if (trie[0][c] != 0) {
+				queue[tail++] = trie[0][c];
+			}
+		}
+		while (head < tail) {
+			int state = queue[head++];
+			output[state] |= output[failure[state]];
+			for (int c = 0; c < ALPHABET_SIZE; c++) {
+				int next = trie[state][c];
+				if (next != 0) {
+					failure[next] = trie[failure[state]][c];
+					queue[tail++] = next;
+				} else {
+					trie[state][c] = trie[failure[state]][c];
+				}
+			}
+		}
+
+		transitions = new int[states][];
+		System.arraycopy(trie, 0, transitions, 0, states);
+		outputs = new int[states];
+		System.arraycopy(output, 0, outputs, 0, states);
+	}
+
+	private final long sloc;
+
+	private final int matchedGroups;
+
+	/** Scans the given content. */
+	public DocumentScanner(CharSequence content) {
+		long lines = 0;
+		boolean isCodeLine = false;
+		boolean wasWhitespace = false;
+		int state = 0;
+		int groups = 0;
+		int length = content.length();
+		for (int i = 0; i < length; i++) {
+			char c = content.charAt(i);
+			if (c == '\n' || c == '\r') {
+				if (isCodeLine) {
+					lines++;
+				}
+				isCodeLine = false;
+			} else if (c > ' ') {
+				isCodeLine = true;
+			}
+
+			if (isWhitespace(c)) {
+				if (wasWhitespace) {
+					continue;
+				}
+				wasWhitespace = true;
+				c = ' ';
+			} else {
+				wasWhitespace = false;
+			}
+			state = c < ALPHABET_SIZE ? transitions[state][c] : 0;
+			groups |= outputs[state];
+		}
+		if (isCodeLine) {
+			lines++;
+		}
+		this.sloc = lines;
+		this.matchedGroups = groups;
+	}
+
+	/** @return whether the character matches \s in a regular expression. */
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B'
+				|| c == '\f' || c == '\r';
+	}
+
+	/**
+	 * @return the number of source lines of code, i.e. lines that contain more
+	 *         than whitespace.
+	 */
+	public long getSloc() {
+		return sloc;
+	}
+
+	/** @return whether JUnit 3 or 4, or TestNG are imported. */
+	public boolean containsJUnitImports() {
+		return (matchedGroups & JUNIT_IMPORT) != 0;
+	}
+
+	/** @return whether there is a test annotation or a JUnit 3 test case. */
+	public boolean containsTestAnnotation() {
+		return (matchedGroups & TEST_ANNOTATION) != 0;
+	}
+
+	/** @return whether a mocking framework is imported. */
+	public boolean containsTestingFramework() {
+		return (matchedGroups & TESTING_FRAMEWORK) != 0;
+	}
+}
@@ -0,0 +1,222 @@
+package nl.tudelft.watchdog.core.logic.document;
+
+/**
+ * Computes the Levenshtein distance between two versions of a document in
+ * linear memory. The common prefix and suffix of both versions, which is
+ * nearly everything in a typical edit session, is stripped first. The rest is
+ * computed with Myers' bit-parallel algorithm, or, when that is too expensive,
+ * in a band around the diagonal bounded by a known upper bound of the
+ * distance, such as the modCount of a typing interval.
+ */
+public class EditDistance {
+
+	/**
+	 * The maximum number of operations, i.e. machine words for Myers'
+	 * algorithm or cells for the banded computation, spent on one distance.
+	 */
+	private static final long MAX_OPERATIONS = 100000000;
+
+	private static final int WORD_SIZE = 64;
+
+	private EditDistance() {
+		// utility class
+	}
+
+	/** @return the Levenshtein distance between the two texts. */
+	public static long compute(CharSequence first, CharSequence second) {
+		return compute(first, second, -1, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @return the Levenshtein distance between the two texts. If computing it
+	 *         would take too many operations, an upper bound of the distance
+	 *         is returned instead. The upper bound is the given bound, if it
+	 *         is at least the difference in length between the texts, and
+	 *         otherwise the length of the longer text without the common
+	 *         prefix and suffix. A negative bound means that no bound is
+	 *         known.
+	 */
+	public static long compute(CharSequence first, CharSequence second,
+			long bound) {
+		return compute(first, second, bound, MAX_OPERATIONS);
+	}
+
+	/** Computes the distance with the given maximum number of operations. */
+	static long compute(CharSequence first, CharSequence second, long bound,
+			long maxOperations) {
+		CharSequence longer = first;
+		CharSequence shorter = second;
+		if (first.length() < second.length()) {
+			longer = second;
+			shorter = first;
+		}
+
+		int prefix = 0;
+		int maxPrefix = shorter.length();
+		while (prefix < maxPrefix
+				&& longer.charAt(prefix) == shorter.charAt(prefix)) {
+			prefix++;
+		}
+		int suffix = 0;
+		int maxSuffix = shorter.length() - prefix;
+		while (suffix < maxSuffix
+				&& longer.charAt(longer.length() - 1 - suffix) == shorter
+						.charAt(shorter.length() - 1 - suffix)) {
+			suffix++;
+		}
+
+		CharSequence text = longer.subSequence(prefix, longer.length()
+				- suffix);
+		CharSequence pattern = shorter.subSequence(prefix, shorter.length()
+				- suffix);
+		int n = text.length();
+		int m = pattern.length();
+		if (m == 0) {
+			return n;
+		}
+
+		long blocks = (m + WORD_SIZE - 1) / WORD_SIZE;
+		if (blocks * n <= maxOperations) {
+			return myers(pattern, text);
+		}
+
+		// the texts differ, so their distance is at least 1
+		boolean isBoundValid = bound >= Math.max(1, n - m);
+		if (isBoundValid && bound < m
+				&& (long) m * (2 * bound + 1) <= maxOperations) {
+			int distance = banded(pattern, text, (int) bound);
+			if (distance <= bound) {
+				return distance;
+			}
+			isBoundValid = false;
+		}
+		return isBoundValid ? Math.min(bound, n) : n;
+	}
+
+	/**
+	 * Myers' bit-parallel algorithm, with Hyyro's extension to patterns longer
+	 * than a machine word. Takes O(n * m / 64) time and O(m) memory.
+	 */
+	private static int myers(CharSequence pattern, CharSequence text) {
+		int m = pattern.length();
+		int blocks = (m + WORD_SIZE - 1) / WORD_SIZE;
+
+		// Map the characters of the pattern to a dense alphabet, with 0 for
+		// characters that do not appear in the pattern.
+		char maxChar = 0;
+		for (int i = 0; i < m; i++) {
+			maxChar = (char) Math.max(maxChar, pattern.charAt(i));
+		}
+		int[] alphabet = new int[maxChar + 1];
+		int alphabetSize = 1;
+		for (int i = 0; i < m; i++) {
+			char c = pattern.charAt(i);
+			if (alphabet[c] == 0) {
+				alphabet[c] = alphabetSize++;
+			}
+		}
+		long[] peq = new long[alphabetSize * blocks];
+		for (int i = 0; i < m; i++) {
+			int index = alphabet[pattern.charAt(i)] * blocks + i / WORD_SIZE;
+			peq[index] |= 1L << (i % WORD_SIZE);
+		}
+
+		long[] pv = new long[blocks];
+		long[] mv = new long[blocks];
+		for (int b = 0; b < blocks; b++) {
+			pv[b] = -1L;
+		}
+		long lastBit = 1L << ((m - 1) % WORD_SIZE);
+		int score = m;
+
+		for (int j = 0; j < text.length(); j++) {
+			char c = text.charAt(j);
+			int offset = c <= maxChar ? alphabet[c] * blocks : 0;
+			// the first row of the matrix increases by one per column
+			int carry = 1;
+			for (int b = 0; b < blocks; b++) {
+				long eq = peq[offset + b];
+				long pvb = pv[b];
+				long mvb = mv[b];
+				long carryIsNegative = carry < 0 ? 1L : 0L;
+
+				long xv = eq | mvb;
+				eq |= carryIsNegative;
+				long xh = (((eq & pvb) + pvb) ^ pvb) | eq;
+				long ph = mvb | ~(xh | pvb);
+				long mh = pvb & xh;
+
+				long highBit = b == blocks - 1 ? lastBit : Long.MIN_VALUE;
+				int carryOut = 0;
+				if ((ph & highBit) != 0) {
+					carryOut = 1;
+				} else if ((mh & highBit) != 0) {
+					carryOut = -1;
+				}
+
+				ph <<= 1;
+				mh <<= 1;
+				mh |= carryIsNegative;
+				if (carry > 0) {
+					ph |= 1L;
+				}
+				pv[b] = mh | ~(xv | ph);
+				mv[b] = ph & xv;
+				carry = carryOut;
+			}
+			score += carry;
+		}
+		return score;
+	}
+
+	/**
+	 * Computes the distance in a band of the given width on both sides of the
+	 * diagonal. Takes O(m * bound) time and O(bound) memory.
+	 *
+	 * @return the distance, or a value greater than bound if the distance is
+	 *         greater than bound.
+	 */
+	private static int banded(CharSequence pattern, CharSequence text,
+			int bound) {
+		int m = pattern.length();
+		int n = text.length();
+		int width = 2 * bound + 1;
+		int infinity = bound + 1;
+		// row[k] holds the distance for column j = i - bound + k of row i
+		int[] previous = new int[width + 1];
+		int[] current = new int[width + 1];
+		for (int k = 0; k <= width; k++) {
+			int j = k - bound;
+			previous[k] = j >= 0 && j <= n ? Math.min(j, infinity) : infinity;
+		}
+
+		for (int i = 1; i <= m; i++) {
+			char c = pattern.charAt(i - 1);
+			for (int k = 0; k < width; k++) {
+				int j = i - bound + k;
+				if (j < 0 || j > n) {
+					current[k] = infinity;
+					continue;
+				}
+				if (j == 0) {
+					current[k] = Math.min(i, infinity);
+					continue;
+				}
+				// previous row, same column is previous[k + 1]
+				int distance = previous[k] + (text.charAt(j - 1) == c ? 0 : 1);
+				distance = Math.min(distance, previous[k + 1] + 1);
+				if (k > 0) {
+					distance = Math.min(distance, current[k - 1] + 1);
+				}
+				current[k] = Math.min(distance, infinity);
+			}
+			current[width] = infinity;
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+
+		int k = n - m + bound;
+		return k >= 0 && k < width ? previous[k] : infinity;
+	}
+}
@@ -0,0 +1,29 @@
+package nl.tudelft.watchdog.core.logic.document;
+
+/**
+ * The content of a {@link Document}, which is only read from the editor when
+ * it is first needed, e.g. on the background thread closing an interval,
+ * instead of when the document is created on the UI thread.
+ */
+public abstract class LazyContent {
+
+	private CharSequence content;
+
+	private boolean isRead;
+
+	/**
+	 * Reads the content. Called at most once.
+	 *
+	 * @return the content, or <code>null</code> if it cannot be read.
+	 */
+	protected abstract CharSequence read();
+
+	/** @return the content, which is read on the first call. */
+	public synchronized CharSequence get() {
+		if (!isRead) {
+			content = read();
+			isRead = true;
+		}
+		return content;
+	}
+}
@@ -1,5 +1,7 @@
 package nl.tudelft.watchdog.core.logic.event;
 
+import java.util.List;
+
 import nl.tudelft.watchdog.core.logic.event.eventtypes.EventBase;
 import nl.tudelft.watchdog.core.logic.storage.PersisterBase;
 import nl.tudelft.watchdog.core.util.WatchDogLogger;
@@ -36,16 +38,50 @@ public class DebugEventManager {
 
 	/**
 	 * Saves the supplied event to persistent storage. New events must use this
-	 * method to be registered properly.
+	 * method or {@link #addEvents(List)} to be registered properly.
 	 */
 	public void addEvent(EventBase event) {
 		if (event != null) {
 			event.setSessionSeed(sessionSeed);
 			eventsToTransferPersister.save(event);
-			eventsStatisticsPersister.save(event);
+			if (!eventsStatisticsPersister
+					.sharesStorageWith(eventsToTransferPersister)) {
+				eventsStatisticsPersister.save(event);
+			}
 			WatchDogLogger.getInstance().logInfo("Created event " + event + " " + event.getType());
 		}
 	}
+
+	/**
+	 * Saves the supplied events, e.g. all events of one set delivered by the
+	 * IDE, to persistent storage in one transaction per store. They are
+	 * logged together in a single line, which is only built if logging is
+	 * enabled.
+	 */
+	public void addEvents(List<? extends EventBase> events) {
+		if (events.isEmpty()) {
+			return;
+		}
+		String seed = sessionSeed;
+		for (EventBase event : events) {
+			event.setSessionSeed(seed);
+		}
+		eventsToTransferPersister.saveAll(events);
+		if (!eventsStatisticsPersister
+				.sharesStorageWith(eventsToTransferPersister)) {
+			eventsStatisticsPersister.saveAll(events);
+		}
+
+		WatchDogLogger logger = WatchDogLogger.getInstance();
+		if (logger.isLoggingEnabled()) {
+			StringBuilder message = new StringBuilder("Created events");
+			for (EventBase event : events) {
+				message.append(' ').append(event).append(' ')
+						.append(event.getType());
+			}
+			logger.logInfo(message.toString());
+		}
+	}
 	
 	/**
 	 * @return the events statistics persister
@@ -8,7 +8,6 @@ import java.util.List;
 import nl.tudelft.watchdog.core.logic.event.eventtypes.EventBase;
 import nl.tudelft.watchdog.core.logic.interval.intervaltypes.DebugInterval;
 import nl.tudelft.watchdog.core.logic.storage.PersisterBase;
-import nl.tudelft.watchdog.core.logic.storage.WatchDogItem;
 
 /**
  * Contains basic functionality for selecting all events that occurred during a
@@ -59,14 +58,15 @@ public abstract class EventStatisticsBase {
 		addAllEventsWithinSelectedInterval();
 	}
 
-	/** Fills the 'events' list with the correct events. */
+	/**
+	 * Fills the 'events' list with the correct events, which are looked up by
+	 * their timestamps instead of reading all events.
+	 */
 	private void addAllEventsWithinSelectedInterval() {
-		for (WatchDogItem item : eventsStatisticsPersister.readItems()) {
-			if (item instanceof EventBase) {
-				EventBase event = (EventBase) item;
-				if (isWithinSelectedDebugInterval(event)) {
-					events.add(event);
-				}
+		for (EventBase event : eventsStatisticsPersister.readItems(startOfEventSelection,
+				selectedInterval.getEnd(), EventBase.class)) {
+			if (isWithinSelectedDebugInterval(event)) {
+				events.add(event);
 			}
 		}
 	}
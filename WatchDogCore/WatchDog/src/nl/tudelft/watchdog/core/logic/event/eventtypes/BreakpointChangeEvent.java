@@ -27,4 +27,9 @@ public class BreakpointChangeEvent extends BreakpointEventBase {
 		this.changes = changes;
 	}
 
+	/** @return the changes made to the breakpoint. */
+	public List<BreakpointChangeType> getChanges() {
+		return changes;
+	}
+
 }
@@ -26,4 +26,14 @@ public abstract class BreakpointEventBase extends EventBase {
 		this.breakpointType = bpType;
 	}
 
+	/** @return the hash of the breakpoint. */
+	public int getHash() {
+		return hash;
+	}
+
+	/** @return the {@link BreakpointType}. */
+	public BreakpointType getBreakpointType() {
+		return breakpointType;
+	}
+
 }
@@ -50,6 +50,11 @@ public abstract class EventBase extends WatchDogItem implements Serializable, Co
 		this.sessionSeed = sessionSeed;
 	}
 
+	/** @return the session seed. */
+	public String getSessionSeed() {
+		return sessionSeed;
+	}
+
 	/** @return the {@link DebugEventType}. */
 	public DebugEventType getType() {
 		return debugEventType;
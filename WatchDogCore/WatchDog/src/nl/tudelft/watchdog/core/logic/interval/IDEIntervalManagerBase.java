@@ -1,7 +1,6 @@
 package nl.tudelft.watchdog.core.logic.interval;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -33,6 +32,20 @@ public abstract class IDEIntervalManagerBase extends IntervalManagerBase {
 
 	private PersisterBase intervalsStatisticsPersister;
 
+	private final IntervalRollup intervalRollup = new IntervalRollup();
+
+	/**
+	 * Whether the {@link #intervalRollup} contains the intervals stored before
+	 * this manager was created.
+	 */
+	private boolean isIntervalRollupSeeded;
+
+	/**
+	 * The time this manager was created. Intervals that ended before were
+	 * closed by a previous session.
+	 */
+	private final long creationTime = System.currentTimeMillis();
+
 	/** Constructor. */
 	protected IDEIntervalManagerBase(PersisterBase intervalsToTransferPersister,
 			PersisterBase intervalsStatisticsPersister) {
@@ -99,7 +112,7 @@ public abstract class IDEIntervalManagerBase extends IntervalManagerBase {
 		closeInterval(interval);
 	}
 
-	private void closeInterval(IntervalBase interval) {
+	private void closeInterval(final IntervalBase interval) {
 		if (interval == null) {
 			return;
 		}
@@ -109,15 +122,31 @@ public abstract class IDEIntervalManagerBase extends IntervalManagerBase {
 			setEndingDocumentOf(typingInterval);
 		}
 
-		interval.close();
-
 		if (interval instanceof EditorIntervalBase) {
+			// editor intervals are closed in the background, and must only be
+			// saved once they are completely closed
+			((EditorIntervalBase) interval).close(new Runnable() {
+
+				@Override
+				public void run() {
+					saveInterval(interval);
+				}
+			});
 			editorInterval = null;
 		} else {
+			interval.close();
 			intervals.remove(interval);
+			saveInterval(interval);
 		}
+	}
+
+	private void saveInterval(IntervalBase interval) {
+		intervalRollup.add(interval);
 		intervalsToTransferPersister.save(interval);
-		intervalsStatisticsPersister.save(interval);
+		if (!intervalsStatisticsPersister
+				.sharesStorageWith(intervalsToTransferPersister)) {
+			intervalsStatisticsPersister.save(interval);
+		}
 		WatchDogLogger.getInstance().logInfo(
 				"closed interval " + interval + " " + interval.getType());
 	}
@@ -137,7 +166,7 @@ public abstract class IDEIntervalManagerBase extends IntervalManagerBase {
 	/** Closes all currently open intervals with the supplied closing date. */
 	public void closeAllIntervals(Date closingDate) {
 		closeInterval(editorInterval, closingDate);
-		ArrayList<IntervalBase> copiedIntervals = new ArrayList<IntervalBase>(intervals);
+		ArrayList<IntervalBase> copiedIntervals = new ArrayList<IntervalBase>(intervals.asList());
 		Iterator<IntervalBase> iterator = copiedIntervals.listIterator();
 		while (iterator.hasNext()) {
 			// we need to remove the interval first from the list in order to
@@ -160,7 +189,7 @@ public abstract class IDEIntervalManagerBase extends IntervalManagerBase {
 
 	/** Returns an immutable list of recorded intervals. */
 	public List<IntervalBase> getOpenIntervals() {
-		return Collections.unmodifiableList(intervals);
+		return intervals.asList();
 	}
 
 	/**
@@ -170,6 +199,33 @@ public abstract class IDEIntervalManagerBase extends IntervalManagerBase {
 		return intervalsStatisticsPersister;
 	}
 	
+	/**
+	 * @return the rollup of all intervals closed in the last
+	 *         {@link IntervalRollup#BUCKETS} minutes. On the first call, the
+	 *         intervals of previous sessions are read from the statistics
+	 *         persister. Older intervals are left to the
+	 *         {@link nl.tudelft.watchdog.core.logic.storage.RetentionCompactor}.
+	 */
+	public synchronized IntervalRollup getIntervalRollup() {
+		if (!isIntervalRollupSeeded) {
+			seedIntervalRollup();
+			isIntervalRollupSeeded = true;
+		}
+		return intervalRollup;
+	}
+
+	private void seedIntervalRollup() {
+		long threshold = System.currentTimeMillis() - IntervalRollup.BUCKETS
+				* 60 * 1000;
+		// intervals closed by this session are already in the rollup
+		for (IntervalBase interval : intervalsStatisticsPersister.readItems(
+				new Date(threshold), new Date(creationTime - 1),
+				IntervalBase.class)) {
+			interval.setClosed();
+			intervalRollup.add(interval);
+		}
+	}
+
 	/**
 	 * @return the session seed used by this interval manager. 
 	 */
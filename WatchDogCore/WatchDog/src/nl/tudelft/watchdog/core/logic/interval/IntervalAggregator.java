@@ -0,0 +1,150 @@
+package nl.tudelft.watchdog.core.logic.interval;
+
+import java.util.Date;
+
+import org.joda.time.Duration;
+
+import nl.tudelft.watchdog.core.logic.document.Document;
+import nl.tudelft.watchdog.core.logic.document.DocumentType;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.EditorIntervalBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalType;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.PerspectiveInterval;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.PerspectiveInterval.Perspective;
+
+/**
+ * Sums up the durations of intervals in a single pass, per
+ * {@link IntervalType}, per {@link DocumentType} of editor intervals and per
+ * {@link Perspective}. The sums are kept in one table of milliseconds, so
+ * that adding an interval does not allocate anything.
+ */
+public class IntervalAggregator {
+
+	private static final int DOCUMENT_TYPE_OFFSET = IntervalType.values().length;
+
+	private static final int PERSPECTIVE_OFFSET = DOCUMENT_TYPE_OFFSET
+			+ DocumentType.values().length;
+
+	/** The summed up durations in milliseconds, indexed as described above. */
+	private final long[] durations = new long[PERSPECTIVE_OFFSET
+			+ Perspective.values().length];
+
+	/** The number of intervals, per {@link IntervalType}. */
+	private final int[] counts = new int[DOCUMENT_TYPE_OFFSET];
+
+	/** The earliest start of the added parts of intervals. */
+	private long earliestStart = Long.MAX_VALUE;
+
+	/** Adds the duration of the interval to all sums it belongs to. */
+	public void add(IntervalBase interval) {
+		add(interval, Long.MIN_VALUE, Long.MAX_VALUE, true);
+	}
+
+	/**
+	 * Adds the part of the interval between the two points in time to all
+	 * sums it belongs to, if the interval overlaps with them. It is only
+	 * counted if count is <code>true</code>, so that an interval that is added
+	 * in parts can be counted once.
+	 */
+	public void add(IntervalBase interval, long from, long to, boolean count) {
+		IntervalType type = interval.getType();
+		if (type == null) {
+			return;
+		}
+		long intervalStart = interval.getStart().getTime();
+		long start = Math.max(intervalStart, from);
+		long end = Math.min(intervalStart + interval.getDurationInMillis(), to);
+		if (end < start) {
+			return;
+		}
+		long duration = end - start;
+		earliestStart = Math.min(earliestStart, start);
+		durations[type.ordinal()] += duration;
+		if (count) {
+			counts[type.ordinal()]++;
+		}
+
+		if (interval instanceof EditorIntervalBase) {
+			Document document = ((EditorIntervalBase) interval).getDocument();
+			if (document != null && document.getDocumentType() != null) {
+				durations[DOCUMENT_TYPE_OFFSET
+						+ document.getDocumentType().ordinal()] += duration;
+			}
+		} else if (interval instanceof PerspectiveInterval) {
+			Perspective perspective = ((PerspectiveInterval) interval)
+					.getPerspectiveType();
+			if (perspective != null) {
+				durations[PERSPECTIVE_OFFSET + perspective.ordinal()] += duration;
+			}
+		}
+	}
+
+	/** Adds all sums of the other aggregator to the sums of this one. */
+	public void add(IntervalAggregator other) {
+		for (int i = 0; i < durations.length; i++) {
+			durations[i] += other.durations[i];
+		}
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		earliestStart = Math.min(earliestStart, other.earliestStart);
+	}
+
+	/** Adds all of the intervals. */
+	public void addAll(Iterable<? extends IntervalBase> intervals) {
+		for (IntervalBase interval : intervals) {
+			add(interval);
+		}
+	}
+
+	/** @return the summed up duration of the intervals of the type. */
+	public Duration getDuration(IntervalType type) {
+		return new Duration(durations[type.ordinal()]);
+	}
+
+	/** @return the number of intervals of the type. */
+	public int getCount(IntervalType type) {
+		return counts[type.ordinal()];
+	}
+
+	/** @return the number of intervals of all types. */
+	public int getCount() {
+		int count = 0;
+		for (int typeCount : counts) {
+			count += typeCount;
+		}
+		return count;
+	}
+
+	/**
+	 * @return the earliest start of the added intervals, or <code>null</code>
+	 *         if none has been added.
+	 */
+	public Date getEarliestStart() {
+		if (earliestStart == Long.MAX_VALUE) {
+			return null;
+		}
+		return new Date(earliestStart);
+	}
+
+	/**
+	 * @return the summed up duration of the editor intervals on documents of
+	 *         any of the types.
+	 */
+	public Duration getDuration(DocumentType... types) {
+		long duration = 0;
+		for (DocumentType type : types) {
+			duration += durations[DOCUMENT_TYPE_OFFSET + type.ordinal()];
+		}
+		return new Duration(duration);
+	}
+
+	/**
+	 * @return the summed up duration of the intervals in which the perspective
+	 *         was open.
+	 */
+	public Duration getDuration(Perspective perspective) {
+		return new Duration(durations[PERSPECTIVE_OFFSET
+				+ perspective.ordinal()]);
+	}
+}
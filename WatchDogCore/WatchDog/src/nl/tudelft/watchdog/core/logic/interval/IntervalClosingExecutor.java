@@ -0,0 +1,115 @@
+package nl.tudelft.watchdog.core.logic.interval;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.EditorIntervalBase;
+import nl.tudelft.watchdog.core.util.WatchDogLogger;
+
+/**
+ * Runs the closing of {@link EditorIntervalBase}s, which hashes and classifies
+ * their documents and computes edit distances, on a small pool of named daemon
+ * threads instead of a new thread per interval. The queue is unbounded, as
+ * intervals are closed at the pace of the user, and an interval must neither
+ * be lost nor closed on the calling thread, which is usually the UI thread.
+ */
+public class IntervalClosingExecutor {
+
+	/** The maximum number of closing threads. */
+	private static final int THREADS = 2;
+
+	private static final ThreadPoolExecutor executor;
+
+	/** The number of submitted closings that have not finished yet. */
+	private static final AtomicInteger pendingClosings = new AtomicInteger();
+
+	private static final Object quiescenceLock = new Object();
+
+	static {
+		executor = new ThreadPoolExecutor(THREADS, THREADS, 30,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+
+					private final AtomicInteger threadNumber = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable,
+								"WatchDog Interval Closer "
+										+ threadNumber.incrementAndGet());
+						thread.setDaemon(true);
+						thread.setPriority(Thread.MIN_PRIORITY);
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	private IntervalClosingExecutor() {
+		// utility class
+	}
+
+	/** Runs the closing task on one of the closing threads. */
+	public static void execute(final Runnable closingTask) {
+		pendingClosings.incrementAndGet();
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					closingTask.run();
+				} catch (RuntimeException exception) {
+					WatchDogLogger.getInstance().logSevere(exception);
+				} finally {
+					if (pendingClosings.decrementAndGet() == 0) {
+						synchronized (quiescenceLock) {
+							quiescenceLock.notifyAll();
+						}
+					}
+				}
+			}
+		});
+	}
+
+	/** @return the number of intervals waiting for a closing thread. */
+	public static int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * @return the number of intervals that are waiting to be closed or being
+	 *         closed.
+	 */
+	public static int getPendingClosingCount() {
+		return pendingClosings.get();
+	}
+
+	/**
+	 * Waits until all intervals handed to this executor so far, and those
+	 * handed to it while waiting, have been closed, or the timeout in
+	 * milliseconds has passed.
+	 *
+	 * @return whether all intervals have been closed.
+	 */
+	public static boolean awaitQuiescence(long timeout) {
+		long deadline = System.currentTimeMillis() + timeout;
+		synchronized (quiescenceLock) {
+			while (pendingClosings.get() > 0) {
+				long remainingTime = deadline - System.currentTimeMillis();
+				if (remainingTime <= 0) {
+					return false;
+				}
+				try {
+					quiescenceLock.wait(remainingTime);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+}
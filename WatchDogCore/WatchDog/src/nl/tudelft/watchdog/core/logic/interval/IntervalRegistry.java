@@ -0,0 +1,182 @@
+package nl.tudelft.watchdog.core.logic.interval;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalType;
+
+/**
+ * An ordered collection of intervals that is indexed by their
+ * {@link IntervalType}, so that the intervals of a class that maps to a single
+ * type can be looked up without scanning all intervals. Classes that span
+ * several types, like {@link IntervalBase} itself, are looked up by scanning
+ * all intervals in the order in which they were added.
+ */
+public class IntervalRegistry implements Iterable<IntervalBase> {
+
+	private final List<IntervalBase> intervals = new ArrayList<IntervalBase>();
+
+	private final EnumMap<IntervalType, List<IntervalBase>> intervalsByType = new EnumMap<IntervalType, List<IntervalBase>>(
+			IntervalType.class);
+
+	/** The number of intervals without a type, which are not indexed. */
+	private int untypedCount;
+
+	/** The classes of all intervals ever added, per type. */
+	private final EnumMap<IntervalType, Set<Class<?>>> classesByType = new EnumMap<IntervalType, Set<Class<?>>>(
+			IntervalType.class);
+
+	/**
+	 * The types whose intervals may be instances of a looked up class. Cleared
+	 * whenever an interval of a new class is added.
+	 */
+	private final Map<Class<?>, EnumSet<IntervalType>> typesByClass = new HashMap<Class<?>, EnumSet<IntervalType>>();
+
+	/** Constructor. */
+	public IntervalRegistry() {
+		for (IntervalType type : IntervalType.values()) {
+			intervalsByType.put(type, new ArrayList<IntervalBase>());
+			classesByType.put(type, new HashSet<Class<?>>());
+		}
+	}
+
+	/** Adds the interval. */
+	public void add(IntervalBase interval) {
+		intervals.add(interval);
+		IntervalType type = interval.getType();
+		if (type == null) {
+			untypedCount++;
+			return;
+		}
+		intervalsByType.get(type).add(interval);
+		if (classesByType.get(type).add(interval.getClass())) {
+			typesByClass.clear();
+		}
+	}
+
+	/** Adds all of the intervals. */
+	public void addAll(Collection<? extends IntervalBase> intervals) {
+		for (IntervalBase interval : intervals) {
+			add(interval);
+		}
+	}
+
+	/** @return whether the interval was removed. */
+	public boolean remove(IntervalBase interval) {
+		if (!intervals.remove(interval)) {
+			return false;
+		}
+		IntervalType type = interval.getType();
+		if (type == null) {
+			untypedCount--;
+		} else {
+			intervalsByType.get(type).remove(interval);
+		}
+		return true;
+	}
+
+	/** Removes all intervals. */
+	public void clear() {
+		intervals.clear();
+		for (List<IntervalBase> typedIntervals : intervalsByType.values()) {
+			typedIntervals.clear();
+		}
+		untypedCount = 0;
+	}
+
+	/** @return the number of intervals. */
+	public int size() {
+		return intervals.size();
+	}
+
+	/** @return the interval at the given position. */
+	public IntervalBase get(int index) {
+		return intervals.get(index);
+	}
+
+	/** @return an unmodifiable view of all intervals, in the order added. */
+	public List<IntervalBase> asList() {
+		return Collections.unmodifiableList(intervals);
+	}
+
+	/**
+	 * @return an unmodifiable view of the intervals of the given type, in the
+	 *         order added.
+	 */
+	public List<IntervalBase> getIntervals(IntervalType type) {
+		return Collections.unmodifiableList(intervalsByType.get(type));
+	}
+
+	/**
+	 * @return the first interval of the given class, or <code>null</code> if
+	 *         there is none.
+	 */
+	public <T extends IntervalBase> T getInterval(Class<T> clazz) {
+		for (IntervalBase interval : getCandidates(clazz)) {
+			if (clazz.isInstance(interval)) {
+				return clazz.cast(interval);
+			}
+		}
+		return null;
+	}
+
+	/** @return a new list of the intervals of the given class. */
+	public <T extends IntervalBase> List<T> getIntervals(Class<T> clazz) {
+		List<T> collectedIntervals = new ArrayList<T>();
+		for (IntervalBase interval : getCandidates(clazz)) {
+			if (clazz.isInstance(interval)) {
+				collectedIntervals.add(clazz.cast(interval));
+			}
+		}
+		return collectedIntervals;
+	}
+
+	@Override
+	public Iterator<IntervalBase> iterator() {
+		return asList().iterator();
+	}
+
+	/**
+	 * @return the intervals that may be instances of the class, in the order
+	 *         added. That is the intervals of its type, if it maps to only
+	 *         one, and all intervals otherwise.
+	 */
+	private List<IntervalBase> getCandidates(Class<?> clazz) {
+		if (untypedCount > 0) {
+			return intervals;
+		}
+		EnumSet<IntervalType> types = typesByClass.get(clazz);
+		if (types == null) {
+			types = EnumSet.noneOf(IntervalType.class);
+			for (Map.Entry<IntervalType, Set<Class<?>>> entry : classesByType
+					.entrySet()) {
+				for (Class<?> intervalClass : entry.getValue()) {
+					if (clazz.isAssignableFrom(intervalClass)) {
+						types.add(entry.getKey());
+						break;
+					}
+				}
+			}
+			typesByClass.put(clazz, types);
+		}
+
+		switch (types.size()) {
+		case 0:
+			return Collections.emptyList();
+		case 1:
+			return intervalsByType.get(types.iterator().next());
+		default:
+			return intervals;
+		}
+	}
+}
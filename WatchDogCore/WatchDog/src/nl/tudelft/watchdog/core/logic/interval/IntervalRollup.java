@@ -0,0 +1,138 @@
+package nl.tudelft.watchdog.core.logic.interval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalType;
+
+/**
+ * Keeps the accumulated time of closed intervals in one
+ * {@link IntervalAggregator} per minute, for the last {@link #BUCKETS}
+ * minutes. The statistics of any period within that time can thus be
+ * answered by summing at most {@link #BUCKETS} buckets, instead of reading
+ * and filtering all intervals. An interval that spans several minutes adds
+ * the part within each minute to that minute's bucket, and is counted in the
+ * bucket of the minute it ended in.
+ *
+ * The closed intervals of the types in {@link #RETAINED_TYPES} are kept as
+ * well, because their statistics need more than their durations.
+ */
+public class IntervalRollup {
+
+	/** The number of minutes for which the statistics are kept. */
+	public static final int BUCKETS = 600;
+
+	/** The types of the intervals that are kept as well. */
+	public static final List<IntervalType> RETAINED_TYPES = Arrays.asList(
+			IntervalType.DEBUG, IntervalType.JUNIT);
+
+	private static final long MINUTE = 60 * 1000;
+
+	private final IntervalAggregator[] buckets = new IntervalAggregator[BUCKETS];
+
+	/** The minute each bucket holds the statistics of. */
+	private final long[] bucketMinutes = new long[BUCKETS];
+
+	/** The latest minute an interval ended in. */
+	private long latestMinute = Long.MIN_VALUE;
+
+	private final LinkedList<IntervalBase> retainedIntervals = new LinkedList<IntervalBase>();
+
+	/** Constructor. */
+	public IntervalRollup() {
+		for (int i = 0; i < BUCKETS; i++) {
+			bucketMinutes[i] = Long.MIN_VALUE;
+		}
+	}
+
+	/**
+	 * Adds the closed interval. Intervals that ended more than
+	 * {@link #BUCKETS} minutes before the latest added interval are ignored.
+	 */
+	public synchronized void add(IntervalBase interval) {
+		long start = interval.getStart().getTime();
+		long end = start + interval.getDurationInMillis();
+		long endMinute = end / MINUTE;
+		latestMinute = Math.max(latestMinute, endMinute);
+		long oldestMinute = latestMinute - BUCKETS + 1;
+		if (endMinute < oldestMinute) {
+			return;
+		}
+
+		for (long minute = Math.max(start / MINUTE, oldestMinute); minute <= endMinute; minute++) {
+			IntervalAggregator bucket = getBucket(minute);
+			if (bucket != null) {
+				bucket.add(interval, minute * MINUTE, (minute + 1) * MINUTE,
+						minute == endMinute);
+			}
+		}
+
+		if (RETAINED_TYPES.contains(interval.getType())) {
+			retainedIntervals.add(interval);
+		}
+		Iterator<IntervalBase> iterator = retainedIntervals.iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().getEnd().getTime() / MINUTE < oldestMinute) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * @return the sums of all buckets from the minute of the first point in
+	 *         time up to and including the minute of the second one.
+	 */
+	public synchronized IntervalAggregator aggregate(long from, long to) {
+		IntervalAggregator aggregator = new IntervalAggregator();
+		if (latestMinute == Long.MIN_VALUE) {
+			return aggregator;
+		}
+		long toMinute = Math.min(to / MINUTE, latestMinute);
+		long fromMinute = Math.max(from / MINUTE, latestMinute - BUCKETS + 1);
+		for (long minute = fromMinute; minute <= toMinute; minute++) {
+			int index = getIndex(minute);
+			if (bucketMinutes[index] == minute) {
+				aggregator.add(buckets[index]);
+			}
+		}
+		return aggregator;
+	}
+
+	/**
+	 * @return the retained intervals that ended at or after the point in time,
+	 *         in the order in which they were added.
+	 */
+	public synchronized List<IntervalBase> getRetainedIntervals(long from) {
+		List<IntervalBase> intervals = new ArrayList<IntervalBase>();
+		for (IntervalBase interval : retainedIntervals) {
+			if (interval.getEnd().getTime() >= from) {
+				intervals.add(interval);
+			}
+		}
+		return intervals;
+	}
+
+	/**
+	 * @return the bucket of the minute, which is reset if it held an older
+	 *         minute, or <code>null</code> if it already holds a newer one.
+	 */
+	private IntervalAggregator getBucket(long minute) {
+		int index = getIndex(minute);
+		if (bucketMinutes[index] > minute) {
+			return null;
+		}
+		if (bucketMinutes[index] < minute) {
+			buckets[index] = new IntervalAggregator();
+			bucketMinutes[index] = minute;
+		}
+		return buckets[index];
+	}
+
+	private static int getIndex(long minute) {
+		return (int) (((minute % BUCKETS) + BUCKETS) % BUCKETS);
+	}
+}
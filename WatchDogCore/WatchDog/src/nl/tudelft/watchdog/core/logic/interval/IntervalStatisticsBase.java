@@ -1,6 +1,5 @@
 package nl.tudelft.watchdog.core.logic.interval;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -10,16 +9,9 @@ import org.joda.time.Duration;
 
 import nl.tudelft.watchdog.core.logic.document.DocumentType;
 import nl.tudelft.watchdog.core.logic.interval.intervaltypes.DebugInterval;
-import nl.tudelft.watchdog.core.logic.interval.intervaltypes.EditorIntervalBase;
-import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IDEOpenInterval;
 import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalBase;
-import nl.tudelft.watchdog.core.logic.interval.intervaltypes.PerspectiveInterval;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalType;
 import nl.tudelft.watchdog.core.logic.interval.intervaltypes.PerspectiveInterval.Perspective;
-import nl.tudelft.watchdog.core.logic.interval.intervaltypes.ReadingInterval;
-import nl.tudelft.watchdog.core.logic.interval.intervaltypes.TypingInterval;
-import nl.tudelft.watchdog.core.logic.interval.intervaltypes.UserActiveInterval;
-import nl.tudelft.watchdog.core.logic.storage.PersisterBase;
-import nl.tudelft.watchdog.core.logic.storage.WatchDogItem;
 
 /**
  * Gathers and calculates statistics on developer behavior in a variable time
@@ -27,10 +19,8 @@ import nl.tudelft.watchdog.core.logic.storage.WatchDogItem;
  */
 @SuppressWarnings("javadoc")
 public abstract class IntervalStatisticsBase extends IntervalManagerBase {
-	// Intervals are stored in the database for 10 hours (equals 600 minutes)
-	private static final int FILTERED_INTERVALS_IN_MINUTES = 600;
-
-	private final PersisterBase intervalPersister;
+	/** The sums of all intervals within the selected time period. */
+	private final IntervalAggregator aggregator;
 
 	public Duration ideOpen;
 	public Duration userActive;
@@ -85,66 +75,42 @@ public abstract class IntervalStatisticsBase extends IntervalManagerBase {
 
 	private StatisticsTimePeriod selectedInterval;
 
-	/** Constructor. */
+	/**
+	 * Constructor. The statistics of closed intervals are taken from the
+	 * {@link IntervalRollup} of the interval manager, at a resolution of one
+	 * minute, and complemented with the currently open intervals.
+	 */
 	public IntervalStatisticsBase(IDEIntervalManagerBase intervalManager, StatisticsTimePeriod selectedInterval) {
-		this.intervalPersister = intervalManager.getIntervalsStatisticsPersister();
 		this.selectedInterval = selectedInterval;
-		addIntervals(intervalManager);
-		filterIntervals();
-		calculateStatistics();
-	}
-
-	private void addIntervals(IDEIntervalManagerBase intervalManager) {
-		for (WatchDogItem item : intervalPersister.readItems()) {
-			if (item instanceof IntervalBase) {
-				IntervalBase interval = (IntervalBase) item;
-				interval.setClosed();
-				intervals.add(interval);
-			}
+		mostRecentDate = new Date();
+		DateTime thresholdDateView = new DateTime(mostRecentDate).minusMinutes(this.selectedInterval.minutes);
+		long from = thresholdDateView.getMillis();
+		long to = mostRecentDate.getTime();
+
+		IntervalRollup rollup = intervalManager.getIntervalRollup();
+		aggregator = rollup.aggregate(from, to);
+		for (IntervalBase interval : intervalManager.getOpenIntervals()) {
+			aggregator.add(interval, from, to, true);
+			addClonedInterval(thresholdDateView, interval);
 		}
-		intervals.addAll(intervalManager.getOpenIntervals());
-	}
-
-	/**
-	 * Filters out and removes intervals which are older than 10 hours from
-	 * Database. Filters intervals for selected time span.
-	 */
-	private void filterIntervals() {
-		ArrayList<IntervalBase> filteredIntervals = new ArrayList<IntervalBase>();
-		ArrayList<WatchDogItem> intervalsToRemove = new ArrayList<WatchDogItem>();
-
-		if (intervals.size() == 0) {
-			return;
+		// only intervals whose statistics need more than their durations are
+		// kept individually
+		for (IntervalBase interval : rollup.getRetainedIntervals(from)) {
+			addClonedInterval(thresholdDateView, interval);
 		}
+		oldestDate = aggregator.getEarliestStart();
+		calculateStatistics();
+	}
 
-		mostRecentDate = intervals.get(intervals.size() - 1).getEnd();
-		DateTime thresholdDateDatabase = new DateTime(mostRecentDate);
-		thresholdDateDatabase = thresholdDateDatabase.minusMinutes(FILTERED_INTERVALS_IN_MINUTES);
-
-		DateTime thresholdDateView = new DateTime(mostRecentDate);
-		thresholdDateView = thresholdDateView.minusMinutes(selectedInterval.minutes);
-
-		for (IntervalBase interval : intervals) {
-			if (intervalIsOlderThanThreshold(thresholdDateDatabase, interval)) {
-				intervalsToRemove.add(interval);
-				continue;
-			}
-
-			if (!intervalIsOlderThanThreshold(thresholdDateView, interval)) {
-				IntervalBase clonedInterval = null;
-				try {
-					clonedInterval = (IntervalBase) interval.clone();
-					adjustIntervalStartAndEndDate(thresholdDateView, interval, clonedInterval);
-					filteredIntervals.add(clonedInterval);
-				} catch (CloneNotSupportedException exception) {
-					// intentionally empty
-				}
-			}
+	/** Adds a clone of the interval that starts at the threshold at the earliest. */
+	private void addClonedInterval(DateTime thresholdDateView, IntervalBase interval) {
+		try {
+			IntervalBase clonedInterval = (IntervalBase) interval.clone();
+			adjustIntervalStartAndEndDate(thresholdDateView, interval, clonedInterval);
+			intervals.add(clonedInterval);
+		} catch (CloneNotSupportedException exception) {
+			// intentionally empty
 		}
-
-		oldestDate = filteredIntervals.get(0).getStart();
-		intervalPersister.removeItems(intervalsToRemove);
-		intervals = filteredIntervals;
 	}
 
 	private void adjustIntervalStartAndEndDate(DateTime thresholdDateView, IntervalBase interval,
@@ -159,29 +125,27 @@ public abstract class IntervalStatisticsBase extends IntervalManagerBase {
 		}
 	}
 
-	private boolean intervalIsOlderThanThreshold(DateTime thresholdDateDatabase, IntervalBase interval) {
-		return interval.getEnd().before(thresholdDateDatabase.toDate());
-	}
-
+	/**
+	 * Calculates all statistics from the summed up intervals, except for the
+	 * IDE-specific JUnit statistics.
+	 */
 	protected void calculateStatistics() {
-		ideOpen = aggregateDurations(getIntervals(IDEOpenInterval.class));
-		userActive = aggregateDurations(getIntervals(UserActiveInterval.class));
-		userReading = aggregateDurations(getIntervals(ReadingInterval.class));
-		userTyping = aggregateDurations(getIntervals(TypingInterval.class));
-		userTest = aggregateDurations(getEditorIntervals(DocumentType.TEST))
-				.plus(aggregateDurations(getEditorIntervals(DocumentType.TEST_FRAMEWORK)))
-				.plus(aggregateDurations(getEditorIntervals(DocumentType.FILENAME_TEST)))
-				.plus(aggregateDurations(getEditorIntervals(DocumentType.PATHNAMME_TEST)));
-		userProduction = aggregateDurations(getEditorIntervals(DocumentType.PRODUCTION));
+		ideOpen = aggregator.getDuration(IntervalType.IDE_OPEN);
+		userActive = aggregator.getDuration(IntervalType.USER_ACTIVE);
+		userReading = aggregator.getDuration(IntervalType.READING);
+		userTyping = aggregator.getDuration(IntervalType.TYPING);
+		userTest = aggregator.getDuration(DocumentType.TEST,
+				DocumentType.TEST_FRAMEWORK, DocumentType.FILENAME_TEST,
+				DocumentType.PATHNAMME_TEST);
+		userProduction = aggregator.getDuration(DocumentType.PRODUCTION);
 		performDataSanitation();
 
-		perspectiveDebug = aggregateDurations(getPerspectiveIntervals(Perspective.DEBUG));
-		perspectiveJava = aggregateDurations(getPerspectiveIntervals(Perspective.JAVA));
-		perspectiveOther = aggregateDurations(getPerspectiveIntervals(Perspective.OTHER));
+		perspectiveDebug = aggregator.getDuration(Perspective.DEBUG);
+		perspectiveJava = aggregator.getDuration(Perspective.JAVA);
+		perspectiveOther = aggregator.getDuration(Perspective.OTHER);
 
-		List<DebugInterval> debugIntervals = getIntervals(DebugInterval.class);
-		debuggingSessionCount = debugIntervals.size();
-		totalDebuggingDuration = aggregateDurations(debugIntervals);
+		debuggingSessionCount = aggregator.getCount(IntervalType.DEBUG);
+		totalDebuggingDuration = aggregator.getDuration(IntervalType.DEBUG);
 		if (debuggingSessionCount > 0) {
 			averageDebuggingDuration = totalDebuggingDuration.dividedBy(debuggingSessionCount);
 		} else {
@@ -193,34 +157,6 @@ public abstract class IntervalStatisticsBase extends IntervalManagerBase {
 
 	protected abstract void calculateJUnitStatistics();
 
-	/**
-	 * @return An {@link ArrayList} of intervals of the specified document type.
-	 */
-	protected List<EditorIntervalBase> getEditorIntervals(DocumentType type) {
-		List<EditorIntervalBase> collectedIntervals = new ArrayList<EditorIntervalBase>();
-		for (EditorIntervalBase interval : getIntervals(EditorIntervalBase.class)) {
-			if (interval.getDocument().getDocumentType() == type) {
-				collectedIntervals.add(interval);
-			}
-		}
-
-		return collectedIntervals;
-	}
-
-	/**
-	 * @return An {@link ArrayList} of intervals of the specified Perspective
-	 *         type.
-	 */
-	protected List<PerspectiveInterval> getPerspectiveIntervals(Perspective type) {
-		List<PerspectiveInterval> collectedIntervals = new ArrayList<PerspectiveInterval>();
-		for (PerspectiveInterval interval : getIntervals(PerspectiveInterval.class)) {
-			if (interval.getPerspectiveType() == type) {
-				collectedIntervals.add(interval);
-			}
-		}
-		return collectedIntervals;
-	}
-
 	private void performDataSanitation() {
 		Duration summarizedUserActivity = userReading.plus(userTyping);
 		if (userActive.isShorterThan(summarizedUserActivity)) {
@@ -232,16 +168,16 @@ public abstract class IntervalStatisticsBase extends IntervalManagerBase {
 	}
 
 	protected Duration aggregateDurations(List<? extends IntervalBase> intervals) {
-		Duration aggregatedDuration = new Duration(0);
+		long aggregatedDuration = 0;
 		for (IntervalBase interval : intervals) {
-			aggregatedDuration = aggregatedDuration.plus(interval.getDuration());
+			aggregatedDuration += interval.getDurationInMillis();
 		}
-		return aggregatedDuration;
+		return new Duration(aggregatedDuration);
 	}
 
 	/** @return the number of intervals. */
 	public int getNumberOfIntervals() {
-		return intervals.size();
+		return aggregator.getCount();
 	}
 
 	public double getPreciseTime(Duration duration) {
@@ -4,6 +4,7 @@ import java.util.Date;
 
 import nl.tudelft.watchdog.core.logic.document.Document;
 import nl.tudelft.watchdog.core.logic.document.EditorWrapperBase;
+import nl.tudelft.watchdog.core.logic.interval.IntervalClosingExecutor;
 
 import com.google.gson.annotations.SerializedName;
 
@@ -40,7 +41,7 @@ public abstract class EditorIntervalBase extends IntervalBase {
 
 	/**
 	 * To optimize performance, closing of {@link EditorIntervalBase} intervals
-	 * is done in their own separate thread.
+	 * is done on the {@link IntervalClosingExecutor}.
 	 */
 	protected transient EditorIntervalCloser editorIntervalCloser;
 
@@ -79,9 +80,29 @@ public abstract class EditorIntervalBase extends IntervalBase {
 
 	@Override
 	public void close() {
+		close(null);
+	}
+
+	/**
+	 * Closes the interval in the background and runs afterClosing, if any,
+	 * once the interval is closed.
+	 */
+	public void close(final Runnable afterClosing) {
 		super.close();
 		isClosed = false;
-		new Thread(editorIntervalCloser).start();
+		IntervalClosingExecutor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					editorIntervalCloser.run();
+				} finally {
+					if (afterClosing != null) {
+						afterClosing.run();
+					}
+				}
+			}
+		});
 	}
 
 }
\ No newline at end of file
@@ -86,10 +86,18 @@ abstract public class IntervalBase extends WatchDogItem implements Serializable,
 	 *         return the duration until now.
 	 */
 	public Duration getDuration() {
+		return new Duration(getDurationInMillis());
+	}
+
+	/**
+	 * @return the duration of this interval in milliseconds. If the interval
+	 *         is not yet closed, return the duration until now.
+	 */
+	public long getDurationInMillis() {
 		if (isClosed) {
-			return new Duration(start.getTime(), end.getTime());
+			return end.getTime() - start.getTime();
 		}
-		return new Duration(start.getTime(), new Date().getTime());
+		return System.currentTimeMillis() - start.getTime();
 	}
 
 	/** @return A human-readable duration. */
@@ -114,6 +122,11 @@ abstract public class IntervalBase extends WatchDogItem implements Serializable,
 		this.sessionSeed = sessionSeed;
 	}
 
+	/** @return the session seed. */
+	public String getSessionSeed() {
+		return sessionSeed;
+	}
+
 	/** @return the {@link IntervalType}. */
 	public IntervalType getType() {
 		return intervalType;
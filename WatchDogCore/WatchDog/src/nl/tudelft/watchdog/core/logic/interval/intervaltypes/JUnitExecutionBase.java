@@ -2,6 +2,7 @@ package nl.tudelft.watchdog.core.logic.interval.intervaltypes;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.List;
 
 import com.google.gson.annotations.SerializedName;
 
@@ -52,4 +53,41 @@ public class JUnitExecutionBase implements Serializable {
 		this.projectHash = WatchDogUtilsBase.createHash(projectName);
 	}
 
+	/** @return the hashed project name, only set for the root execution. */
+	public String getProjectHash() {
+		return projectHash;
+	}
+
+	/** @return the hashed name of the test class. */
+	public String getTestClassHash() {
+		return testClassHash;
+	}
+
+	/** @return the hashed name of the test method, if this is a test case. */
+	public String getTestMethodHash() {
+		return testMethodHash;
+	}
+
+	/** @return the duration in seconds, or <code>null</code> if unknown. */
+	public JsonifiedDouble getDuration() {
+		return duration;
+	}
+
+	/** @return the child executions, or <code>null</code> for a test case. */
+	public List<JUnitExecutionBase> getChildrenExecutions() {
+		return childrenExecutions;
+	}
+
+	/** Restores the fields of a stored execution. */
+	public void restore(String projectHash, String testClassHash,
+			String testMethodHash, String result, JsonifiedDouble duration,
+			ArrayList<JUnitExecutionBase> childrenExecutions) {
+		this.projectHash = projectHash;
+		this.testClassHash = testClassHash;
+		this.testMethodHash = testMethodHash;
+		this.result = result;
+		this.duration = duration;
+		this.childrenExecutions = childrenExecutions;
+	}
+
 }
\ No newline at end of file
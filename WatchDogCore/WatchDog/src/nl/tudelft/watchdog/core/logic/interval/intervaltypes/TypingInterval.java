@@ -2,12 +2,13 @@ package nl.tudelft.watchdog.core.logic.interval.intervaltypes;
 
 import java.util.Date;
 
-import org.apache.commons.lang.StringUtils;
-
 import com.google.gson.annotations.SerializedName;
 
+import nl.tudelft.watchdog.core.logic.document.ChangeTracker;
 import nl.tudelft.watchdog.core.logic.document.Document;
+import nl.tudelft.watchdog.core.logic.document.EditDistance;
 import nl.tudelft.watchdog.core.logic.document.EditorWrapperBase;
+import nl.tudelft.watchdog.core.logic.interval.IntervalClosingExecutor;
 import nl.tudelft.watchdog.core.logic.network.JsonifiedLong;
 
 /**
@@ -16,12 +17,6 @@ import nl.tudelft.watchdog.core.logic.network.JsonifiedLong;
  */
 public class TypingInterval extends EditorIntervalBase {
 	
-	/** 
-	 * The maximum product of the lengths of the starting and ending
-	 * document for which the Levenshtein distance will be calculated.
-	 */
-	private static final long LENGTH_PRODUCT_THRESHOLD = 100000000;
-
 	/** The operations that need to be carried out to close this interval. */
 	private class TypingIntervalCloserBase extends EditorIntervalCloser {
 		@Override
@@ -32,31 +27,35 @@ public class TypingInterval extends EditorIntervalBase {
 			if (endingDocument != null) {
 				endingDocument.prepareDocument();
 			}
+			CharSequence endingContent = endingDocument == null ? null
+					: endingDocument.getContent();
 			// calculate the Levenshtein distance between the two edit
 			// operations.
-			if (getDocument() != null && endingDocument != null) {
-				String startingContent = getDocument().getContent();
-				String endingContent = endingDocument.getContent();
+			if (isTrackingChanges()) {
+				charLengthDiff = (int) Math.abs(changeTracker
+						.getLengthDifference());
+				editDistance = new JsonifiedLong(
+						changeTracker.computeEditDistance(endingContent));
+			} else {
+				CharSequence startingContent = getDocument() == null ? null
+						: getDocument().getContent();
+				// every modified character changes the distance by at most
+				// one, so modCount bounds it
 				if (startingContent != null && endingContent != null) {
-					int startLength = startingContent.length();
-					int endLength = endingContent.length();
-					charLengthDiff = Math.abs(startLength - endLength);
-					
-					long lengthProduct = startLength*endLength;
-					if(startLength == 0) {
-						lengthProduct = endLength;
-					} 
-					else if (endLength == 0) {
-						lengthProduct = startLength;
-					}
-					
-					// Only calculate Levenshtein when its impact on the usability is acceptable
-					if(lengthProduct <= LENGTH_PRODUCT_THRESHOLD) {
-						editDistance = new JsonifiedLong(
-							StringUtils.getLevenshteinDistance(startingContent, endingContent));
-					}
+					charLengthDiff = Math.abs(startingContent.length()
+							- endingContent.length());
+					editDistance = new JsonifiedLong(EditDistance.compute(
+							startingContent, endingContent, modCount));
+				} else if (changeTracker != null
+						&& changeTracker.getChangeCount() > 0) {
+					// the tracker missed a change after the starting content
+					// was released, so only the bound is left
+					editDistance = new JsonifiedLong(modCount);
 				}
 			}
+			if (endingDocument != null) {
+				endingDocument.releaseContent();
+			}
 			isClosed = true;
 		}
 	}
@@ -91,10 +90,14 @@ public class TypingInterval extends EditorIntervalBase {
 	@SerializedName("charLengthDiff")
 	private int charLengthDiff;
 
+	/** The changes made to the document during this interval. */
+	private transient ChangeTracker changeTracker;
+
 	/** Constructor. */
 	public TypingInterval(EditorWrapperBase editor, Date start) {
 		super(editor, IntervalType.TYPING, start);
 		this.modCount = 0;
+		this.changeTracker = new ChangeTracker();
 	}
 
 	@Override
@@ -107,6 +110,44 @@ public class TypingInterval extends EditorIntervalBase {
 		this.endingDocument = endingDocument;
 	}
 	
+	/** @return the document content when this interval ended. */
+	public Document getEndingDocument() {
+		return endingDocument;
+	}
+
+	/**
+	 * @return the edit distance of this interval, or <code>null</code> if it
+	 *         was not calculated.
+	 */
+	public Long getEditDistance() {
+		return editDistance == null ? null : editDistance.value;
+	}
+
+	/** @return the number of characters modified in this interval. */
+	public int getModCount() {
+		return modCount;
+	}
+
+	/**
+	 * @return the difference in length between the starting and ending
+	 *         document.
+	 */
+	public int getCharLengthDiff() {
+		return charLengthDiff;
+	}
+
+	/**
+	 * Restores the edit statistics of a stored interval. The edit distance may
+	 * be <code>null</code>.
+	 */
+	public void restoreEditStatistics(Long editDistance, int modCount,
+			int charLengthDiff) {
+		this.editDistance = editDistance == null ? null : new JsonifiedLong(
+				editDistance);
+		this.modCount = modCount;
+		this.charLengthDiff = charLengthDiff;
+	}
+
 	/** Increases the number of characters modified in this interval. */
 	public void increaseModCountWith(int modifiedChars) {
 		if(modifiedChars > 0) {
@@ -114,6 +155,42 @@ public class TypingInterval extends EditorIntervalBase {
 		}
 	}
 
+	/**
+	 * Records a change of the document, see {@link ChangeTracker}. Once the
+	 * first change is tracked, the content of the starting document is no
+	 * longer needed, so it is prepared and released in the background.
+	 */
+	public void recordChange(int offset, String removedText,
+			String insertedText) {
+		changeTracker.recordChange(offset, removedText, insertedText);
+		final Document document = getDocument();
+		if (changeTracker.getChangeCount() == 1 && isTrackingChanges()
+				&& document != null) {
+			IntervalClosingExecutor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					document.prepareDocument();
+					document.releaseContent();
+				}
+			});
+		}
+	}
+
+	/** @return the tracked changes of the document. */
+	public ChangeTracker getChangeTracker() {
+		return changeTracker;
+	}
+
+	/**
+	 * @return whether all changes of the document have been tracked, so that
+	 *         the edit distance can be computed from them.
+	 */
+	private boolean isTrackingChanges() {
+		return changeTracker != null && changeTracker.getChangeCount() > 0
+				&& changeTracker.isComplete();
+	}
+
 	@Override
 	protected EditorIntervalCloser createIntervalCloser() {
 		return new TypingIntervalCloserBase();
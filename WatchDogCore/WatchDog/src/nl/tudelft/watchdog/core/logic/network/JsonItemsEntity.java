@@ -0,0 +1,132 @@
+package nl.tudelft.watchdog.core.logic.network;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.AbstractHttpEntity;
+
+import nl.tudelft.watchdog.core.logic.storage.WatchDogItem;
+
+/**
+ * An {@link HttpEntity} that writes {@link WatchDogItem}s as a Json array
+ * directly to the connection while it is being sent, optionally gzip
+ * compressed. Other than a string entity, it never holds the serialized
+ * request body in memory, only the items it was given. The
+ * {@link TransferManagerBase} reads one chunk of items at a time, so memory
+ * use is bounded by its chunk limits rather than by the size of the backlog.
+ * The entity is sent chunked, as its length is not known beforehand.
+ * 
+ * A limited entity only writes the items that fit into its limits. How many
+ * items that are is known once the entity has been written, see
+ * {@link #getWrittenItemCount()}. Writing it again writes the same items.
+ */
+public class JsonItemsEntity extends AbstractHttpEntity {
+
+	/** The name of the gzip content encoding. */
+	public static final String GZIP = "gzip";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final JsonTransferer transferer;
+
+	private final List<WatchDogItem> items;
+
+	private final boolean isCompressed;
+
+	private final int maxItems;
+
+	private final long maxLength;
+
+	/** The number of items written, or -1 if the entity was not written yet. */
+	private volatile int writtenItems = -1;
+
+	/** Constructor for an entity that writes all items. */
+	public JsonItemsEntity(JsonTransferer transferer,
+			List<WatchDogItem> items, boolean isCompressed) {
+		this(transferer, items, isCompressed, Integer.MAX_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Constructor for an entity that writes at most maxItems items and stops
+	 * after the first item that makes the uncompressed Json longer than
+	 * maxLength bytes. At least one item is written.
+	 */
+	public JsonItemsEntity(JsonTransferer transferer,
+			List<WatchDogItem> items, boolean isCompressed, int maxItems,
+			long maxLength) {
+		this.transferer = transferer;
+		this.items = items;
+		this.isCompressed = isCompressed;
+		this.maxItems = Math.max(1, maxItems);
+		this.maxLength = maxLength;
+		setContentType("application/json");
+		setChunked(true);
+		if (isCompressed) {
+			setContentEncoding(GZIP);
+		}
+	}
+
+	/**
+	 * @return the number of items written to the request, counting from the
+	 *         first item of the list, or 0 if the entity has not been written.
+	 */
+	public int getWrittenItemCount() {
+		return Math.max(0, writtenItems);
+	}
+
+	/** The items can be written again, e.g. when the request is retried. */
+	@Override
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	@Override
+	public long getContentLength() {
+		return -1;
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return false;
+	}
+
+	/**
+	 * Only meant for clients that cannot write the entity themselves, as it
+	 * builds the whole body in memory.
+	 */
+	@Override
+	public InputStream getContent() throws IOException {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		writeTo(content);
+		return new ByteArrayInputStream(content.toByteArray());
+	}
+
+	@Override
+	public void writeTo(OutputStream outputStream) throws IOException {
+		GZIPOutputStream gzipStream = null;
+		OutputStream target = outputStream;
+		if (isCompressed) {
+			gzipStream = new GZIPOutputStream(outputStream);
+			target = gzipStream;
+		}
+		Writer writer = new OutputStreamWriter(target, UTF8);
+		int itemsToWrite = writtenItems < 0 ? maxItems : writtenItems;
+		long lengthToWrite = writtenItems < 0 ? maxLength : Long.MAX_VALUE;
+		writtenItems = transferer.writeJson(items, writer, itemsToWrite,
+				lengthToWrite);
+		writer.flush();
+		if (gzipStream != null) {
+			// the connection's stream is closed by the client, not by us
+			gzipStream.finish();
+		}
+	}
+}
@@ -1,16 +1,23 @@
 package nl.tudelft.watchdog.core.logic.network;
 
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonWriter;
 
 import nl.tudelft.watchdog.core.logic.network.NetworkUtils.Connection;
 import nl.tudelft.watchdog.core.logic.network.TransferManagerBase.ItemType;
@@ -18,6 +25,7 @@ import nl.tudelft.watchdog.core.logic.storage.WatchDogItem;
 import nl.tudelft.watchdog.core.ui.wizards.Project;
 import nl.tudelft.watchdog.core.ui.wizards.User;
 import nl.tudelft.watchdog.core.util.WatchDogGlobals;
+import nl.tudelft.watchdog.core.util.WatchDogLogger;
 import nl.tudelft.watchdog.core.util.WatchDogUtilsBase;
 
 /**
@@ -40,11 +48,33 @@ public class JsonTransferer {
 	}
 
 	/**
-	 * Sends the recorded WD items to the server. Returns whether or not the transfer
-	 * was successful or a network error occurred.
+	 * Sends the recorded WD items to the server, gzip compressed if the server
+	 * accepts it. Returns whether or not the transfer was successful or a
+	 * network error occurred.
 	 */
 	public Connection sendItems(List<WatchDogItem> recordedItems, String projectName,
 			ItemType recordedItemsType) {
+		JsonItemsEntity entity = new JsonItemsEntity(this, recordedItems, NetworkUtils.isGzipRequestSupported());
+		return sendItems(entity, projectName, recordedItemsType);
+	}
+
+	/**
+	 * Sends the items of the entity to the server. If the entity is limited,
+	 * only the first {@link JsonItemsEntity#getWrittenItemCount()} items have
+	 * been sent afterwards.
+	 */
+	public Connection sendItems(JsonItemsEntity serializedItems, String projectName, ItemType recordedItemsType) {
+		return sendItems(serializedItems, projectName, recordedItemsType, new ArrayList<Integer>());
+	}
+
+	/**
+	 * Sends the items of the entity to the server like
+	 * {@link #sendItems(JsonItemsEntity, String, ItemType)}. If the transfer
+	 * was successful, the indices of the sent items that the server could not
+	 * store are added to failedItems.
+	 */
+	public Connection sendItems(JsonItemsEntity serializedItems, String projectName, ItemType recordedItemsType,
+			List<Integer> failedItems) {
 		String userId = WatchDogGlobals.getPreferences().getUserId();
 		String projectId = WatchDogGlobals.getPreferences().getOrCreateProjectSetting(projectName).projectId;
 
@@ -54,9 +84,10 @@ public class JsonTransferer {
 			return Connection.UNSUCCESSFUL;
 		}
 
-		String serializedItems = toJson(recordedItems);
 		try {
-			NetworkUtils.transferJsonAndGetResponse(getPostURL(userId, projectId, recordedItemsType), serializedItems);
+			String response = NetworkUtils.transferEntityAndGetResponse(
+					getPostURL(userId, projectId, recordedItemsType), serializedItems);
+			failedItems.addAll(readFailedItems(response));
 			return Connection.SUCCESSFUL;
 		} catch (ServerReturnCodeException exception) {
 			return Connection.UNSUCCESSFUL;
@@ -67,6 +98,29 @@ public class JsonTransferer {
 		}
 	}
 
+	/**
+	 * @return the indices of the items the server reported as not stored. The
+	 *         server answers with the number of stored items if all of them
+	 *         were stored, and otherwise with a Json object that lists the
+	 *         errors of the failed items.
+	 */
+	public static List<Integer> readFailedItems(String response) {
+		List<Integer> failedItems = new ArrayList<Integer>();
+		try {
+			JsonElement element = new JsonParser().parse(response);
+			if (!element.isJsonObject() || !element.getAsJsonObject().has("errors")) {
+				return failedItems;
+			}
+			for (JsonElement error : element.getAsJsonObject().getAsJsonArray("errors")) {
+				failedItems.add(error.getAsJsonObject().get("index").getAsInt());
+			}
+		} catch (RuntimeException exception) {
+			// not Json or not the expected format
+			WatchDogLogger.getInstance().logInfo("Could not read server response: " + response);
+		}
+		return failedItems;
+	}
+
 	/**
 	 * Sends the user registration data and returns the received User-ID.
 	 */
@@ -119,11 +173,57 @@ public class JsonTransferer {
 
 	/** Converts the items to Json. */
 	public String toJson(List<WatchDogItem> recordedItems) {
+		StringWriter writer = new StringWriter();
 		try {
-			return gson.toJson(recordedItems);
-		} catch (RuntimeException e) {
+			writeJson(recordedItems, writer);
+		} catch (IOException e) {
 			return "[]";
 		}
+		return writer.toString();
+	}
+
+	/**
+	 * Writes the items as a Json array, one item at a time. Items that cannot
+	 * be converted to Json are written as <code>null</code>.
+	 */
+	void writeJson(List<WatchDogItem> recordedItems, Writer writer) throws IOException {
+		writeJson(recordedItems, writer, Integer.MAX_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Writes at most maxItems of the items as a Json array, and stops after
+	 * the first item that makes the array longer than maxLength characters.
+	 * Unless maxItems is 0, at least one item is written. Items that cannot be
+	 * converted to Json are written as <code>null</code>, so that the position
+	 * of every item in the array is its index in the list, which the server
+	 * refers to when it reports failed items.
+	 * 
+	 * @return the number of items written.
+	 */
+	int writeJson(List<WatchDogItem> recordedItems, Writer writer, int maxItems, long maxLength)
+			throws IOException {
+		CountingWriter countingWriter = new CountingWriter(writer);
+		JsonWriter jsonWriter = new JsonWriter(countingWriter);
+		jsonWriter.beginArray();
+		int writtenItems = 0;
+		for (WatchDogItem item : recordedItems) {
+			if (writtenItems >= maxItems || (writtenItems > 0 && countingWriter.length >= maxLength)) {
+				break;
+			}
+			writtenItems++;
+			JsonElement element;
+			try {
+				element = gson.toJsonTree(item);
+			} catch (RuntimeException e) {
+				WatchDogLogger.getInstance().logSevere(e);
+				jsonWriter.nullValue();
+				continue;
+			}
+			gson.toJson(element, jsonWriter);
+		}
+		jsonWriter.endArray();
+		jsonWriter.flush();
+		return writtenItems;
 	}
 
 	/**
@@ -140,6 +240,34 @@ public class JsonTransferer {
 		}
 	}
 
+	/** Counts the characters written through it. */
+	private static class CountingWriter extends FilterWriter {
+
+		private long length;
+
+		private CountingWriter(Writer writer) {
+			super(writer);
+		}
+
+		@Override
+		public void write(int character) throws IOException {
+			super.write(character);
+			length++;
+		}
+
+		@Override
+		public void write(char[] characters, int offset, int count) throws IOException {
+			super.write(characters, offset, count);
+			length += count;
+		}
+
+		@Override
+		public void write(String string, int offset, int count) throws IOException {
+			super.write(string, offset, count);
+			length += count;
+		}
+	}
+
 	/** A JSon Serializer for Date. */
 	private static class DateSerializer implements JsonSerializer<Date> {
 
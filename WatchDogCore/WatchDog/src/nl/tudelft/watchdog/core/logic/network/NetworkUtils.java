@@ -1,28 +1,38 @@
 package nl.tudelft.watchdog.core.logic.network;
 
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.ParseException;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 
 import nl.tudelft.watchdog.core.util.WatchDogGlobals;
 import nl.tudelft.watchdog.core.util.WatchDogLogger;
+import nl.tudelft.watchdog.core.util.WatchDogScheduler;
 
 /**
  * Utility functions for accessing the network.
@@ -34,11 +44,39 @@ public class NetworkUtils {
 	 * Default timeout is 12 seconds. 
 	 */	
 	public static final int DEFAULT_TIMEOUT = 12*1000;
-	private static int connectionTimeout = DEFAULT_TIMEOUT;
-	
-	/** A handle to the current Http client */ 
+	private static volatile int connectionTimeout = DEFAULT_TIMEOUT;
+
+	/** The maximum number of pooled connections to the server. */
+	private static final int MAX_CONNECTIONS = 4;
+
+	/** The time in seconds after which idle pooled connections are closed. */
+	private static final long MAX_IDLE_TIME = 30;
+
+	/**
+	 * The Http client shared by all requests. Its pooled connections are kept
+	 * alive between requests, so that subsequent requests do not have to
+	 * connect to the server again. Guarded by the class lock.
+	 */
 	private static CloseableHttpClient client = null;
 
+	/** The server URI the shared client was created for. */
+	private static String clientServerURI;
+
+	/** Whether the shared client was created with authentication. */
+	private static boolean isClientAuthenticated;
+
+	/** The requests that are currently executed. */
+	private static final Set<HttpUriRequest> activeRequests = Collections
+			.newSetFromMap(new ConcurrentHashMap<HttpUriRequest, Boolean>());
+
+	private static final Object gzipSupportLock = new Object();
+
+	/** The server URI for which the gzip support has been checked. */
+	private static String gzipCheckedServerURI;
+
+	/** Whether the server at gzipCheckedServerURI accepts gzip requests. */
+	private static boolean isGzipSupported;
+
 	/**
 	 * An enum denoting the three possible different connection outcomes:
 	 * successful, unsuccessful, or a network error.
@@ -66,18 +104,55 @@ public class NetworkUtils {
 	}
 	
 	/**
-	 * Cancels the current request after the specified duration
+	 * Aborts the requests that are still running after the specified
+	 * duration.
 	 */
 	public static void cancelTransferAfter(long milliseconds){
-		Timer timer = new Timer();
-		TimerTask task = new TimerTask() {
+		WatchDogScheduler.schedule(new Runnable() {
 			
 			@Override
 			public void run() {
-				closeHttpClientGracefully(client);
+				abortActiveRequests();
 			}
-		};
-		timer.schedule(task, milliseconds);
+		}, milliseconds);
+	}
+
+	/** Aborts all requests that are currently executed. */
+	public static void abortActiveRequests() {
+		for (HttpUriRequest request : activeRequests) {
+			request.abort();
+		}
+	}
+
+	/**
+	 * Executes the request with the shared client. The response has to be
+	 * closed, so that its connection is returned to the pool.
+	 */
+	private static CloseableHttpResponse execute(HttpRequestBase request)
+			throws IOException {
+		request.setConfig(createRequestConfig());
+		activeRequests.add(request);
+		try {
+			return getHttpClient().execute(request);
+		} finally {
+			activeRequests.remove(request);
+		}
+	}
+
+	/**
+	 * Reads the rest of the response, so that its connection can be reused,
+	 * and closes it.
+	 */
+	private static void closeResponse(CloseableHttpResponse response) {
+		if (response == null) {
+			return;
+		}
+		EntityUtils.consumeQuietly(response.getEntity());
+		try {
+			response.close();
+		} catch (IOException exception) {
+			// intentionally empty
+		}
 	}
 
 	/**
@@ -87,13 +162,13 @@ public class NetworkUtils {
 	 */
 	public static String getURLAndGetResponse(String url)
 			throws ServerCommunicationException {
-		client = createHTTPClient();
 		HttpGet get;
+		CloseableHttpResponse response = null;
 		String errorMessage = "";
 
 		try {
 			get = new HttpGet(url);
-			HttpResponse response = client.execute(get);
+			response = execute(get);
 			int statusCode = response.getStatusLine().getStatusCode();
 			if (statusCode == HttpStatus.SC_OK) {
 				String jsonResponse = readResponse(response.getEntity());
@@ -108,7 +183,7 @@ public class NetworkUtils {
 		} catch (IOException exception) {
 			// intentionally empty
 		} finally {
-			closeHttpClientGracefully(client);
+			closeResponse(response);
 		}
 		throw new ServerCommunicationException(errorMessage);
 	}
@@ -119,8 +194,8 @@ public class NetworkUtils {
 	 * @return a {@link Connection} object depicting how the connection went.
 	 */
 	public static Connection urlExistsAndReturnsStatus200(String url) {
-		client = createHTTPClient();
 		HttpGet get;
+		CloseableHttpResponse response = null;
 
 		try {
 			get = new HttpGet(url);
@@ -129,7 +204,7 @@ public class NetworkUtils {
 		}
 
 		try {
-			HttpResponse response = client.execute(get);
+			response = execute(get);
 			int statusCode = response.getStatusLine().getStatusCode();
 			if (statusCode == HttpStatus.SC_OK) {
 				return Connection.SUCCESSFUL;
@@ -142,21 +217,11 @@ public class NetworkUtils {
 		} catch (IOException exception) {
 			// intentionally empty
 		} finally {
-			closeHttpClientGracefully(client);
+			closeResponse(response);
 		}
 		return Connection.NETWORK_ERROR;
 	}
 
-	private static void closeHttpClientGracefully(CloseableHttpClient client) {		
-		if (client == null) return;
-		
-		try {
-			client.close();
-		} catch (IOException exception) {
-			// intentionally empty
-		}		
-	}
-
 	/**
 	 * Opens an HTTP connection to the server, and transmits the supplied json
 	 * data to the server. In case of error, the exact problem is logged.
@@ -167,22 +232,53 @@ public class NetworkUtils {
 	 */
 	public static String transferJsonAndGetResponse(String url, String jsonData)
 			throws ServerCommunicationException, ServerReturnCodeException {
-		client = createHTTPClient();
+		StringEntity input;
+		try {
+			input = new StringEntity(jsonData);
+		} catch (UnsupportedEncodingException e) {
+			throw new ServerCommunicationException(e.getMessage());
+		}
+		WatchDogLogger.getInstance().logInfo(
+				"Data length: " + ((double) input.getContentLength()) / 1024
+						+ " kB");
+		input.setContentType("application/json");
+		return transferEntityAndGetResponse(url, input);
+	}
+
+	/**
+	 * Opens an HTTP connection to the server, and transmits the supplied
+	 * entity to the server. Other than
+	 * {@link #transferJsonAndGetResponse(String, String)}, this allows the
+	 * entity to be written while it is being sent, see
+	 * {@link JsonItemsEntity}. In case of error, the exact problem is logged.
+	 *
+	 * @return The json from the response.
+	 * @throws ServerCommunicationException
+	 * @throws ServerReturnCodeException
+	 */
+	public static String transferEntityAndGetResponse(String url,
+			HttpEntity entity) throws ServerCommunicationException,
+			ServerReturnCodeException {
 		HttpPost post = new HttpPost(url);
+		CloseableHttpResponse response = null;
 		String errorMessage = "";
 
 		try {
-			StringEntity input = new StringEntity(jsonData);
-			WatchDogLogger.getInstance().logInfo(
-					"Data length: " + ((double) input.getContentLength())
-							/ 1024 + " kB");
-			input.setContentType("application/json");
-			post.setEntity(input);
-
-			HttpResponse response = client.execute(post);
-			if (response.getStatusLine().getStatusCode() == HttpStatus.SC_CREATED) {
+			post.setEntity(entity);
+
+			response = execute(post);
+			int statusCode = response.getStatusLine().getStatusCode();
+			if (statusCode == HttpStatus.SC_CREATED) {
 				String jsonResponse = readResponse(response.getEntity());
 				return jsonResponse;
+			} else if (statusCode == HttpStatus.SC_UNSUPPORTED_MEDIA_TYPE
+					&& entity.getContentEncoding() != null) {
+				// the server no longer inflates requests, so the items are
+				// not at fault. Check the server again on the next transfer.
+				forgetGzipRequestSupport();
+				errorMessage = "Server does not accept "
+						+ entity.getContentEncoding().getValue()
+						+ " encoded requests.";
 			} else {
 				// server returns not created
 				throw new ServerReturnCodeException(
@@ -198,12 +294,66 @@ public class NetworkUtils {
 			// URL wrongly formatted (target host is null)
 			errorMessage = "URL wrongly formatted. " + e.getMessage();
 		} finally {
-			closeHttpClientGracefully(client);
+			closeResponse(response);
 		}
 		WatchDogLogger.getInstance().logInfo(errorMessage);
 		throw new ServerCommunicationException(errorMessage);
 	}
 
+	/**
+	 * @return whether the server accepts gzip compressed request bodies, which
+	 *         it announces with an Accept-Encoding header in its response to
+	 *         the client query. The answer is remembered per server URI. When
+	 *         the server cannot be reached, false is returned and the server is
+	 *         asked again next time.
+	 */
+	public static boolean isGzipRequestSupported() {
+		String serverURI = getServerURI();
+		synchronized (gzipSupportLock) {
+			if (gzipCheckedServerURI != null
+					&& gzipCheckedServerURI.equals(serverURI)) {
+				return isGzipSupported;
+			}
+		}
+
+		CloseableHttpResponse response = null;
+		boolean isSupported = false;
+		try {
+			response = execute(new HttpGet(buildClientURL()));
+			if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+				return false;
+			}
+			for (Header header : response.getHeaders("Accept-Encoding")) {
+				for (HeaderElement element : header.getElements()) {
+					if (JsonItemsEntity.GZIP.equalsIgnoreCase(element.getName())) {
+						isSupported = true;
+					}
+				}
+			}
+		} catch (IOException exception) {
+			return false;
+		} catch (IllegalArgumentException exception) {
+			return false;
+		} catch (IllegalStateException exception) {
+			return false;
+		} finally {
+			closeResponse(response);
+		}
+
+		synchronized (gzipSupportLock) {
+			gzipCheckedServerURI = serverURI;
+			isGzipSupported = isSupported;
+		}
+		return isSupported;
+	}
+
+	/** Makes the next transfer check again whether the server accepts gzip. */
+	private static void forgetGzipRequestSupport() {
+		synchronized (gzipSupportLock) {
+			gzipCheckedServerURI = null;
+		}
+	}
+
 	/**
 	 * @return the URL for client query.
 	 */
@@ -273,13 +423,41 @@ public class NetworkUtils {
 	}
 
 	/**
-	 * Builds the correct HTTPClient according to the Preferences.
+	 * @return the shared HTTPClient. It is only created anew when the server
+	 *         URI or the authentication in the Preferences have changed.
+	 */
+	private static synchronized CloseableHttpClient getHttpClient() {
+		String serverURI = getServerURI();
+		boolean isAuthenticated = WatchDogGlobals.getPreferences()
+				.isAuthenticationEnabled();
+		if (client != null
+				&& isAuthenticated == isClientAuthenticated
+				&& (serverURI == null ? clientServerURI == null : serverURI
+						.equals(clientServerURI))) {
+			return client;
+		}
+		closeHttpClient();
+		client = isAuthenticated ? createAuthenticatedHttpClient()
+				: createNormalHttpClient();
+		clientServerURI = serverURI;
+		isClientAuthenticated = isAuthenticated;
+		return client;
+	}
+
+	/**
+	 * Closes the shared HTTPClient and all its connections, e.g. when
+	 * WatchDog shuts down. It is recreated on the next request.
 	 */
-	private static CloseableHttpClient createHTTPClient() {
-		if (WatchDogGlobals.getPreferences().isAuthenticationEnabled()) {
-			return createAuthenticatedHttpClient();
+	public static synchronized void closeHttpClient() {
+		if (client == null) {
+			return;
+		}
+		try {
+			client.close();
+		} catch (IOException exception) {
+			// intentionally empty
 		}
-		return createNormalHttpClient();
+		client = null;
 	}
 
 	/**
@@ -290,14 +468,30 @@ public class NetworkUtils {
 	}
 
 	/**
-	 * Creates a vanilla HTTP client builder with some timeouts.
+	 * Creates a vanilla HTTP client builder with pooled connections, which
+	 * are kept alive as long as the server allows and closed when idle.
 	 */
 	private static HttpClientBuilder createPlainHttpClientBuilder() {
-		RequestConfig config = RequestConfig.custom()
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(MAX_CONNECTIONS);
+		connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS);
+		return HttpClientBuilder.create()
+				.setConnectionManager(connectionManager)
+				.setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+				.evictExpiredConnections()
+				.evictIdleConnections(MAX_IDLE_TIME, TimeUnit.SECONDS)
+				.setDefaultRequestConfig(createRequestConfig());
+	}
+
+	/**
+	 * Creates the request configuration with the current timeouts, which are
+	 * set per request, as they change between requests.
+	 */
+	private static RequestConfig createRequestConfig() {
+		return RequestConfig.custom()
 				.setConnectionRequestTimeout(connectionTimeout)
 				.setConnectTimeout(connectionTimeout)
 				.setSocketTimeout(connectionTimeout).build();
-		return HttpClientBuilder.create().setDefaultRequestConfig(config);
 	}
 
 	/**
@@ -1,7 +1,10 @@
 package nl.tudelft.watchdog.core.logic.network;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.TimerTask;
 
 import nl.tudelft.watchdog.core.logic.event.eventtypes.EventBase;
@@ -16,15 +19,30 @@ import nl.tudelft.watchdog.core.util.WatchDogLogger;
 
 /**
  * This manager takes care of the repeated transferal of all events and
- * intervals to the server. When the transfer to the server was successful, the
- * WatchDogItems are immediately deleted from the local database. Furthermore,
- * it allows the immediate execution of this regularly scheduled task, e.g. when
- * it is needed on exiting.
+ * intervals to the server. The items are sent in chunks, which are limited in
+ * their number of items and in their size. When the transfer of a chunk to the
+ * server was successful, its WatchDogItems are immediately deleted from the
+ * local database, so that an interrupted transfer continues where it stopped.
+ * Furthermore, it allows the immediate execution of this regularly scheduled
+ * task, e.g. when it is needed on exiting.
  */
 public class TransferManagerBase extends RegularCheckerBase {
 
 	private static final int UPDATE_RATE = 3 * 60 * 1000;
 
+	/**
+	 * The default maximum number of items per chunk. The server does not
+	 * accept more than 100000 items at once.
+	 */
+	public static final int DEFAULT_CHUNK_ITEMS = 5000;
+
+	/** The default maximum size of a chunk in bytes, before compression. */
+	public static final long DEFAULT_CHUNK_BYTES = 1024 * 1024;
+
+	private volatile int chunkItems = DEFAULT_CHUNK_ITEMS;
+
+	private volatile long chunkBytes = DEFAULT_CHUNK_BYTES;
+
 	/** Indicates the type of the items to be send to the server. */
 	public enum ItemType {
 		EVENT, INTERVAL;
@@ -49,6 +67,21 @@ public class TransferManagerBase extends RegularCheckerBase {
 		NetworkUtils.setConnectionTimeout(NetworkUtils.DEFAULT_TIMEOUT);
 	}
 
+	/**
+	 * Sets the maximum number of items and the maximum size in bytes of a
+	 * chunk of items sent to the server at once. A chunk contains at least one
+	 * item, even if it is larger than maxBytes.
+	 */
+	public void setChunkLimits(int maxItems, long maxBytes) {
+		this.chunkItems = Math.max(1, maxItems);
+		this.chunkBytes = maxBytes;
+	}
+
+	/** @return a new transferer that sends the items to the server. */
+	protected JsonTransferer createTransferer() {
+		return new JsonTransferer();
+	}
+
 	/**
 	 * Refreshes the InfoDialog in Eclipse to show updated transfer statistics.
 	 * 
@@ -87,80 +120,112 @@ public class TransferManagerBase extends RegularCheckerBase {
 
 		/**
 		 * Transfers all events and intervals from the persistence storage that
-		 * are not yet on the server, to the server.
+		 * are not yet on the server, to the server. The items are read one
+		 * chunk at a time, so the backlog is never copied into memory.
 		 */
 		@Override
 		public void run() {
-			if (persister.isClosed()) {
+			if (persister.isClosed() || persister.getSize() <= 0) {
 				return;
 			}
 
-			List<WatchDogItem> itemsToTransfer = new ArrayList<WatchDogItem>(persister.readItems());
-			if (itemsToTransfer.isEmpty()) {
-				return;
-			}
-
-			// Split events/intervals and send them separately to the correct
-			// URL
-			List<WatchDogItem> eventsToTransfer = new ArrayList<>();
-			List<WatchDogItem> intervalsToTransfer = new ArrayList<>();
-			for (WatchDogItem item : itemsToTransfer) {
-				if (item instanceof EventBase) {
-					eventsToTransfer.add(item);
-				} else if (item instanceof IntervalBase) {
-					intervalsToTransfer.add(item);
-				}
-			}
-
-			transferItems(eventsToTransfer, ItemType.EVENT);
-			transferItems(intervalsToTransfer, ItemType.INTERVAL);
+			// send events and intervals separately to the correct URL
+			transferItems(persister.iterateItems(EventBase.class), ItemType.EVENT, false);
+			transferItems(persister.iterateItems(IntervalBase.class), ItemType.INTERVAL, false);
 			resetDatabase();
 			refreshUI();
 		}
 
-		private void transferItems(List<WatchDogItem> itemsToTransfer, ItemType itemsToTransferType) {
-			if (itemsToTransfer.isEmpty()) {
-				return;
-			}
-
-			JsonTransferer transferer = new JsonTransferer();
-			Connection connection = transferer.sendItems(itemsToTransfer, projectName, itemsToTransferType);
-			switch (connection) {
-			case SUCCESSFUL:
-				persister.removeItems(itemsToTransfer);
-				updateStatisticsPreferences(itemsToTransferType, itemsToTransfer.size());
-				WatchDogGlobals.lastTransactionFailed = false;
-				break;
-
-			case NETWORK_ERROR:
-				if (WatchDogGlobals.lastTransactionFailed) {
-					// two transactions in a row failed. The user is likely
-					// working without internet, so do not try to re-send
-					// items
-					return;
+		/**
+		 * Transfers the items chunk by chunk, reading at most one chunk ahead
+		 * from the iterator. Every chunk is removed from the persister as soon
+		 * as the server accepted it. If the server rejects a chunk, it is
+		 * retried in halves until the rejected item is found and removed. A
+		 * network error stops the transfer until the next run. Single items
+		 * the server failed to store are sent once more after all chunks, and
+		 * removed if they fail again.
+		 */
+		private void transferItems(Iterator<? extends WatchDogItem> itemsToTransfer, ItemType itemsToTransferType,
+				boolean isRetry) {
+			JsonTransferer transferer = createTransferer();
+			boolean isCompressed = NetworkUtils.isGzipRequestSupported();
+			List<WatchDogItem> failedItems = new ArrayList<WatchDogItem>();
+			List<WatchDogItem> pendingItems = new ArrayList<WatchDogItem>();
+			int maxItems = chunkItems;
+			// the number of pending items that belong to the last chunk the
+			// server rejected
+			int rejectedItems = 0;
+			while (true) {
+				if (rejectedItems <= 0) {
+					maxItems = chunkItems;
 				}
-				WatchDogGlobals.lastTransactionFailed = true;
-				break;
-
-			case UNSUCCESSFUL:
-				WatchDogGlobals.lastTransactionFailed = true;
-				int items = itemsToTransfer.size();
-
-				if (items == 1) {
-					WatchDogLogger.getInstance().logSevere("Could not transfer item and removed permanently!");
-					persister.removeItems(itemsToTransfer);
-					return;
+				while (pendingItems.size() < maxItems && itemsToTransfer.hasNext()) {
+					pendingItems.add(itemsToTransfer.next());
+				}
+				if (pendingItems.isEmpty()) {
+					break;
 				}
+				JsonItemsEntity chunk = new JsonItemsEntity(transferer, pendingItems, isCompressed, maxItems,
+						chunkBytes);
+				List<Integer> failedIndices = new ArrayList<Integer>();
+				Connection connection = transferer.sendItems(chunk, projectName, itemsToTransferType,
+						failedIndices);
+				int chunkSize = chunk.getWrittenItemCount();
+				List<WatchDogItem> sentItems = new ArrayList<WatchDogItem>(pendingItems.subList(0, chunkSize));
+
+				switch (connection) {
+				case SUCCESSFUL:
+					List<WatchDogItem> storedItems = sentItems;
+					if (!failedIndices.isEmpty() && !isRetry) {
+						storedItems = new ArrayList<WatchDogItem>();
+						Set<Integer> failedSet = new HashSet<Integer>(failedIndices);
+						for (int i = 0; i < chunkSize; i++) {
+							if (failedSet.contains(i)) {
+								failedItems.add(sentItems.get(i));
+							} else {
+								storedItems.add(sentItems.get(i));
+							}
+						}
+					} else if (!failedIndices.isEmpty()) {
+						WatchDogLogger.getInstance().logSevere("Server could not store " + failedIndices.size()
+								+ " items and they were removed permanently!");
+					}
+					persister.removeItems(storedItems);
+					updateStatisticsPreferences(itemsToTransferType, chunkSize - failedIndices.size());
+					WatchDogGlobals.lastTransactionFailed = false;
+					pendingItems.subList(0, chunkSize).clear();
+					rejectedItems -= chunkSize;
+					break;
+
+				case NETWORK_ERROR:
+					// the user is likely working without internet, so do not
+					// try to send the remaining chunks until the next run
+					WatchDogGlobals.lastTransactionFailed = true;
+					return;
 
-				// divide and conquer
-				int halfOfItems = (int) Math.floor(items / 2);
-				List<WatchDogItem> firstHalfItems = itemsToTransfer.subList(0, halfOfItems);
-				List<WatchDogItem> secondHalfItems = itemsToTransfer.subList(halfOfItems, items);
-				transferItems(firstHalfItems, itemsToTransferType);
-				transferItems(secondHalfItems, itemsToTransferType);
-				break;
+				case UNSUCCESSFUL:
+					WatchDogGlobals.lastTransactionFailed = true;
+					if (chunkSize == 0) {
+						// the items were rejected before they were sent
+						return;
+					}
+					if (chunkSize == 1) {
+						WatchDogLogger.getInstance().logSevere("Could not transfer item and removed permanently!");
+						persister.removeItems(sentItems);
+						pendingItems.remove(0);
+						rejectedItems--;
+						break;
+					}
+					// divide and conquer, only within the rejected chunk
+					rejectedItems = Math.max(rejectedItems, chunkSize);
+					maxItems = chunkSize / 2;
+					break;
+				}
 			}
 
+			if (!failedItems.isEmpty()) {
+				transferItems(failedItems.iterator(), itemsToTransferType, true);
+			}
 		}
 
 		private void resetDatabase() {
@@ -0,0 +1,614 @@
+package nl.tudelft.watchdog.core.logic.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+
+import nl.tudelft.watchdog.core.logic.event.eventtypes.EventBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalBase;
+import nl.tudelft.watchdog.core.logic.storage.LogSegment.RecordVisitor;
+import nl.tudelft.watchdog.core.util.WatchDogLogger;
+import nl.tudelft.watchdog.core.util.WatchDogScheduler;
+
+/**
+ * An append-only log of {@link WatchDogItem}s, split into segment files. Every
+ * item is written exactly once and identified by its sequence number, i.e. its
+ * position in the log. Readers of the log are {@link EventLogConsumer}s, which
+ * only remember up to which sequence number they have consumed the log. A
+ * segment file is deleted as a whole once all consumers have moved past it.
+ *
+ * Segments are read through memory mapped files, see {@link LogSegment} for
+ * the record layout. As every record carries the kind and the timestamp of its
+ * item, records can be skipped without decoding them. Items are encoded with
+ * the {@link ItemCodec}.
+ */
+public class EventLog {
+
+	/** The default size in bytes after which a new segment is started. */
+	public static final long DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+
+	/** The file extension of segment files. */
+	private static final String SEGMENT_SUFFIX = ".segment";
+
+	private final File directory;
+
+	private final long segmentSize;
+
+	private final ItemCodec codec;
+
+	/** All segments of the log, by the sequence number of their first item. */
+	private final TreeMap<Long, LogSegment> segments = new TreeMap<Long, LogSegment>();
+
+	/**
+	 * Released segments that could not be deleted yet, e.g. because Windows
+	 * does not delete files that are still mapped.
+	 */
+	private final List<File> undeletedSegments = new ArrayList<File>();
+
+	private final List<EventLogConsumer> consumers = new CopyOnWriteArrayList<EventLogConsumer>();
+
+	/** The sequence numbers of all items in the log by their timestamps. */
+	private final TimestampIndex timestampIndex = new TimestampIndex();
+
+	/** The segment new items are appended to. */
+	private LogSegment activeSegment;
+
+	/** The sequence number the next appended item gets. */
+	private long nextSequence;
+
+	private boolean isClosed;
+
+	/**
+	 * The number of appended items after which they are synced to disk. 1
+	 * means that every item is synced immediately.
+	 */
+	private int groupCommitItems = 1;
+
+	/** The maximum time in milliseconds an appended item stays unsynced. */
+	private long groupCommitWindow;
+
+	/** The number of items appended since the last sync. */
+	private int uncommittedItems;
+
+	private ScheduledFuture<?> groupCommitTask;
+
+	/** Constructor with the {@link #DEFAULT_SEGMENT_SIZE}. */
+	public EventLog(File directory, ClassLoader itemClassLoader) {
+		this(directory, itemClassLoader, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Constructor. Opens the log in the given directory or creates a new one.
+	 * Items of types unknown to the {@link ItemCodec} are deserialized with the
+	 * given class loader, which must be able to load the IDE specific
+	 * {@link WatchDogItem}s.
+	 */
+	public EventLog(File directory, ClassLoader itemClassLoader,
+			long segmentSize) {
+		this.directory = directory;
+		this.codec = new ItemCodec(itemClassLoader);
+		this.segmentSize = segmentSize;
+		directory.mkdirs();
+		try {
+			loadSegments();
+			openActiveSegment();
+		} catch (IOException exception) {
+			WatchDogLogger.getInstance().logSevere(exception);
+			isClosed = true;
+		}
+	}
+
+	/** @return whether there is a log in the given directory. */
+	public static boolean exists(File directory) {
+		String[] files = directory.list();
+		if (files == null) {
+			return false;
+		}
+		for (String file : files) {
+			if (file.endsWith(SEGMENT_SUFFIX)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** @return the directory this log is stored in. */
+	public File getDirectory() {
+		return directory;
+	}
+
+	private void loadSegments() throws IOException {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		TreeMap<Long, File> segmentFiles = new TreeMap<Long, File>();
+		for (File file : files) {
+			String name = file.getName();
+			if (!name.endsWith(SEGMENT_SUFFIX)) {
+				continue;
+			}
+			try {
+				segmentFiles.put(Long.parseLong(name.substring(0, name.length()
+						- SEGMENT_SUFFIX.length())), file);
+			} catch (NumberFormatException exception) {
+				// not one of our segments
+			}
+		}
+		for (Map.Entry<Long, File> segmentFile : segmentFiles.entrySet()) {
+			long baseSequence = segmentFile.getKey();
+			LogSegment segment = LogSegment.open(segmentFile.getValue(),
+					baseSequence, baseSequence == segmentFiles.lastKey());
+			if (segment == null) {
+				WatchDogLogger.getInstance().logSevere(
+						"Ignoring event log segment of unknown format "
+								+ segmentFile.getValue());
+				continue;
+			}
+			segments.put(baseSequence, segment);
+		}
+
+		LogSegment lastSegment = null;
+		for (LogSegment segment : segments.values()) {
+			if (lastSegment != null
+					&& lastSegment.getEndSequence() != segment.baseSequence) {
+				WatchDogLogger.getInstance().logSevere(
+						"Missing items in event log before sequence "
+								+ segment.baseSequence);
+			}
+			lastSegment = segment;
+		}
+		nextSequence = lastSegment == null ? 0 : lastSegment.getEndSequence();
+
+		for (LogSegment segment : segments.values()) {
+			for (long sequence = segment.baseSequence; sequence < segment
+					.getEndSequence(); sequence++) {
+				timestampIndex.add(segment.getTimestamp(sequence), sequence,
+						segment.getKind(sequence));
+			}
+		}
+	}
+
+	private void openActiveSegment() throws IOException {
+		LogSegment lastSegment = segments.isEmpty() ? null : segments
+				.lastEntry().getValue();
+		if (lastSegment == null || lastSegment.length >= segmentSize
+				|| lastSegment.version != LogSegment.VERSION) {
+			lastSegment = LogSegment.create(segmentFile(nextSequence),
+					nextSequence);
+			segments.put(nextSequence, lastSegment);
+		}
+		activeSegment = lastSegment;
+		activeSegment.openForAppend();
+	}
+
+	private File segmentFile(long baseSequence) {
+		return new File(directory, String.format("%020d", baseSequence)
+				+ SEGMENT_SUFFIX);
+	}
+
+	/** Registers a consumer, whose offset is then respected on cleanup. */
+	void register(EventLogConsumer consumer) {
+		consumers.add(consumer);
+	}
+
+	/**
+	 * Enables group commit mode, in which appended items are only synced to
+	 * disk once itemThreshold items are unsynced, or at the latest
+	 * windowInMilliseconds after the first unsynced item was appended.
+	 */
+	public synchronized void enableGroupCommit(int itemThreshold,
+			long windowInMilliseconds) {
+		this.groupCommitItems = Math.max(1, itemThreshold);
+		this.groupCommitWindow = windowInMilliseconds;
+	}
+
+	/** @return the number of appended items that are not yet synced to disk. */
+	public synchronized int getUncommittedItemCount() {
+		return uncommittedItems;
+	}
+
+	/**
+	 * Appends the item to the log.
+	 *
+	 * @return the sequence number of the item, or -1 if it could not be
+	 *         written.
+	 */
+	public synchronized long append(WatchDogItem item) {
+		long sequence = appendUncommitted(item);
+		if (sequence >= 0) {
+			commitOrScheduleCommit();
+		}
+		return sequence;
+	}
+
+	/**
+	 * Appends all items, which are then synced together, i.e. at most once.
+	 *
+	 * @return the number of appended items.
+	 */
+	public synchronized int appendAll(List<? extends WatchDogItem> items) {
+		int appendedItems = 0;
+		for (WatchDogItem item : items) {
+			if (appendUncommitted(item) >= 0) {
+				appendedItems++;
+			}
+		}
+		if (appendedItems > 0) {
+			commitOrScheduleCommit();
+		}
+		return appendedItems;
+	}
+
+	/**
+	 * Appends the item without syncing it.
+	 *
+	 * @return the sequence number of the item, or -1 if it was not appended.
+	 */
+	private long appendUncommitted(WatchDogItem item) {
+		if (isClosed) {
+			return -1;
+		}
+		try {
+			if (activeSegment.length >= segmentSize) {
+				rollSegment();
+			}
+			long timestamp = TimestampIndex.timestampOf(item);
+			byte kind = kindOf(item);
+			byte[] payload = codec.encode(item, timestamp,
+					activeSegment.dictionary);
+			activeSegment.append(kind, timestamp, payload);
+			timestampIndex.add(timestamp, nextSequence, kind);
+		} catch (IOException exception) {
+			WatchDogLogger.getInstance().logSevere(exception);
+			return -1;
+		}
+		long sequence = nextSequence++;
+		uncommittedItems++;
+		return sequence;
+	}
+
+	private void commitOrScheduleCommit() {
+		if (uncommittedItems >= groupCommitItems) {
+			commit();
+		} else {
+			scheduleGroupCommit();
+		}
+	}
+
+	private static byte kindOf(WatchDogItem item) {
+		if (item instanceof IntervalBase) {
+			return LogSegment.KIND_INTERVAL;
+		} else if (item instanceof EventBase) {
+			return LogSegment.KIND_EVENT;
+		}
+		return LogSegment.KIND_OTHER;
+	}
+
+	/**
+	 * @return the kind of all items of the given type, or -1 if they can be of
+	 *         several kinds.
+	 */
+	private static int kindOf(Class<?> type) {
+		if (IntervalBase.class.isAssignableFrom(type)) {
+			return LogSegment.KIND_INTERVAL;
+		} else if (EventBase.class.isAssignableFrom(type)) {
+			return LogSegment.KIND_EVENT;
+		}
+		return -1;
+	}
+
+	private void rollSegment() throws IOException {
+		commit();
+		activeSegment.close();
+		openActiveSegment();
+	}
+
+	/** Syncs all appended items to disk. */
+	public synchronized void flush() {
+		if (uncommittedItems > 0 && !isClosed) {
+			commit();
+		}
+	}
+
+	private void commit() {
+		try {
+			activeSegment.force();
+		} catch (IOException exception) {
+			WatchDogLogger.getInstance().logSevere(exception);
+		}
+		uncommittedItems = 0;
+		if (groupCommitTask != null) {
+			groupCommitTask.cancel(false);
+			groupCommitTask = null;
+		}
+	}
+
+	private void scheduleGroupCommit() {
+		if (groupCommitTask != null) {
+			return;
+		}
+		// committing may block on the disk or the lock, so it must not run
+		// on the scheduler thread
+		groupCommitTask = WatchDogScheduler.scheduleCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				flush();
+			}
+		}, groupCommitWindow);
+	}
+
+	/**
+	 * Stores the JUnit intervals of the given IDE specific class in the tagged
+	 * format, converted by the factory. Must be called before any of them is
+	 * read or written, as they are Java serialized otherwise.
+	 */
+	public void registerJUnitInterval(
+			Class<? extends IntervalBase> intervalClass,
+			JUnitIntervalFactory factory) {
+		codec.registerJUnitInterval(intervalClass, factory);
+	}
+
+	/** @return the sequence number the next appended item gets. */
+	public synchronized long getNextSequence() {
+		return nextSequence;
+	}
+
+	/**
+	 * Reads all items from the given sequence number on. Records that cannot
+	 * be decoded anymore are skipped, instead of discarding the whole log.
+	 */
+	public synchronized List<Entry> readFrom(long fromSequence) {
+		final List<Entry> entries = new ArrayList<Entry>();
+		scan(fromSequence, new RecordVisitor() {
+
+			@Override
+			public void visit(LogSegment segment, long sequence, byte kind,
+					long timestamp, ByteBuffer payload) {
+				WatchDogItem item = decode(segment, timestamp, payload);
+				if (item != null) {
+					entries.add(new Entry(sequence, item));
+				}
+			}
+		});
+		return entries;
+	}
+
+	/**
+	 * @return the sequence numbers of the items that can be of the given type
+	 *         and whose timestamps lie between from and to, both inclusive,
+	 *         ordered by their timestamps. No item is decoded.
+	 */
+	public synchronized long[] findSequences(long from, long to, Class<?> type) {
+		if (isClosed) {
+			return new long[0];
+		}
+		return timestampIndex.find(from, to, kindOf(type));
+	}
+
+	/**
+	 * @return the item with the given sequence number, or <code>null</code> if
+	 *         it is not in the log anymore or cannot be decoded.
+	 */
+	public synchronized WatchDogItem read(long sequence) {
+		Map.Entry<Long, LogSegment> segment = segments.floorEntry(sequence);
+		if (isClosed || segment == null
+				|| sequence >= segment.getValue().getEndSequence()) {
+			return null;
+		}
+		try {
+			return read(segment.getValue(), sequence);
+		} catch (IOException exception) {
+			WatchDogLogger.getInstance().logSevere(exception);
+		}
+		return null;
+	}
+
+	/**
+	 * Reads at most maxItems items of the given type from the given sequence
+	 * number on. Records of other kinds are skipped without decoding them.
+	 */
+	public synchronized List<Entry> readFrom(long fromSequence, int maxItems,
+			Class<?> type) {
+		List<Entry> entries = new ArrayList<Entry>();
+		if (isClosed) {
+			return entries;
+		}
+		int kind = kindOf(type);
+		Long firstSegment = segments.floorKey(fromSequence);
+		if (firstSegment == null) {
+			firstSegment = fromSequence;
+		}
+		for (LogSegment segment : segments.tailMap(firstSegment).values()) {
+			try {
+				for (long sequence = Math.max(fromSequence,
+						segment.baseSequence); sequence < segment
+						.getEndSequence(); sequence++) {
+					if (entries.size() == maxItems) {
+						return entries;
+					}
+					if (kind >= 0 && segment.getKind(sequence) != kind) {
+						continue;
+					}
+					WatchDogItem item = read(segment, sequence);
+					if (type.isInstance(item)) {
+						entries.add(new Entry(sequence, item));
+					}
+				}
+			} catch (IOException exception) {
+				WatchDogLogger.getInstance().logSevere(exception);
+			}
+		}
+		return entries;
+	}
+
+	private WatchDogItem read(LogSegment segment, long sequence)
+			throws IOException {
+		final WatchDogItem[] item = new WatchDogItem[1];
+		segment.read(sequence, new RecordVisitor() {
+
+			@Override
+			public void visit(LogSegment segment, long sequence, byte kind,
+					long timestamp, ByteBuffer payload) {
+				item[0] = decode(segment, timestamp, payload);
+			}
+		});
+		return item[0];
+	}
+
+	private WatchDogItem decode(LogSegment segment, long timestamp,
+			ByteBuffer payload) {
+		try {
+			if (segment.version == LogSegment.VERSION_SERIALIZED) {
+				return codec.deserialize(payload);
+			}
+			return codec.decode(payload, timestamp, segment.dictionary);
+		} catch (IOException exception) {
+			WatchDogLogger.getInstance().logSevere(exception);
+		} catch (BufferUnderflowException exception) {
+			WatchDogLogger.getInstance().logSevere(exception);
+		}
+		return null;
+	}
+
+	private void scan(long fromSequence, RecordVisitor visitor) {
+		if (isClosed) {
+			return;
+		}
+		Long firstSegment = segments.floorKey(fromSequence);
+		if (firstSegment == null) {
+			firstSegment = fromSequence;
+		}
+		for (LogSegment segment : segments.tailMap(firstSegment).values()) {
+			try {
+				segment.scan(fromSequence, visitor);
+			} catch (IOException exception) {
+				WatchDogLogger.getInstance().logSevere(exception);
+			}
+		}
+	}
+
+	/**
+	 * Deletes all segments that every registered consumer has moved past. The
+	 * segment currently written to is never deleted.
+	 */
+	public synchronized void releaseSegments() {
+		if (isClosed || consumers.isEmpty()) {
+			return;
+		}
+		long lowestOffset = Long.MAX_VALUE;
+		for (EventLogConsumer consumer : consumers) {
+			lowestOffset = Math.min(lowestOffset, consumer.getOffset());
+		}
+
+		Iterator<Map.Entry<Long, LogSegment>> iterator = segments.entrySet()
+				.iterator();
+		boolean isReleased = false;
+		while (iterator.hasNext()) {
+			LogSegment segment = iterator.next().getValue();
+			if (segment == activeSegment
+					|| segment.getEndSequence() > lowestOffset) {
+				break;
+			}
+			iterator.remove();
+			segment.releaseMapping();
+			undeletedSegments.add(segment.file);
+			isReleased = true;
+		}
+		if (isReleased) {
+			timestampIndex.removeBefore(segments.firstKey());
+		}
+
+		Iterator<File> undeletedIterator = undeletedSegments.iterator();
+		while (undeletedIterator.hasNext()) {
+			File file = undeletedIterator.next();
+			if (file.delete() || !file.exists()) {
+				undeletedIterator.remove();
+			}
+		}
+	}
+
+	/** @return the number of segment files of this log. */
+	public synchronized int getSegmentCount() {
+		return segments.size();
+	}
+
+	/** @return the size of all segment files of this log in bytes. */
+	public synchronized long getStorageSize() {
+		long size = 0;
+		for (LogSegment segment : segments.values()) {
+			size += segment.file.length();
+		}
+		for (File file : undeletedSegments) {
+			size += file.length();
+		}
+		return size;
+	}
+
+	/** @return whether this log has been closed. */
+	public synchronized boolean isClosed() {
+		return isClosed;
+	}
+
+	/** Syncs all appended items to disk and closes the log. */
+	public synchronized void close() {
+		if (isClosed) {
+			return;
+		}
+		flush();
+		try {
+			activeSegment.close();
+		} catch (IOException exception) {
+			WatchDogLogger.getInstance().logSevere(exception);
+		}
+		for (LogSegment segment : segments.values()) {
+			segment.releaseMapping();
+		}
+		isClosed = true;
+	}
+
+	/**
+	 * Closes the log and deletes all its files, e.g. after its items have been
+	 * migrated to another storage.
+	 */
+	public synchronized void closeAndDelete() {
+		close();
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	/** An item in the log together with its sequence number. */
+	public static class Entry {
+		private final long sequence;
+		private final WatchDogItem item;
+
+		private Entry(long sequence, WatchDogItem item) {
+			this.sequence = sequence;
+			this.item = item;
+		}
+
+		/** @return the position of the item in the log. */
+		public long getSequence() {
+			return sequence;
+		}
+
+		/** @return the item. */
+		public WatchDogItem getItem() {
+			return item;
+		}
+	}
+}
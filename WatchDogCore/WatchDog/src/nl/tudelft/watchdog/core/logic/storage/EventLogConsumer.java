@@ -0,0 +1,585 @@
+package nl.tudelft.watchdog.core.logic.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import nl.tudelft.watchdog.core.logic.event.eventtypes.EventBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalBase;
+import nl.tudelft.watchdog.core.logic.storage.EventLog.Entry;
+import nl.tudelft.watchdog.core.logic.storage.RetentionCompactor.Budget;
+import nl.tudelft.watchdog.core.util.WatchDogLogger;
+
+/**
+ * A {@link PersisterBase} that is a view on an {@link EventLog}. Instead of
+ * storing its own copy of every item, a consumer only remembers its offset in
+ * the log: all items before the offset have been consumed, i.e. removed from
+ * this view. Several consumers share one log, so that an item saved through
+ * any of them is written to disk only once.
+ *
+ * Items removed from a consumer out of order are remembered as ranges of
+ * acknowledged sequence numbers until the offset catches up with them. Every
+ * removal appends its ranges to a small acknowledgement file, which is merged
+ * into the offset file once it grows too long. A windowed consumer instead
+ * moves its offset past the newest removed item right away, which drops all
+ * older items from the view, too. This only fits consumers that remove their
+ * items in the order in which they were appended.
+ */
+public class EventLogConsumer extends PersisterBase {
+
+	/** The name of the consumer of items to transfer to the server. */
+	public static final String TRANSFER = "transfer";
+
+	/** The name of the consumer of items for the statistics. */
+	public static final String STATISTICS = "statistics";
+
+	/** The version of the offset file format with single sequence numbers. */
+	private static final int OFFSET_FILE_VERSION_1 = 1;
+
+	/** The version of the offset file format with ranges. */
+	private static final int OFFSET_FILE_VERSION = 2;
+
+	/**
+	 * The number of ranges in the acknowledgement file after which it is
+	 * merged into the offset file.
+	 */
+	private static final int MAX_APPENDED_RANGES = 1024;
+
+	/** The number of items read at once while iterating. */
+	private static final int ITERATION_BATCH_SIZE = 100;
+
+	private final EventLog log;
+
+	private final File offsetFile;
+
+	private final File acknowledgementFile;
+
+	private final boolean isWindowed;
+
+	/** The sequence number of the first item not yet consumed. */
+	private volatile long offset;
+
+	/**
+	 * Disjoint ranges of sequence numbers after the offset that have already
+	 * been consumed, from their first sequence number to the one after their
+	 * last.
+	 */
+	private final TreeMap<Long, Long> acknowledged = new TreeMap<Long, Long>();
+
+	/** The number of sequence numbers in the acknowledged ranges. */
+	private long acknowledgedCount;
+
+	/** The number of ranges in the acknowledgement file. */
+	private int appendedRanges;
+
+	/**
+	 * Constructor. The offset of the consumer is stored next to the segments of
+	 * the log under the given name.
+	 */
+	public EventLogConsumer(EventLog log, String name, boolean isWindowed) {
+		this.log = log;
+		this.isWindowed = isWindowed;
+		this.offsetFile = new File(log.getDirectory(), name + ".offset");
+		this.acknowledgementFile = new File(log.getDirectory(), name + ".acks");
+		readOffset();
+		readAcknowledgements();
+		log.register(this);
+	}
+
+	/** @return the log this consumer reads from. */
+	public EventLog getLog() {
+		return log;
+	}
+
+	/** @return the sequence number of the first item not yet consumed. */
+	public long getOffset() {
+		return offset;
+	}
+
+	private void readOffset() {
+		if (!offsetFile.exists()) {
+			return;
+		}
+		DataInputStream input = null;
+		try {
+			input = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(offsetFile)));
+			int version = input.readInt();
+			if (version == OFFSET_FILE_VERSION_1) {
+				offset = input.readLong();
+				int acknowledgedCount = input.readInt();
+				for (int i = 0; i < acknowledgedCount; i++) {
+					long sequence = input.readLong();
+					acknowledge(sequence, sequence + 1);
+				}
+			} else if (version == OFFSET_FILE_VERSION) {
+				offset = input.readLong();
+				int rangeCount = input.readInt();
+				for (int i = 0; i < rangeCount; i++) {
+					acknowledge(input.readLong(), input.readLong());
+				}
+			}
+		} catch (IOException exception) {
+			WatchDogLogger.getInstance().logSevere(exception);
+		} finally {
+			close(input);
+		}
+	}
+
+	/**
+	 * Replays the ranges appended since the offset file was last written. A
+	 * range torn by a crash is ignored.
+	 */
+	private void readAcknowledgements() {
+		if (!acknowledgementFile.exists()) {
+			return;
+		}
+		DataInputStream input = null;
+		try {
+			input = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(acknowledgementFile)));
+			while (true) {
+				acknowledge(input.readLong(), input.readLong());
+				appendedRanges++;
+			}
+		} catch (EOFException exception) {
+			// all complete ranges are read
+		} catch (IOException exception) {
+			WatchDogLogger.getInstance().logSevere(exception);
+		} finally {
+			close(input);
+		}
+	}
+
+	/**
+	 * Writes the offset and all acknowledged ranges to a temporary file first,
+	 * so that a crash cannot leave a half written offset behind. Afterwards,
+	 * the acknowledgement file is not needed anymore.
+	 */
+	private void writeOffset() {
+		File temporaryFile = new File(offsetFile.getPath() + ".tmp");
+		DataOutputStream output = null;
+		try {
+			FileOutputStream fileOutput = new FileOutputStream(temporaryFile);
+			output = new DataOutputStream(new BufferedOutputStream(fileOutput));
+			output.writeInt(OFFSET_FILE_VERSION);
+			output.writeLong(offset);
+			output.writeInt(acknowledged.size());
+			for (Map.Entry<Long, Long> range : acknowledged.entrySet()) {
+				output.writeLong(range.getKey());
+				output.writeLong(range.getValue());
+			}
+			output.flush();
+			fileOutput.getFD().sync();
+			output.close();
+			output = null;
+			if (!temporaryFile.renameTo(offsetFile)) {
+				// File.renameTo does not replace existing files on Windows
+				offsetFile.delete();
+				temporaryFile.renameTo(offsetFile);
+			}
+			acknowledgementFile.delete();
+			appendedRanges = 0;
+		} catch (IOException exception) {
+			WatchDogLogger.getInstance().logSevere(exception);
+		} finally {
+			close(output);
+		}
+	}
+
+	/**
+	 * Consumes the given ranges of sequence numbers and appends them to the
+	 * acknowledgement file with a single sync, instead of rewriting all
+	 * acknowledged ranges.
+	 */
+	private void acknowledgeAndPersist(List<long[]> ranges) {
+		if (ranges.isEmpty()) {
+			return;
+		}
+		for (long[] range : ranges) {
+			acknowledge(range[0], range[1]);
+		}
+		appendedRanges += ranges.size();
+		if (appendedRanges > MAX_APPENDED_RANGES) {
+			writeOffset();
+			return;
+		}
+		DataOutputStream output = null;
+		try {
+			FileOutputStream fileOutput = new FileOutputStream(
+					acknowledgementFile, true);
+			output = new DataOutputStream(new BufferedOutputStream(fileOutput));
+			for (long[] range : ranges) {
+				output.writeLong(range[0]);
+				output.writeLong(range[1]);
+			}
+			output.flush();
+			fileOutput.getFD().sync();
+		} catch (IOException exception) {
+			WatchDogLogger.getInstance().logSevere(exception);
+		} finally {
+			close(output);
+		}
+	}
+
+	/**
+	 * Consumes the sequence numbers from start, inclusive, to end, exclusive,
+	 * and moves the offset past all acknowledged ranges that start at it.
+	 */
+	private void acknowledge(long start, long end) {
+		start = Math.max(start, offset);
+		if (start >= end) {
+			return;
+		}
+		Map.Entry<Long, Long> previous = acknowledged.floorEntry(start);
+		if (previous != null && previous.getValue() >= start) {
+			start = previous.getKey();
+			end = Math.max(end, previous.getValue());
+			removeRange(previous.getKey());
+		}
+		Map.Entry<Long, Long> next = acknowledged.ceilingEntry(start);
+		while (next != null && next.getKey() <= end) {
+			end = Math.max(end, next.getValue());
+			removeRange(next.getKey());
+			next = acknowledged.ceilingEntry(start);
+		}
+		if (start == offset) {
+			offset = end;
+		} else {
+			acknowledged.put(start, end);
+			acknowledgedCount += end - start;
+		}
+	}
+
+	private void removeRange(long start) {
+		acknowledgedCount -= acknowledged.remove(start) - start;
+	}
+
+	/** @return whether the item with the given sequence number is consumed. */
+	private boolean isConsumed(long sequence) {
+		if (sequence < offset) {
+			return true;
+		}
+		Map.Entry<Long, Long> range = acknowledged.floorEntry(sequence);
+		return range != null && sequence < range.getValue();
+	}
+
+	private static void close(Closeable stream) {
+		try {
+			if (stream != null) {
+				stream.close();
+			}
+		} catch (IOException exception) {
+			// intentionally empty
+		}
+	}
+
+	@Override
+	public void enableGroupCommit(int itemThreshold, long windowInMilliseconds) {
+		log.enableGroupCommit(itemThreshold, windowInMilliseconds);
+	}
+
+	@Override
+	public int getUncommittedItemCount() {
+		return log.getUncommittedItemCount();
+	}
+
+	@Override
+	protected void store(WatchDogItem item) {
+		log.append(item);
+	}
+
+	@Override
+	protected void storeAll(List<? extends WatchDogItem> items) {
+		log.appendAll(items);
+	}
+
+	@Override
+	public void flush() {
+		log.flush();
+	}
+
+	/**
+	 * Reads all items that have not been consumed yet. Reading is not cached,
+	 * as consumers typically read the log only every few minutes.
+	 */
+	@Override
+	public synchronized Set<WatchDogItem> readItems() {
+		Set<WatchDogItem> items = new TreeSet<WatchDogItem>();
+		for (Entry entry : log.readFrom(offset)) {
+			if (!isConsumed(entry.getSequence())) {
+				items.add(entry.getItem());
+			}
+		}
+		return items;
+	}
+
+	/**
+	 * Reads the items of the given type that have not been consumed yet in
+	 * batches of {@value #ITERATION_BATCH_SIZE} while iterating, skipping the
+	 * records of other kinds without decoding them.
+	 */
+	@Override
+	public <T extends WatchDogItem> Iterator<T> iterateItems(final Class<T> type) {
+		return new Iterator<T>() {
+
+			private long cursor = offset;
+
+			private Iterator<T> batch = Collections.<T> emptyList().iterator();
+
+			private boolean isExhausted;
+
+			@Override
+			public boolean hasNext() {
+				while (!batch.hasNext() && !isExhausted) {
+					batch = readBatch();
+				}
+				return batch.hasNext();
+			}
+
+			private Iterator<T> readBatch() {
+				List<T> items = new ArrayList<T>();
+				synchronized (EventLogConsumer.this) {
+					List<Entry> entries = log.readFrom(Math.max(cursor, offset),
+							ITERATION_BATCH_SIZE, type);
+					isExhausted = entries.size() < ITERATION_BATCH_SIZE;
+					for (Entry entry : entries) {
+						cursor = entry.getSequence() + 1;
+						if (!isConsumed(entry.getSequence())) {
+							items.add(type.cast(entry.getItem()));
+						}
+					}
+				}
+				return items.iterator();
+			}
+
+			@Override
+			public T next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return batch.next();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Looks the sequence numbers of the items in the range up in the index of
+	 * the log, and only decodes the items that have not been consumed yet.
+	 */
+	@Override
+	public synchronized <T extends WatchDogItem> List<T> readItems(Date from,
+			Date to, Class<T> type) {
+		List<T> items = new ArrayList<T>();
+		for (long sequence : log.findSequences(from.getTime(), to.getTime(),
+				type)) {
+			if (isConsumed(sequence)) {
+				continue;
+			}
+			WatchDogItem item = log.read(sequence);
+			if (type.isInstance(item)) {
+				items.add(type.cast(item));
+			}
+		}
+		return items;
+	}
+
+	/**
+	 * Consumes the given items. Their sequence numbers are looked up by their
+	 * timestamps, so that only the few items with the same timestamp are
+	 * decoded. Segments that no consumer needs anymore are deleted.
+	 */
+	@Override
+	public synchronized void removeItems(List<WatchDogItem> itemsToRemove) {
+		if (itemsToRemove.isEmpty()) {
+			return;
+		}
+		consume(findSequences(itemsToRemove));
+	}
+
+	/**
+	 * Consumes the items with the given sorted sequence numbers and deletes
+	 * the segments that no consumer needs anymore.
+	 */
+	private void consume(long[] sequences) {
+		if (sequences.length == 0) {
+			return;
+		}
+		List<long[]> ranges = new ArrayList<long[]>();
+		if (isWindowed) {
+			ranges.add(new long[] { offset, sequences[sequences.length - 1] + 1 });
+		} else {
+			long start = sequences[0];
+			long end = start + 1;
+			for (int i = 1; i < sequences.length; i++) {
+				if (sequences[i] > end) {
+					ranges.add(new long[] { start, end });
+					start = sequences[i];
+				}
+				end = sequences[i] + 1;
+			}
+			ranges.add(new long[] { start, end });
+		}
+		acknowledgeAndPersist(ranges);
+		log.releaseSegments();
+	}
+
+	/**
+	 * Finds the oldest items of every kind in the index of the log and
+	 * consumes them by their sequence numbers, without decoding them. Budgets
+	 * for kinds that the index does not tell apart are enforced by reading
+	 * the items.
+	 */
+	@Override
+	synchronized int removeOldestItems(
+			Map<Class<? extends WatchDogItem>, Budget> budgets, long now) {
+		for (Class<? extends WatchDogItem> kind : budgets.keySet()) {
+			if (kind != IntervalBase.class && kind != EventBase.class) {
+				return super.removeOldestItems(budgets, now);
+			}
+		}
+		long[] sequences = new long[0];
+		for (Map.Entry<Class<? extends WatchDogItem>, Budget> entry : budgets
+				.entrySet()) {
+			Budget budget = entry.getValue();
+			long[] kindSequences = findUnconsumed(Long.MIN_VALUE,
+					Long.MAX_VALUE, entry.getKey());
+			int expiredItems = findUnconsumed(Long.MIN_VALUE,
+					now - budget.maxAge - 1, entry.getKey()).length;
+			int itemsToRemove = Math.max(expiredItems, kindSequences.length
+					- budget.maxItems);
+			int removed = sequences.length;
+			sequences = Arrays.copyOf(sequences, removed + itemsToRemove);
+			System.arraycopy(kindSequences, 0, sequences, removed,
+					itemsToRemove);
+		}
+		Arrays.sort(sequences);
+		consume(sequences);
+		return sequences.length;
+	}
+
+	/**
+	 * @return the sequence numbers of the unconsumed items of the given type
+	 *         between from and to, both inclusive, ordered by their timestamps.
+	 */
+	private long[] findUnconsumed(long from, long to, Class<?> type) {
+		long[] sequences = log.findSequences(from, to, type);
+		int found = 0;
+		for (long sequence : sequences) {
+			if (!isConsumed(sequence)) {
+				sequences[found++] = sequence;
+			}
+		}
+		return Arrays.copyOf(sequences, found);
+	}
+
+	/**
+	 * Consumes the items with sequence numbers from the first, inclusive, up
+	 * to the second, exclusive, e.g. the items appended by an interrupted
+	 * migration.
+	 */
+	synchronized void consumeRange(long from, long to) {
+		List<long[]> ranges = new ArrayList<long[]>(1);
+		ranges.add(new long[] { from, to });
+		acknowledgeAndPersist(ranges);
+	}
+
+	/**
+	 * @return the sorted sequence numbers of all unconsumed items that are
+	 *         equal to one of the given items.
+	 */
+	private long[] findSequences(List<WatchDogItem> items) {
+		long[] sequences = new long[items.size()];
+		int found = 0;
+		for (WatchDogItem item : items) {
+			long timestamp = TimestampIndex.timestampOf(item);
+			for (long sequence : log.findSequences(timestamp, timestamp,
+					item.getClass())) {
+				if (!isConsumed(sequence) && item.equals(log.read(sequence))) {
+					if (found == sequences.length) {
+						sequences = Arrays.copyOf(sequences, 2 * found);
+					}
+					sequences[found++] = sequence;
+				}
+			}
+		}
+		sequences = Arrays.copyOf(sequences, found);
+		Arrays.sort(sequences);
+		return sequences;
+	}
+
+	@Override
+	public boolean sharesStorageWith(PersisterBase other) {
+		return other instanceof EventLogConsumer
+				&& ((EventLogConsumer) other).log == log;
+	}
+
+	@Override
+	public boolean isClosed() {
+		return log.isClosed();
+	}
+
+	/** @return the number of items that have not been consumed yet. */
+	@Override
+	public synchronized long getSize() {
+		return log.getNextSequence() - offset - acknowledgedCount;
+	}
+
+	/**
+	 * Deletes all segments that no consumer needs anymore. Removing items
+	 * already does so, so this only retries segments that could not be
+	 * deleted before.
+	 */
+	@Override
+	public void compact() {
+		log.releaseSegments();
+	}
+
+	/**
+	 * @return the size of all segment files of the underlying log in bytes,
+	 *         which is shared with other consumers.
+	 */
+	@Override
+	public long getStorageSize() {
+		return log.getStorageSize();
+	}
+
+	/** Closes the underlying log, which is shared with other consumers. */
+	@Override
+	public void closeDatabase() {
+		log.close();
+	}
+
+	/** Consumes all items in the log. */
+	@Override
+	public synchronized void clearAndResetMap() {
+		offset = Math.max(offset, log.getNextSequence());
+		acknowledged.clear();
+		acknowledgedCount = 0;
+		writeOffset();
+		log.releaseSegments();
+	}
+}
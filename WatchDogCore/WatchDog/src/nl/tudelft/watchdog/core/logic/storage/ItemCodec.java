@@ -0,0 +1,756 @@
+package nl.tudelft.watchdog.core.logic.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import nl.tudelft.watchdog.core.logic.breakpoint.BreakpointChangeType;
+import nl.tudelft.watchdog.core.logic.breakpoint.BreakpointType;
+import nl.tudelft.watchdog.core.logic.document.Document;
+import nl.tudelft.watchdog.core.logic.document.DocumentType;
+import nl.tudelft.watchdog.core.logic.event.eventtypes.BreakpointAddEvent;
+import nl.tudelft.watchdog.core.logic.event.eventtypes.BreakpointChangeEvent;
+import nl.tudelft.watchdog.core.logic.event.eventtypes.BreakpointEventBase;
+import nl.tudelft.watchdog.core.logic.event.eventtypes.BreakpointRemoveEvent;
+import nl.tudelft.watchdog.core.logic.event.eventtypes.DebugEventBase;
+import nl.tudelft.watchdog.core.logic.event.eventtypes.DebugEventType;
+import nl.tudelft.watchdog.core.logic.event.eventtypes.EventBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.DebugInterval;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.EditorIntervalBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IDEActiveInterval;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IDEOpenInterval;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.JUnitExecutionBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.PerspectiveInterval;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.PerspectiveInterval.Perspective;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.ReadingInterval;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.TypingInterval;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.UserActiveInterval;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.WatchDogViewInterval;
+import nl.tudelft.watchdog.core.logic.network.JsonifiedDouble;
+import nl.tudelft.watchdog.core.util.WatchDogGlobals.IDE;
+
+/**
+ * The binary format of the {@link WatchDogItem}s in an {@link EventLog}. In
+ * contrast to Java serialization, the format does not depend on the
+ * serialVersionUIDs of the item classes, so that stored items survive
+ * changes to these classes.
+ *
+ * A payload starts with a format byte. In the tagged format, it is followed
+ * by the type of the item and a list of fields. Every field starts with a key
+ * that combines its number and its wire type, so that a reader can skip
+ * fields it does not know, e.g. those added by a newer client, and leave
+ * fields it expects but does not find at their default. Type and field
+ * numbers must therefore never be reused for something else. Integers are
+ * variable length encoded, timestamps as the difference to the timestamp of
+ * the record, and all strings are numbers in the {@link StringDictionary} of
+ * the segment.
+ *
+ * The JUnit intervals of the IDEs are stored with their execution trees once
+ * their {@link JUnitIntervalFactory} has been registered. Items of other types
+ * unknown to this codec, e.g. IDE specific ones, are stored with Java
+ * serialization.
+ */
+class ItemCodec {
+
+	/** Java serialization, for items of types this codec does not know. */
+	private static final byte FORMAT_SERIALIZED = 0;
+
+	/** Type and tagged fields. */
+	private static final byte FORMAT_TAGGED = 1;
+
+	private static final int TYPE_IDE_OPEN_INTERVAL = 1;
+	private static final int TYPE_IDE_ACTIVE_INTERVAL = 2;
+	private static final int TYPE_USER_ACTIVE_INTERVAL = 3;
+	private static final int TYPE_WATCHDOG_VIEW_INTERVAL = 4;
+	private static final int TYPE_DEBUG_INTERVAL = 5;
+	private static final int TYPE_PERSPECTIVE_INTERVAL = 6;
+	private static final int TYPE_READING_INTERVAL = 7;
+	private static final int TYPE_TYPING_INTERVAL = 8;
+	private static final int TYPE_JUNIT_INTERVAL = 9;
+	private static final int TYPE_DEBUG_EVENT = 16;
+	private static final int TYPE_BREAKPOINT_ADD_EVENT = 17;
+	private static final int TYPE_BREAKPOINT_CHANGE_EVENT = 18;
+	private static final int TYPE_BREAKPOINT_REMOVE_EVENT = 19;
+
+	/** A zigzag encoded variable length integer. */
+	private static final int WIRE_VARINT = 0;
+
+	/** A length prefixed byte sequence, e.g. nested fields. */
+	private static final int WIRE_BYTES = 1;
+
+	/** The number of a string in the dictionary. */
+	private static final int WIRE_STRING = 2;
+
+	private static final int WIRE_TYPE_BITS = 2;
+
+	private static final int FIELD_CLIENT_VERSION = 1;
+	private static final int FIELD_IDE = 2;
+	private static final int FIELD_SESSION_SEED = 3;
+	private static final int FIELD_START = 4;
+	/** The end of an interval or the time of an event. */
+	private static final int FIELD_END = 5;
+	private static final int FIELD_EVENT_TYPE = 6;
+	private static final int FIELD_DOCUMENT = 7;
+	private static final int FIELD_ENDING_DOCUMENT = 8;
+	private static final int FIELD_EDIT_DISTANCE = 9;
+	private static final int FIELD_MOD_COUNT = 10;
+	private static final int FIELD_CHAR_LENGTH_DIFF = 11;
+	private static final int FIELD_PERSPECTIVE = 12;
+	private static final int FIELD_BREAKPOINT_HASH = 13;
+	private static final int FIELD_BREAKPOINT_TYPE = 14;
+	private static final int FIELD_BREAKPOINT_CHANGES = 15;
+	/** The name of the IDE specific class of the item. */
+	private static final int FIELD_ITEM_CLASS = 16;
+	private static final int FIELD_JUNIT_EXECUTION = 17;
+	private static final int MAX_FIELD = FIELD_JUNIT_EXECUTION;
+
+	private static final int DOCUMENT_FIELD_PROJECT_NAME_HASH = 1;
+	private static final int DOCUMENT_FIELD_NAME_HASH = 2;
+	private static final int DOCUMENT_FIELD_SLOC = 3;
+	private static final int DOCUMENT_FIELD_TYPE = 4;
+	private static final int MAX_DOCUMENT_FIELD = DOCUMENT_FIELD_TYPE;
+
+	private static final int EXECUTION_FIELD_PROJECT_HASH = 1;
+	private static final int EXECUTION_FIELD_TEST_CLASS_HASH = 2;
+	private static final int EXECUTION_FIELD_TEST_METHOD_HASH = 3;
+	private static final int EXECUTION_FIELD_RESULT = 4;
+	/** The bits of the duration in seconds. */
+	private static final int EXECUTION_FIELD_DURATION = 5;
+	/** The number of children, followed by every length prefixed child. */
+	private static final int EXECUTION_FIELD_CHILDREN = 6;
+	private static final int MAX_EXECUTION_FIELD = EXECUTION_FIELD_CHILDREN;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final ClassLoader itemClassLoader;
+
+	/** The factories of the JUnit intervals by the names of their classes. */
+	private final Map<String, JUnitIntervalFactory> junitIntervalFactories = new ConcurrentHashMap<String, JUnitIntervalFactory>();
+
+	/**
+	 * Constructor. Serialized items are resolved with the given class loader,
+	 * which must be able to load the IDE specific {@link WatchDogItem}s.
+	 */
+	ItemCodec(ClassLoader itemClassLoader) {
+		this.itemClassLoader = itemClassLoader;
+	}
+
+	/**
+	 * Stores the JUnit intervals of the given class with their execution
+	 * trees, which the factory converts from and to the intervals.
+	 */
+	void registerJUnitInterval(Class<? extends IntervalBase> intervalClass,
+			JUnitIntervalFactory factory) {
+		junitIntervalFactories.put(intervalClass.getName(), factory);
+	}
+
+	/**
+	 * Encodes the item. Strings that are new to the dictionary are added to
+	 * it.
+	 */
+	byte[] encode(WatchDogItem item, long timestamp,
+			StringDictionary dictionary) throws IOException {
+		int type = typeOf(item);
+		if (type == 0) {
+			return serialize(item);
+		}
+		Output output = new Output();
+		output.write(FORMAT_TAGGED);
+		output.writeVarLong(type);
+		output.writeStringField(FIELD_CLIENT_VERSION, item.getClientVersion(),
+				dictionary);
+		if (item.getIDE() != null) {
+			output.writeStringField(FIELD_IDE, item.getIDE().name(),
+					dictionary);
+		}
+		if (type == TYPE_JUNIT_INTERVAL) {
+			encodeInterval((IntervalBase) item, timestamp, dictionary, output);
+			output.writeStringField(FIELD_ITEM_CLASS, item.getClass()
+					.getName(), dictionary);
+			JUnitExecutionBase execution = junitIntervalFactories.get(
+					item.getClass().getName()).getTestExecution(
+					(IntervalBase) item);
+			if (execution != null) {
+				output.writeBytesField(FIELD_JUNIT_EXECUTION,
+						encodeJUnitExecution(execution, dictionary));
+			}
+		} else if (item instanceof IntervalBase) {
+			encodeInterval((IntervalBase) item, timestamp, dictionary, output);
+		} else {
+			encodeEvent((EventBase) item, timestamp, dictionary, output);
+		}
+		return output.toByteArray();
+	}
+
+	private int typeOf(WatchDogItem item) {
+		Class<?> itemClass = item.getClass();
+		if (itemClass == IDEOpenInterval.class) {
+			return TYPE_IDE_OPEN_INTERVAL;
+		} else if (itemClass == IDEActiveInterval.class) {
+			return TYPE_IDE_ACTIVE_INTERVAL;
+		} else if (itemClass == UserActiveInterval.class) {
+			return TYPE_USER_ACTIVE_INTERVAL;
+		} else if (itemClass == WatchDogViewInterval.class) {
+			return TYPE_WATCHDOG_VIEW_INTERVAL;
+		} else if (itemClass == DebugInterval.class) {
+			return TYPE_DEBUG_INTERVAL;
+		} else if (itemClass == PerspectiveInterval.class) {
+			return TYPE_PERSPECTIVE_INTERVAL;
+		} else if (itemClass == ReadingInterval.class) {
+			return TYPE_READING_INTERVAL;
+		} else if (itemClass == TypingInterval.class) {
+			return TYPE_TYPING_INTERVAL;
+		} else if (itemClass == DebugEventBase.class) {
+			return TYPE_DEBUG_EVENT;
+		} else if (itemClass == BreakpointAddEvent.class) {
+			return TYPE_BREAKPOINT_ADD_EVENT;
+		} else if (itemClass == BreakpointChangeEvent.class) {
+			return TYPE_BREAKPOINT_CHANGE_EVENT;
+		} else if (itemClass == BreakpointRemoveEvent.class) {
+			return TYPE_BREAKPOINT_REMOVE_EVENT;
+		} else if (junitIntervalFactories.containsKey(itemClass.getName())) {
+			return TYPE_JUNIT_INTERVAL;
+		}
+		return 0;
+	}
+
+	private static void encodeInterval(IntervalBase interval, long timestamp,
+			StringDictionary dictionary, Output output) {
+		output.writeStringField(FIELD_SESSION_SEED, interval.getSessionSeed(),
+				dictionary);
+		output.writeTimeField(FIELD_START, interval.getStart(), timestamp);
+		output.writeTimeField(FIELD_END, interval.getEnd(), timestamp);
+		if (interval instanceof EditorIntervalBase) {
+			output.writeDocumentField(FIELD_DOCUMENT,
+					((EditorIntervalBase) interval).getDocument(), dictionary);
+		}
+		if (interval instanceof TypingInterval) {
+			TypingInterval typingInterval = (TypingInterval) interval;
+			output.writeDocumentField(FIELD_ENDING_DOCUMENT,
+					typingInterval.getEndingDocument(), dictionary);
+			if (typingInterval.getEditDistance() != null) {
+				output.writeVarLongField(FIELD_EDIT_DISTANCE,
+						typingInterval.getEditDistance());
+			}
+			output.writeVarLongField(FIELD_MOD_COUNT,
+					typingInterval.getModCount());
+			output.writeVarLongField(FIELD_CHAR_LENGTH_DIFF,
+					typingInterval.getCharLengthDiff());
+		} else if (interval instanceof PerspectiveInterval) {
+			output.writeEnumField(FIELD_PERSPECTIVE,
+					((PerspectiveInterval) interval).getPerspectiveType(),
+					dictionary);
+		}
+	}
+
+	private static void encodeEvent(EventBase event, long timestamp,
+			StringDictionary dictionary, Output output) {
+		output.writeStringField(FIELD_SESSION_SEED, event.getSessionSeed(),
+				dictionary);
+		output.writeTimeField(FIELD_END, event.getTimestamp(), timestamp);
+		output.writeEnumField(FIELD_EVENT_TYPE, event.getType(), dictionary);
+		if (event instanceof BreakpointEventBase) {
+			BreakpointEventBase breakpointEvent = (BreakpointEventBase) event;
+			output.writeVarLongField(FIELD_BREAKPOINT_HASH,
+					breakpointEvent.getHash());
+			output.writeEnumField(FIELD_BREAKPOINT_TYPE,
+					breakpointEvent.getBreakpointType(), dictionary);
+		}
+		if (event instanceof BreakpointChangeEvent) {
+			List<BreakpointChangeType> changes = ((BreakpointChangeEvent) event)
+					.getChanges();
+			if (changes != null) {
+				Output changesOutput = new Output();
+				changesOutput.writeVarLong(changes.size());
+				for (BreakpointChangeType change : changes) {
+					changesOutput.writeVarLong(dictionary.intern(change.name()));
+				}
+				output.writeBytesField(FIELD_BREAKPOINT_CHANGES, changesOutput);
+			}
+		}
+	}
+
+	private static Output encodeJUnitExecution(JUnitExecutionBase execution,
+			StringDictionary dictionary) {
+		Output output = new Output();
+		output.writeStringField(EXECUTION_FIELD_PROJECT_HASH,
+				execution.getProjectHash(), dictionary);
+		output.writeStringField(EXECUTION_FIELD_TEST_CLASS_HASH,
+				execution.getTestClassHash(), dictionary);
+		output.writeStringField(EXECUTION_FIELD_TEST_METHOD_HASH,
+				execution.getTestMethodHash(), dictionary);
+		output.writeStringField(EXECUTION_FIELD_RESULT, execution.getResult(),
+				dictionary);
+		if (execution.getDuration() != null) {
+			output.writeVarLongField(EXECUTION_FIELD_DURATION,
+					Double.doubleToLongBits(execution.getDuration().value));
+		}
+		List<JUnitExecutionBase> children = execution.getChildrenExecutions();
+		if (children != null) {
+			Output childrenOutput = new Output();
+			childrenOutput.writeVarLong(children.size());
+			for (JUnitExecutionBase child : children) {
+				childrenOutput.writeBytes(encodeJUnitExecution(child,
+						dictionary));
+			}
+			output.writeBytesField(EXECUTION_FIELD_CHILDREN, childrenOutput);
+		}
+		return output;
+	}
+
+	/**
+	 * Decodes an item from a payload written by
+	 * {@link #encode(WatchDogItem, long, StringDictionary)}.
+	 */
+	WatchDogItem decode(ByteBuffer payload, long timestamp,
+			StringDictionary dictionary) throws IOException {
+		try {
+			byte format = payload.get();
+			if (format == FORMAT_SERIALIZED) {
+				return deserialize(payload);
+			} else if (format != FORMAT_TAGGED) {
+				throw new IOException("Unknown item format " + format);
+			}
+			int type = (int) readVarLong(payload);
+			Object[] fields = readFields(payload, MAX_FIELD, dictionary);
+			WatchDogItem item = type == TYPE_JUNIT_INTERVAL ? createJUnitInterval(
+					fields, timestamp, dictionary) : createItem(type, fields,
+					timestamp, dictionary);
+			String ide = (String) fields[FIELD_IDE];
+			item.setOrigin((String) fields[FIELD_CLIENT_VERSION],
+					ide == null ? null : toEnum(IDE.class, ide));
+			return item;
+		} catch (BufferUnderflowException exception) {
+			throw new IOException("Truncated item", exception);
+		} catch (ClassCastException exception) {
+			throw new IOException("Field of wrong wire type", exception);
+		}
+	}
+
+	private static WatchDogItem createItem(int type, Object[] fields,
+			long timestamp, StringDictionary dictionary) throws IOException {
+		String sessionSeed = (String) fields[FIELD_SESSION_SEED];
+		Date start = toDate(fields[FIELD_START], timestamp);
+		IntervalBase interval;
+		switch (type) {
+		case TYPE_IDE_OPEN_INTERVAL:
+			interval = new IDEOpenInterval(start);
+			break;
+		case TYPE_IDE_ACTIVE_INTERVAL:
+			interval = new IDEActiveInterval(start);
+			break;
+		case TYPE_USER_ACTIVE_INTERVAL:
+			interval = new UserActiveInterval(start);
+			break;
+		case TYPE_WATCHDOG_VIEW_INTERVAL:
+			interval = new WatchDogViewInterval(start);
+			break;
+		case TYPE_DEBUG_INTERVAL:
+			interval = new DebugInterval(start);
+			break;
+		case TYPE_PERSPECTIVE_INTERVAL:
+			interval = new PerspectiveInterval(toEnum(Perspective.class,
+					(String) fields[FIELD_PERSPECTIVE]), start);
+			break;
+		case TYPE_READING_INTERVAL:
+			interval = new ReadingInterval(null, start);
+			break;
+		case TYPE_TYPING_INTERVAL:
+			TypingInterval typingInterval = new TypingInterval(null, start);
+			typingInterval.setEndingDocument(readDocument(
+					fields[FIELD_ENDING_DOCUMENT], dictionary));
+			typingInterval.restoreEditStatistics(
+					(Long) fields[FIELD_EDIT_DISTANCE],
+					toInt(fields[FIELD_MOD_COUNT]),
+					toInt(fields[FIELD_CHAR_LENGTH_DIFF]));
+			interval = typingInterval;
+			break;
+		default:
+			return createEvent(type, fields, timestamp, dictionary);
+		}
+		if (interval instanceof EditorIntervalBase) {
+			((EditorIntervalBase) interval).setDocument(readDocument(
+					fields[FIELD_DOCUMENT], dictionary));
+		}
+		interval.setEndTime(toDate(fields[FIELD_END], timestamp));
+		interval.setSessionSeed(sessionSeed);
+		return interval;
+	}
+
+	private WatchDogItem createJUnitInterval(Object[] fields, long timestamp,
+			StringDictionary dictionary) throws IOException {
+		String className = (String) fields[FIELD_ITEM_CLASS];
+		JUnitIntervalFactory factory = className == null ? null
+				: junitIntervalFactories.get(className);
+		if (factory == null) {
+			throw new IOException("No factory for JUnit interval " + className);
+		}
+		JUnitExecutionBase execution = null;
+		if (fields[FIELD_JUNIT_EXECUTION] != null) {
+			execution = readJUnitExecution(
+					(ByteBuffer) fields[FIELD_JUNIT_EXECUTION], factory,
+					dictionary);
+		}
+		IntervalBase interval = factory.createInterval(execution,
+				toDate(fields[FIELD_START], timestamp),
+				toDate(fields[FIELD_END], timestamp));
+		interval.setSessionSeed((String) fields[FIELD_SESSION_SEED]);
+		return interval;
+	}
+
+	private static JUnitExecutionBase readJUnitExecution(ByteBuffer buffer,
+			JUnitIntervalFactory factory, StringDictionary dictionary)
+			throws IOException {
+		Object[] fields = readFields(buffer, MAX_EXECUTION_FIELD, dictionary);
+		Object duration = fields[EXECUTION_FIELD_DURATION];
+		ArrayList<JUnitExecutionBase> children = null;
+		if (fields[EXECUTION_FIELD_CHILDREN] != null) {
+			ByteBuffer childrenBuffer = (ByteBuffer) fields[EXECUTION_FIELD_CHILDREN];
+			int count = (int) readVarLong(childrenBuffer);
+			children = new ArrayList<JUnitExecutionBase>(Math.max(0, count));
+			for (int i = 0; i < count; i++) {
+				int length = (int) readVarLong(childrenBuffer);
+				if (length < 0 || length > childrenBuffer.remaining()) {
+					throw new IOException("Invalid execution length " + length);
+				}
+				ByteBuffer childBuffer = childrenBuffer.slice();
+				childBuffer.limit(length);
+				childrenBuffer.position(childrenBuffer.position() + length);
+				children.add(readJUnitExecution(childBuffer, factory,
+						dictionary));
+			}
+		}
+		JUnitExecutionBase execution = factory.createExecution();
+		execution.restore((String) fields[EXECUTION_FIELD_PROJECT_HASH],
+				(String) fields[EXECUTION_FIELD_TEST_CLASS_HASH],
+				(String) fields[EXECUTION_FIELD_TEST_METHOD_HASH],
+				(String) fields[EXECUTION_FIELD_RESULT],
+				duration == null ? null : new JsonifiedDouble(
+						Double.longBitsToDouble((Long) duration)), children);
+		return execution;
+	}
+
+	private static WatchDogItem createEvent(int type, Object[] fields,
+			long timestamp, StringDictionary dictionary) throws IOException {
+		Date time = toDate(fields[FIELD_END], timestamp);
+		int hash = toInt(fields[FIELD_BREAKPOINT_HASH]);
+		BreakpointType breakpointType = toEnum(BreakpointType.class,
+				(String) fields[FIELD_BREAKPOINT_TYPE]);
+		EventBase event;
+		switch (type) {
+		case TYPE_DEBUG_EVENT:
+			event = new DebugEventBase(toEnum(DebugEventType.class,
+					(String) fields[FIELD_EVENT_TYPE]), time);
+			break;
+		case TYPE_BREAKPOINT_ADD_EVENT:
+			event = new BreakpointAddEvent(hash, breakpointType, time);
+			break;
+		case TYPE_BREAKPOINT_CHANGE_EVENT:
+			event = new BreakpointChangeEvent(hash, breakpointType,
+					readChanges(fields[FIELD_BREAKPOINT_CHANGES], dictionary),
+					time);
+			break;
+		case TYPE_BREAKPOINT_REMOVE_EVENT:
+			event = new BreakpointRemoveEvent(hash, breakpointType, time);
+			break;
+		default:
+			throw new IOException("Unknown item type " + type);
+		}
+		event.setSessionSeed((String) fields[FIELD_SESSION_SEED]);
+		return event;
+	}
+
+	private static Document readDocument(Object field,
+			StringDictionary dictionary) throws IOException {
+		if (field == null) {
+			return null;
+		}
+		Object[] fields = readFields((ByteBuffer) field, MAX_DOCUMENT_FIELD,
+				dictionary);
+		Object sloc = fields[DOCUMENT_FIELD_SLOC];
+		return Document.restore((String) fields[DOCUMENT_FIELD_PROJECT_NAME_HASH],
+				(String) fields[DOCUMENT_FIELD_NAME_HASH],
+				sloc == null ? 0 : (Long) sloc,
+				toEnum(DocumentType.class,
+						(String) fields[DOCUMENT_FIELD_TYPE]));
+	}
+
+	private static List<BreakpointChangeType> readChanges(Object field,
+			StringDictionary dictionary) throws IOException {
+		if (field == null) {
+			return null;
+		}
+		ByteBuffer buffer = (ByteBuffer) field;
+		int count = (int) readVarLong(buffer);
+		List<BreakpointChangeType> changes = new ArrayList<BreakpointChangeType>(
+				count);
+		for (int i = 0; i < count; i++) {
+			BreakpointChangeType change = toEnum(BreakpointChangeType.class,
+					dictionary.get((int) readVarLong(buffer)));
+			if (change != null) {
+				changes.add(change);
+			}
+		}
+		return changes;
+	}
+
+	/**
+	 * Reads all fields up to the end of the buffer, indexed by their number.
+	 * Varints are read as {@link Long}s, strings are looked up in the
+	 * dictionary, and byte sequences are returned as {@link ByteBuffer}s.
+	 * Fields with numbers greater than maxField are skipped.
+	 */
+	private static Object[] readFields(ByteBuffer buffer, int maxField,
+			StringDictionary dictionary) throws IOException {
+		Object[] fields = new Object[maxField + 1];
+		while (buffer.hasRemaining()) {
+			long key = readVarLong(buffer);
+			long field = key >>> WIRE_TYPE_BITS;
+			Object value;
+			switch ((int) (key & ((1 << WIRE_TYPE_BITS) - 1))) {
+			case WIRE_VARINT:
+				value = readVarLong(buffer);
+				break;
+			case WIRE_BYTES:
+				int length = (int) readVarLong(buffer);
+				if (length < 0 || length > buffer.remaining()) {
+					throw new IOException("Invalid field length " + length);
+				}
+				ByteBuffer bytes = buffer.slice();
+				bytes.limit(length);
+				buffer.position(buffer.position() + length);
+				value = bytes;
+				break;
+			case WIRE_STRING:
+				value = dictionary.get((int) readVarLong(buffer));
+				break;
+			default:
+				throw new IOException("Unknown wire type in key " + key);
+			}
+			if (field <= maxField) {
+				fields[(int) field] = value;
+			}
+		}
+		return fields;
+	}
+
+	private static Date toDate(Object field, long timestamp) {
+		if (field == null) {
+			return null;
+		}
+		return new Date(timestamp + (Long) field);
+	}
+
+	private static int toInt(Object field) {
+		return field == null ? 0 : ((Long) field).intValue();
+	}
+
+	/**
+	 * @return the constant with the given name, or <code>null</code> if there
+	 *         is none, e.g. because it has been removed in the meantime.
+	 */
+	private static <T extends Enum<T>> T toEnum(Class<T> enumClass, String name) {
+		if (name == null) {
+			return null;
+		}
+		try {
+			return Enum.valueOf(enumClass, name);
+		} catch (IllegalArgumentException exception) {
+			return null;
+		}
+	}
+
+	private static byte[] serialize(WatchDogItem item) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		bytes.write(FORMAT_SERIALIZED);
+		ObjectOutputStream output = new ObjectOutputStream(bytes);
+		output.writeObject(item);
+		output.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Reads a Java serialized item, as stored for unknown item types and in
+	 * segments of the first version.
+	 */
+	WatchDogItem deserialize(ByteBuffer payload) throws IOException {
+		ObjectInputStream input = new ItemInputStream(new ByteBufferInputStream(
+				payload));
+		try {
+			return (WatchDogItem) input.readObject();
+		} catch (ClassNotFoundException exception) {
+			throw new IOException(exception);
+		} catch (ClassCastException exception) {
+			throw new IOException(exception);
+		}
+	}
+
+	/** Reads a zigzag encoded variable length integer. */
+	static long readVarLong(ByteBuffer buffer) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte current = buffer.get();
+			value |= (long) (current & 0x7F) << shift;
+			if (current >= 0) {
+				return (value >>> 1) ^ -(value & 1);
+			}
+		}
+		throw new IOException("Malformed variable length integer");
+	}
+
+	/** Reads a length prefixed UTF-8 string. */
+	static String readString(ByteBuffer buffer) throws IOException {
+		int length = (int) readVarLong(buffer);
+		if (length < 0 || length > buffer.remaining()) {
+			throw new IOException("Invalid string length " + length);
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	/** A growing buffer the encoded fields are written to. */
+	static class Output extends ByteArrayOutputStream {
+
+		/** Writes a zigzag encoded variable length integer. */
+		void writeVarLong(long value) {
+			long zigzag = (value << 1) ^ (value >> 63);
+			while ((zigzag & ~0x7FL) != 0) {
+				write((int) ((zigzag & 0x7F) | 0x80));
+				zigzag >>>= 7;
+			}
+			write((int) zigzag);
+		}
+
+		/** Writes a length prefixed UTF-8 string. */
+		void writeString(String string) {
+			byte[] bytes = string.getBytes(UTF8);
+			writeVarLong(bytes.length);
+			write(bytes, 0, bytes.length);
+		}
+
+		private void writeKey(int field, int wireType) {
+			writeVarLong(((long) field << WIRE_TYPE_BITS) | wireType);
+		}
+
+		void writeVarLongField(int field, long value) {
+			writeKey(field, WIRE_VARINT);
+			writeVarLong(value);
+		}
+
+		void writeTimeField(int field, Date date, long timestamp) {
+			if (date != null) {
+				writeVarLongField(field, date.getTime() - timestamp);
+			}
+		}
+
+		void writeStringField(int field, String string,
+				StringDictionary dictionary) {
+			if (string != null) {
+				writeKey(field, WIRE_STRING);
+				writeVarLong(dictionary.intern(string));
+			}
+		}
+
+		void writeEnumField(int field, Enum<?> constant,
+				StringDictionary dictionary) {
+			if (constant != null) {
+				writeStringField(field, constant.name(), dictionary);
+			}
+		}
+
+		/** Writes the length prefixed content of the nested output. */
+		void writeBytes(Output nested) {
+			writeVarLong(nested.size());
+			write(nested.buf, 0, nested.size());
+		}
+
+		void writeBytesField(int field, Output nested) {
+			writeKey(field, WIRE_BYTES);
+			writeBytes(nested);
+		}
+
+		void writeDocumentField(int field, Document document,
+				StringDictionary dictionary) {
+			if (document == null) {
+				return;
+			}
+			Output nested = new Output();
+			nested.writeStringField(DOCUMENT_FIELD_PROJECT_NAME_HASH,
+					document.getProjectNameHash(), dictionary);
+			nested.writeStringField(DOCUMENT_FIELD_NAME_HASH,
+					document.getNameHash(), dictionary);
+			nested.writeVarLongField(DOCUMENT_FIELD_SLOC, document.getSloc());
+			nested.writeEnumField(DOCUMENT_FIELD_TYPE,
+					document.getDocumentType(), dictionary);
+			writeBytesField(field, nested);
+		}
+	}
+
+	/** Reads directly from a (mapped) buffer, without copying it first. */
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		private ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			return buffer.get() & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			length = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, length);
+			return length;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+
+	/** Resolves item classes with the class loader of the IDE plugin. */
+	private class ItemInputStream extends ObjectInputStream {
+
+		private ItemInputStream(InputStream input) throws IOException {
+			super(input);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass description)
+				throws IOException, ClassNotFoundException {
+			if (itemClassLoader != null) {
+				try {
+					return Class.forName(description.getName(), false,
+							itemClassLoader);
+				} catch (ClassNotFoundException exception) {
+					// fall back to the default resolution
+				}
+			}
+			return super.resolveClass(description);
+		}
+	}
+}
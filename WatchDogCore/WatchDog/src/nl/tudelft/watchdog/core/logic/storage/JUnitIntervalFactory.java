@@ -0,0 +1,26 @@
+package nl.tudelft.watchdog.core.logic.storage;
+
+import java.util.Date;
+
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.JUnitExecutionBase;
+
+/**
+ * Converts the IDE specific JUnit intervals from and to their trees of
+ * {@link JUnitExecutionBase}s, so that an {@link EventLog} can store them in
+ * its tagged format instead of with Java serialization.
+ *
+ * @see EventLog#registerJUnitInterval(Class, JUnitIntervalFactory)
+ */
+public interface JUnitIntervalFactory {
+
+	/** @return the root of the execution tree of the interval. */
+	JUnitExecutionBase getTestExecution(IntervalBase interval);
+
+	/** @return a new execution, whose fields are restored afterwards. */
+	JUnitExecutionBase createExecution();
+
+	/** @return a closed interval with the given execution tree. */
+	IntervalBase createInterval(JUnitExecutionBase testExecution, Date start,
+			Date end);
+}
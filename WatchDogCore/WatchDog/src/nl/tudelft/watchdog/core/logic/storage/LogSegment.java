@@ -0,0 +1,416 @@
+package nl.tudelft.watchdog.core.logic.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import nl.tudelft.watchdog.core.util.WatchDogLogger;
+
+/**
+ * One segment file of an {@link EventLog}. New records are appended through a
+ * {@link FileChannel}, while records are read from a {@link MappedByteBuffer}
+ * of the file, so that scanning the segment neither copies nor deserializes
+ * the records that are skipped. Items are decoded straight from the mapping,
+ * which is created once per segment and only renewed for the active segment
+ * after records have been appended.
+ *
+ * A segment file starts with a magic number and a version byte. Every record
+ * in it consists of
+ * <ul>
+ * <li>the length of the payload (int),</li>
+ * <li>a CRC32 checksum of everything after it (int),</li>
+ * <li>the kind of the item, see {@link #KIND_INTERVAL} and
+ * {@link #KIND_EVENT} (byte),</li>
+ * <li>the timestamp of the item, i.e. the end of an interval or the time of an
+ * event (long),</li>
+ * <li>and the encoded item as payload, see {@link ItemCodec}.</li>
+ * </ul>
+ * Records of the kind {@link #KIND_DICTIONARY} add entries to the
+ * {@link StringDictionary} of the segment. They do not count as items and
+ * hence have no sequence number. Segments of the first version contain no
+ * dictionary records, and their items are Java serialized.
+ */
+class LogSegment {
+
+	/** Items that are neither intervals nor events. */
+	static final byte KIND_OTHER = 0;
+
+	/** Intervals. */
+	static final byte KIND_INTERVAL = 1;
+
+	/** Events. */
+	static final byte KIND_EVENT = 2;
+
+	/** New entries of the dictionary of the segment. */
+	private static final byte KIND_DICTIONARY = 3;
+
+	/** "WDLG" */
+	private static final int MAGIC = 0x57444C47;
+
+	/** The version of segments with Java serialized items. */
+	static final byte VERSION_SERIALIZED = 1;
+
+	/** The version new segments are written in. */
+	static final byte VERSION = 2;
+
+	static final int FILE_HEADER_SIZE = 5;
+
+	static final int RECORD_HEADER_SIZE = 17;
+
+	/** The number of record header bytes covered by the checksum. */
+	private static final int CHECKSUMMED_HEADER_SIZE = 9;
+
+	/** Receives the records of a segment during a scan. */
+	interface RecordVisitor {
+
+		/**
+		 * Called for every item record. The payload buffer is only valid
+		 * during the call.
+		 */
+		void visit(LogSegment segment, long sequence, byte kind,
+				long timestamp, ByteBuffer payload);
+	}
+
+	final File file;
+
+	final long baseSequence;
+
+	/** The version of the segment file format. */
+	byte version = VERSION;
+
+	/** The strings the items in this segment refer to. */
+	final StringDictionary dictionary = new StringDictionary();
+
+	/** The number of item records in the segment. */
+	int count;
+
+	/** The positions of the item records in the segment file. */
+	private int[] positions = new int[16];
+
+	/** The length of the segment file in bytes. */
+	long length;
+
+	/** The channel records are appended to, if this is the active segment. */
+	private FileChannel appendChannel;
+
+	/** The mapping the records are read from, once they have been read. */
+	private MappedByteBuffer mapping;
+
+	private final ByteBuffer recordHeader = ByteBuffer
+			.allocate(RECORD_HEADER_SIZE);
+
+	private LogSegment(File file, long baseSequence) {
+		this.file = file;
+		this.baseSequence = baseSequence;
+	}
+
+	/** Creates a new, empty segment file. */
+	static LogSegment create(File file, long baseSequence) throws IOException {
+		LogSegment segment = new LogSegment(file, baseSequence);
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			randomAccessFile.setLength(0);
+			randomAccessFile.writeInt(MAGIC);
+			randomAccessFile.writeByte(VERSION);
+		} finally {
+			randomAccessFile.close();
+		}
+		segment.length = FILE_HEADER_SIZE;
+		return segment;
+	}
+
+	/**
+	 * Opens an existing segment file and counts its records. Only the tail
+	 * of the log can contain a record that was partially written when the IDE
+	 * crashed, as every other segment was synced before the next one was
+	 * started. So only the records of the tail segment are validated, through
+	 * a buffer of the size of one record, and everything after the last valid
+	 * record is cut off. The record headers of the other segments are walked
+	 * on the mapping that is then kept for reading them.
+	 *
+	 * @return the segment, or <code>null</code> if the file is not a segment
+	 *         of a known version.
+	 */
+	static LogSegment open(File file, long baseSequence, boolean isTail)
+			throws IOException {
+		LogSegment segment = new LogSegment(file, baseSequence);
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file,
+				isTail ? "rw" : "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			long fileLength = channel.size();
+			if (fileLength < FILE_HEADER_SIZE) {
+				randomAccessFile.close();
+				return create(file, baseSequence);
+			}
+			ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER_SIZE);
+			readFully(channel, fileHeader, 0);
+			segment.version = fileHeader.get(4);
+			if (fileHeader.getInt(0) != MAGIC
+					|| (segment.version != VERSION
+							&& segment.version != VERSION_SERIALIZED)) {
+				return null;
+			}
+			if (isTail) {
+				segment.length = segment.validateRecords(channel, fileLength);
+			} else {
+				segment.length = fileLength;
+				segment.length = segment.walkRecords(segment.map());
+			}
+			if (fileLength > segment.length) {
+				WatchDogLogger.getInstance().logSevere(
+						(isTail ? "Cut off " : "Ignoring ")
+								+ (fileLength - segment.length)
+								+ " invalid bytes of event log segment " + file);
+				if (isTail) {
+					channel.truncate(segment.length);
+				}
+			}
+		} finally {
+			randomAccessFile.close();
+		}
+		return segment;
+	}
+
+	/**
+	 * Counts the records and reads the dictionary of a sealed segment from
+	 * its mapping, without checking the payloads.
+	 *
+	 * @return the length of the valid records.
+	 */
+	private long walkRecords(ByteBuffer buffer) {
+		int limit = buffer.limit();
+		int position = FILE_HEADER_SIZE;
+		while (position + RECORD_HEADER_SIZE <= limit) {
+			int payloadLength = buffer.getInt(position);
+			if (payloadLength < 0
+					|| payloadLength > limit - position - RECORD_HEADER_SIZE) {
+				break;
+			}
+			if (buffer.get(position + 8) != KIND_DICTIONARY) {
+				addRecord(position);
+			} else if (!readDictionary(payloadOf(buffer, position,
+					payloadLength))) {
+				break;
+			}
+			position += RECORD_HEADER_SIZE + payloadLength;
+		}
+		return position;
+	}
+
+	/**
+	 * Counts the records and reads the dictionary of the tail segment, and
+	 * checks the checksum of every record.
+	 *
+	 * @return the length of the valid records.
+	 */
+	private long validateRecords(FileChannel channel, long fileLength)
+			throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		ByteBuffer payload = ByteBuffer.allocate(1024);
+		CRC32 crc = new CRC32();
+		long position = FILE_HEADER_SIZE;
+		while (position + RECORD_HEADER_SIZE <= fileLength) {
+			header.clear();
+			readFully(channel, header, position);
+			int payloadLength = header.getInt(0);
+			if (payloadLength < 0
+					|| payloadLength > fileLength - position
+							- RECORD_HEADER_SIZE) {
+				break;
+			}
+			if (payload.capacity() < payloadLength) {
+				payload = ByteBuffer.allocate(Math.max(payloadLength,
+						2 * payload.capacity()));
+			}
+			payload.clear();
+			payload.limit(payloadLength);
+			readFully(channel, payload, position + RECORD_HEADER_SIZE);
+			crc.reset();
+			crc.update(header.array(), 8, CHECKSUMMED_HEADER_SIZE);
+			crc.update(payload.array(), 0, payloadLength);
+			if ((int) crc.getValue() != header.getInt(4)) {
+				break;
+			}
+			payload.flip();
+			if (header.get(8) != KIND_DICTIONARY) {
+				addRecord(position);
+			} else if (!readDictionary(payload)) {
+				break;
+			}
+			position += RECORD_HEADER_SIZE + payloadLength;
+		}
+		return position;
+	}
+
+	/** Adds the item record at the given position. */
+	private void addRecord(long position) {
+		if (count == positions.length) {
+			positions = Arrays.copyOf(positions, 2 * count);
+		}
+		positions[count++] = (int) position;
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer,
+			long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of segment");
+			}
+		}
+	}
+
+	private static ByteBuffer payloadOf(ByteBuffer buffer, int position,
+			int payloadLength) {
+		ByteBuffer payload = buffer.duplicate();
+		payload.limit(position + RECORD_HEADER_SIZE + payloadLength);
+		payload.position(position + RECORD_HEADER_SIZE);
+		return payload.slice();
+	}
+
+	private boolean readDictionary(ByteBuffer payload) {
+		try {
+			dictionary.readEntries(payload);
+			return true;
+		} catch (IOException exception) {
+			WatchDogLogger.getInstance().logSevere(exception);
+		} catch (BufferUnderflowException exception) {
+			WatchDogLogger.getInstance().logSevere(exception);
+		}
+		return false;
+	}
+
+	/**
+	 * @return the mapping of the segment file, which is only renewed if
+	 *         records have been appended since it was created, i.e. never for
+	 *         a sealed segment.
+	 */
+	private MappedByteBuffer map() throws IOException {
+		if (mapping == null || mapping.capacity() < length) {
+			RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+			try {
+				mapping = randomAccessFile.getChannel().map(MapMode.READ_ONLY,
+						0, length);
+			} finally {
+				randomAccessFile.close();
+			}
+		}
+		return mapping;
+	}
+
+	/**
+	 * Drops the mapping of the segment file, e.g. before the file is deleted.
+	 * The file is only unmapped once the mapping is garbage collected.
+	 */
+	void releaseMapping() {
+		mapping = null;
+	}
+
+	/** @return the sequence number after the last record of this segment. */
+	long getEndSequence() {
+		return baseSequence + count;
+	}
+
+	/** Prepares this segment for appending records. */
+	void openForAppend() throws IOException {
+		appendChannel = new RandomAccessFile(file, "rw").getChannel();
+		appendChannel.position(length);
+	}
+
+	/**
+	 * Appends an item record, preceded by a record with the entries that have
+	 * been added to the dictionary since the last append. The records are not
+	 * necessarily on disk yet.
+	 */
+	void append(byte kind, long timestamp, byte[] payload) throws IOException {
+		if (dictionary.hasUnwrittenEntries()) {
+			writeRecord(KIND_DICTIONARY, 0, dictionary.writeNewEntries());
+		}
+		long position = length;
+		writeRecord(kind, timestamp, payload);
+		addRecord(position);
+	}
+
+	private void writeRecord(byte kind, long timestamp, byte[] payload)
+			throws IOException {
+		CRC32 crc = new CRC32();
+		recordHeader.clear();
+		recordHeader.putInt(payload.length);
+		recordHeader.putInt(0);
+		recordHeader.put(kind);
+		recordHeader.putLong(timestamp);
+		crc.update(recordHeader.array(), 8, CHECKSUMMED_HEADER_SIZE);
+		crc.update(payload);
+		recordHeader.putInt(4, (int) crc.getValue());
+		recordHeader.flip();
+
+		ByteBuffer[] record = new ByteBuffer[] { recordHeader,
+				ByteBuffer.wrap(payload) };
+		long recordLength = RECORD_HEADER_SIZE + payload.length;
+		long written = 0;
+		while (written < recordLength) {
+			written += appendChannel.write(record);
+		}
+		length += recordLength;
+	}
+
+	/** Syncs all appended records to disk. */
+	void force() throws IOException {
+		if (appendChannel != null) {
+			appendChannel.force(false);
+		}
+	}
+
+	/** Stops appending to this segment. */
+	void close() throws IOException {
+		if (appendChannel != null) {
+			appendChannel.close();
+			appendChannel = null;
+		}
+	}
+
+	/**
+	 * Hands all item records from the given sequence number on to the visitor.
+	 * Records before it are skipped, without being read.
+	 */
+	void scan(long fromSequence, RecordVisitor visitor) throws IOException {
+		long endSequence = getEndSequence();
+		for (long sequence = Math.max(fromSequence, baseSequence); sequence < endSequence; sequence++) {
+			read(sequence, visitor);
+		}
+	}
+
+	/** Hands the item record with the given sequence number to the visitor. */
+	void read(long sequence, RecordVisitor visitor) throws IOException {
+		MappedByteBuffer buffer = map();
+		int position = positionOf(sequence);
+		visitor.visit(this, sequence, buffer.get(position + 8),
+				buffer.getLong(position + 9),
+				payloadOf(buffer, position, buffer.getInt(position)));
+	}
+
+	/** @return the timestamp of the item with the given sequence number. */
+	long getTimestamp(long sequence) throws IOException {
+		return map().getLong(positionOf(sequence) + 9);
+	}
+
+	/** @return the kind of the item with the given sequence number. */
+	byte getKind(long sequence) throws IOException {
+		return map().get(positionOf(sequence) + 8);
+	}
+
+	private int positionOf(long sequence) {
+		if (sequence < baseSequence || sequence >= getEndSequence()) {
+			throw new IndexOutOfBoundsException("No item " + sequence
+					+ " in segment " + file);
+		}
+		return positions[(int) (sequence - baseSequence)];
+	}
+}
@@ -0,0 +1,263 @@
+package nl.tudelft.watchdog.core.logic.storage;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import nl.tudelft.watchdog.core.util.WatchDogLogger;
+
+/**
+ * A write-behind stage for {@link PersisterBase}s. Items saved to a persister
+ * that is attached to this worker are put in a bounded, lock-free queue and
+ * written to disk by a single background thread, so that the IDE's listener
+ * threads never block on disk I/O.
+ *
+ * When the queue is full, the saving thread waits for at most
+ * {@value #BACK_PRESSURE_WAIT} milliseconds for the worker to catch up. If it
+ * does not, the item is dropped and counted in {@link #getDroppedItemCount()}.
+ */
+public class PersistenceWorker {
+
+	/** The default maximum number of items waiting to be persisted. */
+	public static final int DEFAULT_CAPACITY = 10000;
+
+	/**
+	 * The maximum time in milliseconds a saving thread waits when the queue is
+	 * full.
+	 */
+	private static final long BACK_PRESSURE_WAIT = 50;
+
+	/** The default time in milliseconds to wait for the queue to drain. */
+	public static final long DEFAULT_DRAIN_TIMEOUT = 5000;
+
+	private final int capacity;
+
+	private final Queue<PendingSave> queue = new ConcurrentLinkedQueue<PendingSave>();
+
+	/** The number of items in the queue, which we cannot ask it for in O(1). */
+	private final AtomicInteger queueSize = new AtomicInteger();
+
+	private final AtomicLong droppedItems = new AtomicLong();
+
+	/** The number of items that have been handed to this worker. */
+	private final AtomicLong enqueuedItems = new AtomicLong();
+
+	/** The number of items the worker has written. */
+	private final AtomicLong processedItems = new AtomicLong();
+
+	private final Object drainLock = new Object();
+
+	/** The number of threads that are currently handing items over. */
+	private final AtomicInteger enqueuingThreads = new AtomicInteger();
+
+	private final Thread workerThread;
+
+	/** Whether new items are accepted. */
+	private volatile boolean isRunning = true;
+
+	/** Whether the worker thread has been told to stop. */
+	private volatile boolean isStopped;
+
+	/** Constructor with the {@link #DEFAULT_CAPACITY}. */
+	public PersistenceWorker() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/** Constructor. Immediately starts the worker thread. */
+	public PersistenceWorker(int capacity) {
+		this.capacity = capacity;
+		workerThread = new Thread(new Worker(), "WatchDog Persistence");
+		workerThread.setDaemon(true);
+		workerThread.start();
+	}
+
+	/**
+	 * Hands the item over to the worker, which saves it to the given
+	 * persister. Does not block on disk I/O.
+	 *
+	 * @return <code>true</code> if the item was queued, <code>false</code> if
+	 *         it was dropped because the queue remained full or the worker has
+	 *         been shut down.
+	 */
+	public boolean enqueue(PersisterBase persister, WatchDogItem item) {
+		return enqueue(new PendingSave(persister, item, null));
+	}
+
+	/**
+	 * Hands the items over to the worker, which saves them to the given
+	 * persister in one transaction. The batch takes up a single place in the
+	 * queue.
+	 *
+	 * @return <code>true</code> if the items were queued, <code>false</code>
+	 *         if they were dropped.
+	 */
+	public boolean enqueueAll(PersisterBase persister,
+			List<? extends WatchDogItem> items) {
+		return enqueue(new PendingSave(persister, null, items));
+	}
+
+	private boolean enqueue(PendingSave pendingSave) {
+		enqueuingThreads.incrementAndGet();
+		try {
+			if (!isRunning) {
+				return drop();
+			}
+
+			if (queueSize.incrementAndGet() > capacity) {
+				queueSize.decrementAndGet();
+				if (!awaitFreeCapacity()) {
+					return drop();
+				}
+				queueSize.incrementAndGet();
+			}
+			enqueuedItems.incrementAndGet();
+			queue.offer(pendingSave);
+			LockSupport.unpark(workerThread);
+			return true;
+		} finally {
+			enqueuingThreads.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Applies back-pressure to the saving thread by waiting briefly for the
+	 * worker to make room.
+	 */
+	private boolean awaitFreeCapacity() {
+		long deadline = System.nanoTime()
+				+ TimeUnit.MILLISECONDS.toNanos(BACK_PRESSURE_WAIT);
+		LockSupport.unpark(workerThread);
+		while (queueSize.get() >= capacity) {
+			if (System.nanoTime() > deadline) {
+				return false;
+			}
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+		}
+		return true;
+	}
+
+	private boolean drop() {
+		long dropped = droppedItems.incrementAndGet();
+		if (dropped == 1 || dropped % 1000 == 0) {
+			WatchDogLogger.getInstance().logSevere(
+					"Persistence queue full, dropped " + dropped
+							+ " items so far.");
+		}
+		return false;
+	}
+
+	/** @return whether the calling thread is this worker's thread. */
+	public boolean isWorkerThread() {
+		return Thread.currentThread() == workerThread;
+	}
+
+	/** @return the number of items waiting to be persisted. */
+	public int getQueueSize() {
+		return queueSize.get();
+	}
+
+	/** @return the number of items that were dropped because of a full queue. */
+	public long getDroppedItemCount() {
+		return droppedItems.get();
+	}
+
+	/**
+	 * Waits until all items that were queued before this call have been
+	 * written, or until the timeout has passed.
+	 *
+	 * @return <code>true</code> if the queue was drained in time.
+	 */
+	public boolean drain(long timeoutInMilliseconds) {
+		if (isWorkerThread()) {
+			return false;
+		}
+		long target = enqueuedItems.get();
+		long deadline = System.currentTimeMillis() + timeoutInMilliseconds;
+		synchronized (drainLock) {
+			while (processedItems.get() < target) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0 || !workerThread.isAlive()) {
+					return false;
+				}
+				LockSupport.unpark(workerThread);
+				try {
+					drainLock.wait(Math.min(remaining, 100));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Stops accepting items, drains the queue within the
+	 * {@link #DEFAULT_DRAIN_TIMEOUT} and stops the worker. Items saved from
+	 * now on are dropped.
+	 */
+	public void shutdown() {
+		isRunning = false;
+		// threads that saw the worker running are still allowed to queue
+		while (enqueuingThreads.get() > 0) {
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+		}
+		if (!drain(DEFAULT_DRAIN_TIMEOUT)) {
+			WatchDogLogger.getInstance().logSevere(
+					"Could not persist " + getQueueSize()
+							+ " items on shutdown.");
+		}
+		isStopped = true;
+		LockSupport.unpark(workerThread);
+	}
+
+	/** The work loop of the single persistence thread. */
+	private class Worker implements Runnable {
+
+		@Override
+		public void run() {
+			while (!isStopped) {
+				PendingSave pendingSave = queue.poll();
+				if (pendingSave == null) {
+					LockSupport.park(this);
+					continue;
+				}
+				queueSize.decrementAndGet();
+				try {
+					if (pendingSave.items != null) {
+						pendingSave.persister.saveAll(pendingSave.items);
+					} else {
+						pendingSave.persister.save(pendingSave.item);
+					}
+				} catch (RuntimeException exception) {
+					WatchDogLogger.getInstance().logSevere(exception);
+				} finally {
+					processedItems.incrementAndGet();
+				}
+				if (queue.isEmpty()) {
+					synchronized (drainLock) {
+						drainLock.notifyAll();
+					}
+				}
+			}
+		}
+	}
+
+	/** An item or a batch of items waiting to be saved to its persister. */
+	private static class PendingSave {
+		private final PersisterBase persister;
+		private final WatchDogItem item;
+		private final List<? extends WatchDogItem> items;
+
+		private PendingSave(PersisterBase persister, WatchDogItem item,
+				List<? extends WatchDogItem> items) {
+			this.persister = persister;
+			this.item = item;
+			this.items = items;
+		}
+	}
+}
@@ -3,19 +3,36 @@ package nl.tudelft.watchdog.core.logic.storage;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
 
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
 
+import nl.tudelft.watchdog.core.logic.storage.RetentionCompactor.Budget;
 import nl.tudelft.watchdog.core.util.WatchDogLogger;
+import nl.tudelft.watchdog.core.util.WatchDogScheduler;
 
 /**
  * Support for storing and querying {@link WatchDogItem}s. The items are
  * saved with a long key, thus the maximum number of items that any single
  * WatchDog instance can record before the database breaks is
  * {@link Long#MAX_VALUE}.
+ * 
+ * By default, every saved item is committed to disk immediately. In group
+ * commit mode (see {@link #enableGroupCommit(int, long)}), saved items are
+ * buffered and committed together once a number of items has been reached or
+ * a time window has passed, whichever happens first. When a
+ * {@link PersistenceWorker} is attached, saving only queues the item and the
+ * worker writes it to disk in the background.
  */
 public class PersisterBase {
 
@@ -31,6 +48,38 @@ public class PersisterBase {
 
 	protected File databaseFile;
 
+	/** The default number of items after which a group commit is forced. */
+	public static final int DEFAULT_GROUP_COMMIT_ITEMS = 100;
+
+	/**
+	 * The default time in milliseconds after which saved, but uncommitted
+	 * items are committed in group commit mode.
+	 */
+	public static final long DEFAULT_GROUP_COMMIT_WINDOW = 10 * 1000;
+
+	/**
+	 * The number of saved items after which a commit is executed. 1 means that
+	 * every item is committed immediately.
+	 */
+	private int groupCommitItems = 1;
+
+	/**
+	 * The maximum time in milliseconds a saved item stays uncommitted in group
+	 * commit mode.
+	 */
+	private long groupCommitWindow;
+
+	/** The number of items saved since the last commit. */
+	private int uncommittedItems;
+
+	/**
+	 * The group commit scheduled for when the commit window expires, if any.
+	 */
+	private ScheduledFuture<?> groupCommitTask;
+
+	/** The write-behind worker saved items are handed to, if any. */
+	private volatile PersistenceWorker persistenceWorker;
+
 	/**
 	 * Create a new persister. If file points to an existing database, it will
 	 * be reused.
@@ -60,6 +109,51 @@ public class PersisterBase {
 		}
 	}
 
+	/**
+	 * Constructor for persisters that do not store their items in a MapDB
+	 * database. These have to override all methods that access the database.
+	 */
+	protected PersisterBase() {
+	}
+
+	/**
+	 * Enables group commit mode with the {@link #DEFAULT_GROUP_COMMIT_ITEMS}
+	 * and {@link #DEFAULT_GROUP_COMMIT_WINDOW}.
+	 */
+	public void enableGroupCommit() {
+		enableGroupCommit(DEFAULT_GROUP_COMMIT_ITEMS,
+				DEFAULT_GROUP_COMMIT_WINDOW);
+	}
+
+	/**
+	 * Enables group commit mode. Instead of committing every saved item to
+	 * disk, items are committed once itemThreshold items are uncommitted, or
+	 * at the latest windowInMilliseconds after the first uncommitted item was
+	 * saved. Items saved in the meantime are lost in case of a crash, see
+	 * {@link #getUncommittedItemCount()}.
+	 */
+	public synchronized void enableGroupCommit(int itemThreshold,
+			long windowInMilliseconds) {
+		this.groupCommitItems = Math.max(1, itemThreshold);
+		this.groupCommitWindow = windowInMilliseconds;
+	}
+
+	/**
+	 * @return the number of saved items that have not been committed to disk
+	 *         yet, i.e. the number of items that could be lost in a crash.
+	 */
+	public synchronized int getUncommittedItemCount() {
+		return uncommittedItems;
+	}
+
+	/**
+	 * Attaches the write-behind worker that all subsequently saved items are
+	 * handed to. <code>null</code> switches back to saving synchronously.
+	 */
+	public void setPersistenceWorker(PersistenceWorker persistenceWorker) {
+		this.persistenceWorker = persistenceWorker;
+	}
+
 	protected void replaceClassLoader() {
 	}
 
@@ -113,7 +207,7 @@ public class PersisterBase {
 		if (!auxiliaryFile.delete()) {
 			FileOutputStream fileOutputStream = null;
 			try {
-				fileOutputStream = new FileOutputStream(databaseFile);
+				fileOutputStream = new FileOutputStream(auxiliaryFile);
 				fileOutputStream.write(new byte[] {});
 			} catch (IOException exception) {
 				WatchDogLogger.getInstance().logSevere(exception);
@@ -137,16 +231,118 @@ public class PersisterBase {
 	}
 
 	/**
-	 * Saves one item to persistent storage
+	 * @return an iterator over the items of the given type, which reads them
+	 *         lazily, so that they need not be in memory all at once. Items
+	 *         may be removed from the persister while iterating.
+	 */
+	public <T extends WatchDogItem> Iterator<T> iterateItems(final Class<T> type) {
+		final Iterator<WatchDogItem> items = readItems().iterator();
+		return new Iterator<T>() {
+
+			private T nextItem;
+
+			@Override
+			public boolean hasNext() {
+				if (nextItem != null) {
+					return true;
+				}
+				replaceClassLoader();
+				try {
+					while (items.hasNext()) {
+						WatchDogItem item = items.next();
+						if (type.isInstance(item)) {
+							nextItem = type.cast(item);
+							return true;
+						}
+					}
+				} finally {
+					resetOldClassLoader();
+				}
+				return false;
+			}
+
+			@Override
+			public T next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				T item = nextItem;
+				nextItem = null;
+				return item;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Reads the items of the given type whose timestamps, i.e. the end of an
+	 * interval or the time of an event, lie between from and to, both
+	 * inclusive. The database stores the items without a key to index them
+	 * by, so its items are scanned and only the matching ones are kept.
+	 *
+	 * @return the items, ordered by their timestamps.
+	 */
+	public synchronized <T extends WatchDogItem> List<T> readItems(Date from,
+			Date to, Class<T> type) {
+		List<T> items = new ArrayList<T>();
+		long fromTime = from.getTime();
+		long toTime = to.getTime();
+		replaceClassLoader();
+		try {
+			for (WatchDogItem item : readItems()) {
+				long timestamp = TimestampIndex.timestampOf(item);
+				if (type.isInstance(item) && timestamp >= fromTime
+						&& timestamp <= toTime) {
+					items.add(type.cast(item));
+				}
+			}
+		} finally {
+			resetOldClassLoader();
+		}
+		Collections.sort(items, new Comparator<WatchDogItem>() {
+
+			@Override
+			public int compare(WatchDogItem first, WatchDogItem second) {
+				return Long.compare(TimestampIndex.timestampOf(first),
+						TimestampIndex.timestampOf(second));
+			}
+		});
+		return items;
+	}
+
+	/**
+	 * Saves one item to persistent storage. In group commit mode, the item is
+	 * only committed to disk together with other items. If a
+	 * {@link PersistenceWorker} is attached, the item is saved asynchronously.
 	 */
 	public void save(WatchDogItem item) {
+		PersistenceWorker worker = persistenceWorker;
+		if (worker != null && !worker.isWorkerThread()) {
+			worker.enqueue(this, item);
+			return;
+		}
+		store(item);
+	}
+
+	/** Writes the item to the database. */
+	protected synchronized void store(WatchDogItem item) {
 		try {
 			replaceClassLoader();
 			set.add(item);
-			// persist changes to disk
-			database.commit();
+			uncommittedItems++;
+			if (uncommittedItems >= groupCommitItems) {
+				// persist changes to disk
+				commit();
+			} else {
+				scheduleGroupCommit();
+			}
 			resetOldClassLoader();
 		} catch (Error error) {
+			uncommittedItems = 0;
 			try {
 				recreateDatabase(databaseFile);
 			} catch (Error innerError) {
@@ -155,18 +351,161 @@ public class PersisterBase {
 		}
 	}
 
+	/**
+	 * Saves all items to persistent storage at once, i.e. in one transaction.
+	 * If a {@link PersistenceWorker} is attached, they are handed to it as one
+	 * batch.
+	 */
+	public void saveAll(List<? extends WatchDogItem> items) {
+		if (items.isEmpty()) {
+			return;
+		}
+		PersistenceWorker worker = persistenceWorker;
+		if (worker != null && !worker.isWorkerThread()) {
+			worker.enqueueAll(this, items);
+			return;
+		}
+		storeAll(items);
+	}
+
+	/** Writes the items to the database, committing at most once. */
+	protected synchronized void storeAll(List<? extends WatchDogItem> items) {
+		try {
+			replaceClassLoader();
+			set.addAll(items);
+			uncommittedItems += items.size();
+			if (uncommittedItems >= groupCommitItems) {
+				commit();
+			} else {
+				scheduleGroupCommit();
+			}
+			resetOldClassLoader();
+		} catch (Error error) {
+			uncommittedItems = 0;
+			try {
+				recreateDatabase(databaseFile);
+			} catch (Error innerError) {
+				WatchDogLogger.getInstance().logSevere(innerError);
+			}
+		}
+	}
+
+	/** Commits all buffered items to disk, if there are any. */
+	public synchronized void flush() {
+		if (uncommittedItems == 0 || database == null || database.isClosed()) {
+			return;
+		}
+		try {
+			replaceClassLoader();
+			commit();
+			resetOldClassLoader();
+		} catch (Error error) {
+			WatchDogLogger.getInstance().logSevere(error);
+		}
+	}
+
+	private void commit() {
+		database.commit();
+		uncommittedItems = 0;
+		if (groupCommitTask != null) {
+			groupCommitTask.cancel(false);
+			groupCommitTask = null;
+		}
+	}
+
+	/**
+	 * Schedules a commit at the end of the commit window, unless one is
+	 * already pending.
+	 */
+	private void scheduleGroupCommit() {
+		if (groupCommitTask != null) {
+			return;
+		}
+		// committing may block on the disk or the lock, so it must not run
+		// on the scheduler thread
+		groupCommitTask = WatchDogScheduler.scheduleCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				flush();
+			}
+		}, groupCommitWindow);
+	}
+
 	/**
 	 * Removes the items from the database.
 	 */
-	public void removeItems(List<WatchDogItem> itemsToRemove) {
+	public synchronized void removeItems(List<WatchDogItem> itemsToRemove) {
 		replaceClassLoader();
 		for (WatchDogItem item : itemsToRemove) {
 			set.remove(item);
 		}
-		database.commit();
+		commit();
 		resetOldClassLoader();
 	}
 
+	/**
+	 * Removes the oldest items of every kind, as long as they are older than
+	 * the maximum age of their budget or there are more than its maximum
+	 * number of them, and commits once.
+	 *
+	 * @return the number of removed items.
+	 */
+	synchronized int removeOldestItems(
+			Map<Class<? extends WatchDogItem>, Budget> budgets, long now) {
+		List<WatchDogItem> itemsToRemove = new ArrayList<WatchDogItem>();
+		for (Map.Entry<Class<? extends WatchDogItem>, Budget> entry : budgets
+				.entrySet()) {
+			List<? extends WatchDogItem> items = readItems(new Date(
+					Long.MIN_VALUE), new Date(Long.MAX_VALUE), entry.getKey());
+			long cutoff = now - entry.getValue().maxAge;
+			int expiredItems = 0;
+			while (expiredItems < items.size()
+					&& TimestampIndex.timestampOf(items.get(expiredItems)) < cutoff) {
+				expiredItems++;
+			}
+			itemsToRemove.addAll(items.subList(0, Math.max(expiredItems,
+					items.size() - entry.getValue().maxItems)));
+		}
+		if (!itemsToRemove.isEmpty()) {
+			removeItems(itemsToRemove);
+		}
+		return itemsToRemove.size();
+	}
+
+	/**
+	 * Compacts the database file, so that the space of removed items is given
+	 * back to the file system.
+	 */
+	public synchronized void compact() {
+		if (database == null || database.isClosed()) {
+			return;
+		}
+		try {
+			replaceClassLoader();
+			database.compact();
+		} catch (Error error) {
+			WatchDogLogger.getInstance().logSevere(error);
+		} finally {
+			resetOldClassLoader();
+		}
+	}
+
+	/** @return the size of all files of the database in bytes. */
+	public long getStorageSize() {
+		return new File(databaseFile.getPath()).length()
+				+ new File(databaseFile + ".p").length()
+				+ new File(databaseFile + ".t").length();
+	}
+
+	/**
+	 * @return whether an item saved to this persister is also stored in the
+	 *         other persister, so that it does not need to be saved twice.
+	 */
+	public boolean sharesStorageWith(PersisterBase other) {
+		return this == other;
+	}
+
 	public boolean isClosed() {
 		return isClosed;
 	}
@@ -185,10 +524,11 @@ public class PersisterBase {
 	}
 
 	/**
-	 * Properly close the database. Note: The database should be ACID even when
-	 * not properly closed.
+	 * Properly close the database, committing all buffered items beforehand.
+	 * Note: The database should be ACID even when not properly closed.
 	 */
-	public void closeDatabase() {
+	public synchronized void closeDatabase() {
+		flush();
 		if (database != null && !database.isClosed()) {
 			replaceClassLoader();
 			database.close();
@@ -198,14 +538,23 @@ public class PersisterBase {
 		resetOldClassLoader();
 	}
 
+	/**
+	 * Closes the database and deletes its files, e.g. after its items have
+	 * been migrated to another storage.
+	 */
+	public synchronized void closeAndDeleteDatabase() {
+		closeDatabase();
+		deleteDatabaseFile();
+	}
+
 	/**
 	 * Clears the database on the computer and resets it.
 	 */
-	public void clearAndResetMap() {
+	public synchronized void clearAndResetMap() {
 		if (database != null && !database.isClosed()) {
 			replaceClassLoader();
 			database.delete(COLLECTION);
-			database.commit();
+			commit();
 			resetOldClassLoader();
 			set = createSet();
 		}
@@ -0,0 +1,148 @@
+package nl.tudelft.watchdog.core.logic.storage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+import nl.tudelft.watchdog.core.logic.event.eventtypes.EventBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalBase;
+import nl.tudelft.watchdog.core.util.WatchDogLogger;
+import nl.tudelft.watchdog.core.util.WatchDogScheduler;
+
+/**
+ * Keeps a persister within a time and a size budget per kind of item, by
+ * periodically removing the items that are older than the maximum age and the
+ * oldest items beyond the maximum number of items. The items of all kinds are
+ * removed in one go, which an {@link EventLogConsumer} does by their sequence
+ * numbers without decoding them, and the storage is compacted afterwards. The
+ * compactor runs on the scheduler's worker thread, never on the UI thread.
+ *
+ * Only use it for persisters whose items are not needed anymore after they
+ * expire, i.e. not for the items that still have to be transferred. As the
+ * oldest items of one kind may be newer than items of another kind, it must
+ * not be used for a windowed {@link EventLogConsumer}, which would drop those,
+ * too.
+ */
+public class RetentionCompactor implements Runnable {
+
+	/**
+	 * The default maximum age of items in milliseconds, the longest period the
+	 * statistics view shows.
+	 */
+	public static final long DEFAULT_MAX_AGE = 10 * 60 * 60 * 1000;
+
+	/** The default maximum number of items per kind. */
+	public static final int DEFAULT_MAX_ITEMS = 50000;
+
+	/** The default time in milliseconds between two compactions. */
+	public static final long DEFAULT_PERIOD = 15 * 60 * 1000;
+
+	/** The time in milliseconds after starting before the first compaction. */
+	private static final long INITIAL_DELAY = 60 * 1000;
+
+	private final PersisterBase persister;
+
+	private final Map<Class<? extends WatchDogItem>, Budget> budgets = new LinkedHashMap<Class<? extends WatchDogItem>, Budget>();
+
+	private ScheduledFuture<?> compactionTask;
+
+	private volatile boolean isStopped;
+
+	private long removedItems;
+
+	private long reclaimedBytes;
+
+	/**
+	 * Constructor with the {@link #DEFAULT_MAX_AGE} and the
+	 * {@link #DEFAULT_MAX_ITEMS} for intervals and events.
+	 */
+	public RetentionCompactor(PersisterBase persister) {
+		this.persister = persister;
+		setBudget(IntervalBase.class, DEFAULT_MAX_AGE, DEFAULT_MAX_ITEMS);
+		setBudget(EventBase.class, DEFAULT_MAX_AGE, DEFAULT_MAX_ITEMS);
+	}
+
+	/**
+	 * Sets the maximum age in milliseconds and the maximum number of the
+	 * items of the given kind.
+	 */
+	public synchronized void setBudget(Class<? extends WatchDogItem> kind,
+			long maxAge, int maxItems) {
+		budgets.put(kind, new Budget(maxAge, maxItems));
+	}
+
+	/** Compacts every {@link #DEFAULT_PERIOD} from now on. */
+	public synchronized void start() {
+		isStopped = false;
+		if (compactionTask == null) {
+			compactionTask = WatchDogScheduler.scheduleBlockingAtFixedRate(
+					this, INITIAL_DELAY, DEFAULT_PERIOD);
+		}
+	}
+
+	/**
+	 * Stops further compactions. As compacting holds the lock of this
+	 * compactor, a running compaction is finished before this returns.
+	 */
+	public synchronized void stop() {
+		isStopped = true;
+		if (compactionTask != null) {
+			compactionTask.cancel(false);
+			compactionTask = null;
+		}
+	}
+
+	@Override
+	public void run() {
+		compact();
+	}
+
+	/**
+	 * Removes all items beyond their budgets and compacts the storage.
+	 *
+	 * @return the number of bytes reclaimed.
+	 */
+	public synchronized long compact() {
+		if (isStopped || persister.isClosed()) {
+			return 0;
+		}
+		long sizeBefore = persister.getStorageSize();
+		int removed = persister.removeOldestItems(budgets,
+				System.currentTimeMillis());
+		if (removed == 0) {
+			return 0;
+		}
+
+		persister.compact();
+		long reclaimed = Math.max(0, sizeBefore - persister.getStorageSize());
+		removedItems += removed;
+		reclaimedBytes += reclaimed;
+		WatchDogLogger.getInstance().logInfo(
+				"Removed " + removed + " expired items and reclaimed "
+						+ reclaimed + " bytes.");
+		return reclaimed;
+	}
+
+	/** @return the number of items removed so far. */
+	public synchronized long getRemovedItemCount() {
+		return removedItems;
+	}
+
+	/** @return the number of bytes reclaimed so far. */
+	public synchronized long getReclaimedBytes() {
+		return reclaimedBytes;
+	}
+
+	/** The maximum age and number of the items of one kind. */
+	static class Budget {
+
+		final long maxAge;
+
+		final int maxItems;
+
+		private Budget(long maxAge, int maxItems) {
+			this.maxAge = maxAge;
+			this.maxItems = maxItems;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package nl.tudelft.watchdog.core.logic.storage;
+
+/**
+ * The storages WatchDog can keep its items in. The backend is chosen at
+ * startup with the system property {@value #SYSTEM_PROPERTY}, e.g.
+ * <code>-Dwatchdog.storage=mapdb</code>. When the backend changes, the items
+ * are moved to the new storage once, see {@link StorageMigration}.
+ */
+public enum StorageBackend {
+
+	/**
+	 * Two MapDB databases, one for the items to transfer and one for the
+	 * statistics.
+	 */
+	MAPDB,
+
+	/** One memory mapped {@link EventLog}, read by two consumers. */
+	EVENT_LOG;
+
+	/** The system property to select the backend with. */
+	public static final String SYSTEM_PROPERTY = "watchdog.storage";
+
+	/**
+	 * @return the backend selected by the system property, by default the
+	 *         {@link #EVENT_LOG}.
+	 */
+	public static StorageBackend fromSystemProperty() {
+		String backend = System.getProperty(SYSTEM_PROPERTY);
+		if ("mapdb".equalsIgnoreCase(backend)) {
+			return MAPDB;
+		}
+		return EVENT_LOG;
+	}
+}
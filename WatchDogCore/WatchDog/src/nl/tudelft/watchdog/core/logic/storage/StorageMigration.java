@@ -0,0 +1,190 @@
+package nl.tudelft.watchdog.core.logic.storage;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import nl.tudelft.watchdog.core.util.WatchDogLogger;
+
+/**
+ * Moves the items between the two {@link StorageBackend}s, when WatchDog is
+ * started with another backend than before. The items are moved once and the
+ * old storage is deleted afterwards.
+ */
+public class StorageMigration {
+
+	/** The name of the marker file of a migration into the log. */
+	private static final String MARKER_FILE = "mapdb.migration";
+
+	/** The version of the marker file format. */
+	private static final int MARKER_FILE_VERSION = 1;
+
+	/** The items are being appended to the log. */
+	private static final int COPYING = 1;
+
+	/** All items have been appended, the databases are to be deleted. */
+	private static final int COPIED = 2;
+
+	/**
+	 * Appends the items of the two MapDB databases, one with the items to
+	 * transfer and one with the items for the statistics, to the log of the
+	 * given consumers, so that each consumer sees exactly the items of its
+	 * database. Afterwards, the databases are deleted.
+	 *
+	 * A marker file next to the log records how far the migration got, so
+	 * that a migration interrupted by a crash neither duplicates nor loses
+	 * items when it is run again: items appended by an interrupted copy are
+	 * consumed and copied anew, and a finished copy is not repeated.
+	 */
+	public static void fromMapDatabases(PersisterBase transferPersister,
+			PersisterBase statisticsPersister,
+			EventLogConsumer transferConsumer,
+			EventLogConsumer statisticsConsumer) {
+		EventLog log = transferConsumer.getLog();
+		File markerFile = new File(log.getDirectory(), MARKER_FILE);
+		long[] marker = readMarker(markerFile);
+		if (marker != null && marker[0] == COPYING) {
+			// nothing else has been appended since the interrupted copy
+			transferConsumer.consumeRange(marker[1], log.getNextSequence());
+			statisticsConsumer.consumeRange(marker[1], log.getNextSequence());
+		}
+		if (marker == null || marker[0] != COPIED
+				|| marker[1] != log.getNextSequence()) {
+			writeMarker(markerFile, COPYING, log.getNextSequence());
+			copyToLog(transferPersister, statisticsPersister,
+					transferConsumer, statisticsConsumer);
+			writeMarker(markerFile, COPIED, log.getNextSequence());
+		}
+
+		transferPersister.closeAndDeleteDatabase();
+		statisticsPersister.closeAndDeleteDatabase();
+		markerFile.delete();
+	}
+
+	private static void copyToLog(PersisterBase transferPersister,
+			PersisterBase statisticsPersister,
+			EventLogConsumer transferConsumer,
+			EventLogConsumer statisticsConsumer) {
+		Set<WatchDogItem> itemsToTransfer = new TreeSet<WatchDogItem>(
+				transferPersister.readItems());
+		Set<WatchDogItem> statisticsItems = new TreeSet<WatchDogItem>(
+				statisticsPersister.readItems());
+
+		// Items that are only left to transfer are older than the statistics
+		// window, so they go first. The statistics consumer can then skip
+		// them by moving its offset.
+		List<WatchDogItem> transferOnlyItems = new ArrayList<WatchDogItem>();
+		for (WatchDogItem item : itemsToTransfer) {
+			if (!statisticsItems.contains(item)) {
+				transferOnlyItems.add(item);
+				transferConsumer.store(item);
+			}
+		}
+		List<WatchDogItem> transferredItems = new ArrayList<WatchDogItem>();
+		for (WatchDogItem item : statisticsItems) {
+			if (!itemsToTransfer.contains(item)) {
+				transferredItems.add(item);
+			}
+			statisticsConsumer.store(item);
+		}
+		transferConsumer.flush();
+
+		if (!transferredItems.isEmpty()) {
+			transferConsumer.readItems();
+			transferConsumer.removeItems(transferredItems);
+		}
+		if (!transferOnlyItems.isEmpty()) {
+			statisticsConsumer.readItems();
+			statisticsConsumer.removeItems(transferOnlyItems);
+		}
+	}
+
+	/**
+	 * @return the state and the sequence number stored in the marker file, or
+	 *         <code>null</code> if there is no valid one.
+	 */
+	private static long[] readMarker(File markerFile) {
+		if (!markerFile.exists()) {
+			return null;
+		}
+		DataInputStream input = null;
+		try {
+			input = new DataInputStream(new FileInputStream(markerFile));
+			if (input.readInt() != MARKER_FILE_VERSION) {
+				return null;
+			}
+			return new long[] { input.readInt(), input.readLong() };
+		} catch (IOException exception) {
+			WatchDogLogger.getInstance().logSevere(exception);
+			return null;
+		} finally {
+			try {
+				if (input != null) {
+					input.close();
+				}
+			} catch (IOException exception) {
+				// intentionally empty
+			}
+		}
+	}
+
+	/**
+	 * Writes the marker file to a temporary file first, so that a crash cannot
+	 * leave a half written marker behind.
+	 */
+	private static void writeMarker(File markerFile, int state, long sequence) {
+		File temporaryFile = new File(markerFile.getPath() + ".tmp");
+		DataOutputStream output = null;
+		try {
+			FileOutputStream fileOutput = new FileOutputStream(temporaryFile);
+			output = new DataOutputStream(fileOutput);
+			output.writeInt(MARKER_FILE_VERSION);
+			output.writeInt(state);
+			output.writeLong(sequence);
+			output.flush();
+			fileOutput.getFD().sync();
+			output.close();
+			output = null;
+			if (!temporaryFile.renameTo(markerFile)) {
+				// File.renameTo does not replace existing files on Windows
+				markerFile.delete();
+				temporaryFile.renameTo(markerFile);
+			}
+		} catch (IOException exception) {
+			WatchDogLogger.getInstance().logSevere(exception);
+		} finally {
+			try {
+				if (output != null) {
+					output.close();
+				}
+			} catch (IOException exception) {
+				// intentionally empty
+			}
+		}
+	}
+
+	/**
+	 * Saves the items each consumer has not consumed yet to the corresponding
+	 * MapDB database. Afterwards, the log is deleted.
+	 */
+	public static void toMapDatabases(EventLogConsumer transferConsumer,
+			EventLogConsumer statisticsConsumer,
+			PersisterBase transferPersister, PersisterBase statisticsPersister) {
+		for (WatchDogItem item : transferConsumer.readItems()) {
+			transferPersister.store(item);
+		}
+		for (WatchDogItem item : statisticsConsumer.readItems()) {
+			statisticsPersister.store(item);
+		}
+		transferPersister.flush();
+		statisticsPersister.flush();
+		transferConsumer.getLog().closeAndDelete();
+	}
+}
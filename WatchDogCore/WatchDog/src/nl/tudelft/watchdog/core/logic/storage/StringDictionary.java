@@ -0,0 +1,84 @@
+package nl.tudelft.watchdog.core.logic.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nl.tudelft.watchdog.core.logic.storage.ItemCodec.Output;
+
+/**
+ * Numbers the strings that occur in the items of one {@link LogSegment}, like
+ * session seeds, client versions and enum constants, so that each of them is
+ * stored only once per segment and shared by all items read from it. New
+ * entries are written to the segment in a dictionary record right before the
+ * first item that uses them.
+ */
+class StringDictionary {
+
+	private final List<String> strings = new ArrayList<String>();
+
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+	/** The number of entries that have been written to the segment. */
+	private int writtenCount;
+
+	/** @return the id of the string, which is added if it is new. */
+	int intern(String string) {
+		Integer id = ids.get(string);
+		if (id == null) {
+			id = strings.size();
+			strings.add(string);
+			ids.put(string, id);
+		}
+		return id;
+	}
+
+	/** @return the string with the given id. */
+	String get(int id) throws IOException {
+		if (id < 0 || id >= strings.size()) {
+			throw new IOException("Unknown dictionary entry " + id);
+		}
+		return strings.get(id);
+	}
+
+	/** @return the number of entries. */
+	int size() {
+		return strings.size();
+	}
+
+	/** @return whether entries have been added since the last write. */
+	boolean hasUnwrittenEntries() {
+		return writtenCount < strings.size();
+	}
+
+	/**
+	 * @return the payload of a dictionary record with all entries added since
+	 *         the last write, which are from then on considered written.
+	 */
+	byte[] writeNewEntries() {
+		Output output = new Output();
+		output.writeVarLong(writtenCount);
+		output.writeVarLong(strings.size() - writtenCount);
+		for (int id = writtenCount; id < strings.size(); id++) {
+			output.writeString(strings.get(id));
+		}
+		writtenCount = strings.size();
+		return output.toByteArray();
+	}
+
+	/** Adds the entries of a dictionary record read from a segment. */
+	void readEntries(ByteBuffer payload) throws IOException {
+		long firstId = ItemCodec.readVarLong(payload);
+		long count = ItemCodec.readVarLong(payload);
+		if (firstId != strings.size()) {
+			throw new IOException("Dictionary record out of order");
+		}
+		for (long i = 0; i < count; i++) {
+			intern(ItemCodec.readString(payload));
+		}
+		writtenCount = strings.size();
+	}
+}
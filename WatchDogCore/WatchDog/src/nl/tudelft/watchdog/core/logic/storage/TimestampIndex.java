@@ -0,0 +1,184 @@
+package nl.tudelft.watchdog.core.logic.storage;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import nl.tudelft.watchdog.core.logic.event.eventtypes.EventBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalBase;
+
+/**
+ * An in memory index of the items in an {@link EventLog}, ordered by their
+ * timestamp, i.e. the end of an interval or the time of an event. It only
+ * keeps the timestamp, the sequence number and the kind of every item, which
+ * are read from the record headers, so that a range of k items is found in
+ * O(log n + k) and only these k items have to be decoded.
+ *
+ * Items are mostly appended in the order of their timestamps. An item that is
+ * only slightly older than the newest ones is inserted in place, while older
+ * ones mark the index as unsorted, and it is sorted on the next read.
+ */
+class TimestampIndex {
+
+	/** The maximum number of entries moved to insert an entry in place. */
+	private static final int MAX_INSERTION_SHIFT = 256;
+
+	private long[] timestamps = new long[64];
+
+	private long[] sequences = new long[64];
+
+	private byte[] kinds = new byte[64];
+
+	private int size;
+
+	private boolean isSorted = true;
+
+	/** Adds the item with the given timestamp, sequence number and kind. */
+	void add(long timestamp, long sequence, byte kind) {
+		if (size == timestamps.length) {
+			int capacity = 2 * size;
+			timestamps = Arrays.copyOf(timestamps, capacity);
+			sequences = Arrays.copyOf(sequences, capacity);
+			kinds = Arrays.copyOf(kinds, capacity);
+		}
+		int index = size;
+		if (isSorted && size > 0 && timestamps[size - 1] > timestamp) {
+			index = upperBound(timestamp);
+			if (size - index > MAX_INSERTION_SHIFT) {
+				index = size;
+				isSorted = false;
+			} else {
+				System.arraycopy(timestamps, index, timestamps, index + 1, size
+						- index);
+				System.arraycopy(sequences, index, sequences, index + 1, size
+						- index);
+				System.arraycopy(kinds, index, kinds, index + 1, size - index);
+			}
+		}
+		timestamps[index] = timestamp;
+		sequences[index] = sequence;
+		kinds[index] = kind;
+		size++;
+	}
+
+	/**
+	 * @return the sequence numbers of the items of the given kind, or of all
+	 *         kinds if it is negative, whose timestamps lie between from and
+	 *         to, both inclusive, ordered by their timestamps.
+	 */
+	long[] find(long from, long to, int kind) {
+		if (from > to) {
+			return new long[0];
+		}
+		sort();
+		int end = upperBound(to);
+		int start = Math.min(end, lowerBound(from));
+		long[] result = new long[end - start];
+		int found = 0;
+		for (int i = start; i < end; i++) {
+			if (kind < 0 || kinds[i] == kind) {
+				result[found++] = sequences[i];
+			}
+		}
+		return Arrays.copyOf(result, found);
+	}
+
+	/** Removes all items with sequence numbers before the given one. */
+	void removeBefore(long sequence) {
+		int retained = 0;
+		for (int i = 0; i < size; i++) {
+			if (sequences[i] >= sequence) {
+				timestamps[retained] = timestamps[i];
+				sequences[retained] = sequences[i];
+				kinds[retained] = kinds[i];
+				retained++;
+			}
+		}
+		size = retained;
+	}
+
+	/** @return the number of items in the index. */
+	int size() {
+		return size;
+	}
+
+	/** @return the index of the first item at or after the timestamp. */
+	private int lowerBound(long timestamp) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (timestamps[middle] < timestamp) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/** @return the index of the first item after the timestamp. */
+	private int upperBound(long timestamp) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (timestamps[middle] <= timestamp) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/** Sorts the items by their timestamps, and then by sequence number. */
+	private void sort() {
+		if (isSorted) {
+			return;
+		}
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		final long[] unsortedTimestamps = timestamps;
+		final long[] unsortedSequences = sequences;
+		Arrays.sort(order, new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer first, Integer second) {
+				int result = Long.compare(unsortedTimestamps[first],
+						unsortedTimestamps[second]);
+				if (result == 0) {
+					result = Long.compare(unsortedSequences[first],
+							unsortedSequences[second]);
+				}
+				return result;
+			}
+		});
+		long[] sortedTimestamps = new long[timestamps.length];
+		long[] sortedSequences = new long[sequences.length];
+		byte[] sortedKinds = new byte[kinds.length];
+		for (int i = 0; i < size; i++) {
+			sortedTimestamps[i] = timestamps[order[i]];
+			sortedSequences[i] = sequences[order[i]];
+			sortedKinds[i] = kinds[order[i]];
+		}
+		timestamps = sortedTimestamps;
+		sequences = sortedSequences;
+		kinds = sortedKinds;
+		isSorted = true;
+	}
+
+	/**
+	 * @return the timestamp of the item, i.e. the end of an interval or the
+	 *         time of an event, and 0 for other items.
+	 */
+	static long timestampOf(WatchDogItem item) {
+		if (item instanceof IntervalBase) {
+			return ((IntervalBase) item).getEnd().getTime();
+		} else if (item instanceof EventBase) {
+			return ((EventBase) item).getTimestamp().getTime();
+		}
+		return 0;
+	}
+}
@@ -9,9 +9,27 @@ import com.google.gson.annotations.SerializedName;
 public abstract class WatchDogItem {
 
 	@SerializedName("wdv")
-	private final String watchDogClientVersion = WatchDogGlobals.CLIENT_VERSION;
+	private String watchDogClientVersion = WatchDogGlobals.CLIENT_VERSION;
 
 	@SerializedName("ide")
-	private final IDE watchDogIDE = WatchDogGlobals.hostIDE;
+	private IDE watchDogIDE = WatchDogGlobals.hostIDE;
 
+	/** @return the version of the WatchDog client that recorded this item. */
+	String getClientVersion() {
+		return watchDogClientVersion;
+	}
+
+	/** @return the IDE this item was recorded in. */
+	IDE getIDE() {
+		return watchDogIDE;
+	}
+
+	/**
+	 * Restores the client version and IDE of a stored item, which would
+	 * otherwise be those of the currently running client.
+	 */
+	void setOrigin(String clientVersion, IDE ide) {
+		this.watchDogClientVersion = clientVersion;
+		this.watchDogIDE = ide;
+	}
 }
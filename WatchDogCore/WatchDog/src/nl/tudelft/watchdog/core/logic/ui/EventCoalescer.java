@@ -0,0 +1,104 @@
+package nl.tudelft.watchdog.core.logic.ui;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nl.tudelft.watchdog.core.logic.ui.events.WatchDogEvent;
+import nl.tudelft.watchdog.core.logic.ui.events.WatchDogEvent.EventType;
+
+/**
+ * Collapses bursts of high-frequency activity events, i.e.
+ * {@link EventType#PAINT}, {@link EventType#CARET_MOVED} and
+ * {@link EventType#USER_ACTIVITY}, into at most one dispatch per quantum. Paint
+ * and caret events are coalesced per editor.
+ *
+ * Only events that would not change the open intervals may be dropped, which
+ * the {@link WatchDogEventManagerBase} decides. Dropping them only delays the
+ * inactivity timeouts by up to a quantum, so the quantum must be small
+ * compared to the timeouts.
+ */
+public class EventCoalescer {
+
+	/** The default quantum in milliseconds. */
+	public static final long DEFAULT_QUANTUM = 100;
+
+	private volatile long quantum;
+
+	/** When the last reading event was dispatched, per editor. */
+	private final Map<Object, Long> lastReadingDispatches = new WeakHashMap<Object, Long>();
+
+	/** When the last user activity event was dispatched. */
+	private Long lastUserActivityDispatch;
+
+	private final AtomicLong receivedEvents = new AtomicLong();
+
+	private final AtomicLong dispatchedEvents = new AtomicLong();
+
+	/** Constructor. A quantum of 0 disables coalescing. */
+	public EventCoalescer(long quantum) {
+		this.quantum = quantum;
+	}
+
+	/** @return whether events of this type can be coalesced. */
+	public static boolean isCoalescible(EventType type) {
+		return type == EventType.PAINT || type == EventType.CARET_MOVED
+				|| type == EventType.USER_ACTIVITY;
+	}
+
+	/**
+	 * Records that the event was received and decides whether it is
+	 * dispatched. An event that can be dropped is not dispatched if an event
+	 * of the same kind was dispatched less than a quantum before now.
+	 * 
+	 * @return whether the event should be dispatched.
+	 */
+	public synchronized boolean shouldDispatch(WatchDogEvent event, long now,
+			boolean canBeDropped) {
+		receivedEvents.incrementAndGet();
+		Long lastDispatch;
+		if (event.getType() == EventType.USER_ACTIVITY) {
+			lastDispatch = lastUserActivityDispatch;
+		} else {
+			lastDispatch = lastReadingDispatches.get(event.getSource());
+		}
+		if (canBeDropped && lastDispatch != null
+				&& now - lastDispatch < quantum) {
+			return false;
+		}
+
+		if (event.getType() == EventType.USER_ACTIVITY) {
+			lastUserActivityDispatch = now;
+		} else {
+			lastReadingDispatches.put(event.getSource(), now);
+		}
+		dispatchedEvents.incrementAndGet();
+		return true;
+	}
+
+	/** Counts an event that is dispatched without asking the coalescer. */
+	public void countDispatched() {
+		receivedEvents.incrementAndGet();
+		dispatchedEvents.incrementAndGet();
+	}
+
+	/** Sets the quantum in milliseconds. A quantum of 0 disables coalescing. */
+	public void setQuantum(long quantum) {
+		this.quantum = quantum;
+	}
+
+	/** @return the quantum in milliseconds. */
+	public long getQuantum() {
+		return quantum;
+	}
+
+	/** @return the number of events received by the event manager. */
+	public long getReceivedEventCount() {
+		return receivedEvents.get();
+	}
+
+	/** @return the number of received events that were dispatched. */
+	public long getDispatchedEventCount() {
+		return dispatchedEvents.get();
+	}
+}
@@ -1,20 +1,20 @@
 package nl.tudelft.watchdog.core.logic.ui;
 
 import java.util.Date;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ScheduledFuture;
 
 import nl.tudelft.watchdog.core.logic.ui.events.WatchDogEvent;
 import nl.tudelft.watchdog.core.logic.ui.events.WatchDogEvent.EventType;
+import nl.tudelft.watchdog.core.util.WatchDogScheduler;
 
 /**
  * A performance-optimized notifier for a timeout when its {@link #trigger()}
  * was not called for a given timeout. When an inactivity is detected, an
  * inactivityEvent is fired. The type of this event can be specified.
  * 
- * Performance optimization: only update activity timer every second. This means
- * that we have 10% imprecision, ie. the user may have actually stayed inactive
- * shorter than we think he did.
+ * Performance optimization: a trigger only moves the deadline, the task on the
+ * {@link WatchDogScheduler} is not rescheduled. When the task runs before the
+ * deadline, it schedules itself again for the remaining time.
  */
 public class InactivityNotifier {
 	
@@ -22,13 +22,14 @@ public class InactivityNotifier {
 
 	private int activityTimeout;
 
-	private Timer activityTimer;
+	/** When the inactivity is detected, unless it is triggered before. */
+	private volatile long deadline;
 
-	private ActivityTimerTask activityTimerTask;
+	private ScheduledFuture<?> activityTask;
 
 	private EventType eventType;
 
-	private boolean isRunning;
+	private volatile boolean isRunning;
 
 	/** Constructor. */
 	public InactivityNotifier(WatchDogEventManagerBase eventManager, int activityTimeout,
@@ -40,29 +41,45 @@ public class InactivityNotifier {
 	}
 
 	/**
-	 * Triggers the timer, i.e. prolongs its lifetime or creates a new timer if
-	 * non is running.
+	 * Triggers the timer, i.e. prolongs its lifetime or starts it if it is not
+	 * running.
 	 */
 	public void trigger() {
-		if (activityTimer == null || !isRunning) {
-			createNewTimer();
-		} else if (activityTimerTask.scheduledExecutionTime()
-				- System.currentTimeMillis() < 0.9 * activityTimeout) {
-			// Performance optimization: only update activity timer every
-			// second. This means that we have 10% imprecision, ie. the user
-			// may have actually stayed inactive shorter than we think he
-			// did. Reduces the number of calls to createNewTimer().
-			activityTimer.cancel();
-			activityTimerTask.cancel();
-			createNewTimer();
+		deadline = System.currentTimeMillis() + activityTimeout;
+		if (!isRunning) {
+			synchronized (this) {
+				if (!isRunning) {
+					isRunning = true;
+					scheduleCheck(activityTimeout);
+				}
+			}
 		}
 	}
 
-	private void createNewTimer() {
-		activityTimer = new Timer(true);
-		activityTimerTask = new ActivityTimerTask();
-		activityTimer.schedule(activityTimerTask, activityTimeout);
-		isRunning = true;
+	private void scheduleCheck(long delay) {
+		activityTask = WatchDogScheduler.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				checkDeadline();
+			}
+		}, delay);
+	}
+
+	/** Fires the inactivity event if the deadline has passed. */
+	private void checkDeadline() {
+		synchronized (this) {
+			if (!isRunning) {
+				return;
+			}
+			long remainingTime = deadline - System.currentTimeMillis();
+			if (remainingTime > 0) {
+				scheduleCheck(remainingTime);
+				return;
+			}
+			isRunning = false;
+		}
+		eventManager.update(new WatchDogEvent(this, eventType));
 	}
 
 	/**
@@ -73,26 +90,13 @@ public class InactivityNotifier {
 	 *            this event actually happened.
 	 */
 	public void cancelTimer(Date forcedDate) {
-		if (!isRunning) {
-			return;
-		}
-		activityTimerTask.run(forcedDate);
-		activityTimer.cancel();
-		activityTimerTask.cancel();
-	}
-
-	private class ActivityTimerTask extends TimerTask {
-
-		protected void run(Date forcedDate) {
-			eventManager.update(new WatchDogEvent(this, eventType), forcedDate);
-			isRunning = false;
-		}
-
-		@Override
-		public void run() {
-			eventManager.update(new WatchDogEvent(this, eventType));
+		synchronized (this) {
+			if (!isRunning) {
+				return;
+			}
 			isRunning = false;
+			activityTask.cancel(false);
 		}
+		eventManager.update(new WatchDogEvent(this, eventType), forcedDate);
 	}
-
-}
\ No newline at end of file
+}
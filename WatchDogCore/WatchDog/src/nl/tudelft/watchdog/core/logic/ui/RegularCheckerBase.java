@@ -1,7 +1,9 @@
 package nl.tudelft.watchdog.core.logic.ui;
 
-import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ScheduledFuture;
+
+import nl.tudelft.watchdog.core.util.WatchDogScheduler;
 
 /** A checker that is being run every n-miliseconds. */
 public abstract class RegularCheckerBase {
@@ -11,8 +13,8 @@ public abstract class RegularCheckerBase {
 	 */
 	protected int updateRate;
 
-	/** The timer */
-	protected Timer timer;
+	/** The scheduled runs of the task. */
+	protected ScheduledFuture<?> scheduledTask;
 
 	/** The actual task to be run. Needs to be set by subclasses. */
 	protected TimerTask task;
@@ -22,10 +24,13 @@ public abstract class RegularCheckerBase {
 		this.updateRate = updateRate;
 	}
 
-	/** Subclasses call this method from their constructor. */
+	/**
+	 * Subclasses call this method from their constructor. The task may block,
+	 * so it is run on the worker thread of the {@link WatchDogScheduler}.
+	 */
 	protected void runSetupAndStartTimeChecker() {
 		task.run();
-		timer = new Timer(true);
-		timer.scheduleAtFixedRate(task, updateRate, updateRate);
+		scheduledTask = WatchDogScheduler.scheduleBlockingAtFixedRate(task,
+				updateRate, updateRate);
 	}
 }
@@ -1,7 +1,6 @@
 package nl.tudelft.watchdog.core.logic.ui;
 
 import java.util.Date;
-import java.util.Timer;
 import java.util.TimerTask;
 
 import nl.tudelft.watchdog.core.logic.interval.IDEIntervalManagerBase;
@@ -9,6 +8,7 @@ import nl.tudelft.watchdog.core.logic.ui.events.WatchDogEvent;
 import nl.tudelft.watchdog.core.logic.ui.events.WatchDogEvent.EventType;
 import nl.tudelft.watchdog.core.util.WatchDogGlobals;
 import nl.tudelft.watchdog.core.util.WatchDogLogger;
+import nl.tudelft.watchdog.core.util.WatchDogScheduler;
 
 /**
  * Checks whether the time progress according to the system's time is in
@@ -30,17 +30,16 @@ public class TimeSynchronityChecker extends RegularCheckerBase {
 		super(UPDATE_RATE);
 		this.intervalManager = intervalManager;
 		this.eventManager = eventManager;
-		timer = new Timer(true);
 		startTimeCheckerOnce();
 	}
 
 	/** Subclasses call this method from their constructor. */
 	protected void startTimeCheckerOnce() {
-		if (task != null) {
-			task.cancel();
+		if (scheduledTask != null) {
+			scheduledTask.cancel(false);
 		}
 		task = new TimeSynchronityTimerTask();
-		timer.schedule(task, updateRate);
+		scheduledTask = WatchDogScheduler.schedule(task, updateRate);
 	}
 
 	private class TimeSynchronityTimerTask extends TimerTask {
@@ -3,6 +3,7 @@ package nl.tudelft.watchdog.core.logic.ui;
 import java.util.Date;
 
 import nl.tudelft.watchdog.core.logic.document.Document;
+import nl.tudelft.watchdog.core.logic.document.DocumentCache;
 import nl.tudelft.watchdog.core.logic.document.EditorWrapperBase;
 import nl.tudelft.watchdog.core.logic.interval.IDEIntervalManagerBase;
 import nl.tudelft.watchdog.core.logic.interval.intervaltypes.DebugInterval;
@@ -38,6 +39,8 @@ public abstract class WatchDogEventManagerBase {
 	private final InactivityNotifier typingInactivityNotifier;
 
 	private final InactivityNotifier readingInactivityNotifier;
+
+	private final EventCoalescer eventCoalescer;
 	
 	/** Constructor. */
 	public WatchDogEventManagerBase(final IDEIntervalManagerBase intervalManager,
@@ -51,14 +54,48 @@ public abstract class WatchDogEventManagerBase {
 				userActivityTimeout, EventType.TYPING_INACTIVITY);
 		readingInactivityNotifier = new InactivityNotifier(this,
 				userActivityTimeout, EventType.READING_INACTIVITY);
+		// the notifiers already tolerate an imprecision of 10% of the timeout
+		eventCoalescer = new EventCoalescer(Math.min(
+				EventCoalescer.DEFAULT_QUANTUM, userActivityTimeout / 10));
 	}
 
 	/**
 	 * Simple proxy for {@link #update(WatchDogEvent, Date)}, calling it with
-	 * the forcedDate set to "now".
+	 * the forcedDate set to "now". Bursts of paint, caret and user activity
+	 * events that do not change the open intervals are coalesced by the
+	 * {@link EventCoalescer}.
 	 */
 	public void update(WatchDogEvent event) {
-		update(event, new Date());
+		long now = System.currentTimeMillis();
+		if (EventCoalescer.isCoalescible(event.getType())) {
+			if (!eventCoalescer.shouldDispatch(event, now, canBeDropped(event))) {
+				return;
+			}
+		} else {
+			eventCoalescer.countDispatched();
+		}
+		update(event, new Date(now));
+	}
+
+	/** @return the coalescer of high-frequency events. */
+	public EventCoalescer getEventCoalescer() {
+		return eventCoalescer;
+	}
+
+	/**
+	 * @return whether dispatching the event would only prolong the inactivity
+	 *         timeouts, because the intervals it opens are already open.
+	 */
+	private boolean canBeDropped(WatchDogEvent event) {
+		if (isClosed(intervalManager.getInterval(UserActiveInterval.class))) {
+			return false;
+		}
+		if (event.getType() == EventType.USER_ACTIVITY) {
+			return true;
+		}
+		EditorIntervalBase editorInterval = intervalManager.getEditorInterval();
+		return !needToCreateNewReadingInterval(editorInterval,
+				event.getSource());
 	}
 
 	/**
@@ -131,6 +168,12 @@ public abstract class WatchDogEventManagerBase {
 				document = createDocument(editor);
 			}
 			typingInterval.setDocument(document);
+			if (document != null) {
+				// the file is about to change, so its content must be read now
+				// and its cached statistics are stale
+				document.captureContent();
+				DocumentCache.getInstance().invalidate(document);
+			}
 			intervalManager.addInterval(typingInterval);
 
 			typingInactivityNotifier.trigger();
@@ -153,6 +196,9 @@ public abstract class WatchDogEventManagerBase {
 			EditorEvent editorEvent = (EditorEvent) event;
 			TypingInterval typingInt = (TypingInterval) editorInterval;
 			typingInt.increaseModCountWith(editorEvent.getModCount());
+			typingInt.recordChange(editorEvent.getOffset(),
+					editorEvent.getRemovedText(),
+					editorEvent.getInsertedText());
 
 			typingInactivityNotifier.trigger();
 			userInactivityNotifier.trigger(forcedDate);
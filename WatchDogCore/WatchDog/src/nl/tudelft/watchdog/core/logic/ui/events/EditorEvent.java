@@ -9,6 +9,12 @@ public class EditorEvent extends WatchDogEvent {
 	
 	private int modifiedChars;
 
+	private int offset = -1;
+
+	private String removedText;
+
+	private String insertedText;
+
 	/** Constructor. */
 	public EditorEvent(Object editor, EventType type) {
 		super(editor, type);
@@ -24,5 +30,30 @@ public class EditorEvent extends WatchDogEvent {
 	public int getModCount() {
 		return this.modifiedChars;
 	}
-	
+
+	/**
+	 * Sets the change of the document, i.e. that the removed text at the
+	 * offset was replaced by the inserted text.
+	 */
+	public void setChange(int offset, String removedText, String insertedText) {
+		this.offset = offset;
+		this.removedText = removedText;
+		this.insertedText = insertedText;
+	}
+
+	/** @return the offset of the change, or -1 if it is unknown. */
+	public int getOffset() {
+		return offset;
+	}
+
+	/** @return the text removed by the change, if it is known. */
+	public String getRemovedText() {
+		return removedText;
+	}
+
+	/** @return the text inserted by the change, if it is known. */
+	public String getInsertedText() {
+		return insertedText;
+	}
+
 }
@@ -0,0 +1,147 @@
+package nl.tudelft.watchdog.core.util;
+
+import java.util.Arrays;
+
+/**
+ * A set of ints that stores them unboxed in one array with open addressing
+ * and linear probing, so that lookups neither allocate nor follow references.
+ * 0 marks a free slot, hence whether the set contains 0 is kept separately.
+ * Not thread safe.
+ */
+public class IntHashSet {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/** The slots, whose number is always a power of two. */
+	private int[] keys;
+
+	private boolean containsZero;
+
+	/** The number of ints in the set, including 0. */
+	private int size;
+
+	/** Constructor. */
+	public IntHashSet() {
+		keys = new int[DEFAULT_CAPACITY];
+	}
+
+	/** @return whether the value was added, i.e. was not yet in the set. */
+	public boolean add(int value) {
+		if (value == 0) {
+			if (containsZero) {
+				return false;
+			}
+			containsZero = true;
+			size++;
+			return true;
+		}
+		int slot = findSlot(keys, value);
+		if (keys[slot] == value) {
+			return false;
+		}
+		keys[slot] = value;
+		size++;
+		if (size * 2 > keys.length) {
+			rehash(keys.length * 2);
+		}
+		return true;
+	}
+
+	/** @return whether the set contains the value. */
+	public boolean contains(int value) {
+		if (value == 0) {
+			return containsZero;
+		}
+		return keys[findSlot(keys, value)] == value;
+	}
+
+	/** @return whether the value was removed, i.e. was in the set. */
+	public boolean remove(int value) {
+		if (value == 0) {
+			if (!containsZero) {
+				return false;
+			}
+			containsZero = false;
+			size--;
+			return true;
+		}
+		int slot = findSlot(keys, value);
+		if (keys[slot] != value) {
+			return false;
+		}
+		keys[slot] = 0;
+		size--;
+		closeGap(slot);
+		return true;
+	}
+
+	/** @return the number of ints in the set. */
+	public int size() {
+		return size;
+	}
+
+	/** @return whether the set is empty. */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Removes all ints. */
+	public void clear() {
+		Arrays.fill(keys, 0);
+		containsZero = false;
+		size = 0;
+	}
+
+	/**
+	 * Moves the ints after the freed slot back, so that none of them is
+	 * separated from its home slot by a free slot.
+	 */
+	private void closeGap(int freeSlot) {
+		int mask = keys.length - 1;
+		int slot = freeSlot;
+		while (true) {
+			slot = (slot + 1) & mask;
+			int key = keys[slot];
+			if (key == 0) {
+				return;
+			}
+			int home = hash(key) & mask;
+			if (((slot - home) & mask) >= ((slot - freeSlot) & mask)) {
+				keys[freeSlot] = key;
+				keys[slot] = 0;
+				freeSlot = slot;
+			}
+		}
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		keys = new int[capacity];
+		for (int key : oldKeys) {
+			if (key != 0) {
+				keys[findSlot(keys, key)] = key;
+			}
+		}
+	}
+
+	/**
+	 * @return the slot of the value, or the free slot it would be put in.
+	 */
+	private static int findSlot(int[] keys, int value) {
+		int mask = keys.length - 1;
+		int slot = hash(value) & mask;
+		while (keys[slot] != 0 && keys[slot] != value) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * @return the value with its bits spread, as hash codes often differ in
+	 *         their high bits only.
+	 */
+	static int hash(int value) {
+		int hash = value * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,138 @@
+package nl.tudelft.watchdog.core.util;
+
+import java.util.Arrays;
+
+/**
+ * A map from ints to objects that stores its keys unboxed, with open
+ * addressing and linear probing like {@link IntHashSet}. A slot is in use if
+ * it holds a value, hence values must not be <code>null</code>. Not thread
+ * safe.
+ */
+public class IntObjectHashMap<V> {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/** The slots, whose number is always a power of two. */
+	private int[] keys;
+
+	private Object[] values;
+
+	private int size;
+
+	/** Constructor. */
+	public IntObjectHashMap() {
+		keys = new int[DEFAULT_CAPACITY];
+		values = new Object[DEFAULT_CAPACITY];
+	}
+
+	/**
+	 * Maps the key to the value, which must not be <code>null</code>.
+	 *
+	 * @return the value previously mapped to the key, or <code>null</code>.
+	 */
+	public V put(int key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Values must not be null.");
+		}
+		int slot = findSlot(keys, values, key);
+		V oldValue = valueAt(slot);
+		keys[slot] = key;
+		values[slot] = value;
+		if (oldValue == null) {
+			size++;
+			if (size * 2 > keys.length) {
+				rehash(keys.length * 2);
+			}
+		}
+		return oldValue;
+	}
+
+	/** @return the value mapped to the key, or <code>null</code>. */
+	public V get(int key) {
+		return valueAt(findSlot(keys, values, key));
+	}
+
+	/** @return whether a value is mapped to the key. */
+	public boolean containsKey(int key) {
+		return values[findSlot(keys, values, key)] != null;
+	}
+
+	/** @return the value that was mapped to the key, or <code>null</code>. */
+	public V remove(int key) {
+		int slot = findSlot(keys, values, key);
+		V oldValue = valueAt(slot);
+		if (oldValue != null) {
+			values[slot] = null;
+			size--;
+			closeGap(slot);
+		}
+		return oldValue;
+	}
+
+	/** @return the number of keys with a value. */
+	public int size() {
+		return size;
+	}
+
+	/** @return whether the map is empty. */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Removes all mappings. */
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	private V valueAt(int slot) {
+		return (V) values[slot];
+	}
+
+	/**
+	 * Moves the mappings after the freed slot back, so that none of them is
+	 * separated from its home slot by a free slot.
+	 */
+	private void closeGap(int freeSlot) {
+		int mask = keys.length - 1;
+		int slot = freeSlot;
+		while (true) {
+			slot = (slot + 1) & mask;
+			if (values[slot] == null) {
+				return;
+			}
+			int home = IntHashSet.hash(keys[slot]) & mask;
+			if (((slot - home) & mask) >= ((slot - freeSlot) & mask)) {
+				keys[freeSlot] = keys[slot];
+				values[freeSlot] = values[slot];
+				values[slot] = null;
+				freeSlot = slot;
+			}
+		}
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new int[capacity];
+		values = new Object[capacity];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != null) {
+				int slot = findSlot(keys, values, oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	/** @return the slot of the key, or the free slot it would be put in. */
+	private static int findSlot(int[] keys, Object[] values, int key) {
+		int mask = keys.length - 1;
+		int slot = IntHashSet.hash(key) & mask;
+		while (values[slot] != null && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+}
@@ -69,6 +69,14 @@ public class WatchDogLogger {
 		return instance;
 	}
 
+	/**
+	 * @return whether messages are logged, so that expensive messages need
+	 *         not be built otherwise.
+	 */
+	public boolean isLoggingEnabled() {
+		return isLoggerSetup;
+	}
+
 	/** Adds the given log handler and sets the given Level on it. */
 	public void addHandlerAndSetLevel(Handler handler, Level level) {
 		if (!isLoggerSetup) {
@@ -0,0 +1,185 @@
+package nl.tudelft.watchdog.core.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The one scheduler for all timers of WatchDog. Instead of a thread per
+ * {@link java.util.Timer}, all timed tasks share a single daemon thread, so
+ * they must be short. Tasks that may block for long, like network transfers,
+ * are handed over to a single worker thread when they are due, so that they
+ * cannot delay the others. Commits of buffered items to disk get a thread of
+ * their own, so that a long transfer cannot hold them back.
+ */
+public final class WatchDogScheduler {
+
+	private static final ScheduledThreadPoolExecutor scheduler;
+
+	private static final ExecutorService worker;
+
+	private static final ExecutorService committer;
+
+	private static final AtomicInteger createdThreads = new AtomicInteger();
+
+	private static final AtomicLong scheduledTasks = new AtomicLong();
+
+	static {
+		scheduler = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory(
+				"WatchDog Scheduler"));
+		scheduler.setRemoveOnCancelPolicy(true);
+		scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+		worker = createSingleThreadPool("WatchDog Worker");
+		committer = createSingleThreadPool("WatchDog Commit");
+	}
+
+	private static ExecutorService createSingleThreadPool(String name) {
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 60,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new DaemonThreadFactory(name));
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	private WatchDogScheduler() {
+		// utility class
+	}
+
+	/** Runs the short task once after the delay in milliseconds. */
+	public static ScheduledFuture<?> schedule(Runnable task, long delay) {
+		scheduledTasks.incrementAndGet();
+		return scheduler.schedule(new LoggingTask(task), Math.max(0, delay),
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Runs the task, which may block for long, once on the worker thread after
+	 * the delay in milliseconds. Cancelling the returned future only prevents
+	 * the task from being handed to the worker.
+	 */
+	public static ScheduledFuture<?> scheduleBlocking(Runnable task, long delay) {
+		return scheduleOn(worker, task, delay);
+	}
+
+	/**
+	 * Runs the commit, which may block on the disk, once on the commit thread
+	 * after the delay in milliseconds. Unlike {@link #scheduleBlocking}, it is
+	 * not delayed by tasks like network transfers.
+	 */
+	public static ScheduledFuture<?> scheduleCommit(Runnable commit, long delay) {
+		return scheduleOn(committer, commit, delay);
+	}
+
+	private static ScheduledFuture<?> scheduleOn(final ExecutorService executor,
+			Runnable task, long delay) {
+		final Runnable executorTask = new LoggingTask(task);
+		return schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				executor.execute(executorTask);
+			}
+		}, delay);
+	}
+
+	/**
+	 * Runs the short task every period milliseconds, starting after the
+	 * initial delay.
+	 */
+	public static ScheduledFuture<?> scheduleAtFixedRate(Runnable task,
+			long initialDelay, long period) {
+		scheduledTasks.incrementAndGet();
+		return scheduler.scheduleAtFixedRate(new LoggingTask(task),
+				Math.max(0, initialDelay), period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Runs the task, which may block for long, on the worker thread every
+	 * period milliseconds, starting after the initial delay. If the task is
+	 * still running when it is due again, that run is skipped. Cancelling the
+	 * returned future stops further runs.
+	 */
+	public static ScheduledFuture<?> scheduleBlockingAtFixedRate(
+			final Runnable task, long initialDelay, long period) {
+		final AtomicBoolean isQueued = new AtomicBoolean();
+		final Runnable workerTask = new LoggingTask(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					task.run();
+				} finally {
+					isQueued.set(false);
+				}
+			}
+		});
+		return scheduleAtFixedRate(new Runnable() {
+
+			@Override
+			public void run() {
+				if (isQueued.compareAndSet(false, true)) {
+					worker.execute(workerTask);
+				}
+			}
+		}, initialDelay, period);
+	}
+
+	/** @return the number of threads the scheduler has created so far. */
+	public static int getCreatedThreadCount() {
+		return createdThreads.get();
+	}
+
+	/** @return the number of tasks that have been scheduled so far. */
+	public static long getScheduledTaskCount() {
+		return scheduledTasks.get();
+	}
+
+	/** @return the number of tasks waiting to be run. */
+	public static int getPendingTaskCount() {
+		return scheduler.getQueue().size();
+	}
+
+	/** Logs failing tasks, which would otherwise fail silently. */
+	private static class LoggingTask implements Runnable {
+
+		private final Runnable task;
+
+		private LoggingTask(Runnable task) {
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			try {
+				task.run();
+			} catch (RuntimeException exception) {
+				WatchDogLogger.getInstance().logSevere(exception);
+			}
+		}
+	}
+
+	private static class DaemonThreadFactory implements ThreadFactory {
+
+		private final String name;
+
+		private DaemonThreadFactory(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			createdThreads.incrementAndGet();
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -8,6 +8,7 @@ import org.apache.commons.codec.digest.DigestUtils;
 
 import com.google.gson.Gson;
 
+import nl.tudelft.watchdog.core.logic.document.DocumentScanner;
 import nl.tudelft.watchdog.core.ui.preferences.PreferencesBase;
 
 /**
@@ -60,15 +61,8 @@ public abstract class WatchDogUtilsBase {
 	/**
 	 * @return the number of source lines of code in the given string.
 	 */
-	public static long countSLOC(String text) {
-		String[] lines = text.split("\r\n|\r|\n");
-		long sloc = 0;
-		for (String line : lines) {
-			if (!isEmptyOrHasOnlyWhitespaces(line)) {
-				sloc++;
-			}
-		}
-		return sloc;
+	public static long countSLOC(CharSequence text) {
+		return new DocumentScanner(text).getSloc();
 	}
 
 	/**
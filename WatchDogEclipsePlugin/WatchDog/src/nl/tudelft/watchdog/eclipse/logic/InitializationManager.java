@@ -1,13 +1,27 @@
 package nl.tudelft.watchdog.eclipse.logic;
 
 import java.io.File;
+import java.util.Date;
 
 import nl.tudelft.watchdog.core.logic.event.DebugEventManager;
+import nl.tudelft.watchdog.core.logic.interval.IntervalClosingExecutor;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.JUnitExecutionBase;
+import nl.tudelft.watchdog.core.logic.network.NetworkUtils;
+import nl.tudelft.watchdog.core.logic.storage.EventLog;
+import nl.tudelft.watchdog.core.logic.storage.EventLogConsumer;
+import nl.tudelft.watchdog.core.logic.storage.JUnitIntervalFactory;
+import nl.tudelft.watchdog.core.logic.storage.PersistenceWorker;
 import nl.tudelft.watchdog.core.logic.storage.PersisterBase;
+import nl.tudelft.watchdog.core.logic.storage.RetentionCompactor;
+import nl.tudelft.watchdog.core.logic.storage.StorageBackend;
+import nl.tudelft.watchdog.core.logic.storage.StorageMigration;
 import nl.tudelft.watchdog.core.logic.ui.TimeSynchronityChecker;
 import nl.tudelft.watchdog.core.util.WatchDogGlobals;
 import nl.tudelft.watchdog.eclipse.Activator;
 import nl.tudelft.watchdog.eclipse.logic.interval.IntervalManager;
+import nl.tudelft.watchdog.eclipse.logic.interval.intervaltypes.JUnitExecution;
+import nl.tudelft.watchdog.eclipse.logic.interval.intervaltypes.JUnitInterval;
 import nl.tudelft.watchdog.eclipse.logic.network.ClientVersionChecker;
 import nl.tudelft.watchdog.eclipse.logic.network.TransferManager;
 import nl.tudelft.watchdog.eclipse.logic.ui.WatchDogEventManager;
@@ -30,6 +44,8 @@ public class InitializationManager {
 
 	private final PersisterBase toTransferPersister;
 	private final PersisterBase statisticsPersister;
+	private final PersistenceWorker persistenceWorker;
+	private final RetentionCompactor retentionCompactor;
 
 	private final WatchDogEventManager watchDogEventManager;
 	private final DebugEventManager debugEventManager;
@@ -46,8 +62,45 @@ public class InitializationManager {
 		File toTransferDatabaseFile = new File(baseFolder, "watchdog.mapdb");
 		File statisticsDatabaseFile = new File(baseFolder,
 				"watchdogStatistics.mapdb");
-		toTransferPersister = new PersisterBase(toTransferDatabaseFile);
-		statisticsPersister = new PersisterBase(statisticsDatabaseFile);
+		File logDirectory = new File(baseFolder, "watchdog.log");
+		if (StorageBackend.fromSystemProperty() == StorageBackend.MAPDB) {
+			toTransferPersister = new PersisterBase(toTransferDatabaseFile);
+			statisticsPersister = new PersisterBase(statisticsDatabaseFile);
+			if (EventLog.exists(logDirectory)) {
+				EventLog eventLog = createEventLog(logDirectory);
+				StorageMigration.toMapDatabases(new EventLogConsumer(eventLog,
+						EventLogConsumer.TRANSFER, false),
+						new EventLogConsumer(eventLog,
+								EventLogConsumer.STATISTICS, false),
+						toTransferPersister, statisticsPersister);
+			}
+		} else {
+			// Both persisters share one log
+			EventLog eventLog = createEventLog(logDirectory);
+			EventLogConsumer transferConsumer = new EventLogConsumer(eventLog,
+					EventLogConsumer.TRANSFER, false);
+			// The statistics are pruned per kind of item, so their consumer
+			// must not drop older items of the other kind, i.e. not be windowed
+			EventLogConsumer statisticsConsumer = new EventLogConsumer(
+					eventLog, EventLogConsumer.STATISTICS, false);
+			if (toTransferDatabaseFile.exists()
+					|| statisticsDatabaseFile.exists()) {
+				StorageMigration.fromMapDatabases(new PersisterBase(
+						toTransferDatabaseFile), new PersisterBase(
+						statisticsDatabaseFile), transferConsumer,
+						statisticsConsumer);
+			}
+			toTransferPersister = transferConsumer;
+			statisticsPersister = statisticsConsumer;
+		}
+		toTransferPersister.enableGroupCommit();
+		statisticsPersister.enableGroupCommit();
+		persistenceWorker = new PersistenceWorker();
+		toTransferPersister.setPersistenceWorker(persistenceWorker);
+		statisticsPersister.setPersistenceWorker(persistenceWorker);
+		// Only the statistics are pruned, the items to transfer are kept
+		retentionCompactor = new RetentionCompactor(statisticsPersister);
+		retentionCompactor.start();
 
 		// Initialize managers
 		new ClientVersionChecker();
@@ -68,6 +121,33 @@ public class InitializationManager {
 		workbenchListener.attachListeners();
 	}
 
+	private EventLog createEventLog(File logDirectory) {
+		EventLog eventLog = new EventLog(logDirectory, getClass()
+				.getClassLoader());
+		eventLog.registerJUnitInterval(JUnitInterval.class,
+				new JUnitIntervalFactory() {
+
+					@Override
+					public JUnitExecutionBase getTestExecution(
+							IntervalBase interval) {
+						return ((JUnitInterval) interval).getTestExecution();
+					}
+
+					@Override
+					public JUnitExecutionBase createExecution() {
+						return new JUnitExecution();
+					}
+
+					@Override
+					public IntervalBase createInterval(
+							JUnitExecutionBase testExecution, Date start,
+							Date end) {
+						return new JUnitInterval(testExecution, start, end);
+					}
+				});
+		return eventLog;
+	}
+
 	/**
 	 * Returns the existing or creates and returns a new
 	 * {@link InitializationManager} instance.
@@ -100,11 +180,25 @@ public class InitializationManager {
 	}
 
 	/**
-	 * Closes the database. The database can recover even if it is not closed
+	 * Waits until all closed intervals and all items queued for persistence
+	 * have been written, e.g. so that they can be transferred right away.
+	 */
+	public void drainPendingItems() {
+		IntervalClosingExecutor
+				.awaitQuiescence(PersistenceWorker.DEFAULT_DRAIN_TIMEOUT);
+		persistenceWorker.drain(PersistenceWorker.DEFAULT_DRAIN_TIMEOUT);
+	}
+
+	/**
+	 * Writes all pending items and closes the database and the connections
+	 * to the server. The database can recover even if it is not closed
 	 * properly, but it is good practice to close it anyway.
 	 */
 	public void shutdown() {
+		retentionCompactor.stop();
+		persistenceWorker.shutdown();
 		toTransferPersister.closeDatabase();
 		statisticsPersister.closeDatabase();
+		NetworkUtils.closeHttpClient();
 	}
 }
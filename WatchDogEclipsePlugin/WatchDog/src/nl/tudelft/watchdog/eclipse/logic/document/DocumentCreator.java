@@ -1,12 +1,16 @@
 package nl.tudelft.watchdog.eclipse.logic.document;
 
 import nl.tudelft.watchdog.core.logic.document.Document;
+import nl.tudelft.watchdog.core.logic.document.DocumentCache;
+import nl.tudelft.watchdog.core.logic.document.LazyContent;
 import nl.tudelft.watchdog.core.util.ContentReaderException;
 import nl.tudelft.watchdog.core.util.WatchDogLogger;
 import nl.tudelft.watchdog.eclipse.util.WatchDogUtils;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.IWorkbenchPart;
 import org.eclipse.ui.texteditor.ITextEditor;
 
@@ -17,9 +21,14 @@ public class DocumentCreator {
 	/**
 	 * Factory method that creates and returns a {@link Document} from a given
 	 * {@link IWorkbenchPart}. For this to succeed, it is necessary that the the
-	 * supplied part is an IEditorPart.
+	 * supplied part is an IEditorPart. As {@link IDocument}s are not thread
+	 * safe, the content of the editor is copied right away, on the calling UI
+	 * thread. Only if the statistics of the file are cached for its current
+	 * modification stamp, the content is not copied. It is then only read if
+	 * it is needed after all, from the editor on the UI thread and from the
+	 * file on disk on any other thread.
 	 */
-	public static Document createDocument(ITextEditor editor) {
+	public static Document createDocument(final ITextEditor editor) {
 		String activeProjectName = null;
 		String filePath = "";
 		String title = "";
@@ -33,13 +42,24 @@ public class DocumentCreator {
 			// Intentionally left empty
 		}
 
-		try {
+		long modificationStamp = WatchDogUtils.getModificationStamp(editor);
+		if (!DocumentCache.getInstance().contains(activeProjectName, title,
+				filePath, modificationStamp)) {
 			return new Document(activeProjectName, title, filePath,
-					getEditorOrFileContent(editor));
-		} catch (IllegalArgumentException exception) {
-			WatchDogLogger.getInstance().logSevere(exception);
+					getEditorOrFileContent(editor), modificationStamp);
 		}
-		return new Document(activeProjectName, title, filePath, null);
+		return new Document(activeProjectName, title, filePath,
+				new LazyContent() {
+
+					@Override
+					protected CharSequence read() {
+						if (Display.getCurrent() != null) {
+							return getEditorOrFileContent(editor);
+						}
+						// the editor may only be read on the UI thread
+						return getFileContent(editor);
+					}
+				}, modificationStamp);
 	}
 
 	/**
@@ -57,12 +77,20 @@ public class DocumentCreator {
 					.getInstance()
 					.logInfo(
 							"Document (provider) was null, trying to read resource file contents.");
-			try {
-				return WatchDogUtils.getContentForEditorFromDisk(editor);
-			} catch (IllegalArgumentException ex) {
-				WatchDogLogger.getInstance().logInfo(
-						"File does not exist anymore: " + editor.getTitle());
-			}
+			return getFileContent(editor);
+		}
+	}
+
+	/**
+	 * Gets the contents of the file of the given editor from disk, or
+	 * <code>null</code> if the file cannot be read.
+	 */
+	private static String getFileContent(ITextEditor editor) {
+		try {
+			return WatchDogUtils.getContentForEditorFromDisk(editor);
+		} catch (IllegalArgumentException ex) {
+			WatchDogLogger.getInstance().logInfo(
+					"File does not exist anymore: " + editor.getTitle());
 		}
 		return null;
 	}
@@ -1,9 +1,7 @@
 package nl.tudelft.watchdog.eclipse.logic.event.listeners;
 
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.eclipse.core.resources.IMarkerDelta;
 import org.eclipse.debug.core.IBreakpointListener;
@@ -17,6 +15,7 @@ import nl.tudelft.watchdog.core.logic.event.eventtypes.BreakpointAddEvent;
 import nl.tudelft.watchdog.core.logic.event.eventtypes.BreakpointChangeEvent;
 import nl.tudelft.watchdog.core.logic.event.eventtypes.BreakpointEventBase;
 import nl.tudelft.watchdog.core.logic.event.eventtypes.BreakpointRemoveEvent;
+import nl.tudelft.watchdog.core.util.IntObjectHashMap;
 import nl.tudelft.watchdog.eclipse.logic.breakpoint.BreakpointCreator;
 
 /**
@@ -32,14 +31,14 @@ public class BreakpointListener implements IBreakpointListener {
 
 	/**
 	 * Map containing all breakpoints added or changed (and not removed) in this
-	 * session indexing by their hash code.
+	 * session indexed by their hash code.
 	 */
-	private final Map<Integer, Breakpoint> breakpoints;
+	private final IntObjectHashMap<Breakpoint> breakpoints;
 
 	/** Constructor. */
 	public BreakpointListener(DebugEventManager debugEventManager) {
 		this.debugEventManager = debugEventManager;
-		this.breakpoints = new HashMap<Integer, Breakpoint>();
+		this.breakpoints = new IntObjectHashMap<Breakpoint>();
 	}
 
 	@Override
@@ -6,6 +6,7 @@ import java.util.List;
 
 import org.eclipse.debug.core.DebugEvent;
 import org.eclipse.debug.core.IDebugEventSetListener;
+import org.eclipse.debug.core.model.IDebugTarget;
 import org.eclipse.debug.core.model.IThread;
 import org.eclipse.debug.core.model.IVariable;
 import org.eclipse.debug.core.model.IWatchExpression;
@@ -13,6 +14,8 @@ import org.eclipse.debug.core.model.IWatchExpression;
 import nl.tudelft.watchdog.core.logic.event.DebugEventManager;
 import nl.tudelft.watchdog.core.logic.event.eventtypes.DebugEventBase;
 import nl.tudelft.watchdog.core.logic.event.eventtypes.DebugEventType;
+import nl.tudelft.watchdog.core.util.IntHashSet;
+import nl.tudelft.watchdog.core.util.IntObjectHashMap;
 
 /**
  * Handles all {@link DebugEvent}s and generates the appropriate instances of
@@ -27,29 +30,40 @@ public class DebugEventListener implements IDebugEventSetListener {
 	private final DebugEventManager debugEventManager;
 
 	/**
-	 * List with the hashes of all current watch expressions. Used to avoid
-	 * duplicate 'Define Watch' events.
+	 * The hashes of all current watch expressions, per hash of the debug
+	 * target they belong to. Used to avoid duplicate 'Define Watch' events.
 	 */
-	private List<Integer> watchExpressionHashes;
+	private final IntObjectHashMap<IntHashSet> watchExpressionHashes;
 
 	/** Constructor. */
 	public DebugEventListener(DebugEventManager debugEventManager) {
 		this.debugEventManager = debugEventManager;
-		this.watchExpressionHashes = new ArrayList<>();
+		this.watchExpressionHashes = new IntObjectHashMap<>();
 	}
 
+	/**
+	 * Converts the whole set of events first, so that they are persisted and
+	 * logged together.
+	 */
 	@Override
 	public void handleDebugEvents(DebugEvent[] events) {
+		List<DebugEventBase> debugEvents = new ArrayList<>(events.length);
 		for (DebugEvent event : events) {
+			DebugEventType type = null;
 			if (isThread(event.getSource())) {
-				handleDebugEvent(event);
+				type = getDebugEventType(event);
 			} else if (isWatchExpression(event.getSource())) {
-				handleWatchExpressionEvent(event);
+				type = getWatchExpressionEventType(event);
 			} else if (isVariableModificationEvent(event)) {
-				debugEventManager.addEvent(new DebugEventBase(
-						DebugEventType.MODIFY_VARIABLE_VALUE, new Date()));
+				type = DebugEventType.MODIFY_VARIABLE_VALUE;
+			} else if (isDebugTargetTermination(event)) {
+				watchExpressionHashes.remove(event.getSource().hashCode());
+			}
+			if (type != null) {
+				debugEvents.add(new DebugEventBase(type, new Date()));
 			}
 		}
+		debugEventManager.addEvents(debugEvents);
 	}
 
 	private static boolean isThread(Object source) {
@@ -60,6 +74,11 @@ public class DebugEventListener implements IDebugEventSetListener {
 		return source instanceof IWatchExpression;
 	}
 
+	private static boolean isDebugTargetTermination(DebugEvent event) {
+		return event.getSource() instanceof IDebugTarget
+				&& event.getKind() == DebugEvent.TERMINATE;
+	}
+
 	private static boolean isVariableModificationEvent(DebugEvent event) {
 		return event.getSource() instanceof IVariable
 				&& event.getKind() == DebugEvent.CHANGE
@@ -67,64 +86,64 @@ public class DebugEventListener implements IDebugEventSetListener {
 	}
 
 	/**
-	 * Handles {@link DebugEvent.SUSPEND} and {@link DebugEvent.RESUME} events
-	 * based on the input event's properties.
+	 * @return the type of {@link DebugEvent.SUSPEND} and
+	 *         {@link DebugEvent.RESUME} events based on the input event's
+	 *         properties, or <code>null</code> for other events.
 	 */
-	private void handleDebugEvent(DebugEvent event) {
+	private static DebugEventType getDebugEventType(DebugEvent event) {
 		if (event.getKind() == DebugEvent.SUSPEND) {
-			handleSuspendEvent(event);
+			return getSuspendEventType(event);
 		} else if (event.getKind() == DebugEvent.RESUME) {
-			handleResumeEvent(event);
+			return getResumeEventType(event);
 		}
+		return null;
 	}
 
-	private void handleSuspendEvent(DebugEvent event) {
+	private static DebugEventType getSuspendEventType(DebugEvent event) {
 		switch (event.getDetail()) {
 		case DebugEvent.BREAKPOINT:
-			debugEventManager.addEvent(new DebugEventBase(
-					DebugEventType.SUSPEND_BREAKPOINT, new Date()));
-			break;
+			return DebugEventType.SUSPEND_BREAKPOINT;
 		case DebugEvent.CLIENT_REQUEST:
-			debugEventManager.addEvent(new DebugEventBase(
-					DebugEventType.SUSPEND_CLIENT, new Date()));
-			break;
+			return DebugEventType.SUSPEND_CLIENT;
 		case DebugEvent.EVALUATION:
-			debugEventManager.addEvent(new DebugEventBase(
-					DebugEventType.INSPECT_VARIABLE, new Date()));
-			break;
+			return DebugEventType.INSPECT_VARIABLE;
+		default:
+			return null;
 		}
 	}
 
-	private void handleResumeEvent(DebugEvent event) {
+	private static DebugEventType getResumeEventType(DebugEvent event) {
 		switch (event.getDetail()) {
 		case DebugEvent.STEP_INTO:
-			debugEventManager.addEvent(
-					new DebugEventBase(DebugEventType.STEP_INTO, new Date()));
-			break;
+			return DebugEventType.STEP_INTO;
 		case DebugEvent.STEP_OVER:
-			debugEventManager.addEvent(
-					new DebugEventBase(DebugEventType.STEP_OVER, new Date()));
-			break;
+			return DebugEventType.STEP_OVER;
 		case DebugEvent.STEP_RETURN:
-			debugEventManager.addEvent(
-					new DebugEventBase(DebugEventType.STEP_OUT, new Date()));
-			break;
+			return DebugEventType.STEP_OUT;
 		case DebugEvent.CLIENT_REQUEST:
-			debugEventManager.addEvent(new DebugEventBase(
-					DebugEventType.RESUME_CLIENT, new Date()));
-			break;
+			return DebugEventType.RESUME_CLIENT;
+		default:
+			return null;
 		}
 	}
 
 	/**
-	 * Handles all watch expression events. Makes sure that only one 'Define
-	 * Watch' event is generated for each expression.
+	 * Makes sure that only one 'Define Watch' event is generated for each
+	 * watch expression per debug target.
+	 *
+	 * @return {@link DebugEventType#DEFINE_WATCH} for the first event of a
+	 *         watch expression, <code>null</code> otherwise.
 	 */
-	private void handleWatchExpressionEvent(DebugEvent event) {
-		if (!watchExpressionHashes.contains(event.getSource().hashCode())) {
-			debugEventManager.addEvent(new DebugEventBase(
-					DebugEventType.DEFINE_WATCH, new Date()));
-			watchExpressionHashes.add(event.getSource().hashCode());
+	private DebugEventType getWatchExpressionEventType(DebugEvent event) {
+		IWatchExpression expression = (IWatchExpression) event.getSource();
+		IDebugTarget target = expression.getDebugTarget();
+		int targetHash = target == null ? 0 : target.hashCode();
+		IntHashSet hashes = watchExpressionHashes.get(targetHash);
+		if (hashes == null) {
+			hashes = new IntHashSet();
+			watchExpressionHashes.put(targetHash, hashes);
 		}
+		return hashes.add(expression.hashCode()) ? DebugEventType.DEFINE_WATCH
+				: null;
 	}
 }
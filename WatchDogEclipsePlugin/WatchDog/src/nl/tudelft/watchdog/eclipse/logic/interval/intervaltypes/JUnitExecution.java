@@ -17,6 +17,10 @@ public class JUnitExecution extends JUnitExecutionBase {
 	/** Class version. */
 	private static final long serialVersionUID = 1L;
 
+	/** Constructor for restoring a stored execution. */
+	public JUnitExecution() {
+	}
+
 	/** Constructor. */
 	public JUnitExecution(ITestElement test, JUnitExecution parent) {
 		double elapsedTime = test.getElapsedTimeInSeconds();
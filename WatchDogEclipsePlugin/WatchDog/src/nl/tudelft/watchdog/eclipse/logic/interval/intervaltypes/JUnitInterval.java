@@ -41,10 +41,23 @@ public class JUnitInterval extends IntervalBase {
 		testExecution = new JUnitExecution(test, null);
 	}
 
+	/** Constructor for restoring a stored interval. */
+	public JUnitInterval(JUnitExecutionBase testExecution, Date start, Date end) {
+		super(IntervalType.JUNIT, start);
+		isClosed = true;
+		setEndTime(end);
+		this.testExecution = testExecution;
+	}
+
 	private long roundElapsedTime(double duration) {
 		return Math.round(duration * 1000);
 	}
 
+	/** @return the root of the execution tree. */
+	public JUnitExecutionBase getTestExecution() {
+		return testExecution;
+	}
+
 	/**
 	 * @return The aggregated execution result of this Junit execution.
 	 */
@@ -1,5 +1,6 @@
 package nl.tudelft.watchdog.eclipse.logic.ui.listeners;
 
+import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IDocumentListener;
@@ -31,6 +32,9 @@ public class EditorListener {
 	private StyledText styledText;
 	private PaintListener paintListener;
 
+	/** The text about to be removed by the current document change. */
+	private String removedText;
+
 	/** Enriches the supplied editor with all suitable listeners. */
 	public EditorListener(WatchDogEventManager eventManager, ITextEditor editor) {
 		this.eventManager = eventManager;
@@ -72,11 +76,20 @@ public class EditorListener {
 				EditorEvent newEvent = new EditorEvent(editor,
 						EventType.SUBSEQUENT_EDIT);
 				newEvent.setModCount(modCount);
+				newEvent.setChange(event.getOffset(), removedText,
+						event.getText() == null ? "" : event.getText());
+				removedText = null;
 				eventManager.update(newEvent);
 			}
 
 			@Override
 			public void documentAboutToBeChanged(DocumentEvent event) {
+				try {
+					removedText = event.getDocument().get(event.getOffset(),
+							event.getLength());
+				} catch (BadLocationException exception) {
+					removedText = null;
+				}
 				eventManager
 						.update(new EditorEvent(editor, EventType.START_EDIT));
 			}
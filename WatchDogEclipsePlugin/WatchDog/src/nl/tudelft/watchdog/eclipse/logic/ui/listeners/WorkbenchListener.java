@@ -92,6 +92,7 @@ public class WorkbenchListener {
 				watchDogEventManager.update(
 						new WatchDogEvent(workbench, EventType.END_IDE));
 				initializationManager.getIntervalManager().closeAllIntervals();
+				initializationManager.drainPendingItems();
 				transferManager.sendItemsImmediately();
 				return true;
 			}
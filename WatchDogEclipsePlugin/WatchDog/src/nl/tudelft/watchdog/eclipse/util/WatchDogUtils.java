@@ -6,11 +6,13 @@ import java.io.InputStreamReader;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
 import org.eclipse.ui.IFileEditorInput;
 import org.eclipse.ui.part.FileEditorInput;
 import org.eclipse.ui.texteditor.IDocumentProvider;
 import org.eclipse.ui.texteditor.ITextEditor;
 
+import nl.tudelft.watchdog.core.logic.document.Document;
 import nl.tudelft.watchdog.core.ui.preferences.ProjectPreferenceSetting;
 import nl.tudelft.watchdog.core.util.ContentReaderException;
 import nl.tudelft.watchdog.core.util.WatchDogLogger;
@@ -45,6 +47,22 @@ public class WatchDogUtils extends WatchDogUtilsBase {
 		return document.get();
 	}
 
+	/**
+	 * @return the modification stamp of the document in the supplied editor,
+	 *         or {@link Document#UNKNOWN_MODIFICATION_STAMP} if it has none.
+	 */
+	public static long getModificationStamp(final ITextEditor editor) {
+		try {
+			IDocument document = extractDocument(editor);
+			if (document instanceof IDocumentExtension4) {
+				return ((IDocumentExtension4) document).getModificationStamp();
+			}
+		} catch (ContentReaderException | IllegalArgumentException exception) {
+			// Intentionally left empty
+		}
+		return Document.UNKNOWN_MODIFICATION_STAMP;
+	}
+
 	private static IDocument extractDocument(final ITextEditor editor)
 			throws ContentReaderException {
 		if (editor == null) {
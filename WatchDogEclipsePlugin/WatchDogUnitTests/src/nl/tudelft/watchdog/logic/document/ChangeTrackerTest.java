@@ -0,0 +1,146 @@
+package nl.tudelft.watchdog.logic.document;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import nl.tudelft.watchdog.core.logic.document.ChangeTracker;
+import nl.tudelft.watchdog.core.logic.document.EditDistance;
+
+/**
+ * Tests that the {@link ChangeTracker} follows the changes of a document and
+ * computes their edit distance without the document's content.
+ */
+public class ChangeTrackerTest {
+
+	private ChangeTracker tracker = new ChangeTracker();
+
+	private StringBuilder document = new StringBuilder(
+			"public class Production {\n\tint field;\n}\n");
+
+	@Test
+	public void testTypingAndDeletingLeavesNoRegion() {
+		change(13, 0, "X");
+		change(14, 0, "Y");
+		change(13, 2, "");
+
+		assertEquals(0, tracker.getRegionCount());
+		assertEquals(0, tracker.computeEditDistance());
+		assertEquals(3, tracker.getChangeCount());
+	}
+
+	@Test
+	public void testSeparateChangesAreSeparateRegions() {
+		change(0, 6, "private");
+		change(document.length() - 2, 0, "\tlong other;\n");
+
+		assertEquals(2, tracker.getRegionCount());
+		assertEquals(EditDistance.compute("public", "private") + 13,
+				tracker.computeEditDistance());
+		assertEquals(1 + 13, tracker.getLengthDifference());
+	}
+
+	@Test
+	public void testOverlappingChangesAreMerged() {
+		change(13, 5, "Test");
+		change(10, 8, "Foo");
+
+		assertEquals(1, tracker.getRegionCount());
+		assertEquals(
+				EditDistance.compute("public class Production {",
+						document.substring(0, document.indexOf("{") + 1)),
+				tracker.computeEditDistance());
+	}
+
+	@Test
+	public void testUnknownChangeMakesTrackerIncomplete() {
+		change(0, 0, "x");
+		tracker.recordChange(1, null, "y");
+
+		assertFalse(tracker.isComplete());
+	}
+
+	@Test
+	public void testRandomChangesAreBoundedByRealDistance() {
+		Random random = new Random(3);
+		for (int run = 0; run < 200; run++) {
+			tracker = new ChangeTracker();
+			document = new StringBuilder(randomText(random, 200));
+			String original = document.toString();
+			for (int i = random.nextInt(30); i > 0; i--) {
+				int offset = random.nextInt(document.length() + 1);
+				int length = random.nextInt(Math.min(5,
+						document.length() - offset) + 1);
+				change(offset, length, randomText(random, random.nextInt(4)));
+			}
+
+			long distance = tracker.computeEditDistance();
+			long realDistance = EditDistance.compute(original, document);
+			assertTrue(distance >= realDistance);
+			assertTrue(distance <= tracker.getEditDistanceBound());
+			if (tracker.getRegionCount() <= 1) {
+				assertEquals(realDistance, distance);
+			}
+			assertEquals(document.length() - original.length(),
+					tracker.getLengthDifference());
+		}
+	}
+
+	@Test
+	public void testDistanceOverCurrentContentIsExact() {
+		Random random = new Random(7);
+		for (int run = 0; run < 200; run++) {
+			tracker = new ChangeTracker();
+			document = new StringBuilder(randomText(random, 200));
+			String original = document.toString();
+			for (int i = random.nextInt(30); i > 0; i--) {
+				int offset = random.nextInt(document.length() + 1);
+				int length = random.nextInt(Math.min(5,
+						document.length() - offset) + 1);
+				change(offset, length, randomText(random, random.nextInt(4)));
+			}
+
+			assertEquals(EditDistance.compute(original, document),
+					tracker.computeEditDistance(document));
+		}
+	}
+
+	@Test
+	public void testDifferentContentFallsBackToRegionDistances() {
+		change(0, 6, "private");
+		change(document.length() - 2, 0, "\tlong other;\n");
+
+		assertEquals(tracker.computeEditDistance(),
+				tracker.computeEditDistance("something else"));
+	}
+
+	@Test
+	public void testLargeChangesAreOnlyBounded() {
+		String pasted = randomText(new Random(5),
+				ChangeTracker.MAX_TRACKED_CHARACTERS);
+		change(0, 0, pasted);
+		change(0, 1, "");
+
+		assertTrue(tracker.isComplete());
+		assertEquals(pasted.length() - 1, tracker.computeEditDistance());
+	}
+
+	/** Changes the document and records the change in the tracker. */
+	private void change(int offset, int length, String text) {
+		String removed = document.substring(offset, offset + length);
+		document.replace(offset, offset + length, text);
+		tracker.recordChange(offset, removed, text);
+	}
+
+	private static String randomText(Random random, int length) {
+		StringBuilder builder = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			builder.append((char) ('a' + random.nextInt(3)));
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,122 @@
+package nl.tudelft.watchdog.logic.document;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import nl.tudelft.watchdog.core.logic.document.Document;
+import nl.tudelft.watchdog.core.logic.document.DocumentCache;
+import nl.tudelft.watchdog.core.logic.document.DocumentType;
+import nl.tudelft.watchdog.core.logic.document.LazyContent;
+
+/**
+ * Tests that the {@link DocumentCache} reuses the statistics of unchanged
+ * files only.
+ */
+public class DocumentCacheTest {
+
+	private static final String CONTENT = "import org.junit.Test;\n\n"
+			+ "public class ProductionTest {\n\t@Test\n\tpublic void test() {\n"
+			+ "\t}\n}\n";
+
+	private DocumentCache cache = DocumentCache.getInstance();
+
+	@Before
+	public void setUp() {
+		cache.clear();
+	}
+
+	@Test
+	public void testUnchangedFileIsCached() {
+		Document first = prepare(CONTENT);
+		long hits = cache.getHitCount();
+		Document second = prepare(new String(CONTENT));
+
+		assertEquals(hits + 1, cache.getHitCount());
+		assertEquals(first.getNameHash(), second.getNameHash());
+		assertEquals(first.getProjectNameHash(), second.getProjectNameHash());
+		assertEquals(6, second.getSloc());
+		assertEquals(DocumentType.TEST, second.getDocumentType());
+	}
+
+	@Test
+	public void testChangedFileIsPreparedAgain() {
+		prepare(CONTENT);
+		long misses = cache.getMissCount();
+		Document changed = prepare(CONTENT.replace("@Test", ""));
+
+		assertEquals(misses + 1, cache.getMissCount());
+		assertEquals(DocumentType.FILENAME_TEST, changed.getDocumentType());
+	}
+
+	@Test
+	public void testInvalidatedFileIsPreparedAgain() {
+		Document document = prepare(CONTENT);
+		cache.invalidate(document);
+		long misses = cache.getMissCount();
+		prepare(CONTENT);
+
+		assertEquals(misses + 1, cache.getMissCount());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedFileIsEvicted() {
+		prepare(CONTENT);
+		for (int i = 0; i < DocumentCache.DEFAULT_CAPACITY; i++) {
+			new Document("Project", "File" + i + ".java", "src", CONTENT)
+					.prepareDocument();
+		}
+		long misses = cache.getMissCount();
+		prepare(CONTENT);
+
+		assertEquals(misses + 1, cache.getMissCount());
+		assertEquals(DocumentCache.DEFAULT_CAPACITY, cache.size());
+	}
+
+	@Test
+	public void testUnchangedLazyFileIsNotRead() {
+		final int[] reads = new int[1];
+		LazyContent content = new LazyContent() {
+
+			@Override
+			protected CharSequence read() {
+				reads[0]++;
+				return CONTENT;
+			}
+		};
+		new Document("Project", "ProductionTest.java", "src", content, 7)
+				.prepareDocument();
+		Document unchanged = new Document("Project", "ProductionTest.java",
+				"src", content, 7);
+		unchanged.prepareDocument();
+
+		assertEquals(1, reads[0]);
+		assertEquals(DocumentType.TEST, unchanged.getDocumentType());
+	}
+
+	@Test
+	public void testContainsOnlyFilesWithTheSameModificationStamp() {
+		new Document("Project", "ProductionTest.java", "src", CONTENT, 7)
+				.prepareDocument();
+		long hits = cache.getHitCount();
+		long misses = cache.getMissCount();
+
+		assertTrue(cache.contains("Project", "ProductionTest.java", "src", 7));
+		assertFalse(cache.contains("Project", "ProductionTest.java", "src", 8));
+		assertFalse(cache.contains("Project", "ProductionTest.java", "src",
+				Document.UNKNOWN_MODIFICATION_STAMP));
+		assertEquals(hits, cache.getHitCount());
+		assertEquals(misses, cache.getMissCount());
+	}
+
+	private static Document prepare(String content) {
+		Document document = new Document("Project", "ProductionTest.java",
+				"src", content);
+		document.prepareDocument();
+		return document;
+	}
+}
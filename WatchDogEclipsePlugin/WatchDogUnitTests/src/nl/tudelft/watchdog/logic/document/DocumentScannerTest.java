@@ -0,0 +1,87 @@
+package nl.tudelft.watchdog.logic.document;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import nl.tudelft.watchdog.core.logic.document.DocumentScanner;
+
+/**
+ * Tests that the single pass of the {@link DocumentScanner} finds the same
+ * patterns and source lines of code as the former regular expression based
+ * implementation.
+ */
+public class DocumentScannerTest {
+
+	private static final String[] FRAGMENTS = { "import", "static", "org",
+			".junit", ".testng", ".mockito", ".powermock", "junit.framework",
+			"@Test", "@", "Test", "extends", "TestCase", "class", "{", "}",
+			";", "\u00e9", "//" };
+
+	private static final String[] WHITESPACE = { "", " ", "  ", "\t", "\n",
+			"\r\n", "\r", " \n \t", "\f", "\u000B", "\u00A0" };
+
+	@Test
+	public void testWhitespaceIsCollapsed() {
+		DocumentScanner scanner = new DocumentScanner(
+				"import \n\t static   org.junit.Test;\n\n@Test\n");
+
+		assertEquals(true, scanner.containsJUnitImports());
+		assertEquals(true, scanner.containsTestAnnotation());
+		assertEquals(false, scanner.containsTestingFramework());
+		assertEquals(3, scanner.getSloc());
+	}
+
+	@Test
+	public void testPatternsMustBeComplete() {
+		DocumentScanner scanner = new DocumentScanner(
+				"importorg.junit @Tes t import org.mock");
+
+		assertEquals(false, scanner.containsJUnitImports());
+		assertEquals(false, scanner.containsTestAnnotation());
+		assertEquals(false, scanner.containsTestingFramework());
+	}
+
+	@Test
+	public void testRandomDocumentsMatchFormerImplementation() {
+		Random random = new Random(11);
+		for (int i = 0; i < 2000; i++) {
+			StringBuilder builder = new StringBuilder();
+			for (int j = random.nextInt(40); j > 0; j--) {
+				builder.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+				builder.append(WHITESPACE[random.nextInt(WHITESPACE.length)]);
+			}
+			String content = builder.toString();
+			String collapsed = content.replaceAll("\\s+", " ");
+			DocumentScanner scanner = new DocumentScanner(content);
+
+			assertEquals(content, countSlocBySplitting(content),
+					scanner.getSloc());
+			assertEquals(content, collapsed.contains("import org.junit")
+					|| collapsed.contains("import static org.junit")
+					|| collapsed.contains("import org.testng")
+					|| collapsed.contains("import static org.testng")
+					|| collapsed.contains("import junit.framework"),
+					scanner.containsJUnitImports());
+			assertEquals(content, collapsed.contains("@Test")
+					|| collapsed.contains("extends TestCase"),
+					scanner.containsTestAnnotation());
+			assertEquals(content, collapsed.contains("import org.mockito")
+					|| collapsed.contains("import org.powermock")
+					|| collapsed.contains("import static org.powermock"),
+					scanner.containsTestingFramework());
+		}
+	}
+
+	private static long countSlocBySplitting(String text) {
+		long sloc = 0;
+		for (String line : text.split("\r\n|\r|\n")) {
+			if (!line.trim().isEmpty()) {
+				sloc++;
+			}
+		}
+		return sloc;
+	}
+}
@@ -0,0 +1,118 @@
+package nl.tudelft.watchdog.logic.document;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import nl.tudelft.watchdog.core.logic.document.EditDistance;
+
+/**
+ * Tests the {@link EditDistance} against the textbook Levenshtein distance.
+ */
+public class EditDistanceTest {
+
+	@Test
+	public void testSimpleDistances() {
+		assertEquals(0, EditDistance.compute("", ""));
+		assertEquals(3, EditDistance.compute("", "abc"));
+		assertEquals(3, EditDistance.compute("abc", ""));
+		assertEquals(3, EditDistance.compute("kitten", "sitting"));
+		assertEquals(1, EditDistance.compute("public int", "public inta"));
+		assertEquals(4, EditDistance.compute("abcd", "efgh"));
+	}
+
+	@Test
+	public void testRandomTextsAcrossWordBoundaries() {
+		Random random = new Random(42);
+		for (int i = 0; i < 300; i++) {
+			String first = randomText(random, random.nextInt(300));
+			String second = mutate(random, first, random.nextInt(40));
+			assertEquals(levenshtein(first, second),
+					EditDistance.compute(first, second));
+		}
+	}
+
+	@Test
+	public void testLargeDocumentIsBandedByModCount() {
+		String first = randomText(new Random(7), 200000);
+		String second = editLargeDocument(first);
+
+		assertEquals(5, EditDistance.compute(first, second, 5));
+		assertEquals(5, EditDistance.compute(first, second, 50));
+	}
+
+	@Test
+	public void testLargeDocumentWithWrongBoundIsBoundedByLength() {
+		String first = randomText(new Random(7), 200000);
+		String second = editLargeDocument(first);
+
+		// without the common prefix and suffix, the longer text is left
+		assertEquals(199983, EditDistance.compute(first, second, 4));
+	}
+
+	/**
+	 * Replaces three characters and inserts two, all of which do not occur
+	 * in the document, so that its edit distance is 5.
+	 */
+	private static String editLargeDocument(String document) {
+		StringBuilder builder = new StringBuilder(document);
+		builder.setCharAt(10, '#');
+		builder.setCharAt(100000, '#');
+		builder.setCharAt(199990, '#');
+		builder.insert(50000, "XY");
+		return builder.toString();
+	}
+
+	private static String randomText(Random random, int length) {
+		StringBuilder builder = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			builder.append((char) ('a' + random.nextInt(4)));
+		}
+		return builder.toString();
+	}
+
+	private static String mutate(Random random, String text, int edits) {
+		StringBuilder builder = new StringBuilder(text);
+		for (int i = 0; i < edits; i++) {
+			int position = random.nextInt(builder.length() + 1);
+			switch (random.nextInt(3)) {
+			case 0:
+				builder.insert(position, (char) ('a' + random.nextInt(5)));
+				break;
+			case 1:
+				if (position < builder.length()) {
+					builder.deleteCharAt(position);
+				}
+				break;
+			default:
+				if (position < builder.length()) {
+					builder.setCharAt(position,
+							(char) ('a' + random.nextInt(5)));
+				}
+			}
+		}
+		return builder.toString();
+	}
+
+	private static int levenshtein(String first, String second) {
+		int[] previous = new int[second.length() + 1];
+		int[] current = new int[second.length() + 1];
+		for (int j = 0; j <= second.length(); j++) {
+			previous[j] = j;
+		}
+		for (int i = 1; i <= first.length(); i++) {
+			current[0] = i;
+			for (int j = 1; j <= second.length(); j++) {
+				int cost = first.charAt(i - 1) == second.charAt(j - 1) ? 0 : 1;
+				current[j] = Math.min(Math.min(current[j - 1], previous[j]) + 1,
+						previous[j - 1] + cost);
+			}
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[second.length()];
+	}
+}
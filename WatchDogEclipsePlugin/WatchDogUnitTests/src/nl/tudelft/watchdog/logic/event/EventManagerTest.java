@@ -1,6 +1,8 @@
 package nl.tudelft.watchdog.logic.event;
 
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -19,6 +21,7 @@ import nl.tudelft.watchdog.core.logic.event.eventtypes.BreakpointRemoveEvent;
 import nl.tudelft.watchdog.core.logic.event.eventtypes.DebugEventBase;
 import nl.tudelft.watchdog.core.logic.event.eventtypes.DebugEventType;
 import nl.tudelft.watchdog.core.logic.storage.PersisterBase;
+import nl.tudelft.watchdog.core.logic.storage.WatchDogItem;
 import nl.tudelft.watchdog.core.util.WatchDogGlobals;
 import nl.tudelft.watchdog.eclipse.ui.preferences.Preferences;
 
@@ -109,4 +112,17 @@ public class EventManagerTest {
 		Mockito.verify(eventsStatisticsPersister).save(Mockito.isA(DebugEventBase.class));
 	}
 
+	@Test
+	public void testAddEventsSavesThemTogether() {
+		DebugEventBase stepOver = Mockito.spy(new DebugEventBase(DebugEventType.STEP_OVER, new Date()));
+		DebugEventBase suspend = Mockito.spy(new DebugEventBase(DebugEventType.SUSPEND_CLIENT, new Date()));
+		List<DebugEventBase> events = Arrays.asList(stepOver, suspend);
+		debugEventManager.addEvents(events);
+		Mockito.verify(stepOver).setSessionSeed(Mockito.anyString());
+		Mockito.verify(suspend).setSessionSeed(Mockito.anyString());
+		Mockito.verify(eventsToTransferPersister).saveAll(events);
+		Mockito.verify(eventsStatisticsPersister).saveAll(events);
+		Mockito.verify(eventsToTransferPersister, Mockito.never()).save(Mockito.any(WatchDogItem.class));
+	}
+
 }
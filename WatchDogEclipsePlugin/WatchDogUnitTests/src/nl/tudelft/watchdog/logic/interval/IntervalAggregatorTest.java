@@ -0,0 +1,78 @@
+package nl.tudelft.watchdog.logic.interval;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Date;
+
+import org.joda.time.Duration;
+import org.junit.Test;
+
+import nl.tudelft.watchdog.core.logic.document.Document;
+import nl.tudelft.watchdog.core.logic.document.DocumentType;
+import nl.tudelft.watchdog.core.logic.interval.IntervalAggregator;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.DebugInterval;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalType;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.PerspectiveInterval;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.PerspectiveInterval.Perspective;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.ReadingInterval;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.TypingInterval;
+
+/**
+ * Tests that the {@link IntervalAggregator} sums up durations per interval
+ * type, document type and perspective.
+ */
+public class IntervalAggregatorTest {
+
+	private IntervalAggregator aggregator = new IntervalAggregator();
+
+	@Test
+	public void testDurationsAreSummedUpPerType() {
+		aggregator.add(close(new DebugInterval(new Date(0)), 1000));
+		aggregator.add(close(new DebugInterval(new Date(5000)), 7000));
+		aggregator.add(close(new PerspectiveInterval(Perspective.JAVA,
+				new Date(0)), 3000));
+
+		assertEquals(2, aggregator.getCount(IntervalType.DEBUG));
+		assertEquals(new Duration(3000),
+				aggregator.getDuration(IntervalType.DEBUG));
+		assertEquals(new Duration(3000),
+				aggregator.getDuration(IntervalType.PERSPECTIVE));
+		assertEquals(new Duration(3000),
+				aggregator.getDuration(Perspective.JAVA));
+		assertEquals(new Duration(0), aggregator.getDuration(Perspective.DEBUG));
+	}
+
+	@Test
+	public void testEditorIntervalsAreSummedUpPerDocumentType() {
+		TypingInterval typing = new TypingInterval(null, new Date(0));
+		typing.setDocument(createDocument(DocumentType.TEST));
+		ReadingInterval reading = new ReadingInterval(null, new Date(0));
+		reading.setDocument(createDocument(DocumentType.FILENAME_TEST));
+		ReadingInterval production = new ReadingInterval(null, new Date(0));
+		production.setDocument(createDocument(DocumentType.PRODUCTION));
+		aggregator.add(close(typing, 1000));
+		aggregator.add(close(reading, 2000));
+		aggregator.add(close(production, 4000));
+		aggregator.add(close(new ReadingInterval(null, new Date(0)), 8000));
+
+		assertEquals(new Duration(3000), aggregator.getDuration(
+				DocumentType.TEST, DocumentType.FILENAME_TEST));
+		assertEquals(new Duration(4000),
+				aggregator.getDuration(DocumentType.PRODUCTION));
+		assertEquals(new Duration(14000),
+				aggregator.getDuration(IntervalType.READING));
+	}
+
+	private static IntervalBase close(IntervalBase interval, long end) {
+		interval.setClosed();
+		interval.setEndTime(new Date(end));
+		return interval;
+	}
+
+	private static Document createDocument(DocumentType type) {
+		Document document = new Document("Project", "File.java", "src", "");
+		document.setDocumentType(type);
+		return document;
+	}
+}
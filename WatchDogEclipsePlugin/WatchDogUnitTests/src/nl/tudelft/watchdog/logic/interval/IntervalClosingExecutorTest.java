@@ -0,0 +1,83 @@
+package nl.tudelft.watchdog.logic.interval;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import nl.tudelft.watchdog.core.logic.interval.IntervalClosingExecutor;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.ReadingInterval;
+
+/**
+ * Tests that editor intervals are closed on the bounded
+ * {@link IntervalClosingExecutor}, and that waiting for it is deterministic.
+ */
+public class IntervalClosingExecutorTest {
+
+	@Test
+	public void testAwaitQuiescenceWaitsForAllClosings() {
+		final Set<Thread> threads = Collections
+				.synchronizedSet(new HashSet<Thread>());
+		for (int i = 0; i < 500; i++) {
+			IntervalClosingExecutor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					threads.add(Thread.currentThread());
+				}
+			});
+		}
+
+		assertTrue(IntervalClosingExecutor.awaitQuiescence(5000));
+		assertEquals(0, IntervalClosingExecutor.getPendingClosingCount());
+		assertEquals(0, IntervalClosingExecutor.getQueueDepth());
+		// only the two closing threads, never the test thread
+		assertTrue(threads.size() <= 2);
+		assertFalse(threads.contains(Thread.currentThread()));
+	}
+
+	@Test
+	public void testAwaitQuiescenceTimesOut() throws InterruptedException {
+		final CountDownLatch release = new CountDownLatch(1);
+		IntervalClosingExecutor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					release.await();
+				} catch (InterruptedException exception) {
+					// test ends
+				}
+			}
+		});
+
+		assertFalse(IntervalClosingExecutor.awaitQuiescence(50));
+		assertEquals(1, IntervalClosingExecutor.getPendingClosingCount());
+		release.countDown();
+		assertTrue(IntervalClosingExecutor.awaitQuiescence(5000));
+	}
+
+	@Test
+	public void testIntervalIsClosedBeforeAfterClosingRuns() {
+		final ReadingInterval interval = new ReadingInterval(null, new Date());
+		final AtomicBoolean wasClosed = new AtomicBoolean();
+		interval.close(new Runnable() {
+
+			@Override
+			public void run() {
+				wasClosed.set(interval.isClosed());
+			}
+		});
+
+		assertTrue(IntervalClosingExecutor.awaitQuiescence(5000));
+		assertTrue(wasClosed.get());
+	}
+}
@@ -0,0 +1,62 @@
+package nl.tudelft.watchdog.logic.interval;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import nl.tudelft.watchdog.core.logic.storage.PersistenceWorker;
+import nl.tudelft.watchdog.core.logic.storage.PersisterBase;
+
+/**
+ * Tests saving to a {@link PersisterBase} through a {@link PersistenceWorker}.
+ */
+public class IntervalPersistenceWorkerTest extends IntervalPersisterTestBase {
+
+	private static final int NUMBER_OF_ITEMS = 50;
+
+	private static PersistenceWorker worker;
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		databaseName = "EmptyTestDB";
+		setUpSuperClass();
+		worker = new PersistenceWorker();
+		persister.setPersistenceWorker(worker);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		persister.setPersistenceWorker(null);
+	}
+
+	@Test
+	public void test1SavedItemsArePersistedAfterDrain() {
+		for (int i = 0; i < NUMBER_OF_ITEMS; i++) {
+			persister.save(IntervalPersisterTest.createRandomInterval());
+		}
+		assertTrue(worker.drain(PersistenceWorker.DEFAULT_DRAIN_TIMEOUT));
+		assertEquals(0, worker.getQueueSize());
+		assertEquals(NUMBER_OF_ITEMS, persister.getSize());
+		assertEquals(0, worker.getDroppedItemCount());
+	}
+
+	@Test
+	public void test2ShutdownWritesPendingItems() {
+		for (int i = 0; i < NUMBER_OF_ITEMS; i++) {
+			persister.save(IntervalPersisterTest.createRandomInterval());
+		}
+		worker.shutdown();
+		assertEquals(2 * NUMBER_OF_ITEMS, persister.getSize());
+	}
+
+	@Test
+	public void test3ItemsSavedAfterShutdownAreCountedAsDropped() {
+		persister.save(IntervalPersisterTest.createRandomInterval());
+		assertEquals(1, worker.getDroppedItemCount());
+		assertEquals(2 * NUMBER_OF_ITEMS, persister.getSize());
+	}
+
+}
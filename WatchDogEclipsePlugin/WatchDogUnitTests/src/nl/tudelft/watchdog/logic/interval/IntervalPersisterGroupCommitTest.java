@@ -0,0 +1,109 @@
+package nl.tudelft.watchdog.logic.interval;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalBase;
+import nl.tudelft.watchdog.core.logic.storage.PersisterBase;
+
+/**
+ * Tests the group commit mode of the {@link PersisterBase}. Every test starts
+ * with a fresh, empty database.
+ */
+public class IntervalPersisterGroupCommitTest {
+
+	private static final int ITEM_THRESHOLD = 10;
+
+	private static final int COMMIT_WINDOW = 200;
+
+	/** The maximum time to wait for the commit window to expire. */
+	private static final long COMMIT_TIMEOUT = 5000;
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private File databaseFile;
+
+	private PersisterBase persister;
+
+	@Before
+	public void setUp() {
+		databaseFile = new File(folder.getRoot(), "GroupCommitTestDB.mapdb");
+		persister = new PersisterBase(databaseFile);
+		persister.enableGroupCommit(ITEM_THRESHOLD, COMMIT_WINDOW);
+	}
+
+	@After
+	public void tearDown() {
+		persister.closeDatabase();
+	}
+
+	@Test
+	public void test1ItemsBufferedBelowThreshold() {
+		saveItems(ITEM_THRESHOLD - 1);
+		assertEquals(ITEM_THRESHOLD - 1, persister.getUncommittedItemCount());
+		assertEquals(ITEM_THRESHOLD - 1, persister.getSize());
+	}
+
+	@Test
+	public void test2ItemsCommittedAtThreshold() {
+		saveItems(ITEM_THRESHOLD);
+		assertEquals(0, persister.getUncommittedItemCount());
+		assertEquals(ITEM_THRESHOLD, persister.getSize());
+	}
+
+	@Test
+	public void test3ItemsCommittedAfterWindow() throws InterruptedException {
+		saveItems(1);
+		assertEquals(1, persister.getUncommittedItemCount());
+		long deadline = System.currentTimeMillis() + COMMIT_TIMEOUT;
+		while (persister.getUncommittedItemCount() > 0
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, persister.getUncommittedItemCount());
+	}
+
+	@Test
+	public void test4ItemsCommittedOnClose() {
+		saveItems(1);
+		persister.closeDatabase();
+		assertEquals(0, persister.getUncommittedItemCount());
+
+		persister = new PersisterBase(databaseFile);
+		assertEquals(1, persister.getSize());
+	}
+
+	@Test
+	public void test5SavedBatchIsCommittedAtOnce() {
+		persister.saveAll(createRandomIntervals(3));
+		assertEquals(3, persister.getUncommittedItemCount());
+
+		persister.saveAll(createRandomIntervals(ITEM_THRESHOLD));
+		assertEquals(0, persister.getUncommittedItemCount());
+		assertEquals(ITEM_THRESHOLD + 3, persister.getSize());
+	}
+
+	private void saveItems(int count) {
+		for (IntervalBase interval : createRandomIntervals(count)) {
+			persister.save(interval);
+		}
+	}
+
+	private static List<IntervalBase> createRandomIntervals(int count) {
+		List<IntervalBase> intervals = new ArrayList<IntervalBase>();
+		for (int i = 0; i < count; i++) {
+			intervals.add(IntervalPersisterTest.createRandomInterval());
+		}
+		return intervals;
+	}
+}
@@ -91,4 +91,26 @@ public class IntervalPersisterTest extends IntervalPersisterTestBase {
 		assertEquals(0, persister.getSize());
 	}
 
+	@Test
+	public void test5ReadByTimeRange() {
+		IntervalBase early = createInterval(1000);
+		IntervalBase late = createInterval(3000);
+		persister.save(late);
+		persister.save(early);
+		assertEquals(Arrays.asList(early, late), persister.readItems(new Date(
+				1000), new Date(3000), IntervalBase.class));
+
+		IntervalBase middle = createInterval(2000);
+		persister.save(middle);
+		assertEquals(Arrays.asList(middle, late), persister.readItems(
+				new Date(1001), new Date(5000), IntervalBase.class));
+	}
+
+	private static IntervalBase createInterval(long end) {
+		IntervalBase interval = new IDEOpenInterval(new Date(0));
+		interval.setSessionSeed("444");
+		interval.setEndTime(new Date(end));
+		return interval;
+	}
+
 }
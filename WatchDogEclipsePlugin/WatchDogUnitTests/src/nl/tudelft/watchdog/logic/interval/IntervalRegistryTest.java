@@ -0,0 +1,77 @@
+package nl.tudelft.watchdog.logic.interval;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+
+import nl.tudelft.watchdog.core.logic.interval.IntervalRegistry;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.DebugInterval;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.EditorIntervalBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalType;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.ReadingInterval;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.TypingInterval;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.UserActiveInterval;
+
+/**
+ * Tests that the {@link IntervalRegistry} finds the same intervals as a scan
+ * over all intervals.
+ */
+public class IntervalRegistryTest {
+
+	private IntervalRegistry registry = new IntervalRegistry();
+
+	private UserActiveInterval userActive = new UserActiveInterval(new Date());
+
+	private ReadingInterval reading = new ReadingInterval(null, new Date());
+
+	private TypingInterval typing = new TypingInterval(null, new Date());
+
+	private DebugInterval debug = new DebugInterval(new Date());
+
+	@Test
+	public void testIntervalsAreFoundByClass() {
+		registry.addAll(Arrays.asList(userActive, reading, typing, debug));
+
+		assertEquals(userActive, registry.getInterval(UserActiveInterval.class));
+		assertEquals(Arrays.asList(typing),
+				registry.getIntervals(TypingInterval.class));
+		assertEquals(Arrays.asList(debug),
+				registry.getIntervals(IntervalType.DEBUG));
+	}
+
+	@Test
+	public void testSuperclassesKeepOrderOfAddition() {
+		registry.addAll(Arrays.asList(typing, userActive, reading));
+
+		assertEquals(Arrays.asList(typing, reading),
+				registry.getIntervals(EditorIntervalBase.class));
+		assertEquals(Arrays.asList(typing, userActive, reading),
+				registry.getIntervals(IntervalBase.class));
+	}
+
+	@Test
+	public void testRemovedIntervalsAreNotFound() {
+		registry.addAll(Arrays.asList(userActive, debug));
+		registry.remove(userActive);
+
+		assertNull(registry.getInterval(UserActiveInterval.class));
+		assertEquals(debug, registry.getInterval(DebugInterval.class));
+		registry.clear();
+		assertNull(registry.getInterval(DebugInterval.class));
+		assertEquals(0, registry.size());
+	}
+
+	@Test
+	public void testUnknownClassesAreNotFound() {
+		registry.add(userActive);
+
+		assertEquals(0, registry.getIntervals(DebugInterval.class).size());
+		registry.add(debug);
+		assertEquals(debug, registry.getInterval(DebugInterval.class));
+	}
+}
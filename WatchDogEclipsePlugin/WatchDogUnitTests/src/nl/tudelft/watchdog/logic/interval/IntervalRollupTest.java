@@ -0,0 +1,91 @@
+package nl.tudelft.watchdog.logic.interval;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.joda.time.Duration;
+import org.junit.Test;
+
+import nl.tudelft.watchdog.core.logic.interval.IntervalAggregator;
+import nl.tudelft.watchdog.core.logic.interval.IntervalRollup;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.DebugInterval;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalType;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.UserActiveInterval;
+
+/**
+ * Tests that the {@link IntervalRollup} answers the statistics of a period
+ * from its per-minute buckets.
+ */
+public class IntervalRollupTest {
+
+	private static final long MINUTE = 60 * 1000;
+
+	private static final long NOW = 1000 * 24 * 60 * MINUTE;
+
+	private IntervalRollup rollup = new IntervalRollup();
+
+	@Test
+	public void testIntervalIsSplitAcrossMinutes() {
+		rollup.add(createInterval(new UserActiveInterval(null), NOW - 150
+				* 1000, NOW - 30 * 1000));
+
+		IntervalAggregator all = rollup.aggregate(NOW - 10 * MINUTE, NOW);
+		assertEquals(new Duration(120 * 1000),
+				all.getDuration(IntervalType.USER_ACTIVE));
+		assertEquals(1, all.getCount());
+		assertEquals(new Date(NOW - 150 * 1000), all.getEarliestStart());
+
+		IntervalAggregator lastMinute = rollup.aggregate(NOW - 1, NOW);
+		assertEquals(new Duration(30 * 1000),
+				lastMinute.getDuration(IntervalType.USER_ACTIVE));
+		assertEquals(1, lastMinute.getCount());
+
+		IntervalAggregator before = rollup.aggregate(NOW - 10 * MINUTE, NOW
+				- 2 * MINUTE - 1);
+		assertEquals(new Duration(30 * 1000),
+				before.getDuration(IntervalType.USER_ACTIVE));
+		assertEquals(0, before.getCount());
+	}
+
+	@Test
+	public void testIntervalsOutsideOfBucketsAreIgnored() {
+		long oldest = NOW - IntervalRollup.BUCKETS * MINUTE;
+		rollup.add(createInterval(new UserActiveInterval(null), oldest - 2
+				* MINUTE, oldest - MINUTE));
+		rollup.add(createInterval(new UserActiveInterval(null), NOW
+				- MINUTE, NOW));
+		rollup.add(createInterval(new UserActiveInterval(null), oldest - 2
+				* MINUTE, oldest - MINUTE));
+
+		IntervalAggregator aggregator = rollup.aggregate(0, NOW);
+		assertEquals(1, aggregator.getCount());
+		assertEquals(new Duration(MINUTE),
+				aggregator.getDuration(IntervalType.USER_ACTIVE));
+		assertNull(rollup.aggregate(0, oldest - MINUTE).getEarliestStart());
+	}
+
+	@Test
+	public void testDebugIntervalsAreRetained() {
+		IntervalBase debug = createInterval(new DebugInterval(null), NOW - 5
+				* MINUTE, NOW - 4 * MINUTE);
+		rollup.add(debug);
+		rollup.add(createInterval(new UserActiveInterval(null), NOW
+				- MINUTE, NOW));
+
+		assertEquals(Arrays.asList(debug),
+				rollup.getRetainedIntervals(NOW - 10 * MINUTE));
+		assertEquals(0, rollup.getRetainedIntervals(NOW - 2 * MINUTE).size());
+	}
+
+	private static IntervalBase createInterval(IntervalBase interval,
+			long start, long end) {
+		interval.setStartTime(new Date(start));
+		interval.setEndTime(new Date(end));
+		interval.setClosed();
+		return interval;
+	}
+}
@@ -0,0 +1,66 @@
+package nl.tudelft.watchdog.logic.interval;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+import nl.tudelft.watchdog.core.logic.document.Document;
+import nl.tudelft.watchdog.core.logic.interval.IntervalClosingExecutor;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.TypingInterval;
+
+/**
+ * Tests how a {@link TypingInterval} computes its edit distance when it is
+ * closed.
+ */
+public class TypingIntervalTest {
+
+	@Test
+	public void testEditDistanceIsComputedFromTrackedChanges() {
+		TypingInterval interval = createInterval("abc");
+		change(interval, 1, "b", "xy");
+
+		close(interval, "axyc");
+		assertEquals(Long.valueOf(2), interval.getEditDistance());
+		assertEquals(1, interval.getCharLengthDiff());
+	}
+
+	@Test
+	public void testModCountBoundsEditDistanceOfIncompleteTracker() {
+		TypingInterval interval = createInterval("abc");
+		change(interval, 1, "b", "x");
+		// the starting content is released after the first tracked change
+		assertTrue(IntervalClosingExecutor.awaitQuiescence(5000));
+		assertNull(interval.getDocument().getContent());
+		change(interval, 0, null, "y");
+
+		close(interval, "yaxc");
+		assertEquals(Long.valueOf(2), interval.getEditDistance());
+	}
+
+	private static TypingInterval createInterval(String content) {
+		TypingInterval interval = new TypingInterval(null, new Date());
+		interval.setDocument(new Document("Project", "File.java", "src",
+				content));
+		return interval;
+	}
+
+	/** Records a change whose removed text may be unknown. */
+	private static void change(TypingInterval interval, int offset,
+			String removedText, String insertedText) {
+		int removedLength = removedText == null ? 1 : removedText.length();
+		interval.increaseModCountWith(Math.max(removedLength,
+				insertedText.length()));
+		interval.recordChange(offset, removedText, insertedText);
+	}
+
+	private static void close(TypingInterval interval, String endingContent) {
+		interval.setEndingDocument(new Document("Project", "File.java", "src",
+				endingContent));
+		interval.close();
+		assertTrue(IntervalClosingExecutor.awaitQuiescence(5000));
+	}
+}
@@ -0,0 +1,185 @@
+package nl.tudelft.watchdog.logic.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.google.gson.annotations.SerializedName;
+
+import nl.tudelft.watchdog.core.logic.breakpoint.BreakpointType;
+import nl.tudelft.watchdog.core.logic.event.eventtypes.BreakpointAddEvent;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IDEOpenInterval;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalBase;
+import nl.tudelft.watchdog.core.logic.network.JsonItemsEntity;
+import nl.tudelft.watchdog.core.logic.network.JsonTransferer;
+import nl.tudelft.watchdog.core.logic.storage.WatchDogItem;
+import nl.tudelft.watchdog.core.util.WatchDogGlobals;
+
+/**
+ * Tests that the {@link JsonItemsEntity} streams the same Json as
+ * {@link JsonTransferer#toJson(List)} creates, and that it respects its
+ * limits.
+ */
+public class JsonItemsEntityTest {
+
+	private JsonTransferer transferer = new JsonTransferer();
+
+	@BeforeClass
+	public static void setUpLogDirectory() {
+		if (WatchDogGlobals.getLogDirectory() == null) {
+			WatchDogGlobals.setLogDirectory("watchdog/logs/");
+		}
+	}
+
+	private static List<WatchDogItem> createItems() {
+		List<WatchDogItem> items = new ArrayList<WatchDogItem>();
+		for (int i = 0; i < 100; i++) {
+			IntervalBase interval = new IDEOpenInterval(new Date(i));
+			interval.setEndTime(new Date(i + 1));
+			interval.setSessionSeed("seed");
+			items.add(interval);
+			items.add(new BreakpointAddEvent(i, BreakpointType.LINE, new Date(
+					i)));
+		}
+		return items;
+	}
+
+	@Test
+	public void testStreamedJsonEqualsJson() throws IOException {
+		List<WatchDogItem> items = createItems();
+		JsonItemsEntity entity = new JsonItemsEntity(transferer, items, false);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		entity.writeTo(output);
+
+		assertEquals(transferer.toJson(items), output.toString("UTF-8"));
+		assertNull(entity.getContentEncoding());
+		assertEquals(-1, entity.getContentLength());
+	}
+
+	@Test
+	public void testCompressedJsonInflatesToJson() throws IOException {
+		List<WatchDogItem> items = createItems();
+		JsonItemsEntity entity = new JsonItemsEntity(transferer, items, true);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		entity.writeTo(output);
+
+		GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(
+				output.toByteArray()));
+		assertEquals(transferer.toJson(items), IOUtils.toString(input, "UTF-8"));
+		assertEquals(JsonItemsEntity.GZIP, entity.getContentEncoding()
+				.getValue());
+	}
+
+	@Test
+	public void testEntityIsLimitedToMaxItems() throws IOException {
+		List<WatchDogItem> items = createItems();
+		JsonItemsEntity entity = new JsonItemsEntity(transferer, items, false,
+				30, Long.MAX_VALUE);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		entity.writeTo(output);
+
+		assertEquals(30, entity.getWrittenItemCount());
+		assertEquals(transferer.toJson(items.subList(0, 30)),
+				output.toString("UTF-8"));
+	}
+
+	@Test
+	public void testEntityIsLimitedToMaxLength() throws IOException {
+		List<WatchDogItem> items = createItems();
+		long maxLength = 1000;
+		JsonItemsEntity entity = new JsonItemsEntity(transferer, items, false,
+				Integer.MAX_VALUE, maxLength);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		entity.writeTo(output);
+
+		int writtenItems = entity.getWrittenItemCount();
+		assertTrue(writtenItems > 1);
+		assertTrue(writtenItems < items.size());
+		assertTrue(transferer.toJson(items.subList(0, writtenItems - 1))
+				.length() < maxLength);
+		assertEquals(transferer.toJson(items.subList(0, writtenItems)),
+				output.toString("UTF-8"));
+	}
+
+	@Test
+	public void testLimitedEntityIsRepeatable() throws IOException {
+		List<WatchDogItem> items = createItems();
+		JsonItemsEntity entity = new JsonItemsEntity(transferer, items, true,
+				Integer.MAX_VALUE, 1000);
+		ByteArrayOutputStream firstOutput = new ByteArrayOutputStream();
+		entity.writeTo(firstOutput);
+		int writtenItems = entity.getWrittenItemCount();
+		ByteArrayOutputStream secondOutput = new ByteArrayOutputStream();
+		entity.writeTo(secondOutput);
+
+		assertEquals(writtenItems, entity.getWrittenItemCount());
+		assertTrue(Arrays.equals(firstOutput.toByteArray(),
+				secondOutput.toByteArray()));
+	}
+
+	@Test
+	public void testSingleItemExceedingMaxLengthIsWritten() throws IOException {
+		JsonItemsEntity entity = new JsonItemsEntity(transferer, createItems(),
+				false, Integer.MAX_VALUE, 1);
+		entity.writeTo(new ByteArrayOutputStream());
+
+		assertEquals(1, entity.getWrittenItemCount());
+	}
+
+	@Test
+	public void testUnserializableItemKeepsItsPosition() throws IOException {
+		List<WatchDogItem> items = new ArrayList<WatchDogItem>(createItems()
+				.subList(0, 3));
+		items.add(1, new UnserializableEvent());
+		JsonItemsEntity entity = new JsonItemsEntity(transferer, items, false);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		entity.writeTo(output);
+
+		assertEquals(4, entity.getWrittenItemCount());
+		JsonArray array = new JsonParser().parse(output.toString("UTF-8"))
+				.getAsJsonArray();
+		assertEquals(4, array.size());
+		assertTrue(array.get(1).isJsonNull());
+		assertEquals(new JsonParser().parse(transferer.toJson(items)),
+				array);
+	}
+
+	@Test
+	public void testEmptyListIsEmptyArray() throws IOException {
+		JsonItemsEntity entity = new JsonItemsEntity(transferer,
+				new ArrayList<WatchDogItem>(), false);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		entity.writeTo(output);
+
+		assertEquals("[]", output.toString("UTF-8"));
+	}
+
+	/** An event that Gson refuses to convert, as it has two timestamps. */
+	private static class UnserializableEvent extends BreakpointAddEvent {
+
+		private static final long serialVersionUID = 1L;
+
+		@SuppressWarnings("unused")
+		@SerializedName("ts")
+		private Date otherTimestamp = new Date();
+
+		private UnserializableEvent() {
+			super(0, BreakpointType.LINE, new Date());
+		}
+	}
+}
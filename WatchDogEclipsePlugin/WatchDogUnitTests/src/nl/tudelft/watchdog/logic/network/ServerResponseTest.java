@@ -0,0 +1,48 @@
+package nl.tudelft.watchdog.logic.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import nl.tudelft.watchdog.core.logic.network.JsonTransferer;
+import nl.tudelft.watchdog.core.util.WatchDogGlobals;
+
+/**
+ * Tests that {@link JsonTransferer#readFailedItems(String)} finds the items
+ * the server could not store.
+ */
+public class ServerResponseTest {
+
+	@BeforeClass
+	public static void setUpLogDirectory() {
+		if (WatchDogGlobals.getLogDirectory() == null) {
+			WatchDogGlobals.setLogDirectory("watchdog/logs/");
+		}
+	}
+
+	@Test
+	public void testAllItemsStored() {
+		assertTrue(JsonTransferer.readFailedItems("10").isEmpty());
+	}
+
+	@Test
+	public void testFailedItemsAreRead() {
+		String response = "{\"stored\":8,\"errors\":["
+				+ "{\"index\":3,\"code\":null,\"message\":\"invalid key\"},"
+				+ "{\"index\":7,\"code\":11000,\"message\":\"duplicate key\"}]}";
+		assertEquals(Arrays.asList(3, 7),
+				JsonTransferer.readFailedItems(response));
+	}
+
+	@Test
+	public void testUnexpectedResponseHasNoFailedItems() {
+		assertTrue(JsonTransferer.readFailedItems("").isEmpty());
+		assertTrue(JsonTransferer.readFailedItems("{\"errors\":[{}]}")
+				.isEmpty());
+		assertTrue(JsonTransferer.readFailedItems("<html>").isEmpty());
+	}
+}
@@ -0,0 +1,182 @@
+package nl.tudelft.watchdog.logic.network;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import nl.tudelft.watchdog.core.logic.breakpoint.BreakpointType;
+import nl.tudelft.watchdog.core.logic.event.eventtypes.BreakpointAddEvent;
+import nl.tudelft.watchdog.core.logic.event.eventtypes.EventBase;
+import nl.tudelft.watchdog.core.logic.network.JsonItemsEntity;
+import nl.tudelft.watchdog.core.logic.network.JsonTransferer;
+import nl.tudelft.watchdog.core.logic.network.NetworkUtils.Connection;
+import nl.tudelft.watchdog.core.logic.network.TransferManagerBase;
+import nl.tudelft.watchdog.core.logic.network.TransferManagerBase.ItemType;
+import nl.tudelft.watchdog.core.logic.storage.PersisterBase;
+import nl.tudelft.watchdog.core.logic.storage.WatchDogItem;
+import nl.tudelft.watchdog.core.ui.preferences.PreferencesBase;
+import nl.tudelft.watchdog.core.util.WatchDogGlobals;
+
+/**
+ * Tests that the {@link TransferManagerBase} sends its backlog in chunks,
+ * removes every accepted chunk and narrows rejected chunks down to the
+ * rejected item, against a stubbed server.
+ */
+public class TransferManagerTest {
+
+	private static final int ITEM_COUNT = 10;
+
+	private static final int CHUNK_ITEMS = 4;
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private PersisterBase persister;
+
+	private StubbedTransferer transferer;
+
+	private StubbedTransferManager transferManager;
+
+	private List<WatchDogItem> items;
+
+	@Before
+	public void setUp() {
+		if (WatchDogGlobals.getLogDirectory() == null) {
+			WatchDogGlobals.setLogDirectory("watchdog/logs/");
+		}
+		WatchDogGlobals.setPreferences(Mockito.mock(PreferencesBase.class));
+		persister = new PersisterBase(new File(folder.getRoot(),
+				"TransferManagerTestDB.mapdb"));
+		transferer = new StubbedTransferer();
+		// the persister is still empty, so nothing is sent on construction
+		transferManager = new StubbedTransferManager(persister, transferer);
+		transferManager.setChunkLimits(CHUNK_ITEMS, Long.MAX_VALUE);
+		items = new ArrayList<WatchDogItem>();
+		for (int i = 0; i < ITEM_COUNT; i++) {
+			EventBase event = new BreakpointAddEvent(i, BreakpointType.LINE,
+					new Date(1000 + i));
+			event.setSessionSeed("444");
+			items.add(event);
+		}
+		persister.saveAll(items);
+	}
+
+	@After
+	public void tearDown() {
+		transferManager.stop();
+		persister.closeDatabase();
+	}
+
+	@Test
+	public void testRejectedChunkIsHalvedUntilTheRejectedItemIsFound() {
+		transferer.rejectedItem = items.get(5);
+
+		transferManager.sendItemsImmediately();
+
+		// [0-3] accepted, [4-7] and [4-5] rejected, [4] accepted, [5] rejected
+		// and removed, [6] and [7] accepted, then full chunks again for [8-9]
+		assertEquals(Arrays.asList(4, 4, 2, 1, 1, 1, 1, 2),
+				transferer.sentItemCounts);
+		assertEquals(0, persister.getSize());
+	}
+
+	@Test
+	public void testNetworkErrorStopsTheTransfer() {
+		transferer.failingRequest = 2;
+
+		transferManager.sendItemsImmediately();
+
+		assertEquals(Arrays.asList(4, 4), transferer.sentItemCounts);
+		assertEquals(items.subList(CHUNK_ITEMS, ITEM_COUNT),
+				new ArrayList<WatchDogItem>(persister.readItems()));
+	}
+
+	@Test
+	public void testItemsAreRemovedAfterEachChunk() {
+		transferer.rejectedItem = items.get(5);
+		transferer.failingRequest = 6;
+
+		transferManager.sendItemsImmediately();
+
+		assertEquals(Arrays.asList(4, 4, 2, 1, 1, 1),
+				transferer.sentItemCounts);
+		assertEquals(items.subList(6, ITEM_COUNT), new ArrayList<WatchDogItem>(
+				persister.readItems()));
+	}
+
+	/**
+	 * A transferer that answers like the server would, without sending
+	 * anything.
+	 */
+	private static class StubbedTransferer extends JsonTransferer {
+
+		/** The item the server does not accept, if any. */
+		private WatchDogItem rejectedItem;
+
+		/** The number of the request that fails with a network error. */
+		private int failingRequest = -1;
+
+		private final List<Integer> sentItemCounts = new ArrayList<Integer>();
+
+		@Override
+		public Connection sendItems(JsonItemsEntity serializedItems,
+				String projectName, ItemType recordedItemsType,
+				List<Integer> failedItems) {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			try {
+				serializedItems.writeTo(output);
+			} catch (IOException exception) {
+				return Connection.NETWORK_ERROR;
+			}
+			sentItemCounts.add(serializedItems.getWrittenItemCount());
+			if (sentItemCounts.size() == failingRequest) {
+				return Connection.NETWORK_ERROR;
+			}
+			if (rejectedItem != null
+					&& output.toString().contains(toJsonObject(rejectedItem))) {
+				return Connection.UNSUCCESSFUL;
+			}
+			return Connection.SUCCESSFUL;
+		}
+
+		private String toJsonObject(WatchDogItem item) {
+			String json = toJson(Collections.singletonList(item));
+			return json.substring(1, json.length() - 1);
+		}
+	}
+
+	/** A transfer manager with a stubbed transferer. */
+	private static class StubbedTransferManager extends TransferManagerBase {
+
+		private final JsonTransferer transferer;
+
+		private StubbedTransferManager(PersisterBase persister,
+				JsonTransferer transferer) {
+			super(persister, "project");
+			this.transferer = transferer;
+		}
+
+		@Override
+		protected JsonTransferer createTransferer() {
+			return transferer;
+		}
+
+		private void stop() {
+			scheduledTask.cancel(false);
+		}
+	}
+}
@@ -0,0 +1,422 @@
+package nl.tudelft.watchdog.logic.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import nl.tudelft.watchdog.core.logic.breakpoint.BreakpointType;
+import nl.tudelft.watchdog.core.logic.event.eventtypes.BreakpointAddEvent;
+import nl.tudelft.watchdog.core.logic.event.eventtypes.EventBase;
+import nl.tudelft.watchdog.core.logic.storage.EventLog;
+import nl.tudelft.watchdog.core.logic.storage.EventLogConsumer;
+import nl.tudelft.watchdog.core.logic.storage.PersisterBase;
+import nl.tudelft.watchdog.core.logic.storage.StorageMigration;
+import nl.tudelft.watchdog.core.logic.storage.WatchDogItem;
+import nl.tudelft.watchdog.core.util.WatchDogGlobals;
+import nl.tudelft.watchdog.logic.interval.IntervalPersisterTest;
+
+/**
+ * Tests the {@link EventLog} and the {@link EventLogConsumer}s reading from it.
+ */
+public class EventLogTest {
+
+	/** Small enough to get a new segment every few items. */
+	private static final long SEGMENT_SIZE = 256;
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private File logDirectory;
+
+	private EventLog log;
+
+	private EventLogConsumer transferConsumer;
+
+	private EventLogConsumer statisticsConsumer;
+
+	@BeforeClass
+	public static void setUpLogDirectory() {
+		// cutting off a torn record is logged
+		if (WatchDogGlobals.getLogDirectory() == null) {
+			WatchDogGlobals.setLogDirectory("watchdog/logs/");
+		}
+	}
+
+	@Before
+	public void setUp() {
+		logDirectory = new File(folder.getRoot(), "watchdog.log");
+		openLog();
+	}
+
+	@After
+	public void tearDown() {
+		log.close();
+	}
+
+	private void openLog() {
+		log = new EventLog(logDirectory, getClass().getClassLoader(),
+				SEGMENT_SIZE);
+		transferConsumer = new EventLogConsumer(log, "transfer", false);
+		statisticsConsumer = new EventLogConsumer(log, "statistics", true);
+	}
+
+	private void reopenLog() {
+		log.close();
+		openLog();
+	}
+
+	private static EventBase createRandomEvent() {
+		Random random = new Random();
+		EventBase event = new BreakpointAddEvent(random.nextInt(100000),
+				BreakpointType.LINE, new Date(System.currentTimeMillis()
+						+ random.nextInt(100000)));
+		event.setSessionSeed("444");
+		return event;
+	}
+
+	private List<WatchDogItem> saveItems(int count) {
+		List<WatchDogItem> items = new ArrayList<WatchDogItem>();
+		for (int i = 0; i < count; i++) {
+			WatchDogItem item = i % 2 == 0 ? IntervalPersisterTest
+					.createRandomInterval() : createRandomEvent();
+			transferConsumer.save(item);
+			items.add(item);
+		}
+		return items;
+	}
+
+	@Test
+	public void testSavedBatchIsSyncedAtOnce() {
+		log.enableGroupCommit(5, 60 * 1000);
+		transferConsumer.saveAll(Arrays.asList(createEvent(1), createEvent(2),
+				createEvent(3)));
+		assertEquals(3, log.getUncommittedItemCount());
+
+		transferConsumer.saveAll(Arrays.asList(createEvent(4), createEvent(5),
+				createEvent(6)));
+		assertEquals(0, log.getUncommittedItemCount());
+		assertEquals(6, statisticsConsumer.getSize());
+	}
+
+	@Test
+	public void testItemIsWrittenOnceForAllConsumers() {
+		saveItems(10);
+		assertTrue(statisticsConsumer.sharesStorageWith(transferConsumer));
+		assertEquals(10, log.getNextSequence());
+		assertEquals(10, transferConsumer.getSize());
+		assertEquals(10, statisticsConsumer.getSize());
+		assertEquals(10, statisticsConsumer.readItems().size());
+	}
+
+	@Test
+	public void testItemsSurviveReopening() {
+		saveItems(10);
+		reopenLog();
+		assertEquals(10, transferConsumer.readItems().size());
+	}
+
+	@Test
+	public void testOutOfOrderRemovalIsPersisted() {
+		saveItems(10);
+		List<WatchDogItem> events = new ArrayList<WatchDogItem>();
+		for (WatchDogItem item : transferConsumer.readItems()) {
+			if (item instanceof EventBase) {
+				events.add(item);
+			}
+		}
+		transferConsumer.removeItems(events);
+		assertEquals(5, transferConsumer.getSize());
+
+		reopenLog();
+		assertEquals(5, transferConsumer.getSize());
+		assertEquals(5, transferConsumer.readItems().size());
+		assertEquals(10, statisticsConsumer.getSize());
+	}
+
+	@Test
+	public void testRemovalsAreAppendedWithoutRewritingTheOffset() {
+		List<WatchDogItem> items = saveItems(10);
+		for (int i = 9; i > 0; i -= 2) {
+			transferConsumer.removeItems(Collections.singletonList(items
+					.get(i)));
+		}
+		assertFalse(new File(logDirectory, "transfer.offset").exists());
+		assertTrue(new File(logDirectory, "transfer.acks").exists());
+
+		reopenLog();
+		assertEquals(5, transferConsumer.getSize());
+		transferConsumer.removeItems(Collections.singletonList(items.get(0)));
+		assertEquals(2, transferConsumer.getOffset());
+		assertEquals(4, transferConsumer.getSize());
+	}
+
+	@Test
+	public void testItemsAreIteratedByKindWhileRemoving() {
+		List<WatchDogItem> items = saveItems(250);
+		Iterator<EventBase> events = transferConsumer
+				.iterateItems(EventBase.class);
+		int iteratedEvents = 0;
+		while (events.hasNext()) {
+			EventBase event = events.next();
+			assertEquals(items.get(2 * iteratedEvents + 1), event);
+			transferConsumer.removeItems(Collections
+					.<WatchDogItem> singletonList(event));
+			iteratedEvents++;
+		}
+		assertEquals(125, iteratedEvents);
+		assertEquals(125, transferConsumer.getSize());
+		assertFalse(transferConsumer.iterateItems(EventBase.class).hasNext());
+	}
+
+	@Test
+	public void testTransferOffsetAdvancesWhenAllItemsRemoved() {
+		saveItems(10);
+		transferConsumer.removeItems(new ArrayList<WatchDogItem>(
+				transferConsumer.readItems()));
+		assertEquals(10, transferConsumer.getOffset());
+		assertEquals(0, transferConsumer.getSize());
+	}
+
+	@Test
+	public void testItemsAreReadByTimeRange() {
+		EventBase early = createEvent(1000);
+		EventBase late = createEvent(3000);
+		transferConsumer.save(late);
+		transferConsumer.save(early);
+		transferConsumer.save(IntervalPersisterTest.createRandomInterval());
+
+		assertEquals(Arrays.asList(early, late), statisticsConsumer.readItems(
+				new Date(1000), new Date(3000), EventBase.class));
+		assertEquals(Arrays.asList(late), statisticsConsumer.readItems(
+				new Date(1001), new Date(5000), EventBase.class));
+
+		// saved through the other consumer after the index was built
+		EventBase middle = createEvent(2000);
+		transferConsumer.save(middle);
+		assertEquals(Arrays.asList(early, middle, late),
+				statisticsConsumer.readItems(new Date(0), new Date(5000),
+						EventBase.class));
+	}
+
+	@Test
+	public void testRemovedItemsAreNotReadByTimeRange() {
+		EventBase early = createEvent(1000);
+		EventBase late = createEvent(3000);
+		transferConsumer.save(early);
+		transferConsumer.save(late);
+		statisticsConsumer.readItems(new Date(0), new Date(5000),
+				EventBase.class);
+
+		statisticsConsumer.readItems();
+		statisticsConsumer.removeItems(Collections
+				.<WatchDogItem> singletonList(early));
+		assertEquals(Arrays.asList(late), statisticsConsumer.readItems(
+				new Date(0), new Date(5000), EventBase.class));
+	}
+
+	private static EventBase createEvent(long timestamp) {
+		EventBase event = new BreakpointAddEvent((int) timestamp,
+				BreakpointType.LINE, new Date(timestamp));
+		event.setSessionSeed("444");
+		return event;
+	}
+
+	@Test
+	public void testWindowedConsumerDropsOlderItems() {
+		List<WatchDogItem> items = saveItems(10);
+		statisticsConsumer.readItems();
+		statisticsConsumer.removeItems(Collections.singletonList(items.get(6)));
+		assertEquals(7, statisticsConsumer.getOffset());
+		assertEquals(3, statisticsConsumer.readItems().size());
+	}
+
+	@Test
+	public void testSegmentsDeletedWhenAllConsumersPassed() {
+		saveItems(50);
+		int segments = log.getSegmentCount();
+		assertTrue(segments > 2);
+
+		transferConsumer.clearAndResetMap();
+		assertEquals(segments, log.getSegmentCount());
+
+		statisticsConsumer.clearAndResetMap();
+		assertEquals(1, log.getSegmentCount());
+		assertEquals(50, log.getNextSequence());
+	}
+
+	@Test
+	public void testTornRecordIsCutOff() throws IOException {
+		saveItems(3);
+		log.close();
+		File segment = null;
+		for (File file : logDirectory.listFiles()) {
+			if (file.getName().endsWith(".segment")
+					&& (segment == null || file.getName().compareTo(
+							segment.getName()) > 0)) {
+				segment = file;
+			}
+		}
+		RandomAccessFile file = new RandomAccessFile(segment, "rw");
+		file.setLength(file.length() - 5);
+		file.close();
+
+		openLog();
+		assertEquals(2, log.getNextSequence());
+		saveItems(1);
+		reopenLog();
+		assertEquals(3, transferConsumer.readItems().size());
+	}
+
+	@Test
+	public void testMapDatabasesAreMigratedToLog() {
+		PersisterBase legacyTransfer = new PersisterBase(new File(
+				folder.getRoot(), "watchdog.mapdb"));
+		PersisterBase legacyStatistics = new PersisterBase(new File(
+				folder.getRoot(), "watchdogStatistics.mapdb"));
+		WatchDogItem transferOnlyItem = IntervalPersisterTest
+				.createRandomInterval();
+		WatchDogItem statisticsOnlyItem = createRandomEvent();
+		WatchDogItem sharedItem = createRandomEvent();
+		legacyTransfer.save(transferOnlyItem);
+		legacyTransfer.save(sharedItem);
+		legacyStatistics.save(statisticsOnlyItem);
+		legacyStatistics.save(sharedItem);
+
+		StorageMigration.fromMapDatabases(legacyTransfer, legacyStatistics,
+				transferConsumer, statisticsConsumer);
+
+		assertEquals(3, log.getNextSequence());
+		assertEquals(2, transferConsumer.getSize());
+		assertTrue(transferConsumer.readItems().contains(transferOnlyItem));
+		assertFalse(transferConsumer.readItems().contains(statisticsOnlyItem));
+		assertEquals(2, statisticsConsumer.getSize());
+		assertFalse(statisticsConsumer.readItems().contains(transferOnlyItem));
+	}
+
+	@Test
+	public void testInterruptedCopyIsNotDuplicated() {
+		PersisterBase legacyTransfer = createLegacyPersister("watchdog.mapdb");
+		PersisterBase legacyStatistics = createLegacyPersister("watchdogStatistics.mapdb");
+		List<WatchDogItem> items = saveLegacyItems(legacyTransfer,
+				legacyStatistics);
+		EventLogConsumer crashingConsumer = new EventLogConsumer(log,
+				"statistics", true) {
+			@Override
+			protected void store(WatchDogItem item) {
+				super.store(item);
+				throw new IllegalStateException("Simulated crash");
+			}
+		};
+
+		try {
+			StorageMigration.fromMapDatabases(legacyTransfer, legacyStatistics,
+					transferConsumer, crashingConsumer);
+		} catch (IllegalStateException exception) {
+			// the migration is interrupted after appending some items
+		}
+		legacyTransfer.closeDatabase();
+		legacyStatistics.closeDatabase();
+		reopenLog();
+		StorageMigration.fromMapDatabases(
+				createLegacyPersister("watchdog.mapdb"),
+				createLegacyPersister("watchdogStatistics.mapdb"),
+				transferConsumer, statisticsConsumer);
+
+		assertEquals(2, transferConsumer.getSize());
+		assertTrue(transferConsumer.readItems().contains(items.get(0)));
+		assertTrue(transferConsumer.readItems().contains(items.get(2)));
+		assertEquals(2, statisticsConsumer.getSize());
+		assertTrue(statisticsConsumer.readItems().contains(items.get(1)));
+		assertTrue(statisticsConsumer.readItems().contains(items.get(2)));
+	}
+
+	@Test
+	public void testFinishedCopyIsNotRepeated() {
+		PersisterBase legacyTransfer = createLegacyPersister("watchdog.mapdb");
+		final File statisticsFile = new File(folder.getRoot(),
+				"watchdogStatistics.mapdb");
+		PersisterBase legacyStatistics = new PersisterBase(statisticsFile) {
+			@Override
+			public synchronized void closeAndDeleteDatabase() {
+				closeDatabase();
+				throw new IllegalStateException("Simulated crash");
+			}
+		};
+		saveLegacyItems(legacyTransfer, legacyStatistics);
+
+		try {
+			StorageMigration.fromMapDatabases(legacyTransfer, legacyStatistics,
+					transferConsumer, statisticsConsumer);
+		} catch (IllegalStateException exception) {
+			// the migration is interrupted after deleting one database
+		}
+		reopenLog();
+		StorageMigration.fromMapDatabases(
+				createLegacyPersister("watchdog.mapdb"),
+				new PersisterBase(statisticsFile), transferConsumer,
+				statisticsConsumer);
+
+		assertEquals(3, log.getNextSequence());
+		assertEquals(2, transferConsumer.getSize());
+		assertEquals(2, statisticsConsumer.getSize());
+		assertFalse(statisticsFile.exists());
+	}
+
+	private PersisterBase createLegacyPersister(String fileName) {
+		return new PersisterBase(new File(folder.getRoot(), fileName));
+	}
+
+	/**
+	 * Saves an item only to transfer, an item only for the statistics and an
+	 * item for both, in this order.
+	 */
+	private static List<WatchDogItem> saveLegacyItems(
+			PersisterBase legacyTransfer, PersisterBase legacyStatistics) {
+		List<WatchDogItem> items = Arrays.asList(
+				(WatchDogItem) IntervalPersisterTest.createRandomInterval(),
+				createRandomEvent(), createRandomEvent());
+		legacyTransfer.save(items.get(0));
+		legacyTransfer.save(items.get(2));
+		legacyStatistics.save(items.get(1));
+		legacyStatistics.save(items.get(2));
+		return items;
+	}
+
+	@Test
+	public void testLogIsMigratedToMapDatabases() {
+		List<WatchDogItem> items = saveItems(10);
+		statisticsConsumer.readItems();
+		statisticsConsumer.removeItems(Collections.singletonList(items.get(3)));
+		PersisterBase transferPersister = new PersisterBase(new File(
+				folder.getRoot(), "watchdog.mapdb"));
+		PersisterBase statisticsPersister = new PersisterBase(new File(
+				folder.getRoot(), "watchdogStatistics.mapdb"));
+
+		StorageMigration.toMapDatabases(transferConsumer, statisticsConsumer,
+				transferPersister, statisticsPersister);
+
+		assertEquals(10, transferPersister.getSize());
+		assertEquals(6, statisticsPersister.getSize());
+		assertFalse(EventLog.exists(logDirectory));
+		transferPersister.closeDatabase();
+		statisticsPersister.closeDatabase();
+	}
+}
@@ -0,0 +1,299 @@
+package nl.tudelft.watchdog.logic.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import nl.tudelft.watchdog.core.logic.breakpoint.BreakpointChangeType;
+import nl.tudelft.watchdog.core.logic.breakpoint.BreakpointType;
+import nl.tudelft.watchdog.core.logic.document.Document;
+import nl.tudelft.watchdog.core.logic.event.eventtypes.BreakpointChangeEvent;
+import nl.tudelft.watchdog.core.logic.event.eventtypes.DebugEventBase;
+import nl.tudelft.watchdog.core.logic.event.eventtypes.DebugEventType;
+import nl.tudelft.watchdog.core.logic.event.eventtypes.EventBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IDEOpenInterval;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalType;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.JUnitExecutionBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.PerspectiveInterval;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.PerspectiveInterval.Perspective;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.TypingInterval;
+import nl.tudelft.watchdog.core.logic.storage.EventLog;
+import nl.tudelft.watchdog.core.logic.network.JsonifiedDouble;
+import nl.tudelft.watchdog.core.logic.storage.EventLog.Entry;
+import nl.tudelft.watchdog.core.logic.storage.JUnitIntervalFactory;
+import nl.tudelft.watchdog.core.logic.storage.WatchDogItem;
+import nl.tudelft.watchdog.core.util.WatchDogGlobals;
+
+/**
+ * Tests that items written to an {@link EventLog} are read back with all
+ * their stored fields.
+ */
+public class ItemCodecTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private File logDirectory;
+
+	private EventLog log;
+
+	@BeforeClass
+	public static void setUpLogDirectory() {
+		if (WatchDogGlobals.getLogDirectory() == null) {
+			WatchDogGlobals.setLogDirectory("watchdog/logs/");
+		}
+	}
+
+	@Before
+	public void setUp() {
+		logDirectory = new File(folder.getRoot(), "watchdog.log");
+		log = new EventLog(logDirectory, getClass().getClassLoader());
+	}
+
+	@After
+	public void tearDown() {
+		log.close();
+	}
+
+	private List<WatchDogItem> appendAndReadBack(WatchDogItem... items) {
+		for (WatchDogItem item : items) {
+			log.append(item);
+		}
+		log.close();
+		log = new EventLog(logDirectory, getClass().getClassLoader());
+		List<WatchDogItem> readItems = new ArrayList<WatchDogItem>();
+		for (Entry entry : log.readFrom(0)) {
+			readItems.add(entry.getItem());
+		}
+		return readItems;
+	}
+
+	private static Document createDocument(String content) {
+		Document document = new Document("Project", "Production.java",
+				"/Project/src/Production.java", content);
+		document.prepareDocument();
+		return document;
+	}
+
+	@Test
+	public void testTypingIntervalIsReadBack() {
+		TypingInterval interval = new TypingInterval(null, new Date(1000));
+		interval.setEndTime(new Date(61000));
+		interval.setSessionSeed("seed");
+		interval.setDocument(createDocument("class Production {\n}\n"));
+		interval.setEndingDocument(createDocument(
+				"class Production {\n\tint a;\n}\n"));
+		interval.restoreEditStatistics(7L, 7, 7);
+
+		TypingInterval readInterval = (TypingInterval) appendAndReadBack(
+				interval).get(0);
+		assertEquals(interval, readInterval);
+		assertEquals(Long.valueOf(7), readInterval.getEditDistance());
+		assertEquals(7, readInterval.getModCount());
+		assertEquals(7, readInterval.getCharLengthDiff());
+		Document document = readInterval.getDocument();
+		assertEquals(interval.getDocument().getNameHash(),
+				document.getNameHash());
+		assertEquals(interval.getDocument().getProjectNameHash(),
+				document.getProjectNameHash());
+		assertEquals(2, document.getSloc());
+		assertEquals(interval.getDocument().getDocumentType(),
+				document.getDocumentType());
+		assertEquals(3, readInterval.getEndingDocument().getSloc());
+	}
+
+	@Test
+	public void testPerspectiveIntervalIsReadBack() {
+		PerspectiveInterval interval = new PerspectiveInterval(
+				Perspective.DEBUG, new Date(1000));
+		interval.setEndTime(new Date(500000));
+		interval.setSessionSeed("seed");
+
+		PerspectiveInterval readInterval = (PerspectiveInterval) appendAndReadBack(
+				interval).get(0);
+		assertEquals(interval, readInterval);
+		assertEquals(Perspective.DEBUG, readInterval.getPerspectiveType());
+	}
+
+	@Test
+	public void testEventsAreReadBack() {
+		EventBase debugEvent = new DebugEventBase(DebugEventType.STEP_INTO,
+				new Date(1000));
+		BreakpointChangeEvent changeEvent = new BreakpointChangeEvent(-42,
+				BreakpointType.METHOD, Arrays.asList(
+						BreakpointChangeType.ENABLED,
+						BreakpointChangeType.HC_ADDED), new Date(2000));
+
+		List<WatchDogItem> readItems = appendAndReadBack(debugEvent,
+				changeEvent);
+		assertEquals(debugEvent, readItems.get(0));
+		BreakpointChangeEvent readChangeEvent = (BreakpointChangeEvent) readItems
+				.get(1);
+		assertEquals(changeEvent, readChangeEvent);
+		assertEquals(-42, readChangeEvent.getHash());
+		assertEquals(BreakpointType.METHOD,
+				readChangeEvent.getBreakpointType());
+		assertEquals(changeEvent.getChanges(), readChangeEvent.getChanges());
+	}
+
+	@Test
+	public void testMissingFieldsAreLeftEmpty() {
+		IntervalBase interval = new IDEOpenInterval(new Date(1000));
+		interval.setEndTime(new Date(2000));
+
+		IntervalBase readInterval = (IntervalBase) appendAndReadBack(interval)
+				.get(0);
+		assertEquals(interval, readInterval);
+		assertNull(readInterval.getSessionSeed());
+	}
+
+	@Test
+	public void testSessionSeedIsSharedAmongReadItems() {
+		IntervalBase first = new IDEOpenInterval(new Date(1000));
+		first.setEndTime(new Date(2000));
+		first.setSessionSeed(new String("seed"));
+		IntervalBase second = new IDEOpenInterval(new Date(3000));
+		second.setEndTime(new Date(4000));
+		second.setSessionSeed(new String("seed"));
+
+		List<WatchDogItem> readItems = appendAndReadBack(first, second);
+		assertSame(((IntervalBase) readItems.get(0)).getSessionSeed(),
+				((IntervalBase) readItems.get(1)).getSessionSeed());
+	}
+
+	@Test
+	public void testUnknownItemTypeIsSerialized() {
+		IntervalBase interval = new CustomInterval(new Date(1000));
+		interval.setEndTime(new Date(2000));
+		interval.setSessionSeed("seed");
+
+		WatchDogItem readInterval = appendAndReadBack(interval).get(0);
+		assertTrue(readInterval instanceof CustomInterval);
+		assertEquals(interval, readInterval);
+	}
+
+	@Test
+	public void testJUnitIntervalIsReadBackWithItsExecutionTree() {
+		JUnitExecutionBase testCase = new JUnitExecutionBase();
+		testCase.restore(null, "class", "method", "F", new JsonifiedDouble(
+				0.25), null);
+		JUnitExecutionBase root = new JUnitExecutionBase();
+		root.restore("project", "class", null, "F", null,
+				new ArrayList<JUnitExecutionBase>(Arrays.asList(testCase)));
+		IntervalBase interval = new CustomJUnitInterval(root, new Date(1000),
+				new Date(2000));
+		interval.setSessionSeed("seed");
+		CustomJUnitIntervalFactory factory = new CustomJUnitIntervalFactory();
+		log.registerJUnitInterval(CustomJUnitInterval.class, factory);
+		log.append(interval);
+		log.close();
+
+		log = new EventLog(logDirectory, getClass().getClassLoader());
+		log.registerJUnitInterval(CustomJUnitInterval.class, factory);
+		CustomJUnitInterval readInterval = (CustomJUnitInterval) log
+				.readFrom(0).get(0).getItem();
+		assertEquals(1, factory.createdIntervals);
+		assertEquals(interval, readInterval);
+		JUnitExecutionBase readRoot = readInterval.testExecution;
+		assertEquals("project", readRoot.getProjectHash());
+		assertEquals("F", readRoot.getResult());
+		assertNull(readRoot.getDuration());
+		assertEquals(1, readRoot.getChildrenExecutions().size());
+		JUnitExecutionBase readTestCase = readRoot.getChildrenExecutions()
+				.get(0);
+		assertEquals("class", readTestCase.getTestClassHash());
+		assertEquals("method", readTestCase.getTestMethodHash());
+		assertEquals(0.25, readTestCase.getDuration().value, 0);
+		assertNull(readTestCase.getChildrenExecutions());
+	}
+
+	@Test
+	public void testItemsAreSmallerThanSerialized() throws IOException {
+		ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+		for (int i = 0; i < 100; i++) {
+			TypingInterval interval = new TypingInterval(null, new Date(
+					i * 10000));
+			interval.setEndTime(new Date(i * 10000 + 5000));
+			interval.setSessionSeed("seed");
+			interval.setDocument(createDocument("class Production {\n}\n"));
+			log.append(interval);
+			ObjectOutputStream output = new ObjectOutputStream(serialized);
+			output.writeObject(interval);
+			output.close();
+		}
+		log.close();
+
+		long logSize = 0;
+		for (File file : logDirectory.listFiles()) {
+			logSize += file.length();
+		}
+		assertTrue(logSize * 3 < serialized.size());
+	}
+
+	/** A JUnit interval like those of the IDEs. */
+	private static class CustomJUnitInterval extends IntervalBase {
+
+		private static final long serialVersionUID = 1L;
+
+		private final JUnitExecutionBase testExecution;
+
+		private CustomJUnitInterval(JUnitExecutionBase testExecution,
+				Date start, Date end) {
+			super(IntervalType.JUNIT, start);
+			setEndTime(end);
+			this.testExecution = testExecution;
+		}
+	}
+
+	/** Counts the intervals it restores. */
+	private static class CustomJUnitIntervalFactory implements
+			JUnitIntervalFactory {
+
+		private int createdIntervals;
+
+		@Override
+		public JUnitExecutionBase getTestExecution(IntervalBase interval) {
+			return ((CustomJUnitInterval) interval).testExecution;
+		}
+
+		@Override
+		public JUnitExecutionBase createExecution() {
+			return new JUnitExecutionBase();
+		}
+
+		@Override
+		public IntervalBase createInterval(JUnitExecutionBase testExecution,
+				Date start, Date end) {
+			createdIntervals++;
+			return new CustomJUnitInterval(testExecution, start, end);
+		}
+	}
+
+	/** An interval type the codec does not know. */
+	private static class CustomInterval extends IDEOpenInterval {
+
+		private static final long serialVersionUID = 1L;
+
+		private CustomInterval(Date start) {
+			super(start);
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package nl.tudelft.watchdog.logic.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import nl.tudelft.watchdog.core.logic.breakpoint.BreakpointType;
+import nl.tudelft.watchdog.core.logic.event.eventtypes.BreakpointAddEvent;
+import nl.tudelft.watchdog.core.logic.event.eventtypes.EventBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IDEOpenInterval;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalBase;
+import nl.tudelft.watchdog.core.logic.storage.EventLog;
+import nl.tudelft.watchdog.core.logic.storage.EventLogConsumer;
+import nl.tudelft.watchdog.core.logic.storage.RetentionCompactor;
+import nl.tudelft.watchdog.core.util.WatchDogGlobals;
+
+/**
+ * Tests that the {@link RetentionCompactor} keeps a statistics consumer within
+ * its budgets.
+ */
+public class RetentionCompactorTest {
+
+	/** Small enough to get a new segment every few items. */
+	private static final long SEGMENT_SIZE = 256;
+
+	private static final long NOW = System.currentTimeMillis();
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private EventLog log;
+
+	private EventLogConsumer statisticsConsumer;
+
+	private RetentionCompactor compactor;
+
+	@BeforeClass
+	public static void setUpLogDirectory() {
+		if (WatchDogGlobals.getLogDirectory() == null) {
+			WatchDogGlobals.setLogDirectory("watchdog/logs/");
+		}
+	}
+
+	@Before
+	public void setUp() {
+		log = new EventLog(new File(folder.getRoot(), "watchdog.log"),
+				getClass().getClassLoader(), SEGMENT_SIZE);
+		statisticsConsumer = new EventLogConsumer(log,
+				EventLogConsumer.STATISTICS, false);
+		compactor = new RetentionCompactor(statisticsConsumer);
+	}
+
+	@After
+	public void tearDown() {
+		log.close();
+	}
+
+	@Test
+	public void testExpiredItemsAreRemoved() {
+		for (int i = 0; i < 10; i++) {
+			statisticsConsumer.save(createEvent(NOW
+					- RetentionCompactor.DEFAULT_MAX_AGE - 10000 + i));
+		}
+		for (int i = 0; i < 5; i++) {
+			statisticsConsumer.save(createEvent(NOW - i));
+		}
+
+		assertTrue(compactor.compact() > 0);
+		assertEquals(5, statisticsConsumer.getSize());
+		assertEquals(10, compactor.getRemovedItemCount());
+		assertEquals(5, readAllEvents().size());
+	}
+
+	@Test
+	public void testOldestItemsBeyondBudgetAreRemoved() {
+		compactor.setBudget(EventBase.class,
+				RetentionCompactor.DEFAULT_MAX_AGE, 3);
+		for (int i = 0; i < 6; i++) {
+			statisticsConsumer.save(createEvent(NOW - 10 + i));
+		}
+
+		compactor.compact();
+		List<EventBase> events = readAllEvents();
+		assertEquals(3, events.size());
+		assertEquals(NOW - 7, events.get(0).getTimestamp().getTime());
+	}
+
+	@Test
+	public void testItemsWithinBudgetAreKept() {
+		for (int i = 0; i < 6; i++) {
+			statisticsConsumer.save(createEvent(NOW - i));
+		}
+
+		assertEquals(0, compactor.compact());
+		assertEquals(0, compactor.getRemovedItemCount());
+		assertEquals(6, statisticsConsumer.getSize());
+	}
+
+	@Test
+	public void testPruningOneKindKeepsNewerItemsOfTheOther() {
+		compactor.setBudget(IntervalBase.class,
+				RetentionCompactor.DEFAULT_MAX_AGE, 2);
+		statisticsConsumer.save(createEvent(NOW - 100));
+		statisticsConsumer.save(createInterval(NOW - 90));
+		statisticsConsumer.save(createEvent(NOW - 80));
+		statisticsConsumer.save(createInterval(NOW - 70));
+		statisticsConsumer.save(createInterval(NOW - 60));
+		statisticsConsumer.save(createEvent(NOW - 50));
+
+		compactor.compact();
+		assertEquals(1, compactor.getRemovedItemCount());
+		assertEquals(3, readAllEvents().size());
+		List<IntervalBase> intervals = statisticsConsumer.readItems(new Date(
+				0), new Date(Long.MAX_VALUE), IntervalBase.class);
+		assertEquals(2, intervals.size());
+		assertEquals(NOW - 70, intervals.get(0).getEnd().getTime());
+	}
+
+	private List<EventBase> readAllEvents() {
+		return statisticsConsumer.readItems(new Date(0), new Date(
+				Long.MAX_VALUE), EventBase.class);
+	}
+
+	private static IntervalBase createInterval(long end) {
+		IntervalBase interval = new IDEOpenInterval(new Date(end - 1000));
+		interval.setSessionSeed("444");
+		interval.setEndTime(new Date(end));
+		return interval;
+	}
+
+	private static EventBase createEvent(long timestamp) {
+		EventBase event = new BreakpointAddEvent((int) timestamp,
+				BreakpointType.LINE, new Date(timestamp));
+		event.setSessionSeed("444");
+		return event;
+	}
+}
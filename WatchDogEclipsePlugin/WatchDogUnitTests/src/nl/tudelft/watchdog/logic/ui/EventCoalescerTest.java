@@ -0,0 +1,84 @@
+package nl.tudelft.watchdog.logic.ui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import nl.tudelft.watchdog.core.logic.ui.EventCoalescer;
+import nl.tudelft.watchdog.core.logic.ui.events.EditorEvent;
+import nl.tudelft.watchdog.core.logic.ui.events.WatchDogEvent;
+import nl.tudelft.watchdog.core.logic.ui.events.WatchDogEvent.EventType;
+
+/**
+ * Tests that the {@link EventCoalescer} drops bursts of activity events per
+ * editor and counts received and dispatched events.
+ */
+public class EventCoalescerTest {
+
+	private static final long QUANTUM = 100;
+
+	private EventCoalescer coalescer = new EventCoalescer(QUANTUM);
+
+	private Object editor = new Object();
+
+	@Test
+	public void testBurstIsDispatchedOncePerQuantum() {
+		assertTrue(coalescer.shouldDispatch(paint(editor), 1000, true));
+		assertFalse(coalescer.shouldDispatch(paint(editor), 1010, true));
+		assertFalse(coalescer.shouldDispatch(caretMoved(editor), 1099, true));
+		assertTrue(coalescer.shouldDispatch(paint(editor), 1100, true));
+
+		assertEquals(4, coalescer.getReceivedEventCount());
+		assertEquals(2, coalescer.getDispatchedEventCount());
+	}
+
+	@Test
+	public void testEventsAreCoalescedPerEditor() {
+		Object otherEditor = new Object();
+		assertTrue(coalescer.shouldDispatch(paint(editor), 1000, true));
+		assertTrue(coalescer.shouldDispatch(paint(otherEditor), 1010, true));
+		assertFalse(coalescer.shouldDispatch(paint(editor), 1020, true));
+	}
+
+	@Test
+	public void testUserActivityIsCoalescedSeparately() {
+		assertTrue(coalescer.shouldDispatch(paint(editor), 1000, true));
+		assertTrue(coalescer.shouldDispatch(userActivity(), 1010, true));
+		assertFalse(coalescer.shouldDispatch(userActivity(), 1020, true));
+	}
+
+	@Test
+	public void testEventsThatChangeIntervalsAreDispatched() {
+		assertTrue(coalescer.shouldDispatch(paint(editor), 1000, true));
+		assertTrue(coalescer.shouldDispatch(paint(editor), 1010, false));
+		assertFalse(coalescer.shouldDispatch(paint(editor), 1050, true));
+	}
+
+	@Test
+	public void testZeroQuantumDisablesCoalescing() {
+		coalescer.setQuantum(0);
+		assertTrue(coalescer.shouldDispatch(userActivity(), 1000, true));
+		assertTrue(coalescer.shouldDispatch(userActivity(), 1000, true));
+	}
+
+	@Test
+	public void testOtherEventsAreNotCoalescible() {
+		assertTrue(EventCoalescer.isCoalescible(EventType.PAINT));
+		assertFalse(EventCoalescer.isCoalescible(EventType.ACTIVE_FOCUS));
+		assertFalse(EventCoalescer.isCoalescible(EventType.SUBSEQUENT_EDIT));
+	}
+
+	private static WatchDogEvent paint(Object editor) {
+		return new EditorEvent(editor, EventType.PAINT);
+	}
+
+	private static WatchDogEvent caretMoved(Object editor) {
+		return new EditorEvent(editor, EventType.CARET_MOVED);
+	}
+
+	private static WatchDogEvent userActivity() {
+		return new WatchDogEvent(new Object(), EventType.USER_ACTIVITY);
+	}
+}
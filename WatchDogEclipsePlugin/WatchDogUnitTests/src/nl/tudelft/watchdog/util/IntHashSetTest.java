@@ -0,0 +1,61 @@
+package nl.tudelft.watchdog.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import nl.tudelft.watchdog.core.util.IntHashSet;
+
+/**
+ * Tests the {@link IntHashSet} against a {@link HashSet}.
+ */
+public class IntHashSetTest {
+
+	@Test
+	public void testAddContainsAndRemove() {
+		IntHashSet set = new IntHashSet();
+		assertTrue(set.add(0));
+		assertTrue(set.add(-7));
+		assertTrue(set.add(42));
+		assertFalse(set.add(42));
+		assertEquals(3, set.size());
+		assertTrue(set.contains(0));
+		assertTrue(set.contains(-7));
+		assertFalse(set.contains(7));
+
+		assertTrue(set.remove(0));
+		assertFalse(set.remove(0));
+		assertFalse(set.contains(0));
+		assertEquals(2, set.size());
+
+		set.clear();
+		assertTrue(set.isEmpty());
+		assertFalse(set.contains(42));
+	}
+
+	@Test
+	public void testBehavesLikeHashSet() {
+		IntHashSet set = new IntHashSet();
+		Set<Integer> expected = new HashSet<Integer>();
+		Random random = new Random(24);
+		for (int i = 0; i < 20000; i++) {
+			// few distinct values, so that removals hit collision chains
+			int value = random.nextInt(500) * 1024;
+			if (random.nextBoolean()) {
+				assertEquals(expected.add(value), set.add(value));
+			} else {
+				assertEquals(expected.remove(value), set.remove(value));
+			}
+			assertEquals(expected.size(), set.size());
+		}
+		for (int value = 0; value < 500 * 1024; value += 1024) {
+			assertEquals(expected.contains(value), set.contains(value));
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package nl.tudelft.watchdog.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import nl.tudelft.watchdog.core.util.IntObjectHashMap;
+
+/**
+ * Tests the {@link IntObjectHashMap} against a {@link HashMap}.
+ */
+public class IntObjectHashMapTest {
+
+	@Test
+	public void testPutGetAndRemove() {
+		IntObjectHashMap<String> map = new IntObjectHashMap<String>();
+		assertNull(map.put(0, "zero"));
+		assertNull(map.put(3, "three"));
+		assertEquals("three", map.put(3, "drie"));
+		assertEquals(2, map.size());
+		assertEquals("zero", map.get(0));
+		assertEquals("drie", map.get(3));
+		assertNull(map.get(4));
+
+		assertEquals("zero", map.remove(0));
+		assertFalse(map.containsKey(0));
+		assertTrue(map.containsKey(3));
+
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertNull(map.get(3));
+	}
+
+	@Test
+	public void testBehavesLikeHashMap() {
+		IntObjectHashMap<Integer> map = new IntObjectHashMap<Integer>();
+		Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+		Random random = new Random(25);
+		for (int i = 0; i < 20000; i++) {
+			int key = random.nextInt(500) - 250;
+			if (random.nextBoolean()) {
+				assertEquals(expected.put(key, i), map.put(key, i));
+			} else {
+				assertEquals(expected.remove(key), map.remove(key));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+		for (int key = -250; key < 250; key++) {
+			assertEquals(expected.get(key), map.get(key));
+		}
+	}
+}
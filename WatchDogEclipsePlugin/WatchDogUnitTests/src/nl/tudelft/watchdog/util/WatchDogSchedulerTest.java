@@ -0,0 +1,224 @@
+package nl.tudelft.watchdog.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import nl.tudelft.watchdog.core.logic.document.Document;
+import nl.tudelft.watchdog.core.logic.document.EditorWrapperBase;
+import nl.tudelft.watchdog.core.logic.ui.InactivityNotifier;
+import nl.tudelft.watchdog.core.logic.ui.WatchDogEventManagerBase;
+import nl.tudelft.watchdog.core.logic.ui.events.WatchDogEvent;
+import nl.tudelft.watchdog.core.logic.ui.events.WatchDogEvent.EventType;
+import nl.tudelft.watchdog.core.util.WatchDogScheduler;
+
+/**
+ * Tests that all timers share the threads of the {@link WatchDogScheduler},
+ * and that re-arming an {@link InactivityNotifier} does not schedule new
+ * tasks.
+ */
+public class WatchDogSchedulerTest {
+
+	private static final int TIMEOUT = 100;
+
+	@Test
+	public void testTriggersDoNotCreateThreadsOrTasks()
+			throws InterruptedException {
+		CountingEventManager eventManager = new CountingEventManager();
+		InactivityNotifier notifier = new InactivityNotifier(eventManager,
+				TIMEOUT, EventType.USER_INACTIVITY);
+		notifier.trigger();
+		int threads = WatchDogScheduler.getCreatedThreadCount();
+		long tasks = WatchDogScheduler.getScheduledTaskCount();
+
+		for (int i = 0; i < 10000; i++) {
+			notifier.trigger();
+		}
+
+		assertEquals(threads, WatchDogScheduler.getCreatedThreadCount());
+		assertEquals(tasks, WatchDogScheduler.getScheduledTaskCount());
+		assertTrue(eventManager.latch.await(TIMEOUT * 10,
+				TimeUnit.MILLISECONDS));
+		assertEquals(1, eventManager.updates.get());
+	}
+
+	@Test
+	public void testDeadlineIsMovedByTrigger() throws InterruptedException {
+		CountingEventManager eventManager = new CountingEventManager();
+		InactivityNotifier notifier = new InactivityNotifier(eventManager,
+				TIMEOUT, EventType.USER_INACTIVITY);
+		long start = System.currentTimeMillis();
+		notifier.trigger();
+		Thread.sleep(TIMEOUT / 2);
+		notifier.trigger();
+
+		assertTrue(eventManager.latch.await(TIMEOUT * 10,
+				TimeUnit.MILLISECONDS));
+		assertTrue(System.currentTimeMillis() - start >= TIMEOUT * 3 / 2);
+		assertEquals(1, eventManager.updates.get());
+	}
+
+	@Test
+	public void testScheduledTasksShareOneThread() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(50);
+		final Set<Thread> threads = Collections
+				.synchronizedSet(new HashSet<Thread>());
+		for (int i = 0; i < 50; i++) {
+			WatchDogScheduler.schedule(new Runnable() {
+
+				@Override
+				public void run() {
+					threads.add(Thread.currentThread());
+					latch.countDown();
+				}
+			}, i % 5);
+		}
+
+		assertTrue(latch.await(1, TimeUnit.SECONDS));
+		assertEquals(1, threads.size());
+		assertTrue(threads.iterator().next().isDaemon());
+	}
+
+	@Test
+	public void testBlockingTaskDoesNotDelayOtherTasks()
+			throws InterruptedException {
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		ScheduledFuture<?> blockingTask = WatchDogScheduler
+				.scheduleBlockingAtFixedRate(new Runnable() {
+
+					@Override
+					public void run() {
+						blocked.countDown();
+						try {
+							release.await();
+						} catch (InterruptedException exception) {
+							// test ends
+						}
+					}
+				}, 0, 10);
+		assertTrue(blocked.await(1, TimeUnit.SECONDS));
+
+		final CountDownLatch ran = new CountDownLatch(1);
+		WatchDogScheduler.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				ran.countDown();
+			}
+		}, 10);
+		assertTrue(ran.await(1, TimeUnit.SECONDS));
+
+		blockingTask.cancel(false);
+		release.countDown();
+	}
+
+	@Test
+	public void testDelayedBlockingTaskDoesNotDelayOtherTasks()
+			throws InterruptedException {
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		WatchDogScheduler.scheduleBlocking(new Runnable() {
+
+			@Override
+			public void run() {
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException exception) {
+					// test ends
+				}
+			}
+		}, 0);
+		assertTrue(blocked.await(1, TimeUnit.SECONDS));
+
+		final CountDownLatch ran = new CountDownLatch(1);
+		WatchDogScheduler.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				ran.countDown();
+			}
+		}, 10);
+		assertTrue(ran.await(1, TimeUnit.SECONDS));
+		release.countDown();
+	}
+
+	@Test
+	public void testBlockingTaskDoesNotDelayCommits()
+			throws InterruptedException {
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		WatchDogScheduler.scheduleBlocking(new Runnable() {
+
+			@Override
+			public void run() {
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException exception) {
+					// test ends
+				}
+			}
+		}, 0);
+		assertTrue(blocked.await(1, TimeUnit.SECONDS));
+
+		final CountDownLatch committed = new CountDownLatch(1);
+		WatchDogScheduler.scheduleCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				committed.countDown();
+			}
+		}, 10);
+		assertTrue(committed.await(1, TimeUnit.SECONDS));
+		release.countDown();
+	}
+
+	/** Counts the inactivity events. */
+	private static class CountingEventManager extends WatchDogEventManagerBase {
+
+		private final AtomicInteger updates = new AtomicInteger();
+
+		private final CountDownLatch latch = new CountDownLatch(1);
+
+		private CountingEventManager() {
+			super(null, TIMEOUT);
+		}
+
+		@Override
+		public void update(WatchDogEvent event) {
+			updates.incrementAndGet();
+			latch.countDown();
+		}
+
+		@Override
+		public void update(WatchDogEvent event, Date forcedDate) {
+			update(event);
+		}
+
+		@Override
+		protected void addJUnitInterval(WatchDogEvent event) {
+		}
+
+		@Override
+		protected EditorWrapperBase createEditorWrapper(Object editor) {
+			return null;
+		}
+
+		@Override
+		protected Document createDocument(Object editor) {
+			return null;
+		}
+	}
+}
@@ -106,6 +106,7 @@ public class WatchDogStartUp implements ProjectComponent {
         InitializationManager initializationManager = InitializationManager.getInstance(project);
         initializationManager.getWatchDogEventManager().update(new WatchDogEvent(this, WatchDogEvent.EventType.END_IDE));
         initializationManager.getIntervalManager().closeAllIntervals();
+        initializationManager.drainPendingItems();
         initializationManager.getTransferManager().sendItemsImmediately();
         initializationManager.shutdown(project.getName());
 
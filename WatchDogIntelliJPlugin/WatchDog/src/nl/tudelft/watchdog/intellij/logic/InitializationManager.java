@@ -7,18 +7,34 @@ import com.intellij.openapi.extensions.PluginId;
 import com.intellij.openapi.project.Project;
 import com.intellij.xdebugger.XDebuggerManager;
 import nl.tudelft.watchdog.core.logic.event.DebugEventManager;
+import nl.tudelft.watchdog.core.logic.interval.IntervalClosingExecutor;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.IntervalBase;
+import nl.tudelft.watchdog.core.logic.interval.intervaltypes.JUnitExecutionBase;
+import nl.tudelft.watchdog.core.logic.network.NetworkUtils;
 import nl.tudelft.watchdog.core.logic.network.TransferManagerBase;
+import nl.tudelft.watchdog.core.logic.storage.EventLog;
+import nl.tudelft.watchdog.core.logic.storage.EventLogConsumer;
+import nl.tudelft.watchdog.core.logic.storage.JUnitIntervalFactory;
+import nl.tudelft.watchdog.core.logic.storage.PersistenceWorker;
+import nl.tudelft.watchdog.core.logic.storage.PersisterBase;
+import nl.tudelft.watchdog.core.logic.storage.RetentionCompactor;
+import nl.tudelft.watchdog.core.logic.storage.StorageBackend;
+import nl.tudelft.watchdog.core.logic.storage.StorageMigration;
 import nl.tudelft.watchdog.core.logic.ui.TimeSynchronityChecker;
+import nl.tudelft.watchdog.intellij.WatchDogStartUp;
 import nl.tudelft.watchdog.intellij.logic.event.listeners.BreakpointListener;
 import nl.tudelft.watchdog.intellij.logic.event.listeners.DebugActionListener;
 import nl.tudelft.watchdog.intellij.logic.event.listeners.DebugEventListener;
 import nl.tudelft.watchdog.intellij.logic.interval.IntervalManager;
+import nl.tudelft.watchdog.intellij.logic.interval.intervaltypes.JUnitExecution;
+import nl.tudelft.watchdog.intellij.logic.interval.intervaltypes.JUnitInterval;
 import nl.tudelft.watchdog.intellij.logic.storage.Persister;
 import nl.tudelft.watchdog.intellij.logic.ui.WatchDogEventManager;
 import nl.tudelft.watchdog.intellij.logic.ui.listeners.IntelliJListener;
 import nl.tudelft.watchdog.intellij.util.WatchDogUtils;
 
 import java.io.File;
+import java.util.Date;
 import java.util.HashMap;
 
 /**
@@ -35,8 +51,10 @@ public class InitializationManager {
      */
     private static volatile HashMap<String, InitializationManager> initializationManagers = new HashMap<String, InitializationManager>();
 
-    private final Persister toTransferPersister;
-    private final Persister statisticsPersister;
+    private final PersisterBase toTransferPersister;
+    private final PersisterBase statisticsPersister;
+    private final PersistenceWorker persistenceWorker;
+    private final RetentionCompactor retentionCompactor;
 
     private final WatchDogEventManager watchDogEventManager;
     private final DebugEventManager debugEventManager;
@@ -55,11 +73,39 @@ public class InitializationManager {
 
         File toTransferDatabaseFile = new File(baseFolder, WatchDogUtils.getProjectName() + "watchdog.mapdb");
         File statisticsDatabaseFile = new File(baseFolder, WatchDogUtils.getProjectName() + "watchdogStatistics.mapdb");
-
-        toTransferPersister = new Persister(
-                toTransferDatabaseFile);
-        statisticsPersister = new Persister(
-                statisticsDatabaseFile);
+        File logDirectory = new File(baseFolder, WatchDogUtils.getProjectName() + "watchdog.log");
+
+        if (StorageBackend.fromSystemProperty() == StorageBackend.MAPDB) {
+            toTransferPersister = new Persister(toTransferDatabaseFile);
+            statisticsPersister = new Persister(statisticsDatabaseFile);
+            if (EventLog.exists(logDirectory)) {
+                EventLog eventLog = createEventLog(logDirectory);
+                StorageMigration.toMapDatabases(new EventLogConsumer(eventLog, EventLogConsumer.TRANSFER, false),
+                        new EventLogConsumer(eventLog, EventLogConsumer.STATISTICS, false),
+                        toTransferPersister, statisticsPersister);
+            }
+        } else {
+            // Both persisters share one log
+            EventLog eventLog = createEventLog(logDirectory);
+            EventLogConsumer transferConsumer = new EventLogConsumer(eventLog, EventLogConsumer.TRANSFER, false);
+            // The statistics are pruned per kind of item, so their consumer
+            // must not drop older items of the other kind, i.e. not be windowed
+            EventLogConsumer statisticsConsumer = new EventLogConsumer(eventLog, EventLogConsumer.STATISTICS, false);
+            if (toTransferDatabaseFile.exists() || statisticsDatabaseFile.exists()) {
+                StorageMigration.fromMapDatabases(new Persister(toTransferDatabaseFile),
+                        new Persister(statisticsDatabaseFile), transferConsumer, statisticsConsumer);
+            }
+            toTransferPersister = transferConsumer;
+            statisticsPersister = statisticsConsumer;
+        }
+        toTransferPersister.enableGroupCommit();
+        statisticsPersister.enableGroupCommit();
+        persistenceWorker = new PersistenceWorker();
+        toTransferPersister.setPersistenceWorker(persistenceWorker);
+        statisticsPersister.setPersistenceWorker(persistenceWorker);
+        // Only the statistics are pruned, the items to transfer are kept
+        retentionCompactor = new RetentionCompactor(statisticsPersister);
+        retentionCompactor.start();
 
         // Initialize managers
         intervalManager = new IntervalManager(toTransferPersister,
@@ -76,6 +122,28 @@ public class InitializationManager {
         intelliJListener.attachListeners();
     }
 
+    private EventLog createEventLog(File logDirectory) {
+        EventLog eventLog = new EventLog(logDirectory, WatchDogStartUp.class.getClassLoader());
+        eventLog.registerJUnitInterval(JUnitInterval.class, new JUnitIntervalFactory() {
+
+            @Override
+            public JUnitExecutionBase getTestExecution(IntervalBase interval) {
+                return ((JUnitInterval) interval).getTestExecution();
+            }
+
+            @Override
+            public JUnitExecutionBase createExecution() {
+                return new JUnitExecution();
+            }
+
+            @Override
+            public IntervalBase createInterval(JUnitExecutionBase testExecution, Date start, Date end) {
+                return new JUnitInterval((JUnitExecution) testExecution, start, end);
+            }
+        });
+        return eventLog;
+    }
+
     /**
      * Returns the existing or creates and returns a new
      * {@link InitializationManager} instance.
@@ -99,19 +167,35 @@ public class InitializationManager {
     /**
      * @return the statistics interval persisters.
      */
-    public Persister getStatisticsPersister() {
+    public PersisterBase getStatisticsPersister() {
         return statisticsPersister;
     }
 
     /**
-     * Closes the database. The database can recover even if it is not closed
-     * properly, but it is good practice to close it anyway.
+     * Waits until all closed intervals and all items queued for persistence
+     * have been written, e.g. so that they can be transferred right away.
+     */
+    public void drainPendingItems() {
+        IntervalClosingExecutor.awaitQuiescence(PersistenceWorker.DEFAULT_DRAIN_TIMEOUT);
+        persistenceWorker.drain(PersistenceWorker.DEFAULT_DRAIN_TIMEOUT);
+    }
+
+    /**
+     * Writes all pending items and closes the database. The database can
+     * recover even if it is not closed properly, but it is good practice to
+     * close it anyway. The connections to the server are closed with the
+     * last project.
      */
     public void shutdown(String projectName) {
+        retentionCompactor.stop();
+        persistenceWorker.shutdown();
         toTransferPersister.closeDatabase();
         statisticsPersister.closeDatabase();
         intelliJListener.removeListeners();
         initializationManagers.remove(projectName);
+        if (initializationManagers.isEmpty()) {
+            NetworkUtils.closeHttpClient();
+        }
     }
 
 
@@ -17,9 +17,10 @@ public class DocumentCreator {
     /**
      * Factory method that creates and returns a {@link nl.tudelft.watchdog.core.logic.document.Document} from a given
      * {@link Editor}. For this to succeed, it is necessary that the the
-     * supplied part is Project.
+     * supplied part is Project. The content is an immutable snapshot of the
+     * editor's document, which is cheap to take and safe to read on any thread.
      */
-    public static Document createDocument(Editor editor) {
+    public static Document createDocument(final Editor editor) {
         String activeProjectName = null;
         String filePath = "";
         String title = "";
@@ -34,13 +35,13 @@ public class DocumentCreator {
             // Intentionally left empty
         }
 
-        try {
+        final com.intellij.openapi.editor.Document document = editor.getDocument();
+        if (document == null) {
             return new Document(activeProjectName, title, filePath,
                     getEditorOrFileContent(editor));
-        } catch (IllegalArgumentException exception) {
-            WatchDogLogger.getInstance().logSevere(exception);
         }
-        return new Document(activeProjectName, title, filePath, null);
+        return new Document(activeProjectName, title, filePath,
+                document.getImmutableCharSequence(), document.getModificationStamp());
     }
 
     /**
@@ -10,13 +10,12 @@ import nl.tudelft.watchdog.core.logic.event.eventtypes.BreakpointAddEvent;
 import nl.tudelft.watchdog.core.logic.event.eventtypes.BreakpointChangeEvent;
 import nl.tudelft.watchdog.core.logic.event.eventtypes.BreakpointEventBase;
 import nl.tudelft.watchdog.core.logic.event.eventtypes.BreakpointRemoveEvent;
+import nl.tudelft.watchdog.core.util.IntObjectHashMap;
 import nl.tudelft.watchdog.intellij.logic.breakpoint.BreakpointCreator;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Listener that is notified when breakpoints are added, changed or removed.
@@ -31,14 +30,14 @@ public class BreakpointListener implements XBreakpointListener {
 
     /**
      * Map containing all breakpoints added or changed (and not removed) in this
-     * session indexing by their hash code.
+     * session indexed by their hash code.
      */
-    private final Map<Integer, Breakpoint> breakpoints;
+    private final IntObjectHashMap<Breakpoint> breakpoints;
 
     /** Constructor. */
     public BreakpointListener(DebugEventManager debugEventManager) {
         this.debugEventManager = debugEventManager;
-        this.breakpoints = new HashMap<Integer, Breakpoint>();
+        this.breakpoints = new IntObjectHashMap<Breakpoint>();
     }
 
     @Override
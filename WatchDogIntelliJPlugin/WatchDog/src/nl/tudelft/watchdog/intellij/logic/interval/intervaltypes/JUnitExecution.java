@@ -45,6 +45,12 @@ public class JUnitExecution extends JUnitExecutionBase {
      */
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Constructor for restoring a stored execution.
+     */
+    public JUnitExecution() {
+    }
+
     /**
      * Constructor.
      */
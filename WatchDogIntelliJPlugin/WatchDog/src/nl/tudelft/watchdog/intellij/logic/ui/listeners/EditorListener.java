@@ -60,6 +60,8 @@ public class EditorListener {
 				int modCount = Math.max(old_length, new_length);
 				EditorEvent edEvent = new EditorEvent(editor, EventType.SUBSEQUENT_EDIT);
 				edEvent.setModCount(modCount);
+				edEvent.setChange(event.getOffset(), event.getOldFragment().toString(),
+						event.getNewFragment().toString());
                 eventManager.update(edEvent);
 			}
 
@@ -8,27 +8,51 @@ require 'net/smtp'
 require 'logger'
 require 'geocoder'
 require 'yaml'
+require 'zlib'
 
 class WatchDogServer < Sinatra::Base
   include Mongo
 
+  # Number of pooled connections to Mongo per process
+  MONGO_POOL_SIZE = 5
+
+  # Seconds a request waits for a pooled connection
+  MONGO_POOL_TIMEOUT = 5
+
+  def self.server_config
+    @server_config ||= YAML.load_file('config.yaml')[environment.to_s]
+  end
+
+  # The Mongo client of this process, whose connection pool is shared by all
+  # requests. It is created lazily and again after a fork, as every unicorn
+  # worker needs its own connections.
+  def self.mongo_client
+    if @mongo_client.nil? or @mongo_pid != Process.pid or
+       not @mongo_client.connected?
+      config = server_config
+      @mongo_client = MongoClient.new(config['mongo_host'], 27017,
+                                      :pool_size => MONGO_POOL_SIZE,
+                                      :pool_timeout => MONGO_POOL_TIMEOUT)
+      @mongo_pid = Process.pid
+      unless config['mongo_username'].nil? or config['mongo_username'].empty?
+        @mongo_client.db(config['mongo_db']).authenticate(
+          config['mongo_username'], config['mongo_password'])
+      end
+    end
+    @mongo_client
+  end
+
   def mongo
-    @serverconfig ||= YAML.load_file('config.yaml')[settings.environment.to_s]
-    MongoClient.new(@serverconfig['mongo_host'], 27017)
+    @serverconfig ||= self.class.server_config
+    self.class.mongo_client
   end
 
   # Setup database connection
   before  do
-    mongo
     @db = mongo.db(@serverconfig['mongo_db'])
-    unless @serverconfig['mongo_username'].nil? or @serverconfig['mongo_username'].empty? 
-      @db.authenticate(@serverconfig['mongo_username'],
-                       @serverconfig['mongo_password'])
-    end
   end
 
   after do
-    @db.connection.close
     @db = nil
   end
 
@@ -44,16 +68,24 @@ class WatchDogServer < Sinatra::Base
   Rack::Utils.key_space_limit = 4914304
   logger.info("key_space_limit=#{Rack::Utils.key_space_limit}")
 
+  # Content encodings of request bodies that are inflated
+  REQUEST_ENCODINGS = ['gzip']
+
+  # Inflate compressed request bodies up to 256MB
+  MAX_INFLATED_BODY_SIZE = 256 * 1024 * 1024
+
   Geocoder.configure(:timeout => 3, :lookup => :google)
 
   get '/' do
     'Woof Woof'
   end
 
-  # Get info about stored user
+  # Get the current client version. Also tells clients which content
+  # encodings they may use for request bodies (RFC 7694).
   get '/client' do
     client_version = "2.0.0"
 
+    headers 'Accept-Encoding' => REQUEST_ENCODINGS.join(', ')
     status 200
     body client_version.to_json
   end
@@ -150,9 +182,9 @@ class WatchDogServer < Sinatra::Base
     body sha
   end
 
-  # Create new intervals
+  # Create new intervals, the body may be gzip compressed
   post '/user/:uid/:pid/intervals' do
-    ivals = create_json_object(request)
+    ivals = create_json_object(request, true)
 
     unless ivals.kind_of?(Array)
       halt 400, 'Wrong request, body is not a JSON array'
@@ -182,28 +214,12 @@ class WatchDogServer < Sinatra::Base
       halt 404, "Project does not exist"
     end
 
-    ivals.each do |i|
-      begin
-        i['userId'] = user_id
-        i['projectId'] = project_id
-        add_ip_timestamp(i, request)
-        intervals.save(i)
-      rescue IndexError => e
-        log.error "IndexError occurred. Interval: #{i}"
-        log.error e.backtrace
-      rescue StandardError => e
-        log.error "Unexpected error: #{e.message}"
-        log.error e.backtrace
-      end
-    end
-
-    status 201
-    body ivals.size.to_s
+    insert_items(intervals, ivals, user_id, project_id)
   end
 
-  # Create new events
+  # Create new events, the body may be gzip compressed
   post '/user/:uid/:pid/events' do
-    evs = create_json_object(request)
+    evs = create_json_object(request, true)
 
     unless evs.kind_of?(Array)
       halt 400, 'Wrong request, body is not a JSON array'
@@ -227,23 +243,7 @@ class WatchDogServer < Sinatra::Base
       halt 404, "Project does not exist"
     end
 
-    evs.each do |i|
-      begin
-        i['userId'] = user_id
-        i['projectId'] = project_id
-        add_ip_timestamp(i, request)
-        events.save(i)
-      rescue IndexError => e
-        log.error "IndexError occurred. Event: #{i}"
-        log.error e.backtrace
-      rescue StandardError => e
-        log.error "Unexpected error: #{e.message}"
-        log.error e.backtrace
-      end
-    end
-
-    status 201
-    body evs.size.to_s
+    insert_items(events, evs, user_id, project_id)
   end
 
   private
@@ -273,16 +273,103 @@ class WatchDogServer < Sinatra::Base
   end
 
   # creates a json object from a http request
-  def create_json_object(request)
-     begin
-      object = JSON.parse(request.body.read)
+  def create_json_object(request, compressed = false)
+    body = compressed ? read_body(request) : request.body.read
+    begin
+      object = JSON.parse(body)
     rescue StandardError => e
       logger.error e
-      halt 400, "Wrong JSON object #{request.body.read}"
+      halt 400, "Wrong JSON object #{body}"
     end
     return object
   end
 
+  # reads the body of a http request, inflating it if it is gzip compressed
+  def read_body(request)
+    encoding = request.env['HTTP_CONTENT_ENCODING']
+    if encoding.nil? or encoding.empty? or encoding == 'identity'
+      return request.body.read
+    end
+
+    unless REQUEST_ENCODINGS.include?(encoding)
+      halt 415, "Unsupported content encoding #{encoding}"
+    end
+
+    begin
+      gzip = Zlib::GzipReader.new(request.body)
+      body = gzip.read(MAX_INFLATED_BODY_SIZE + 1) || ''
+      gzip.close
+    rescue Zlib::Error => e
+      logger.error e
+      halt 400, 'Wrong gzip compressed body'
+    end
+
+    if body.bytesize > MAX_INFLATED_BODY_SIZE
+      halt 413, 'Request too long (inflated body too large)'
+    end
+    body
+  end
+
+  # Stores the items with one unordered bulk insert, so that a failing item
+  # does not stop the others. Responds with the number of items if all were
+  # stored. Otherwise, responds with the number of stored items and the
+  # index, code and message of each failed item, so that clients can send
+  # only those again.
+  def insert_items(collection, items, user_id, project_id)
+    items.each do |item|
+      item['userId'] = user_id
+      item['projectId'] = project_id
+      add_ip_timestamp(item, request)
+    end
+
+    errors = bulk_insert(collection, items)
+
+    status 201
+    if errors.empty?
+      body items.size.to_s
+    else
+      logger.warn "Failed to store #{errors.size} of #{items.size} items"
+      body({'stored' => items.size - errors.size, 'errors' => errors}.to_json)
+    end
+  end
+
+  # Inserts the items unordered and returns the errors of the failed items
+  def bulk_insert(collection, items)
+    return [] if items.empty?
+
+    bulk = collection.initialize_unordered_bulk_op
+    items.each { |item| bulk.insert(item) }
+    begin
+      bulk.execute
+      []
+    rescue BulkWriteError => e
+      (e.result['writeErrors'] || []).map do |error|
+        item_error(error['index'], error['code'], error['errmsg'])
+      end
+    rescue StandardError => e
+      # the whole batch was refused, e.g. because of an invalid key, so find
+      # out which items are at fault by inserting them one by one
+      logger.warn "Bulk insert failed: #{e.message}"
+      insert_one_by_one(collection, items)
+    end
+  end
+
+  def insert_one_by_one(collection, items)
+    errors = []
+    items.each_with_index do |item, index|
+      begin
+        collection.insert(item)
+      rescue StandardError => e
+        errors << item_error(index, nil, e.message)
+      end
+    end
+    errors
+  end
+
+  def item_error(index, code, message)
+    {'index' => index, 'code' => code, 'message' => message}
+  end
+
   def add_ip_timestamp(object, request)
     object['ip'] = request.ip
     object['regDate'] = Time.now
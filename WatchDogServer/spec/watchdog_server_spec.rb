@@ -1,6 +1,8 @@
 require 'spec_helper.rb'
 require 'watchdog_server'
 require 'json'
+require 'zlib'
+require 'stringio'
 
 def app
   WatchDogServer
@@ -53,6 +55,16 @@ def test_event(timestamp)
   event
 end
 
+def gzip(string)
+  output = StringIO.new
+  gzip = Zlib::GzipWriter.new(output)
+  gzip.write(string)
+  gzip.close
+  output.string
+end
+
+GZIP_HEADER = {'HTTP_CONTENT_ENCODING' => 'gzip'}
+
 describe 'The WatchDog Server' do
 
   before(:each) do
@@ -75,6 +87,11 @@ describe 'The WatchDog Server' do
     expect(last_response.body).to eq('"2.0.0"')
   end
 
+  it 'should announce that it accepts gzip compressed requests' do
+    get '/client'
+    expect(last_response.headers['Accept-Encoding']).to include('gzip')
+  end
+
   it 'should create a user when the details are correct' do
     post '/user', test_user.to_json
 
@@ -210,4 +227,54 @@ describe 'The WatchDog Server' do
     expect(last_response.body).to eq('10')
   end
 
+  it 'should store large batches of intervals at once' do
+    intervals = (1..5000).map{|x| test_interval(x, x + 1)}
+
+    post "/user/#{existing_user}/#{existing_project}/intervals",
+         intervals.to_json
+    last_response.status.should eql(201)
+    expect(last_response.body).to eq('5000')
+  end
+
+  it 'should report the items that could not be stored' do
+    events = (1..10).map{|x| test_event(x)}
+    events[3]['$invalid'] = true
+    events[7]['$invalid'] = true
+
+    post "/user/#{existing_user}/#{existing_project}/events", events.to_json
+    last_response.status.should eql(201)
+    response = JSON.parse(last_response.body)
+    expect(response['stored']).to eq(8)
+    expect(response['errors'].map{|e| e['index']}).to eq([3, 7])
+  end
+
+  it 'should store gzip compressed intervals' do
+    intervals = (1..10).map{|x| test_interval(x, x + 1)}
+
+    post "/user/#{existing_user}/#{existing_project}/intervals",
+         gzip(intervals.to_json), GZIP_HEADER
+    last_response.status.should eql(201)
+    expect(last_response.body).to eq('10')
+  end
+
+  it 'should store gzip compressed events' do
+    events = (1..10).map{|x| test_event(x)}
+
+    post "/user/#{existing_user}/#{existing_project}/events",
+         gzip(events.to_json), GZIP_HEADER
+    last_response.status.should eql(201)
+    expect(last_response.body).to eq('10')
+  end
+
+  it 'should return 400 on a broken gzip body' do
+    post '/user/foobar/foobarproject/intervals', 'foobar', GZIP_HEADER
+    last_response.status.should eql(400)
+  end
+
+  it 'should return 415 on an unsupported content encoding' do
+    post '/user/foobar/foobarproject/events', 'foobar',
+         {'HTTP_CONTENT_ENCODING' => 'br'}
+    last_response.status.should eql(415)
+  end
+
 end